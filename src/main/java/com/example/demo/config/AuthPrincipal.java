@@ -58,7 +58,12 @@ public class AuthPrincipal {
 
     // Helper methods để kiểm tra vai trò
     public boolean hasRole(String roleName) {
-        return authorities.stream().anyMatch(ga -> ga.getAuthority().equals(roleName));
+        for (GrantedAuthority ga : authorities) {
+            if (roleName.equals(ga.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
     }
     
     public boolean isAdmin() {
@@ -7,7 +7,6 @@ import com.example.demo.repository.AdminRepository; // <<< THÊM
 import com.example.demo.repository.PartnerRepository; // <<< THÊM
 import com.example.demo.repository.StudentRepository;
 import org.springframework.core.MethodParameter;
-import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
@@ -19,9 +18,6 @@ import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.method.support.ModelAndViewContainer;
 import java.util.Collection;
 import java.util.UUID;
-import java.util.Set; // <<< THÊM
-import java.util.stream.Collectors; // <<< THÊM
-import java.util.Optional; // <<< THÊM
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,14 +27,17 @@ public class AuthPrincipalArgumentResolver implements HandlerMethodArgumentResol
     private final StudentRepository studentRepository;
     private final PartnerRepository partnerRepository; // <<< THÊM
     private final AdminRepository adminRepository; // <<< THÊM
+    private final AuthPrincipalCache principalCache;
     private static final Logger logger = LoggerFactory.getLogger(AuthPrincipalArgumentResolver.class);
     // Inject 3 repositories
     public AuthPrincipalArgumentResolver(StudentRepository studentRepository,
             PartnerRepository partnerRepository, // <<< THÊM
-            AdminRepository adminRepository) { // <<< THÊM
+            AdminRepository adminRepository, // <<< THÊM
+            AuthPrincipalCache principalCache) {
         this.studentRepository = studentRepository;
         this.partnerRepository = partnerRepository;
         this.adminRepository = adminRepository;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -50,25 +49,17 @@ public class AuthPrincipalArgumentResolver implements HandlerMethodArgumentResol
     @Override
     public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
             NativeWebRequest webRequest, WebDataBinderFactory binderFactory) throws Exception {
-        
-        logger.info("--- DEBUG RESOLVER: Starting AuthPrincipal resolution ---");
 
-        Authentication auth = (Authentication) webRequest.getUserPrincipal();
-        if (auth == null || !(auth instanceof JwtAuthenticationToken)) {
-            logger.warn("--- DEBUG RESOLVER: Authentication is null or not JwtAuthenticationToken ---");
+        // Hot path: không tra DB khi cache hit, không stream/Set, log chỉ ở DEBUG
+        if (!(webRequest.getUserPrincipal() instanceof JwtAuthenticationToken jwtAuth)) {
+            logger.warn("AuthPrincipal requested but authentication is not a JwtAuthenticationToken");
             return null;
         }
 
-        JwtAuthenticationToken jwtAuth = (JwtAuthenticationToken) auth;
         Jwt jwt = jwtAuth.getToken();
         Collection<GrantedAuthority> authorities = jwtAuth.getAuthorities();
-        Set<String> roles = authorities.stream()
-                                    .map(GrantedAuthority::getAuthority)
-                                    .collect(Collectors.toSet());
-
+        AuthPrincipalCache.Kind kind = kindOf(authorities);
         String cognitoSub = jwt.getSubject();
-        logger.info("--- DEBUG RESOLVER: Cognito Sub (from Token) = '{}'", cognitoSub);
-        logger.info("--- DEBUG RESOLVER: Roles (from Token) = {}", roles);
 
         String email = jwt.getClaimAsString("email");
         String fullName = jwt.getClaimAsString("name");
@@ -79,37 +70,42 @@ public class AuthPrincipalArgumentResolver implements HandlerMethodArgumentResol
             username = email;
         }
 
-        UUID studentId = null;
-        UUID partnerId = null;
-        UUID adminId = null;
+        AuthPrincipalCache.Entry entry = principalCache.get(cognitoSub, kind);
+        UUID id = entry != null ? entry.id() : lookupId(cognitoSub, kind);
 
-        if (roles.contains("ROLE_ADMIN")) {
-            logger.info("--- DEBUG RESOLVER: User is ADMIN. Searching admin table...");
-            Optional<Admin> admin = adminRepository.findByCognitoSub(cognitoSub);
-            adminId = admin.map(Admin::getId).orElse(null);
-            logger.info("--- DEBUG RESOLVER: Admin ID found = {}", adminId);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Resolved principal sub={} kind={} id={} cached={}", cognitoSub, kind, id, entry != null);
+        }
 
-        } else if (roles.contains("ROLE_PARTNERS")) {
-            logger.info("--- DEBUG RESOLVER: User is PARTNER. Searching partner table...");
-            // <<< LOGIC TÌM KIẾM PARTNER ĐANG GẶP VẤN ĐỀ
-            Optional<Partner> partner = partnerRepository.findByCognitoSub(cognitoSub);
-            partnerId = partner.map(Partner::getId).orElse(null);
-            logger.info("--- DEBUG RESOLVER: Partner ID found = {}", partnerId); // <<< HÃY XEM GIÁ TRỊ NÀY LÀ GÌ
+        return new AuthPrincipal(cognitoSub, username, email, authorities,
+                fullName, universityCode, phoneNumber,
+                kind == AuthPrincipalCache.Kind.STUDENT ? id : null,
+                kind == AuthPrincipalCache.Kind.PARTNER ? id : null,
+                kind == AuthPrincipalCache.Kind.ADMIN ? id : null);
+    }
 
-        } else { // (Logic cho Student, đã sửa)
-            if (!roles.isEmpty()) { // (Nếu không phải Admin/Partner nhưng có role lạ)
-                logger.warn("--- DEBUG RESOLVER: User has unhandled roles: {}", roles);
+    // Admin ưu tiên hơn Partner; không phải 2 vai trò trên thì là Student
+    private static AuthPrincipalCache.Kind kindOf(Collection<GrantedAuthority> authorities) {
+        boolean partner = false;
+        for (GrantedAuthority authority : authorities) {
+            String name = authority.getAuthority();
+            if ("ROLE_ADMIN".equals(name)) {
+                return AuthPrincipalCache.Kind.ADMIN;
+            }
+            if ("ROLE_PARTNERS".equals(name)) {
+                partner = true;
             }
-            logger.info("--- DEBUG RESOLVER: User is STUDENT. Searching student table...");
-            Optional<Student> student = studentRepository.findByCognitoSub(cognitoSub);
-            studentId = student.map(Student::getId).orElse(null);
-            logger.info("--- DEBUG RESOLVER: Student ID found = {}", studentId);
         }
+        return partner ? AuthPrincipalCache.Kind.PARTNER : AuthPrincipalCache.Kind.STUDENT;
+    }
 
-        logger.info("--- DEBUG RESOLVER: Final IDs: [Student={}, Partner={}, Admin={}] ---", studentId, partnerId, adminId);
-        
-        return new AuthPrincipal(cognitoSub, username, email, authorities,
-                fullName, universityCode, phoneNumber,
-                studentId, partnerId, adminId);
+    private UUID lookupId(String cognitoSub, AuthPrincipalCache.Kind kind) {
+        UUID id = switch (kind) {
+            case ADMIN -> adminRepository.findByCognitoSub(cognitoSub).map(Admin::getId).orElse(null);
+            case PARTNER -> partnerRepository.findByCognitoSub(cognitoSub).map(Partner::getId).orElse(null);
+            case STUDENT -> studentRepository.findByCognitoSub(cognitoSub).map(Student::getId).orElse(null);
+        };
+        principalCache.put(cognitoSub, kind, id);
+        return id;
     }
-}
\ No newline at end of file
+}
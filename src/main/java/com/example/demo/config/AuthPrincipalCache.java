@@ -0,0 +1,95 @@
+package com.example.demo.config;
+
+import com.example.demo.util.BoundedTtlCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+
+/**
+ * Cache cognitoSub -> ID nội bộ (student/partner/admin) cho AuthPrincipalArgumentResolver,
+ * để mỗi request không phải tra DB.
+ *
+ * Tìm thấy -> cache với TTL dài; chưa có bản ghi (ví dụ sinh viên chưa completeProfile) -> cache TTL ngắn,
+ * vì việc tạo bản ghi ở node khác không invalidate được cache của node này.
+ * Các service tạo/xóa/đổi trạng thái user gọi invalidate(cognitoSub) (ngay lập tức + sau khi transaction kết thúc).
+ */
+@Component
+public class AuthPrincipalCache {
+
+    public enum Kind { ADMIN, PARTNER, STUDENT }
+
+    // id == null: đã tra DB nhưng chưa có bản ghi
+    public record Entry(Kind kind, UUID id) {
+    }
+
+    private final BoundedTtlCache<String, Entry> resolved;
+    private final BoundedTtlCache<String, Entry> missing;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public AuthPrincipalCache(MeterRegistry meterRegistry,
+                              @Value("${auth.principal-cache.max-entries:20000}") int maxEntries,
+                              @Value("${auth.principal-cache.ttl-ms:600000}") long ttlMs,
+                              @Value("${auth.principal-cache.negative-ttl-ms:5000}") long negativeTtlMs) {
+        this.resolved = new BoundedTtlCache<>(maxEntries, ttlMs);
+        this.missing = new BoundedTtlCache<>(Math.max(1, maxEntries / 10), negativeTtlMs);
+        this.hitCounter = Counter.builder("auth.principal.cache.requests").tag("result", "hit")
+                .description("Principal resolutions served from cache")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("auth.principal.cache.requests").tag("result", "miss")
+                .description("Principal resolutions that queried the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return entry đã cache cho đúng vai trò hiện tại của token, hoặc null nếu phải tra DB
+     */
+    public Entry get(String cognitoSub, Kind kind) {
+        Entry entry = resolved.get(cognitoSub);
+        if (entry == null) {
+            entry = missing.get(cognitoSub);
+        }
+        // Token đổi group (ví dụ được thêm vào PARTNERS) -> bỏ qua entry của vai trò cũ
+        if (entry == null || entry.kind() != kind) {
+            missCounter.increment();
+            return null;
+        }
+        hitCounter.increment();
+        return entry;
+    }
+
+    public void put(String cognitoSub, Kind kind, UUID id) {
+        if (id != null) {
+            missing.remove(cognitoSub);
+            resolved.put(cognitoSub, new Entry(kind, id));
+        } else {
+            missing.put(cognitoSub, new Entry(kind, null));
+        }
+    }
+
+    public void invalidate(String cognitoSub) {
+        if (cognitoSub == null) {
+            return;
+        }
+        evict(cognitoSub);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Request khác có thể đã nạp lại giá trị cũ trước khi transaction này commit
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(cognitoSub);
+                }
+            });
+        }
+    }
+
+    private void evict(String cognitoSub) {
+        resolved.remove(cognitoSub);
+        missing.remove(cognitoSub);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.demo.config;
+
+import com.example.demo.util.BoundedTtlCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtDecoder cache kết quả giải mã theo SHA-256 của token cho tới khi token hết hạn (exp).
+ * Token lặp lại (cùng 1 client gọi nhiều API) chỉ verify chữ ký 1 lần; không giữ token gốc trong bộ nhớ.
+ * Token lỗi không được cache -> luôn đi qua delegate.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final JwtDecoder delegate;
+    private final BoundedTtlCache<String, Jwt> decoded;
+    private final Timer hitTimer;
+    private final Timer missTimer;
+
+    public CachingJwtDecoder(JwtDecoder delegate, int maxEntries, long maxTtlMs, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        // TTL của cache chỉ là chặn trên; hạn thật của từng token kiểm tra bằng exp khi đọc
+        this.decoded = new BoundedTtlCache<>(maxEntries, maxTtlMs);
+        this.hitTimer = Timer.builder("security.jwt.decode").tag("cache", "hit")
+                .description("JWT decode time (cached)")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.missTimer = Timer.builder("security.jwt.decode").tag("cache", "miss")
+                .description("JWT decode time (signature verification)")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        long start = System.nanoTime();
+        String key = hash(token);
+        Jwt jwt = decoded.get(key);
+        if (jwt != null) {
+            Instant expiresAt = jwt.getExpiresAt();
+            if (expiresAt == null || Instant.now().isBefore(expiresAt)) {
+                hitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return jwt;
+            }
+            decoded.remove(key);
+        }
+
+        jwt = delegate.decode(token); // verify chữ ký + exp/nbf/iss, ném JwtException nếu không hợp lệ
+        if (jwt.getExpiresAt() != null) {
+            decoded.put(key, jwt);
+        }
+        missTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return jwt;
+    }
+
+    private static String hash(String token) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
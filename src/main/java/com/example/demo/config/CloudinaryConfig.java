@@ -4,6 +4,7 @@ package com.example.demo.config;
 
 import com.cloudinary.Cloudinary;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -11,6 +12,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 @Configuration
+@ConditionalOnProperty(name = "storage.backend", havingValue = "cloudinary", matchIfMissing = true) // storage.backend=local không cần credentials
 public class CloudinaryConfig {
 
     @Value("${CLOUDINARY_CLOUD_NAME}")
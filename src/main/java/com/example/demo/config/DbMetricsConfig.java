@@ -0,0 +1,59 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+
+import javax.sql.DataSource;
+
+/**
+ * Metric DB theo endpoint (xem DbMetricsInterceptor): bọc DataSource để đếm câu lệnh/dòng/thời gian chờ connection,
+ * gắn interceptor Hibernate đếm entity nạp. Tắt bằng db.metrics.enabled=false.
+ */
+@Configuration
+@ConditionalOnProperty(name = "db.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class DbMetricsConfig {
+
+    @Bean
+    public static BeanPostProcessor instrumentedDataSourcePostProcessor() {
+        return new InstrumentingPostProcessor();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityLoadCountingCustomizer() {
+        return properties -> properties.put(AvailableSettings.INTERCEPTOR, new EntityLoadCountingInterceptor());
+    }
+
+    @Bean
+    public DbMetricsInterceptor dbMetricsInterceptor(MeterRegistry meterRegistry,
+                                                     @Value("${db.metrics.histogram:false}") boolean histogram) {
+        return new DbMetricsInterceptor(meterRegistry, histogram);
+    }
+
+    /**
+     * PriorityOrdered: bọc sát HikariDataSource trước mọi BeanPostProcessor khác, nên thời gian chờ đo được là
+     * thời gian chờ pool (ConnectionAdmissionDataSource của chế độ virtual thread, nếu bật, nằm ngoài).
+     */
+    static class InstrumentingPostProcessor implements BeanPostProcessor, PriorityOrdered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource && !(bean instanceof InstrumentedDataSource)) {
+                return new InstrumentedDataSource(dataSource);
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ghi mức dùng DB của mỗi request theo controller method (tag handler = "EventController.getAllEvents"):
+ * số câu SQL, thời gian SQL, thời gian chờ connection, số dòng đọc, số entity Hibernate nạp.
+ * Xem: /actuator/metrics/http.server.db.statements?tag=handler:EventController.getAllEvents
+ *
+ * Chỉ tính phần chạy trong DispatcherServlet trên thread của request (filter security chạy trước thì không).
+ */
+public class DbMetricsInterceptor implements AsyncHandlerInterceptor {
+
+    private final MeterRegistry meterRegistry;
+    private final boolean histogram;
+    private final Map<Method, Meters> metersByHandler = new ConcurrentHashMap<>();
+
+    public DbMetricsInterceptor(MeterRegistry meterRegistry, boolean histogram) {
+        this.meterRegistry = meterRegistry;
+        this.histogram = histogram;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod) {
+            DbUsage.begin();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        record(handler);
+    }
+
+    // SSE / async: thread request được trả về ngay, ghi phần đã dùng tới đây
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        record(handler);
+    }
+
+    private void record(Object handler) {
+        DbUsage usage = DbUsage.end();
+        if (usage == null || !(handler instanceof HandlerMethod handlerMethod)) {
+            return;
+        }
+        Meters meters = metersByHandler.computeIfAbsent(handlerMethod.getMethod(),
+                method -> new Meters(handlerMethod.getBeanType().getSimpleName() + "." + method.getName()));
+        meters.statements.record(usage.statements);
+        meters.statementTime.record(usage.statementNanos, TimeUnit.NANOSECONDS);
+        meters.rows.record(usage.rows);
+        meters.entityLoads.record(usage.entityLoads);
+        if (usage.connections > 0) {
+            meters.connectionAcquire.record(usage.acquireNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private final class Meters {
+        final DistributionSummary statements;
+        final Timer statementTime;
+        final Timer connectionAcquire;
+        final DistributionSummary rows;
+        final DistributionSummary entityLoads;
+
+        Meters(String handler) {
+            statements = DistributionSummary.builder("http.server.db.statements").tag("handler", handler)
+                    .description("JDBC statements executed per request")
+                    .publishPercentileHistogram(histogram)
+                    .register(meterRegistry);
+            statementTime = Timer.builder("http.server.db.time").tag("handler", handler)
+                    .description("Time spent executing JDBC statements per request")
+                    .publishPercentileHistogram(histogram)
+                    .register(meterRegistry);
+            connectionAcquire = Timer.builder("http.server.db.connection.acquire").tag("handler", handler)
+                    .description("Time spent waiting for pooled connections per request")
+                    .publishPercentileHistogram(histogram)
+                    .register(meterRegistry);
+            rows = DistributionSummary.builder("http.server.db.rows").tag("handler", handler)
+                    .description("Rows read from JDBC result sets per request")
+                    .publishPercentileHistogram(histogram)
+                    .register(meterRegistry);
+            entityLoads = DistributionSummary.builder("http.server.db.entity.loads").tag("handler", handler)
+                    .description("Entities loaded by Hibernate per request")
+                    .publishPercentileHistogram(histogram)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.config;
+
+/**
+ * Bộ đếm sử dụng DB của request đang chạy trên thread hiện tại (ThreadLocal, chỉ 1 thread ghi).
+ * InstrumentedDataSource và EntityLoadCountingInterceptor cộng vào; DbMetricsInterceptor mở/đóng và ghi metric.
+ *
+ * Việc chạy trên executor khác (job nền, afterCommit async) không tính vào request.
+ */
+public final class DbUsage {
+
+    private static final ThreadLocal<DbUsage> CURRENT = new ThreadLocal<>();
+
+    long statements;
+    long statementNanos;
+    long connections;
+    long acquireNanos;
+    long rows;
+    long entityLoads;
+
+    private DbUsage() {
+    }
+
+    static DbUsage begin() {
+        DbUsage usage = new DbUsage();
+        CURRENT.set(usage);
+        return usage;
+    }
+
+    static DbUsage end() {
+        DbUsage usage = CURRENT.get();
+        CURRENT.remove();
+        return usage;
+    }
+
+    /**
+     * @return null nếu thread hiện tại không xử lý request HTTP (không đếm)
+     */
+    static DbUsage current() {
+        return CURRENT.get();
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.config;
+
+import org.hibernate.Interceptor;
+import org.hibernate.type.Type;
+
+/**
+ * Interceptor cấp SessionFactory (stateless, dùng chung): đếm số entity Hibernate nạp trong request hiện tại.
+ */
+public class EntityLoadCountingInterceptor implements Interceptor {
+
+    @Override
+    public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
+        DbUsage usage = DbUsage.current();
+        if (usage != null) {
+            usage.entityLoads++;
+        }
+        return false;
+    }
+}
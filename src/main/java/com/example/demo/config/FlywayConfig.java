@@ -0,0 +1,28 @@
+package com.example.demo.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Bảng vẫn do Hibernate tạo/cập nhật (ddl-auto); Flyway chỉ chạy các script một lần trong db/migration
+ * (sửa dữ liệu cũ, extension, cột generated, index đặc thù Postgres) nên phải chạy SAU Hibernate.
+ * Spring Boot mặc định migrate TRƯỚC EntityManagerFactory -> tắt lần đó và migrate sau khi EMF sẵn sàng.
+ */
+@Configuration
+public class FlywayConfig {
+
+    @Bean
+    public FlywayMigrationStrategy deferredFlywayMigration() {
+        return flyway -> { };
+    }
+
+    // entityManagerFactory chỉ để Spring tạo (và Hibernate cập nhật schema) trước khi migrate
+    @Bean
+    public InitializingBean flywayMigrationAfterHibernate(Flyway flyway, EntityManagerFactory entityManagerFactory) {
+        return flyway::migrate;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.demo.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Đo DB theo request (DbUsage): thời gian chờ lấy connection, số câu lệnh execute*, thời gian thực thi
+ * và số dòng đọc qua ResultSet.next(). Ngoài request HTTP trả thẳng connection gốc (không proxy, không tốn gì).
+ *
+ * executeBatch tính 1 câu lệnh (1 round trip). unwrap()/isWrapperFor() vẫn tới được HikariDataSource.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    public InstrumentedDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        DbUsage usage = DbUsage.current();
+        if (usage == null) {
+            return super.getConnection();
+        }
+        long start = System.nanoTime();
+        Connection connection = super.getConnection();
+        return track(connection, usage, start);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        DbUsage usage = DbUsage.current();
+        if (usage == null) {
+            return super.getConnection(username, password);
+        }
+        long start = System.nanoTime();
+        Connection connection = super.getConnection(username, password);
+        return track(connection, usage, start);
+    }
+
+    private static Connection track(Connection connection, DbUsage usage, long acquireStart) {
+        usage.acquireNanos += System.nanoTime() - acquireStart;
+        usage.connections++;
+        return proxy(Connection.class, connection, (method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (result instanceof CallableStatement statement) {
+                return trackStatement(CallableStatement.class, statement, usage);
+            }
+            if (result instanceof PreparedStatement statement) {
+                return trackStatement(PreparedStatement.class, statement, usage);
+            }
+            if (result instanceof Statement statement && method.getName().equals("createStatement")) {
+                return trackStatement(Statement.class, statement, usage);
+            }
+            return result;
+        });
+    }
+
+    private static <S extends Statement> S trackStatement(Class<S> type, S statement, DbUsage usage) {
+        return proxy(type, statement, (method, args) -> {
+            if (!method.getName().startsWith("execute")) {
+                Object result = invoke(statement, method, args);
+                return result instanceof ResultSet resultSet && method.getName().equals("getResultSet")
+                        ? trackResultSet(resultSet, usage) : result;
+            }
+            long start = System.nanoTime();
+            try {
+                Object result = invoke(statement, method, args);
+                return result instanceof ResultSet resultSet ? trackResultSet(resultSet, usage) : result;
+            } finally {
+                usage.statements++;
+                usage.statementNanos += System.nanoTime() - start;
+            }
+        });
+    }
+
+    private static ResultSet trackResultSet(ResultSet resultSet, DbUsage usage) {
+        return proxy(ResultSet.class, resultSet, (method, args) -> {
+            Object result = invoke(resultSet, method, args);
+            if (Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+                usage.rows++;
+            }
+            return result;
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.handle(method, args));
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.demo.config;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nguồn JWKS của Cognito có cache trên đĩa:
+ * - Khởi động: đọc file cache (không cần mạng); chưa có file thì tải từ Cognito rồi ghi file.
+ * - Định kỳ tải lại và ghi đè file (ghi file tạm rồi ATOMIC_MOVE).
+ * - Gặp kid lạ (Cognito xoay khóa) thì tải lại ngay, nhưng không quá 1 lần / min-refresh-interval.
+ * Lỗi mạng không làm hỏng việc xác thực: vẫn dùng bộ khóa đang có.
+ */
+@Component
+public class LocalJwksSource implements JWKSource<SecurityContext> {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalJwksSource.class);
+    private static final int HTTP_TIMEOUT_MS = 5000;
+    private static final int JWKS_SIZE_LIMIT = 256 * 1024;
+
+    private final URL jwksUrl;
+    private final Path cacheFile;
+    private final long minRefreshIntervalMs;
+    private final AtomicLong lastRefreshAttempt = new AtomicLong();
+
+    private volatile JWKSet jwkSet = new JWKSet();
+
+    public LocalJwksSource(@Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuerUri,
+                           @Value("${security.jwt.jwks-cache-file:${java.io.tmpdir}/cognito-jwks.json}") String cacheFile,
+                           @Value("${security.jwt.jwks-min-refresh-interval-ms:60000}") long minRefreshIntervalMs)
+            throws IOException {
+        // Cognito công bố JWKS tại <issuer>/.well-known/jwks.json -> không cần gọi discovery
+        this.jwksUrl = new URL(issuerUri + "/.well-known/jwks.json");
+        this.cacheFile = Path.of(cacheFile);
+        this.minRefreshIntervalMs = minRefreshIntervalMs;
+
+        if (!loadFromDisk()) {
+            refresh();
+        }
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        List<JWK> matches = jwkSelector.select(jwkSet);
+        if (!matches.isEmpty()) {
+            return matches;
+        }
+        // Không có khóa phù hợp: có thể Cognito vừa xoay khóa -> tải lại (có giới hạn tần suất)
+        long now = System.currentTimeMillis();
+        long last = lastRefreshAttempt.get();
+        if (now - last >= minRefreshIntervalMs && lastRefreshAttempt.compareAndSet(last, now)) {
+            refresh();
+            return jwkSelector.select(jwkSet);
+        }
+        return matches;
+    }
+
+    @Scheduled(fixedDelayString = "${security.jwt.jwks-refresh-interval-ms:21600000}",
+               initialDelayString = "${security.jwt.jwks-refresh-interval-ms:21600000}")
+    public void scheduledRefresh() {
+        refresh();
+    }
+
+    /**
+     * Tải JWKS từ Cognito, thay bộ khóa trong bộ nhớ và ghi file cache.
+     * @return true nếu tải thành công
+     */
+    public boolean refresh() {
+        lastRefreshAttempt.set(System.currentTimeMillis());
+        try {
+            JWKSet fetched = JWKSet.load(jwksUrl, HTTP_TIMEOUT_MS, HTTP_TIMEOUT_MS, JWKS_SIZE_LIMIT);
+            if (fetched.getKeys().isEmpty()) {
+                logger.warn("JWKS from {} contains no keys; keeping {} cached key(s)", jwksUrl, jwkSet.getKeys().size());
+                return false;
+            }
+            jwkSet = fetched;
+            writeToDisk(fetched);
+            logger.info("Loaded {} JWKS key(s) from {}", fetched.getKeys().size(), jwksUrl);
+            return true;
+        } catch (IOException | java.text.ParseException e) {
+            logger.error("Failed to refresh JWKS from {}; keeping {} cached key(s): {}",
+                    jwksUrl, jwkSet.getKeys().size(), e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean loadFromDisk() {
+        if (!Files.isRegularFile(cacheFile)) {
+            return false;
+        }
+        try {
+            JWKSet cached = JWKSet.parse(Files.readString(cacheFile, StandardCharsets.UTF_8));
+            if (cached.getKeys().isEmpty()) {
+                return false;
+            }
+            jwkSet = cached;
+            logger.info("Loaded {} JWKS key(s) from local cache {}", cached.getKeys().size(), cacheFile);
+            return true;
+        } catch (IOException | java.text.ParseException e) {
+            logger.warn("Ignoring unreadable JWKS cache file {}: {}", cacheFile, e.getMessage());
+            return false;
+        }
+    }
+
+    private void writeToDisk(JWKSet keys) {
+        try {
+            Path parent = cacheFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            // Chỉ ghi khóa public
+            Path tmp = Files.createTempFile(parent, "jwks", ".tmp");
+            Files.writeString(tmp, keys.toPublicJWKSet().toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not write JWKS cache file {}: {}", cacheFile, e.getMessage());
+        }
+    }
+}
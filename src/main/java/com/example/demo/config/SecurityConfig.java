@@ -1,6 +1,7 @@
 package com.example.demo.config;
 
 import com.example.demo.repository.StudentRepository;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter; 
@@ -11,19 +12,27 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.GrantedAuthority; 
 import org.springframework.security.core.authority.SimpleGrantedAuthority; 
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter; 
-import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter; 
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.http.HttpMethod;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection; 
-import java.util.Collections; 
 import java.util.List; 
-import java.util.stream.Collectors; 
-import java.util.stream.Stream; 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Configuration
 @EnableWebSecurity
@@ -46,6 +55,8 @@ public class SecurityConfig {
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests(authorize -> authorize
+                // Async dispatch của request đã xác thực (SSE /api/v1/me/stream): stateless nên không còn SecurityContext
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers(
                     "/swagger-ui/**",
                     "/v3/api-docs/**",
@@ -56,6 +67,8 @@ public class SecurityConfig {
                     "/api/v1/products/*"
                 ).permitAll() 
                 .requestMatchers(HttpMethod.GET, "/api/v1/universities").permitAll()
+                .requestMatchers(HttpMethod.GET, "/media/**").permitAll() // File upload khi storage.backend=local
+                .requestMatchers(HttpMethod.GET, "/api/v1/media/**").permitAll() // Biến thể ảnh (thẻ img không gửi token)
                 .requestMatchers(HttpMethod.GET, "/api/v1/events").permitAll()
                 .requestMatchers(HttpMethod.GET, "/api/v1/events/{id}").permitAll()
                 .anyRequest().authenticated() // Bắt buộc xác thực cho TẤT CẢ các request còn lại
@@ -96,44 +109,82 @@ public class SecurityConfig {
     @Bean
     public JwtAuthenticationConverter jwtAuthenticationConverter() {
         JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
-        converter.setJwtGrantedAuthoritiesConverter(new CognitoGroupsConverter());
+        converter.setJwtGrantedAuthoritiesConverter(cognitoGroupsConverter);
         return converter;
     }
 
+    /**
+     * JwtDecoder dùng JWKS cache trên đĩa (LocalJwksSource) thay cho discovery qua issuer-uri,
+     * bọc thêm cache kết quả giải mã theo hash của token.
+     */
+    @Bean
+    public JwtDecoder jwtDecoder(LocalJwksSource jwksSource, MeterRegistry meterRegistry,
+                                 @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuerUri,
+                                 @Value("${security.jwt.token-cache.max-entries:50000}") int tokenCacheMaxEntries,
+                                 @Value("${security.jwt.token-cache.max-ttl-ms:3600000}") long tokenCacheMaxTtlMs) {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwksSource));
+        // Claims (exp, nbf, iss) do JwtValidators của Spring kiểm tra
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> { });
+
+        NimbusJwtDecoder nimbusDecoder = new NimbusJwtDecoder(jwtProcessor);
+        nimbusDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+        return new CachingJwtDecoder(nimbusDecoder, tokenCacheMaxEntries, tokenCacheMaxTtlMs, meterRegistry);
+    }
+
     /**
      * Helper class to convert Cognito groups claim into Spring Security GrantedAuthority objects.
+     * Authority của mỗi group/scope được tạo 1 lần rồi dùng lại; không dùng stream trên đường nóng.
      */
     static class CognitoGroupsConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
 
-        private final JwtGrantedAuthoritiesConverter defaultConverter = new JwtGrantedAuthoritiesConverter();
         private static final String COGNITO_GROUPS_CLAIM = "cognito:groups";
+        private static final String SCOPE_CLAIM = "scope";
         private static final String ROLE_PREFIX = "ROLE_";
+        private static final String SCOPE_PREFIX = "SCOPE_";
+
+        private final Map<String, GrantedAuthority> groupAuthorities = new ConcurrentHashMap<>();
+        private final Map<String, GrantedAuthority> scopeAuthorities = new ConcurrentHashMap<>();
 
         @Override
         public Collection<GrantedAuthority> convert(Jwt jwt) {
-            // 1. Lấy các quyền mặc định (ví dụ: SCOPE_openid)
-            Collection<GrantedAuthority> defaultAuthorities = defaultConverter.convert(jwt);
-            
-            // 2. Lấy danh sách Group từ Cognito
+            // 1. Quyền mặc định theo scope (ví dụ: SCOPE_openid), giống JwtGrantedAuthoritiesConverter
+            String scope = jwt.getClaimAsString(SCOPE_CLAIM);
+            // 2. Danh sách Group từ Cognito (Student không có group)
             List<String> groups = jwt.getClaimAsStringList(COGNITO_GROUPS_CLAIM);
 
-            // 3. SỬA LỖI LOGIC:
-            // Nếu không có group (là Student) -> Trả về danh sách rỗng (hoặc chỉ default)
-            if (groups == null || groups.isEmpty()) {
-                return defaultAuthorities != null ? defaultAuthorities : Collections.emptyList();
+            int groupCount = groups != null ? groups.size() : 0;
+            List<GrantedAuthority> authorities = new ArrayList<>(groupCount + 4);
+            if (scope != null) {
+                int begin = 0;
+                int length = scope.length();
+                while (begin < length) {
+                    int end = scope.indexOf(' ', begin);
+                    if (end < 0) {
+                        end = length;
+                    }
+                    if (end > begin) {
+                        addOnce(authorities, scopeAuthorities.computeIfAbsent(scope.substring(begin, end),
+                                s -> new SimpleGrantedAuthority(SCOPE_PREFIX + s)));
+                    }
+                    begin = end + 1;
+                }
             }
+            for (int i = 0; i < groupCount; i++) {
+                addOnce(authorities, groupAuthorities.computeIfAbsent(groups.get(i),
+                        g -> new SimpleGrantedAuthority(ROLE_PREFIX + g.toUpperCase())));
+            }
+            return authorities;
+        }
 
-            // 4. Nếu có group (là Admin/Partner) -> Thêm vai trò theo group
-            List<GrantedAuthority> groupAuthorities = groups.stream()
-                    .map(groupName -> new SimpleGrantedAuthority(ROLE_PREFIX + groupName.toUpperCase()))
-                    .collect(Collectors.toList());
-
-            if (defaultAuthorities != null) {
-                return Stream.concat(defaultAuthorities.stream(), groupAuthorities.stream())
-                             .collect(Collectors.toSet());
-            } else {
-                return groupAuthorities;
+        // Danh sách rất ngắn -> so sánh tham chiếu (authority đã intern) rẻ hơn dựng Set
+        private static void addOnce(List<GrantedAuthority> authorities, GrantedAuthority authority) {
+            for (int i = 0; i < authorities.size(); i++) {
+                if (authorities.get(i) == authority) {
+                    return;
+                }
             }
+            authorities.add(authority);
         }
     }
-}
\ No newline at end of file
+}
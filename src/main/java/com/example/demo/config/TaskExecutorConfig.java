@@ -0,0 +1,99 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class TaskExecutorConfig {
+
+    private final Environment environment;
+
+    public TaskExecutorConfig(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Pool riêng cho job finalize sự kiện: nhỏ, để không chiếm hết connection pool của Hikari.
+     */
+    @Bean(name = "finalizationExecutor")
+    public ThreadPoolTaskExecutor finalizationExecutor(
+            @Value("${event.finalization.worker-threads:2}") int workerThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workerThreads);
+        executor.setMaxPoolSize(workerThreads);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("event-finalize-");
+        useVirtualThreadsIfEnabled(executor, "event-finalize-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Pool cho job đối soát ví: mỗi worker giữ 1 connection (cursor) + 1 connection ngắn khi ghi báo cáo,
+     * nên số thread phải nhỏ hơn nhiều so với maximum-pool-size của Hikari.
+     */
+    @Bean(name = "reconciliationExecutor")
+    public ThreadPoolTaskExecutor reconciliationExecutor(
+            @Value("${wallet.reconciliation.worker-threads:3}") int workerThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workerThreads);
+        executor.setMaxPoolSize(workerThreads);
+        executor.setQueueCapacity(5000); // >= số partition
+        executor.setThreadNamePrefix("wallet-reconcile-");
+        useVirtualThreadsIfEnabled(executor, "wallet-reconcile-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Pool cho job phát broadcast: worker tự nhường khi Hikari bị nghẽn, nhưng số thread vẫn nên nhỏ.
+     */
+    @Bean(name = "broadcastDispatchExecutor")
+    public ThreadPoolTaskExecutor broadcastDispatchExecutor(
+            @Value("${broadcast.dispatch.worker-threads:2}") int workerThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workerThreads);
+        executor.setMaxPoolSize(workerThreads);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("broadcast-dispatch-");
+        useVirtualThreadsIfEnabled(executor, "broadcast-dispatch-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Pool ghi sự kiện ra kết nối SSE: không chạm DB, queue đầy thì bỏ sự kiện (client đồng bộ lại khi kết nối lại).
+     */
+    @Bean(name = "pushExecutor")
+    public ThreadPoolTaskExecutor pushExecutor(
+            @Value("${push.worker-threads:4}") int workerThreads,
+            @Value("${push.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workerThreads);
+        executor.setMaxPoolSize(workerThreads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("sse-push-");
+        useVirtualThreadsIfEnabled(executor, "sse-push-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * spring.threads.virtual.enabled=true (Java 21+): worker là virtual thread nhưng số worker và queue giữ nguyên,
+     * nên vẫn giới hạn số connection mà job nền dùng và submit không bị chặn.
+     */
+    private void useVirtualThreadsIfEnabled(ThreadPoolTaskExecutor executor, String threadNamePrefix) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            executor.setThreadFactory(new VirtualThreadTaskExecutor(threadNamePrefix).getVirtualThreadFactory());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Chế độ virtual thread (opt-in, cần chạy trên Java 21+): bật bằng spring.threads.virtual.enabled=true.
+ * Spring Boot tự chuyển Tomcat, applicationTaskExecutor và scheduler của @Scheduled sang virtual thread;
+ * các executor riêng xem TaskExecutorConfig. Ở đây bọc DataSource bằng Semaphore để số virtual thread
+ * không giới hạn không dồn hết vào connection pool nhỏ.
+ * Semaphore không cần Java 21: spring.datasource.admission.enabled bật/tắt riêng (mặc định theo chế độ virtual thread).
+ */
+@Configuration
+public class VirtualThreadConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    public static BeanPostProcessor connectionAdmissionPostProcessor(Environment environment,
+                                                                     ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConnectionAdmissionDataSource
+                        || !isAdmissionEnabled(environment)) {
+                    return bean;
+                }
+                // Có thể đã được bọc (InstrumentedDataSource của DbMetricsConfig)
+                HikariDataSource hikari = unwrapHikari(dataSource);
+                if (hikari == null) {
+                    return bean;
+                }
+                int permits = environment.getProperty("spring.datasource.admission.max-concurrent",
+                        Integer.class, hikari.getMaximumPoolSize());
+                long timeoutMs = environment.getProperty("spring.datasource.admission.timeout-ms",
+                        Long.class, hikari.getConnectionTimeout());
+                ConnectionAdmissionDataSource guarded = new ConnectionAdmissionDataSource(dataSource, permits, timeoutMs);
+                meterRegistry.ifAvailable(registry -> {
+                    Gauge.builder("datasource.admission.waiting", guarded, ConnectionAdmissionDataSource::getQueueLength)
+                            .description("Threads waiting for a connection permit")
+                            .register(registry);
+                    Gauge.builder("datasource.admission.available", guarded, ConnectionAdmissionDataSource::getAvailablePermits)
+                            .description("Connection permits available")
+                            .register(registry);
+                });
+                logger.info("Connection admission enabled: guarding DataSource '{}' with {} permits ({} ms timeout)",
+                        beanName, permits, timeoutMs);
+                return (DataSource) guarded;
+            }
+        };
+    }
+
+    private static boolean isAdmissionEnabled(Environment environment) {
+        return environment.getProperty("spring.datasource.admission.enabled", Boolean.class,
+                Threading.VIRTUAL.isActive(environment));
+    }
+
+    private static HikariDataSource unwrapHikari(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
@@ -1,8 +1,12 @@
 // Tạo tệp mới: com/example/demo/config/WebMvcConfig.java
 package com.example.demo.config;
 
+import com.example.demo.service.impl.LocalFileStorageService;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import java.util.List;
 
@@ -10,10 +14,16 @@ import java.util.List;
 public class WebMvcConfig implements WebMvcConfigurer {
 
     private final AuthPrincipalArgumentResolver authPrincipalArgumentResolver;
+    private final ObjectProvider<LocalFileStorageService> localFileStorage;
+    private final ObjectProvider<DbMetricsInterceptor> dbMetricsInterceptor;
 
     // Inject resolver của chúng ta
-    public WebMvcConfig(AuthPrincipalArgumentResolver authPrincipalArgumentResolver) {
+    public WebMvcConfig(AuthPrincipalArgumentResolver authPrincipalArgumentResolver,
+                        ObjectProvider<LocalFileStorageService> localFileStorage,
+                        ObjectProvider<DbMetricsInterceptor> dbMetricsInterceptor) {
         this.authPrincipalArgumentResolver = authPrincipalArgumentResolver;
+        this.localFileStorage = localFileStorage;
+        this.dbMetricsInterceptor = dbMetricsInterceptor;
     }
 
     // Thêm resolver vào danh sách resolver của Spring MVC
@@ -21,4 +31,18 @@ public class WebMvcConfig implements WebMvcConfigurer {
     public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
         resolvers.add(authPrincipalArgumentResolver);
     }
-}
\ No newline at end of file
+
+    // db.metrics.enabled=true: metric DB theo controller method
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        dbMetricsInterceptor.ifAvailable(registry::addInterceptor);
+    }
+
+    // storage.backend=local: phục vụ file đã upload từ thư mục storage.local.root
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        localFileStorage.ifAvailable(storage -> registry
+                .addResourceHandler(storage.getPublicPath() + "/**")
+                .addResourceLocations(storage.getRoot().toUri().toString()));
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.request.BroadcastRequestDTO;
 import com.example.demo.dto.request.EventCategoryRequestDTO;
 import com.example.demo.dto.request.PartnerRequestDTO;
 import com.example.demo.dto.request.UserStatusUpdateDTO;
@@ -9,17 +10,25 @@ import com.example.demo.dto.request.UniversityRequestDTO; // <<< THÊM
 import com.example.demo.dto.response.UniversityResponseDTO;
 import com.example.demo.service.StudentService;
 import com.example.demo.service.UniversityService;
+import com.example.demo.dto.response.EventBroadcastResponseDTO;
 import com.example.demo.dto.response.EventCategoryResponseDTO;
 import com.example.demo.dto.response.FeedbackResponseDTO;
 import com.example.demo.dto.response.PageResponseDTO;
+import com.example.demo.dto.response.CursorPageResponseDTO;
 import com.example.demo.dto.response.EventResponseDTO;
 import com.example.demo.dto.response.PartnerResponseDTO;
 import com.example.demo.dto.response.WalletTransactionResponseDTO;
+import com.example.demo.dto.response.WalletContentionStatsDTO;
+import com.example.demo.dto.response.WalletBalanceDriftResponseDTO;
+import com.example.demo.dto.response.WalletReconciliationRunResponseDTO;
+import com.example.demo.service.BroadcastService;
 import com.example.demo.service.EventCategoryService;
 import com.example.demo.service.EventService;
 import com.example.demo.service.FeedbackService;
 import com.example.demo.service.PartnerService;
 import com.example.demo.service.WalletService;
+import com.example.demo.service.WalletConcurrencyService;
+import com.example.demo.service.WalletReconciliationService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -31,6 +40,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.util.List;
 import java.util.UUID;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -51,12 +61,18 @@ public class AdminController {
     private final StudentService studentService;
     private final UniversityService universityService;
     private final FeedbackService feedbackService;
+    private final WalletConcurrencyService walletConcurrencyService;
+    private final WalletReconciliationService walletReconciliationService;
+    private final BroadcastService broadcastService;
 
     public AdminController(PartnerService partnerService,
                            WalletService walletService,
                            EventCategoryService eventCategoryService,
                            EventService eventService,
-                           StudentService studentService, UniversityService universityService, FeedbackService feedbackService) {
+                           StudentService studentService, UniversityService universityService, FeedbackService feedbackService,
+                           WalletConcurrencyService walletConcurrencyService,
+                           WalletReconciliationService walletReconciliationService,
+                           BroadcastService broadcastService) {
         this.partnerService = partnerService;
         this.walletService = walletService;
         this.eventCategoryService = eventCategoryService;
@@ -64,6 +80,9 @@ public class AdminController {
         this.studentService = studentService;
         this.universityService = universityService;
         this.feedbackService = feedbackService;
+        this.walletConcurrencyService = walletConcurrencyService;
+        this.walletReconciliationService = walletReconciliationService;
+        this.broadcastService = broadcastService;
     }
 
     // ===================================
@@ -120,6 +139,50 @@ public class AdminController {
         return ResponseEntity.ok(transaction);
     }
 
+    @Operation(summary = "Admin views wallet lock contention", description = "Top wallets by in-node lock waits and concurrent-update retries.")
+    @GetMapping("/wallets/contention")
+    public ResponseEntity<List<WalletContentionStatsDTO>> getWalletContention(
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(walletConcurrencyService.getTopContendedWallets(limit));
+    }
+
+    @Operation(summary = "Admin starts a wallet reconciliation run",
+               description = "Compares every wallet balance with the sum of its ledger entries in the background. Poll the run for progress.")
+    @ApiResponses({
+        @ApiResponse(responseCode = "202", description = "Run started"),
+        @ApiResponse(responseCode = "409", description = "Another run is already in progress")
+    })
+    @PostMapping("/wallets/reconciliation")
+    public ResponseEntity<WalletReconciliationRunResponseDTO> startWalletReconciliation() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(walletReconciliationService.startRun());
+    }
+
+    @Operation(summary = "Admin lists wallet reconciliation runs")
+    @GetMapping("/wallets/reconciliation")
+    public ResponseEntity<PageResponseDTO<WalletReconciliationRunResponseDTO>> getWalletReconciliationRuns(
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        Pageable pageable = PageRequest.of(page > 0 ? page - 1 : 0, size);
+        return ResponseEntity.ok(new PageResponseDTO<>(walletReconciliationService.getRuns(pageable)));
+    }
+
+    @Operation(summary = "Admin views a wallet reconciliation run")
+    @GetMapping("/wallets/reconciliation/{runId}")
+    public ResponseEntity<WalletReconciliationRunResponseDTO> getWalletReconciliationRun(@PathVariable UUID runId) {
+        return ResponseEntity.ok(walletReconciliationService.getRun(runId));
+    }
+
+    @Operation(summary = "Admin views the drift report of a reconciliation run")
+    @GetMapping("/wallets/reconciliation/{runId}/drifts")
+    public ResponseEntity<PageResponseDTO<WalletBalanceDriftResponseDTO>> getWalletReconciliationDrifts(
+            @PathVariable UUID runId,
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "detectedAt,asc") String sort) {
+        Pageable pageable = createPageable(page, size, sort);
+        return ResponseEntity.ok(new PageResponseDTO<>(walletReconciliationService.getDrifts(runId, pageable)));
+    }
+
     // ===================================
     // == Event Category Management
     // ===================================
@@ -264,6 +327,22 @@ public class AdminController {
         return ResponseEntity.ok(transactions);
     }
 
+    @Operation(summary = "Admin gets all wallet transactions (cursor pagination)",
+               description = "Retrieves all wallet transactions, newest first, using cursor pagination. " +
+                             "Pass meta.nextCursor from the previous response to get the next page. " +
+                             "The total count is only computed when includeTotal=true.")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved transactions"),
+        @ApiResponse(responseCode = "400", description = "Invalid cursor")
+    })
+    @GetMapping("/wallets/transactions/cursor")
+    public ResponseEntity<CursorPageResponseDTO<WalletTransactionResponseDTO>> getAllTransactionsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        return ResponseEntity.ok(walletService.getAllTransactionsByCursor(cursor, size, includeTotal));
+    }
+
     @Operation(summary = "Admin approves a pending event", description = "Changes event status from PENDING to APPROVED.")
     @ApiResponses({
         @ApiResponse(responseCode = "200", description = "Event approved successfully"),
@@ -276,6 +355,14 @@ public class AdminController {
         return ResponseEntity.ok(approvedEvent);
     }
 
+    @Operation(summary = "Admin sends a system-wide broadcast", description = "Message appears in every student's inbox (eventId is ignored).")
+    @ApiResponse(responseCode = "201", description = "Broadcast sent successfully")
+    @PostMapping("/broadcasts")
+    public ResponseEntity<EventBroadcastResponseDTO> sendSystemBroadcast(@Valid @RequestBody BroadcastRequestDTO requestDTO) {
+        EventBroadcastResponseDTO broadcast = broadcastService.sendSystemBroadcast(requestDTO);
+        return new ResponseEntity<>(broadcast, HttpStatus.CREATED);
+    }
+
     private Pageable createPageable(int page, int size, String sort) {
         int pageIndex = page > 0 ? page - 1 : 0; // Chuyển 1-based (FE) về 0-based (Spring)
 
@@ -7,15 +7,15 @@ import com.example.demo.dto.response.CheckinResponseDTO;
 import com.example.demo.dto.request.EventCreateDTO;
 import com.example.demo.dto.request.FeedbackRequestDTO;
 import com.example.demo.dto.response.FeedbackResponseDTO;
+import com.example.demo.dto.response.EventFinalizationJobResponseDTO;
 import com.example.demo.dto.response.PageResponseDTO;
 import com.example.demo.dto.response.EventResponseDTO;
 import com.example.demo.dto.response.StudentResponseDTO;
 import com.example.demo.exception.ForbiddenException;
-import com.example.demo.entity.Event;
 import com.example.demo.service.CheckinService;
 import com.example.demo.service.EventService;
 import com.example.demo.service.FeedbackService;
-import com.example.demo.util.EventSpecifications;
+import com.example.demo.service.IdempotencyService;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.data.domain.Page;
@@ -29,7 +29,6 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -43,21 +42,26 @@ public class EventController {
     private final EventService eventService;
     private final CheckinService checkinService;
     private final FeedbackService feedbackService;
+    private final IdempotencyService idempotencyService;
 
     // <<< SỬA CONSTRUCTOR (Đã xóa RegistrationService)
     public EventController(EventService eventService,
             CheckinService checkinService,
-            FeedbackService feedbackService) {
+            FeedbackService feedbackService,
+            IdempotencyService idempotencyService) {
         this.eventService = eventService;
         this.checkinService = checkinService;
         this.feedbackService = feedbackService;
+        this.idempotencyService = idempotencyService;
     }
 
     // == CRUD Endpoints ==
 
-    @Operation(summary = "Get all events with optional filters")
+    @Operation(summary = "Get all events with optional filters",
+            description = "When q is set, matches title, description and location (accent-insensitive, prefix and typo tolerant) and sorts by relevance.")
     @GetMapping
     public ResponseEntity<PageResponseDTO<EventResponseDTO>> getAllEvents(
+            @Parameter(description = "Search keywords") @RequestParam(required = false) String q,
             @RequestParam(required = false) UUID categoryId,
             @RequestParam(required = false) String status, // Mặc định ACTIVE
             @RequestParam(defaultValue = "1") int page,
@@ -65,8 +69,10 @@ public class EventController {
             @RequestParam(defaultValue = "createdAt,desc") String sort) {
         Pageable pageable = createPageable(page, size, sort, "createdAt");
 
-        Specification<Event> spec = EventSpecifications.filterBy(categoryId, status);
-        Page<EventResponseDTO> eventPage = eventService.getAllEvents(spec, pageable);
+        if (q != null && !q.isBlank()) {
+            return ResponseEntity.ok(new PageResponseDTO<>(eventService.searchEvents(q, categoryId, status, pageable)));
+        }
+        Page<EventResponseDTO> eventPage = eventService.listEvents(categoryId, status, pageable);
         
         return ResponseEntity.ok(new PageResponseDTO<>(eventPage)); // Trả về DTO mới
     }
@@ -132,10 +138,14 @@ public class EventController {
     @SecurityRequirement(name = "bearerAuth")
     public ResponseEntity<CheckinResponseDTO> registerEvent(
             @PathVariable UUID eventId,
-            @AuthenticationPrincipal AuthPrincipal principal) {
+            @AuthenticationPrincipal AuthPrincipal principal,
+            @Parameter(description = "Optional key; retries with the same key return the original response")
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
 
         String cognitoSub = principal.getCognitoSub();
-        CheckinResponseDTO response = checkinService.registerEvent(cognitoSub, eventId);
+        CheckinResponseDTO response = idempotencyService.execute("REGISTER_EVENT",
+                IdempotencyService.ownedKey(cognitoSub, idempotencyKey), CheckinResponseDTO.class,
+                () -> checkinService.registerEvent(cognitoSub, eventId));
         return ResponseEntity.ok(response);
     }
 
@@ -204,18 +214,33 @@ public class EventController {
         return ResponseEntity.ok(new PageResponseDTO<>(feedbackPage));
     }
 
-    @Operation(summary = "Finalize event and payout rewards (by PARTNERS/Admin)")
+    @Operation(summary = "Finalize event and payout rewards (by PARTNERS/Admin)",
+            description = "Starts a background payout job and returns immediately (202). Track progress with GET /{eventId}/finalize.")
+    @ApiResponses({
+        @ApiResponse(responseCode = "202", description = "Finalization job accepted"),
+        @ApiResponse(responseCode = "409", description = "Event already finalized")
+    })
     @PostMapping("/{eventId}/finalize")
     @PreAuthorize("hasRole('ADMIN') or hasRole('PARTNERS')")
     @SecurityRequirement(name = "bearerAuth")
-    public ResponseEntity<EventResponseDTO> finalizeEvent(
+    public ResponseEntity<EventFinalizationJobResponseDTO> finalizeEvent(
             @Parameter(description = "ID of the event to finalize") @PathVariable UUID eventId,
             @Parameter(hidden = true) @AuthenticationPrincipal AuthPrincipal principal) { 
 
-        // Gọi service đã cập nhật
-        EventResponseDTO finalizedEvent = eventService.finalizeEvent(eventId, principal);
+        EventFinalizationJobResponseDTO job = eventService.startFinalizationJob(eventId, principal);
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    @Operation(summary = "Get finalization job progress (processed / total / failed)")
+    @GetMapping("/{eventId}/finalize")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('PARTNERS')")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<EventFinalizationJobResponseDTO> getFinalizationProgress(
+            @Parameter(description = "ID of the event") @PathVariable UUID eventId,
+            @Parameter(hidden = true) @AuthenticationPrincipal AuthPrincipal principal) {
 
-        return ResponseEntity.ok(finalizedEvent);
+        return ResponseEntity.ok(eventService.getFinalizationJob(eventId, principal));
     }
 
     private Pageable createPageable(int page, int size, String sort, String defaultSortField) {
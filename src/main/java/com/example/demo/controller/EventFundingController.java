@@ -5,6 +5,7 @@ import com.example.demo.dto.request.EventFundingRequestDTO;
 import com.example.demo.dto.response.EventFundingResponseDTO;
 import com.example.demo.exception.ForbiddenException;
 import com.example.demo.service.EventFundingService;
+import com.example.demo.service.IdempotencyService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -23,9 +24,11 @@ import java.util.UUID;
 public class EventFundingController {
 
     private final EventFundingService eventFundingService;
+    private final IdempotencyService idempotencyService;
 
-    public EventFundingController(EventFundingService eventFundingService) {
+    public EventFundingController(EventFundingService eventFundingService, IdempotencyService idempotencyService) {
         this.eventFundingService = eventFundingService;
+        this.idempotencyService = idempotencyService;
     }
 
     /**
@@ -53,7 +56,10 @@ public class EventFundingController {
             @Valid @RequestBody EventFundingRequestDTO requestDTO,
             
             @Parameter(hidden = true) // Lấy thông tin Partner đã xác thực từ token
-            @AuthenticationPrincipal AuthPrincipal principal) {
+            @AuthenticationPrincipal AuthPrincipal principal,
+
+            @Parameter(description = "Optional key; retries with the same key return the original response")
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
 
         // Kiểm tra bảo mật: Đảm bảo Partner đang đăng nhập (principal)
         // chỉ nạp tiền cho chính tài khoản của họ (partnerId)
@@ -62,7 +68,9 @@ public class EventFundingController {
         }
 
         // Gọi service (EventFundingServiceImpl) đã có
-        EventFundingResponseDTO response = eventFundingService.fundEvent(partnerId, requestDTO);
+        EventFundingResponseDTO response = idempotencyService.execute("FUND_EVENT",
+                IdempotencyService.ownedKey(partnerId, idempotencyKey), EventFundingResponseDTO.class,
+                () -> eventFundingService.fundEvent(partnerId, requestDTO));
         
         return ResponseEntity.ok(response);
     }
@@ -0,0 +1,73 @@
+package com.example.demo.controller;
+
+import com.example.demo.entity.enums.ImageVariant;
+import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.service.ImageVariantService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Phục vụ biến thể ảnh (thumbnail/medium) qua disk cache local. URL lấy từ các DTO (thumbnailUrl, mediumUrl...),
+ * không cần token để dùng trực tiếp trong thẻ img.
+ */
+@RestController
+@RequestMapping("/api/v1/media")
+@RequiredArgsConstructor
+@Tag(name = "5. Store & Redemption")
+public class MediaController {
+
+    // URL có ?v= đổi theo mỗi lần upload -> client được cache lâu
+    private static final CacheControl VERSIONED = CacheControl.maxAge(Duration.ofDays(30)).cachePublic();
+    private static final CacheControl UNVERSIONED = CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic();
+
+    private final ImageVariantService imageVariantService;
+
+    @GetMapping("/products/{id}/{variant}")
+    @Operation(summary = "Get product image variant (thumbnail, medium)")
+    public ResponseEntity<byte[]> getProductImage(
+            @PathVariable UUID id,
+            @PathVariable String variant,
+            @Parameter(description = "Image version from the URL returned by the API") @RequestParam(required = false) String v) {
+        ImageVariantService.MediaContent content = imageVariantService.loadProductImage(id, parseVariant(variant), v);
+        return toResponse(content, v);
+    }
+
+    @GetMapping("/students/{id}/{variant}")
+    @Operation(summary = "Get student avatar variant (thumbnail, medium)")
+    public ResponseEntity<byte[]> getStudentAvatar(
+            @PathVariable UUID id,
+            @PathVariable String variant,
+            @Parameter(description = "Image version from the URL returned by the API") @RequestParam(required = false) String v) {
+        ImageVariantService.MediaContent content = imageVariantService.loadStudentAvatar(id, parseVariant(variant), v);
+        return toResponse(content, v);
+    }
+
+    private static ImageVariant parseVariant(String value) {
+        ImageVariant variant = ImageVariant.fromSuffix(value);
+        if (variant == null) {
+            throw new ResourceNotFoundException("Unknown image variant: " + value);
+        }
+        return variant;
+    }
+
+    private static ResponseEntity<byte[]> toResponse(ImageVariantService.MediaContent content, String version) {
+        return ResponseEntity.ok()
+                .cacheControl(version != null ? VERSIONED : UNVERSIONED)
+                .contentType(MediaType.parseMediaType(content.contentType()))
+                .contentLength(content.content().length)
+                .body(content.content());
+    }
+}
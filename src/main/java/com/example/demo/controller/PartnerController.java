@@ -6,10 +6,14 @@ import com.example.demo.service.EventService;
 import com.example.demo.dto.response.WalletResponseDTO;
 import com.example.demo.dto.response.WalletTransactionResponseDTO;
 import com.example.demo.dto.response.PageResponseDTO;
+import com.example.demo.dto.response.CursorPageResponseDTO;
 import com.example.demo.service.WalletService;
 import com.example.demo.dto.request.EventFundingRequestDTO;
+import com.example.demo.dto.request.WalletBatchTransferRequestDTO;
+import com.example.demo.dto.response.WalletBatchTransferResponseDTO;
 import com.example.demo.dto.response.EventFundingResponseDTO;
 import com.example.demo.service.EventFundingService;
+import com.example.demo.service.IdempotencyService;
 import com.example.demo.config.AuthPrincipal;
 import com.example.demo.dto.request.BroadcastRequestDTO; // Thêm
 import com.example.demo.dto.response.EventBroadcastResponseDTO; // Thêm
@@ -43,14 +47,17 @@ public class PartnerController {
     private final WalletService walletService;
     private final EventFundingService eventFundingService;
     private final BroadcastService broadcastService;
+    private final IdempotencyService idempotencyService;
 
     public PartnerController(PartnerService partnerService, EventService eventService, WalletService walletService,
-            EventFundingService eventFundingService, BroadcastService broadcastService) {
+            EventFundingService eventFundingService, BroadcastService broadcastService,
+            IdempotencyService idempotencyService) {
         this.partnerService = partnerService;
         this.eventService = eventService;
         this.walletService = walletService;
         this.eventFundingService = eventFundingService;
         this.broadcastService = broadcastService;
+        this.idempotencyService = idempotencyService;
     }
 
     @Operation(summary = "Get a partner by ID", description = "Retrieves details of a specific partner.")
@@ -115,6 +122,37 @@ public class PartnerController {
         return ResponseEntity.ok(new PageResponseDTO<>(history));
     }
 
+    @Operation(summary = "Get the authenticated partner's wallet transactions (cursor pagination)",
+               description = "Newest first. Pass meta.nextCursor from the previous response to get the next page.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved transactions"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor"),
+            @ApiResponse(responseCode = "404", description = "Partner or wallet not found")
+    })
+    @GetMapping("/me/wallet/transactions")
+    @PreAuthorize("hasRole('PARTNERS')")
+    public ResponseEntity<CursorPageResponseDTO<WalletTransactionResponseDTO>> getTransactions(
+            @Parameter(hidden = true) @AuthenticationPrincipal AuthPrincipal principal,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(walletService.getTransactionHistoryByCursor(principal.getPartnerId(), "PARTNER", cursor, size));
+    }
+
+    @Operation(summary = "Partner pays out to many wallets", description = "Transfers coins from the authenticated partner's wallet to up to 5000 recipients in one transaction. Every leg must use the partner's wallet as source; other legs are rejected.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Batch processed; see per-leg results"),
+            @ApiResponse(responseCode = "400", description = "Invalid request (e.g., too many legs)"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @PostMapping("/me/wallet/transfers/batch")
+    @PreAuthorize("hasRole('PARTNERS')")
+    public ResponseEntity<WalletBatchTransferResponseDTO> transferBatch(
+            @Parameter(hidden = true) @AuthenticationPrincipal AuthPrincipal principal,
+            @Valid @RequestBody WalletBatchTransferRequestDTO batchRequest) {
+        UUID partnerWalletId = walletService.getWalletByOwner("PARTNER", principal.getPartnerId()).getId();
+        return ResponseEntity.ok(walletService.transferBatch(batchRequest, partnerWalletId));
+    }
+
     @Operation(summary = "Partner funds an event", description = "Transfers coins from a partner's wallet to an event's budget.")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Funding successful"),
@@ -126,8 +164,12 @@ public class PartnerController {
     @PreAuthorize("hasRole('PARTNERS')")
     public ResponseEntity<EventFundingResponseDTO> fundEvent(
             @Parameter(description = "ID of the partner") @PathVariable UUID partnerId,
-            @Valid @RequestBody EventFundingRequestDTO requestDTO) {
-        EventFundingResponseDTO fundingResponse = eventFundingService.fundEvent(partnerId, requestDTO);
+            @Valid @RequestBody EventFundingRequestDTO requestDTO,
+            @Parameter(description = "Optional key; retries with the same key return the original response")
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        EventFundingResponseDTO fundingResponse = idempotencyService.execute("FUND_EVENT",
+                IdempotencyService.ownedKey(partnerId, idempotencyKey), EventFundingResponseDTO.class,
+                () -> eventFundingService.fundEvent(partnerId, requestDTO));
         return ResponseEntity.ok(fundingResponse);
     }
 
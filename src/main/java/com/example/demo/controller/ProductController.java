@@ -10,8 +10,11 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import java.util.UUID;
 import java.util.List;
 import java.util.Map;
@@ -35,8 +38,9 @@ public class ProductController {
             @Parameter(description = "Sort order (asc, desc)") @RequestParam(defaultValue = "desc") String order,
             @Parameter(description = "Only active products") @RequestParam(defaultValue = "true") Boolean isActive,
             @Parameter(description = "Limit") @RequestParam(defaultValue = "10") Integer limit,
-            @Parameter(description = "Offset") @RequestParam(defaultValue = "0") Integer offset) {
-        Page<ProductResponseDTO> page = productService.getProducts(category, minCost, maxCost, sortBy, order, isActive, limit, offset);
+            @Parameter(description = "Offset") @RequestParam(defaultValue = "0") Integer offset,
+            @Parameter(description = "Image variant for imageUrl (thumbnail, medium, original)") @RequestParam(defaultValue = "thumbnail") String imageVariant) {
+        Page<ProductResponseDTO> page = productService.getProducts(category, minCost, maxCost, sortBy, order, isActive, limit, offset, imageVariant);
         Map<String, Object> response = Map.of(
                 "data", page.getContent(),
                 "metadata", Map.of(
@@ -69,6 +73,16 @@ public class ProductController {
         return ResponseEntity.ok(product);
     }
 
+    @PostMapping(value = "/{id}/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Upload product image (Admin)",
+               description = "Lưu ảnh gốc và sinh biến thể thumbnail/medium. Endpoint này nhận 'multipart/form-data'.")
+    public ResponseEntity<ProductResponseDTO> uploadProductImage(@PathVariable UUID id,
+                                                                 @RequestParam("file") MultipartFile file) {
+        ProductResponseDTO product = productService.updateProductImage(id, file);
+        return ResponseEntity.ok(product);
+    }
+
     @DeleteMapping("/{id}")
     @Operation(summary = "Soft delete product (Admin)")
     public ResponseEntity<Void> deleteProduct(@PathVariable UUID id) {
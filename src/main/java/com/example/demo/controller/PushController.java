@@ -0,0 +1,48 @@
+package com.example.demo.controller;
+
+import com.example.demo.config.AuthPrincipal;
+import com.example.demo.exception.ForbiddenException;
+import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.service.impl.SsePushRegistry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Kênh SSE thay cho polling inbox / số dư: event "broadcast" (StudentBroadcastResponseDTO)
+ * và "wallet" (WalletTransactionResponseDTO). Khi kết nối lại, client gọi lại API danh sách một lần để bù khoảng mất kết nối.
+ */
+@RestController
+@RequestMapping("/api/v1/me/stream")
+@Tag(name = "1. Authentication & Profile")
+@SecurityRequirement(name = "bearerAuth")
+@PreAuthorize("isAuthenticated()")
+public class PushController {
+
+    private final SsePushRegistry ssePushRegistry;
+
+    public PushController(SsePushRegistry ssePushRegistry) {
+        this.ssePushRegistry = ssePushRegistry;
+    }
+
+    @Operation(summary = "Subscribe to real-time updates (SSE)",
+            description = "Nhận broadcast mới và giao dịch ví theo thời gian thực (text/event-stream).")
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@Parameter(hidden = true) @AuthenticationPrincipal AuthPrincipal principal) {
+        if (!principal.isStudent()) {
+            throw new ForbiddenException("Only students can access this resource.");
+        }
+        if (principal.getStudentId() == null) {
+            throw new ResourceNotFoundException("Student profile not found. Please complete your profile.");
+        }
+        return ssePushRegistry.connect(principal.getStudentId());
+    }
+}
@@ -3,6 +3,7 @@ package com.example.demo.controller;
 import com.example.demo.config.AuthPrincipal;
 import com.example.demo.dto.response.ProductInvoiceResponseDTO;
 import com.example.demo.dto.response.WalletResponseDTO;
+import com.example.demo.service.IdempotencyService;
 import com.example.demo.service.RedemptionService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -25,6 +26,7 @@ public class RedemptionController {
 
     private static final Logger log = LoggerFactory.getLogger(RedemptionController.class);
     private final RedemptionService redemptionService;
+    private final IdempotencyService idempotencyService;
 
     /**
      * API 1: Kiểm tra ví của sinh viên đang đăng nhập
@@ -46,9 +48,13 @@ public class RedemptionController {
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<ProductInvoiceResponseDTO> redeemProduct(
             @PathVariable UUID productId,
-            @AuthenticationPrincipal AuthPrincipal principal) {
+            @AuthenticationPrincipal AuthPrincipal principal,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         log.info("Student {} redeeming product {}", principal.getCognitoSub(), productId);
-        ProductInvoiceResponseDTO invoice = redemptionService.redeemProduct(principal.getCognitoSub(), productId);
+        // Header Idempotency-Key (tùy chọn): retry cùng key không đổi quà lần 2
+        ProductInvoiceResponseDTO invoice = idempotencyService.execute("REDEEM_PRODUCT",
+                IdempotencyService.ownedKey(principal.getCognitoSub(), idempotencyKey), ProductInvoiceResponseDTO.class,
+                () -> redemptionService.redeemProduct(principal.getCognitoSub(), productId));
         return ResponseEntity.ok(invoice);
     }
 
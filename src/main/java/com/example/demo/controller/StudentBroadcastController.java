@@ -62,13 +62,21 @@ public class StudentBroadcastController {
     @PatchMapping("/{deliveryId}/read")
     public ResponseEntity<StudentBroadcastResponseDTO> markAsRead(
             @Parameter(hidden = true) @AuthenticationPrincipal AuthPrincipal principal,
-            @Parameter(description = "ID của tin nhắn (delivery ID)") 
+            @Parameter(description = "ID của tin nhắn (broadcastId; deliveryId cũ vẫn được chấp nhận)") 
             @PathVariable UUID deliveryId) {
         
         StudentBroadcastResponseDTO dto = broadcastService.markBroadcastAsRead(principal, deliveryId);
         return ResponseEntity.ok(dto);
     }
 
+    @Operation(summary = "Mark all messages as read", description = "Đánh dấu toàn bộ tin nhắn hiện có là đã đọc.")
+    @PatchMapping("/read-all")
+    public ResponseEntity<Void> markAllAsRead(
+            @Parameter(hidden = true) @AuthenticationPrincipal AuthPrincipal principal) {
+        broadcastService.markAllBroadcastsAsRead(principal);
+        return ResponseEntity.noContent().build();
+    }
+
     // Helper tạo Pageable
     private Pageable createPageable(int page, int size, String sort) {
         int pageIndex = page > 0 ? page - 1 : 0;
@@ -3,6 +3,7 @@ package com.example.demo.controller;
 import com.example.demo.config.AuthPrincipal;
 import com.example.demo.dto.request.*;
 import com.example.demo.dto.response.*;
+import com.example.demo.service.LedgerService;
 import com.example.demo.service.WalletService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -15,10 +16,12 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import java.time.OffsetDateTime;
 import java.util.UUID;
 
 @RestController
@@ -28,9 +31,11 @@ import java.util.UUID;
 public class WalletController {
 
     private final WalletService walletService;
+    private final LedgerService ledgerService;
 
-    public WalletController(WalletService walletService) {
+    public WalletController(WalletService walletService, LedgerService ledgerService) {
         this.walletService = walletService;
+        this.ledgerService = ledgerService;
     }
 
     @Operation(summary = "Get wallet by ID", description = "Retrieves wallet details using the wallet's unique ID.")
@@ -46,6 +51,20 @@ public class WalletController {
         return ResponseEntity.ok(wallet);
     }
 
+    @Operation(summary = "Get wallet balance as of a point in time", description = "Admin only. Computes the balance from the ledger: latest snapshot at or before 'asOf' plus the entries after it. Defaults to now.")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Successfully computed balance"),
+        @ApiResponse(responseCode = "404", description = "Wallet not found")
+    })
+    @GetMapping("/{id}/balance")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<WalletBalanceResponseDTO> getBalanceAsOf(
+            @Parameter(description = "ID of the wallet") @PathVariable UUID id,
+            @Parameter(description = "ISO-8601 timestamp, e.g. 2025-01-31T23:59:59+07:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime asOf) {
+        return ResponseEntity.ok(ledgerService.getBalanceAsOf(id, asOf));
+    }
+
     @Operation(summary = "Get current user's transaction history", description = "Retrieves a paginated list of transactions for the authenticated user's wallet.")
     @ApiResponses({
         @ApiResponse(responseCode = "200", description = "Successfully retrieved transaction history"),
@@ -67,6 +86,22 @@ public class WalletController {
         return ResponseEntity.ok(new PageResponseDTO<>(history));
     }
 
+    @Operation(summary = "Get current user's transactions (cursor pagination)",
+               description = "Newest first. Pass meta.nextCursor from the previous response to get the next page; cost does not grow with depth.")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved transactions"),
+        @ApiResponse(responseCode = "400", description = "Invalid cursor"),
+        @ApiResponse(responseCode = "404", description = "Wallet not found")
+    })
+    @GetMapping("/me/transactions")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<CursorPageResponseDTO<WalletTransactionResponseDTO>> getMyTransactions(
+            @Parameter(hidden = true) @AuthenticationPrincipal AuthPrincipal principal,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(walletService.getTransactionHistoryForUserByCursor(principal, cursor, size));
+    }
+
     @Operation(summary = "Transfer coins between wallets", description = "Transfers a specified amount from one wallet to another. Requires appropriate permissions.")
     @ApiResponses({
         @ApiResponse(responseCode = "200", description = "Transfer successful"),
@@ -82,6 +117,19 @@ public class WalletController {
         return ResponseEntity.ok(transaction);
     }
 
+    @Operation(summary = "Batch transfer coins", description = "Posts up to 5000 transfer legs in a single transaction. Invalid legs are rejected individually; the rest are posted. Retries with the same idempotencyKey return the original result.")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Batch processed; see per-leg results"),
+        @ApiResponse(responseCode = "400", description = "Invalid request (e.g., too many legs)"),
+        @ApiResponse(responseCode = "403", description = "Forbidden: Requires ADMIN role")
+    })
+    @PostMapping("/transfer/batch")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<WalletBatchTransferResponseDTO> transferBatch(
+            @Valid @RequestBody WalletBatchTransferRequestDTO batchRequest) {
+        return ResponseEntity.ok(walletService.transferBatch(batchRequest, null));
+    }
+
     @Operation(summary = "Redeem coins for product purchase", description = "Deducts coins from a student's wallet when they redeem a product. Typically called internally or by a secured endpoint.")
     @ApiResponses({
         @ApiResponse(responseCode = "200", description = "Redemption successful"),
@@ -1,13 +1,11 @@
 package com.example.demo.dto.request;
 import jakarta.validation.constraints.NotBlank;
-import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 import java.util.UUID;
 
 @Data
 public class BroadcastRequestDTO {
-    @NotNull
-    private UUID eventId; // Sự kiện muốn gửi
+    private UUID eventId; // Sự kiện muốn gửi (bắt buộc với broadcast của Partner, bỏ qua với broadcast hệ thống)
 
     @NotBlank
     private String messageContent;
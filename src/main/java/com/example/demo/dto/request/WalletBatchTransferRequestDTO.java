@@ -0,0 +1,38 @@
+package com.example.demo.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class WalletBatchTransferRequestDTO {
+
+    @NotBlank // Key cho cả batch (theo từng chủ ví nguồn); mỗi leg có key riêng do server sinh
+    @Size(max = 120)
+    private String idempotencyKey;
+
+    @NotEmpty
+    @Size(max = 5000)
+    @Valid
+    private List<Leg> legs;
+
+    @Data
+    public static class Leg {
+        @NotNull
+        private UUID fromWalletId;
+
+        @NotNull
+        private UUID toWalletId;
+
+        @NotNull
+        @Positive
+        private BigDecimal amount;
+    }
+}
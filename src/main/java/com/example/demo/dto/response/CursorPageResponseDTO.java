@@ -0,0 +1,36 @@
+package com.example.demo.dto.response;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * Phân trang theo con trỏ (keyset): không có số trang, FE gửi lại meta.nextCursor để lấy trang kế tiếp.
+ * totalItems chỉ có khi client yêu cầu (COUNT(*) trên bảng lớn rất tốn kém).
+ */
+@Data
+public class CursorPageResponseDTO<T> {
+
+    private List<T> data;
+
+    private Meta meta;
+
+    public CursorPageResponseDTO(List<T> data, String nextCursor, int pageSize, Long totalItems) {
+        this.data = data;
+        this.meta = new Meta(pageSize, nextCursor != null, nextCursor, totalItems);
+    }
+
+    @Data
+    public static class Meta {
+        private int pageSize;
+        private boolean hasNext;
+        private String nextCursor; // null nếu là trang cuối
+        private Long totalItems;   // null nếu không yêu cầu
+
+        public Meta(int pageSize, boolean hasNext, String nextCursor, Long totalItems) {
+            this.pageSize = pageSize;
+            this.hasNext = hasNext;
+            this.nextCursor = nextCursor;
+            this.totalItems = totalItems;
+        }
+    }
+}
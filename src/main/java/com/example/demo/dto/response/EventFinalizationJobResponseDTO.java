@@ -0,0 +1,21 @@
+package com.example.demo.dto.response;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Data
+public class EventFinalizationJobResponseDTO {
+    private UUID jobId;
+    private UUID eventId;
+    private String status;
+    private BigDecimal payoutAmount;
+    private Integer totalCount;
+    private Integer processedCount;
+    private Integer failedCount;
+    private String lastError;
+    private OffsetDateTime createdAt;
+    private OffsetDateTime updatedAt;
+    private OffsetDateTime completedAt;
+}
@@ -14,7 +14,9 @@ public class ProductResponseDTO {
     private BigDecimal unitCost;
     private String currency;
     private Integer totalStock;
-    private String imageUrl;
+    private String imageUrl; // Endpoint danh sách: biến thể thumbnail (mặc định), chi tiết: ảnh gốc
+    private String thumbnailUrl;
+    private String mediumUrl;
     private Boolean isActive;
     private OffsetDateTime createdAt;
 }
\ No newline at end of file
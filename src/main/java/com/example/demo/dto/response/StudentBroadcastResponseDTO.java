@@ -7,7 +7,8 @@ import java.util.UUID;
 @Data
 public class StudentBroadcastResponseDTO {
     
-    private UUID deliveryId; 
+    private UUID broadcastId;
+    private UUID deliveryId; // = broadcastId (giữ tương thích client cũ, dùng cho PATCH /{id}/read)
     
     private String messageContent;
     private OffsetDateTime sentAt;
@@ -13,6 +13,7 @@ public class StudentResponseDTO {
     private String phoneNumber;
     private String email;
     private String avatarUrl;
+    private String avatarThumbnailUrl;
     private OffsetDateTime createdAt;
     private String status;
     private UUID universityId;
@@ -0,0 +1,16 @@
+package com.example.demo.dto.response;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Data
+public class WalletBalanceDriftResponseDTO {
+    private UUID walletId;
+    private BigDecimal materializedBalance;
+    private BigDecimal ledgerBalance;
+    private BigDecimal difference;
+    private Long entryCount;
+    private OffsetDateTime detectedAt;
+}
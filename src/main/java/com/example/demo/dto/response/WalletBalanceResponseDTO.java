@@ -0,0 +1,15 @@
+package com.example.demo.dto.response;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Data
+public class WalletBalanceResponseDTO {
+    private UUID walletId;
+    private BigDecimal balance;
+    private OffsetDateTime asOf;
+    private OffsetDateTime snapshotAsOf; // null nếu chưa có snapshot (tính từ đầu sổ cái)
+    private BigDecimal snapshotBalance;
+}
@@ -0,0 +1,27 @@
+package com.example.demo.dto.response;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class WalletBatchTransferResponseDTO {
+    private int totalLegs;
+    private int postedLegs;
+    private int rejectedLegs;
+    private BigDecimal postedAmount;
+    private long durationMs;
+    private List<LegResult> results;
+
+    @Data
+    public static class LegResult {
+        private int index;
+        private UUID fromWalletId;
+        private UUID toWalletId;
+        private BigDecimal amount;
+        private String status; // POSTED | REJECTED
+        private String reason;
+        private String idempotencyKey;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.demo.dto.response;
+
+import lombok.Data;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Data
+public class WalletContentionStatsDTO {
+    private UUID walletId;
+    private long lockContentions;
+    private long optimisticRetries;
+    private long retryExhausted;
+    private OffsetDateTime lastContendedAt;
+}
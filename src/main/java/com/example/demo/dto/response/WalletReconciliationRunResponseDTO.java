@@ -0,0 +1,18 @@
+package com.example.demo.dto.response;
+
+import lombok.Data;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Data
+public class WalletReconciliationRunResponseDTO {
+    private UUID runId;
+    private String status;
+    private Integer partitions;
+    private Integer processedPartitions;
+    private Long walletsChecked;
+    private Long driftCount;
+    private String lastError;
+    private OffsetDateTime startedAt;
+    private OffsetDateTime completedAt;
+}
@@ -11,10 +11,16 @@ import com.example.demo.entity.enums.BroadcastDeliveryStatus;
 import java.time.OffsetDateTime;
 import java.util.UUID;
 
+/**
+ * Read-set thưa: chỉ có dòng (status READ) khi sinh viên đánh dấu đã đọc một broadcast gửi sau read watermark.
+ * Dòng UNREAD cũ (từ thời fan-out lúc gửi) vẫn được hiểu đúng: chưa đọc.
+ */
 @Getter
 @Setter
 @Entity
-@Table(name = "broadcast_delivery")
+@Table(name = "broadcast_delivery", indexes = {
+        @Index(name = "idx_broadcast_delivery_student_broadcast", columnList = "student_id, broadcast_id")
+})
 public class BroadcastDelivery {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID) // SỬA ĐỔI CHIẾN LƯỢC
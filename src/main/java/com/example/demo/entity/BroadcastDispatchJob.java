@@ -0,0 +1,84 @@
+package com.example.demo.entity;
+
+import com.example.demo.entity.enums.BroadcastDispatchStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Job phát broadcast tới người nhận chạy nền (tạo cùng transaction với broadcast).
+ * last_student_id là checkpoint (keyset theo student_id), cập nhật trong CÙNG transaction với chunk.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "broadcast_dispatch_job", indexes = {
+        @Index(name = "idx_broadcast_dispatch_job_status", columnList = "status")
+})
+public class BroadcastDispatchJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "job_id", nullable = false)
+    private UUID id;
+
+    @NotNull
+    @Column(name = "broadcast_id", nullable = false, unique = true)
+    private UUID broadcastId;
+
+    // null = broadcast toàn hệ thống (người nhận là mọi sinh viên)
+    @Column(name = "event_id")
+    private UUID eventId;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @ColumnDefault("'PENDING'")
+    @Column(name = "status", nullable = false, length = 20)
+    private BroadcastDispatchStatus status = BroadcastDispatchStatus.PENDING;
+
+    @ColumnDefault("0")
+    @Column(name = "dispatched_count", nullable = false)
+    private Integer dispatchedCount = 0;
+
+    // Checkpoint: student_id cuối cùng đã phát (null = chưa phát chunk nào)
+    @Column(name = "last_student_id")
+    private UUID lastStudentId;
+
+    @Size(max = 500)
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @NotNull
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    @Version // Chặn 2 worker (2 node) cùng xử lý 1 chunk
+    private Integer version;
+
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private OffsetDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private OffsetDateTime updatedAt;
+
+    @Column(name = "completed_at")
+    private OffsetDateTime completedAt;
+}
@@ -0,0 +1,31 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Mốc đã đọc của sinh viên: mọi broadcast có sent_at <= readUpTo được coi là đã đọc.
+ * Chưa có dòng -> mốc là thời điểm tạo tài khoản sinh viên.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "broadcast_read_watermark")
+public class BroadcastReadWatermark {
+
+    @Id
+    @Column(name = "student_id", nullable = false)
+    private UUID studentId;
+
+    @NotNull
+    @Column(name = "read_up_to", nullable = false)
+    private OffsetDateTime readUpTo;
+}
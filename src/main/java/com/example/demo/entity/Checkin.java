@@ -12,9 +12,17 @@ import java.time.OffsetDateTime;
 @Getter
 @Setter
 @Entity
-@Table(name = "checkin")
+@Table(name = "checkin", uniqueConstraints = {
+        // 1 sinh viên chỉ đăng ký 1 lần / sự kiện (thay cho existsByEventIdAndStudentId trước khi insert)
+        @UniqueConstraint(name = Checkin.UK_EVENT_STUDENT, columnNames = {"event_id", "student_id"})
+}, indexes = {
+        // Các sự kiện của 1 sinh viên (inbox broadcast, lịch sử đăng ký)
+        @Index(name = "idx_checkin_student_event", columnList = "student_id, event_id")
+})
 public class Checkin {
 
+    public static final String UK_EVENT_STUDENT = "uk_checkin_event_student";
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID) // SỬA ĐỔI CHIẾN LƯỢC
     @Column(name = "checkin_id", nullable = false)
@@ -77,4 +77,9 @@ public class Event {
     @Column(name = "max_attendees")
     private Integer maxAttendees;
 
+    // Số lượt đăng ký, chỉ cập nhật bằng UPDATE có điều kiện (EventSeatJdbcRepository).
+    // NULL = sự kiện cũ chưa được đếm, sẽ tự tính lại từ bảng checkin ở lần đặt chỗ đầu tiên.
+    @Column(name = "registered_count", updatable = false)
+    private Integer registeredCount;
+
 }
\ No newline at end of file
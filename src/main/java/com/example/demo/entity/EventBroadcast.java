@@ -5,13 +5,17 @@ import jakarta.validation.constraints.NotNull;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CreationTimestamp;
 import java.util.UUID;
 import java.time.OffsetDateTime;
 
 @Getter
 @Setter
 @Entity
-@Table(name = "event_broadcast")
+@Table(name = "event_broadcast", indexes = {
+        // Inbox của sinh viên: checkin(student) -> broadcast theo event, mới nhất trước; event_id NULL = toàn hệ thống
+        @Index(name = "idx_event_broadcast_event_sent", columnList = "event_id, sent_at")
+})
 public class EventBroadcast {
     
     @Id
@@ -19,15 +23,17 @@ public class EventBroadcast {
     @Column(name = "broadcast_id", nullable = false)
     private UUID id;
 
-    @NotNull
-    @ManyToOne(fetch = FetchType.LAZY, optional = false)
-    @JoinColumn(name = "event_id", nullable = false)
+    // Người nhận: sinh viên đã đăng ký event này; null = gửi toàn hệ thống (sendSystemBroadcast).
+    // Không tạo dòng cho từng người nhận, inbox được tính lúc đọc.
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "event_id")
     private Event event;
 
     @NotNull
     @Column(name = "message_content", nullable = false)
     private String messageContent;
 
+    @CreationTimestamp
     @ColumnDefault("now()")
     @Column(name = "sent_at")
     private OffsetDateTime sentAt;
@@ -0,0 +1,41 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Outbox thay đổi của catalog sự kiện: trigger trên event / partner / event_category ghi 1 dòng cho mỗi
+ * sự kiện bị ảnh hưởng (xem EventCatalogJdbcRepository). Không ghi qua JPA; các node poll theo changed_at.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "event_catalog_change", indexes = {
+        @Index(name = "idx_event_catalog_change_changed_at", columnList = "changed_at")
+})
+public class EventCatalogChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "change_id", nullable = false)
+    private Long id;
+
+    @NotNull
+    @Column(name = "event_id", nullable = false)
+    private UUID eventId;
+
+    @NotNull
+    @Column(name = "changed_at", nullable = false)
+    private OffsetDateTime changedAt;
+}
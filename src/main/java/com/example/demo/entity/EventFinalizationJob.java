@@ -0,0 +1,96 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import com.example.demo.entity.enums.FinalizationJobStatus;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Job finalize sự kiện chạy nền, chi trả theo từng chunk.
+ * last_wallet_id là checkpoint (keyset theo wallet_id), được cập nhật trong CÙNG transaction
+ * với chunk chi trả -> resume sau crash không bị trả trùng.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "event_finalization_job")
+public class EventFinalizationJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "job_id", nullable = false)
+    private UUID id;
+
+    @NotNull
+    @Column(name = "event_id", nullable = false, unique = true)
+    private UUID eventId;
+
+    @NotNull
+    @Column(name = "event_wallet_id", nullable = false)
+    private UUID eventWalletId;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @ColumnDefault("'PENDING'")
+    @Column(name = "status", nullable = false, length = 20)
+    private FinalizationJobStatus status = FinalizationJobStatus.PENDING;
+
+    @NotNull
+    @Column(name = "payout_amount", nullable = false, precision = 18, scale = 2)
+    private BigDecimal payoutAmount;
+
+    @ColumnDefault("0")
+    @Column(name = "total_count", nullable = false)
+    private Integer totalCount = 0;
+
+    @ColumnDefault("0")
+    @Column(name = "processed_count", nullable = false)
+    private Integer processedCount = 0;
+
+    @ColumnDefault("0")
+    @Column(name = "failed_count", nullable = false)
+    private Integer failedCount = 0;
+
+    // Ví chi trả lỗi (đã vượt qua checkpoint): được thử lại trước khi hoàn tất, job chỉ COMPLETED khi rỗng
+    @ElementCollection
+    @CollectionTable(name = "event_finalization_failed_wallet", joinColumns = @JoinColumn(name = "job_id"))
+    @Column(name = "wallet_id", nullable = false)
+    private Set<UUID> failedWalletIds = new HashSet<>();
+
+    // Checkpoint: wallet_id cuối cùng đã xử lý (null = chưa xử lý chunk nào)
+    @Column(name = "last_wallet_id")
+    private UUID lastWalletId;
+
+    @Size(max = 500)
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @NotNull
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    @Version // Chặn 2 worker (2 node) cùng xử lý 1 chunk
+    private Integer version;
+
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private OffsetDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private OffsetDateTime updatedAt;
+
+    @Column(name = "completed_at")
+    private OffsetDateTime completedAt;
+}
@@ -0,0 +1,69 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import org.springframework.data.domain.Persistable;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Kết quả của 1 request có Idempotency-Key (còn hiệu lực).
+ * Dòng được INSERT (claim) trước khi thực hiện nghiệp vụ, trong CÙNG transaction:
+ * request trùng key chạy song song sẽ bị chặn ở unique PK cho tới khi request đầu commit.
+ * Hết hạn (expires_at) thì được chuyển sang idempotency_record_archive.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "idempotency_record", indexes = {
+        @Index(name = "idx_idempotency_expires", columnList = "expires_at")
+})
+public class IdempotencyRecord implements Persistable<String> {
+
+    // scope + ":" + key do client gửi
+    @Id
+    @Size(max = 255)
+    @Column(name = "idem_key", nullable = false, length = 255)
+    private String key;
+
+    @NotNull
+    @Size(max = 50)
+    @Column(name = "scope", nullable = false, length = 50)
+    private String scope;
+
+    // Response đã serialize (JSON), null khi đang xử lý
+    @Column(name = "response_json", columnDefinition = "TEXT")
+    private String responseJson;
+
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private OffsetDateTime createdAt;
+
+    @NotNull
+    @Column(name = "expires_at", nullable = false)
+    private OffsetDateTime expiresAt;
+
+    // Id do ứng dụng gán -> báo cho Spring Data biết là bản ghi mới để persist (không merge/SELECT trước)
+    @Transient
+    private boolean newRecord = true;
+
+    @Override
+    public String getId() {
+        return key;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newRecord;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newRecord = false;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.Immutable;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Bản ghi idempotency đã hết hạn (chỉ để tra cứu/kiểm toán, không còn dùng để chặn trùng).
+ * Được ghi set-based bởi IdempotencyJdbcRepository.archiveExpired.
+ */
+@Getter
+@Setter
+@Entity
+@Immutable
+@Table(name = "idempotency_record_archive", indexes = {
+        @Index(name = "idx_idempotency_archive_key", columnList = "idem_key")
+})
+public class IdempotencyRecordArchive {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "archive_id", nullable = false)
+    private UUID id;
+
+    @NotNull
+    @Size(max = 255)
+    @Column(name = "idem_key", nullable = false, length = 255)
+    private String key;
+
+    @NotNull
+    @Size(max = 50)
+    @Column(name = "scope", nullable = false, length = 50)
+    private String scope;
+
+    @Column(name = "response_json", columnDefinition = "TEXT")
+    private String responseJson;
+
+    @Column(name = "created_at")
+    private OffsetDateTime createdAt;
+
+    @NotNull
+    @Column(name = "expires_at", nullable = false)
+    private OffsetDateTime expiresAt;
+
+    @NotNull
+    @Column(name = "archived_at", nullable = false)
+    private OffsetDateTime archivedAt;
+}
@@ -0,0 +1,37 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.math.BigDecimal;
+
+/**
+ * Tổng đổi quà toàn hệ thống, chia thành nhiều dòng (shard) để các giao dịch đổi quà đồng thời không cùng khóa
+ * 1 dòng; tổng = SUM theo shard. Chỉ cập nhật bằng SQL (InvoiceStatsJdbcRepository), trong transaction của invoice.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "invoice_stats")
+public class InvoiceStatsShard {
+
+    @Id
+    @Column(name = "shard_id", nullable = false)
+    private Integer shardId;
+
+    @NotNull
+    @ColumnDefault("0")
+    @Column(name = "redeem_count", nullable = false)
+    private Long redeemCount;
+
+    @NotNull
+    @ColumnDefault("0")
+    @Column(name = "coins_spent", nullable = false, precision = 18, scale = 2)
+    private BigDecimal coinsSpent;
+}
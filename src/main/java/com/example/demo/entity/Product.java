@@ -55,6 +55,13 @@ public class Product {
     @Column(name = "image_url") // Loại bỏ length
     private String imageUrl;
 
+    // Biến thể sinh lúc upload (ImageVariantService), null với ảnh cũ / ảnh ngoài storage
+    @Column(name = "image_medium_url")
+    private String imageMediumUrl;
+
+    @Column(name = "image_thumbnail_url")
+    private String imageThumbnailUrl;
+
     @ColumnDefault("true")
     @Column(name = "is_active")
     private Boolean isActive;
@@ -0,0 +1,57 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Thống kê đổi quà theo sản phẩm, cập nhật cùng transaction với tạo / giao / hủy invoice.
+ * Index trên các cột đếm: top-K là quét K dòng đầu của index, không GROUP BY trên product_invoice.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "product_redeem_stats", indexes = {
+        @Index(name = "idx_product_redeem_stats_redeem_count", columnList = "redeem_count"),
+        @Index(name = "idx_product_redeem_stats_delivered_count", columnList = "delivered_count")
+})
+public class ProductRedeemStats {
+
+    @Id
+    @Column(name = "product_id", nullable = false)
+    private UUID productId;
+
+    // Mọi invoice đã tạo (kể cả đã hủy), giống COUNT trên product_invoice trước đây
+    @NotNull
+    @ColumnDefault("0")
+    @Column(name = "redeem_count", nullable = false)
+    private Long redeemCount;
+
+    @NotNull
+    @ColumnDefault("0")
+    @Column(name = "delivered_count", nullable = false)
+    private Long deliveredCount;
+
+    @NotNull
+    @ColumnDefault("0")
+    @Column(name = "cancelled_count", nullable = false)
+    private Long cancelledCount;
+
+    @NotNull
+    @ColumnDefault("0")
+    @Column(name = "coins_spent", nullable = false, precision = 18, scale = 2)
+    private BigDecimal coinsSpent;
+
+    @Column(name = "updated_at")
+    private OffsetDateTime updatedAt;
+}
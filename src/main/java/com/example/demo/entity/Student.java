@@ -48,6 +48,13 @@ public class Student {
     @Column(name = "avatar_url") // Loại bỏ length
     private String avatarUrl;
 
+    // Biến thể sinh lúc upload (ImageVariantService), null với avatar cũ
+    @Column(name = "avatar_medium_url")
+    private String avatarMediumUrl;
+
+    @Column(name = "avatar_thumbnail_url")
+    private String avatarThumbnailUrl;
+
     @NotNull
     @Enumerated(EnumType.STRING) 
     @Column(name = "status", nullable = false, length = 20)
@@ -0,0 +1,41 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Số broadcast chưa đọc của sinh viên, cập nhật tăng/giảm thay vì đếm lại inbox (BroadcastUnreadCounterJdbcRepository).
+ * stale = true: dòng vừa được tạo hoặc cần đếm lại từ inbox trước khi dùng.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "student_broadcast_counter")
+public class StudentBroadcastCounter {
+
+    @Id
+    @Column(name = "student_id", nullable = false)
+    private UUID studentId;
+
+    @NotNull
+    @ColumnDefault("0")
+    @Column(name = "unread_count", nullable = false)
+    private Integer unreadCount = 0;
+
+    @NotNull
+    @ColumnDefault("true")
+    @Column(name = "stale", nullable = false)
+    private Boolean stale = true;
+
+    @Column(name = "updated_at")
+    private OffsetDateTime updatedAt;
+}
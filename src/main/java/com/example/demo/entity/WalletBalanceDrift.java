@@ -0,0 +1,60 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Một ví bị lệch giữa số dư materialized và tổng sổ cái, phát hiện trong 1 lượt đối soát.
+ */
+@Getter
+@Setter
+@Entity
+@Immutable
+@Table(name = "wallet_balance_drift", indexes = {
+        @Index(name = "idx_wallet_drift_run", columnList = "run_id")
+})
+public class WalletBalanceDrift {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "drift_id", nullable = false)
+    private UUID id;
+
+    @NotNull
+    @Column(name = "run_id", nullable = false)
+    private UUID runId;
+
+    @NotNull
+    @Column(name = "wallet_id", nullable = false)
+    private UUID walletId;
+
+    // wallet.balance + tổng các shard
+    @NotNull
+    @Column(name = "materialized_balance", nullable = false, precision = 18, scale = 2)
+    private BigDecimal materializedBalance;
+
+    // SUM(wallet_transaction.amount)
+    @NotNull
+    @Column(name = "ledger_balance", nullable = false, precision = 18, scale = 2)
+    private BigDecimal ledgerBalance;
+
+    // materialized - ledger
+    @NotNull
+    @Column(name = "difference", nullable = false, precision = 18, scale = 2)
+    private BigDecimal difference;
+
+    @Column(name = "entry_count", nullable = false)
+    private Long entryCount;
+
+    @CreationTimestamp
+    @Column(name = "detected_at")
+    private OffsetDateTime detectedAt;
+}
@@ -0,0 +1,47 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Immutable;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Snapshot số dư của ví tại thời điểm as_of (tính từ sổ cái wallet_transaction).
+ * Số dư tại thời điểm T = snapshot gần nhất (as_of <= T) + tổng các bút toán trong (as_of, T].
+ */
+@Getter
+@Setter
+@Entity
+@Immutable
+@Table(name = "wallet_balance_snapshot", indexes = {
+        @Index(name = "idx_wallet_snapshot_wallet_asof", columnList = "wallet_id, as_of")
+})
+public class WalletBalanceSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "snapshot_id", nullable = false)
+    private UUID id;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "wallet_id", nullable = false)
+    private Wallet wallet;
+
+    @NotNull
+    @Column(name = "balance", nullable = false, precision = 18, scale = 2)
+    private BigDecimal balance;
+
+    @NotNull
+    @Column(name = "as_of", nullable = false)
+    private OffsetDateTime asOf;
+
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private OffsetDateTime createdAt;
+}
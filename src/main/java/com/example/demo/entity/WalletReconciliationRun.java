@@ -0,0 +1,62 @@
+package com.example.demo.entity;
+
+import com.example.demo.entity.enums.ReconciliationRunStatus;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Một lượt đối soát số dư ví: so wallet.balance (+ shard) với tổng wallet_transaction.amount.
+ * Các counter được cộng dồn bằng UPDATE nguyên tử khi mỗi partition quét xong.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "wallet_reconciliation_run")
+public class WalletReconciliationRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "run_id", nullable = false)
+    private UUID id;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @ColumnDefault("'RUNNING'")
+    @Column(name = "status", nullable = false, length = 20)
+    private ReconciliationRunStatus status = ReconciliationRunStatus.RUNNING;
+
+    @NotNull
+    @Column(name = "partitions", nullable = false)
+    private Integer partitions;
+
+    @ColumnDefault("0")
+    @Column(name = "processed_partitions", nullable = false)
+    private Integer processedPartitions = 0;
+
+    @ColumnDefault("0")
+    @Column(name = "wallets_checked", nullable = false)
+    private Long walletsChecked = 0L;
+
+    @ColumnDefault("0")
+    @Column(name = "drift_count", nullable = false)
+    private Long driftCount = 0L;
+
+    @Size(max = 500)
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "started_at")
+    private OffsetDateTime startedAt;
+
+    @Column(name = "completed_at")
+    private OffsetDateTime completedAt;
+}
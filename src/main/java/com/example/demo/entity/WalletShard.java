@@ -0,0 +1,42 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Sub-account (shard) của một ví "nóng" (ví EVENT / ADMIN).
+ * Số dư logic = wallet.balance + SUM(wallet_shard.balance); các shard được gộp định kỳ vào wallet.balance.
+ * Ghi vào shard chỉ qua JDBC upsert nguyên tử (WalletLedgerJdbcRepository).
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "wallet_shard", uniqueConstraints = {
+        @UniqueConstraint(columnNames = { "wallet_id", "shard_index" })
+})
+public class WalletShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "shard_id", nullable = false)
+    private UUID id;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "wallet_id", nullable = false)
+    private Wallet wallet;
+
+    @NotNull
+    @Column(name = "shard_index", nullable = false)
+    private Integer shardIndex;
+
+    @NotNull
+    @ColumnDefault("0")
+    @Column(name = "balance", nullable = false, precision = 18, scale = 2)
+    private BigDecimal balance;
+}
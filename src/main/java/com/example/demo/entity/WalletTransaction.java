@@ -6,6 +6,8 @@ import jakarta.validation.constraints.Size;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Immutable;
 import java.util.UUID;
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
@@ -13,7 +15,11 @@ import java.time.OffsetDateTime;
 @Getter
 @Setter
 @Entity
-@Table(name = "wallet_transaction")
+@Immutable // Sổ cái chỉ ghi thêm (append-only), không UPDATE
+@Table(name = "wallet_transaction", indexes = {
+        @Index(name = "idx_wallet_txn_wallet_created", columnList = "wallet_id, created_at, txn_id"),
+        @Index(name = "idx_wallet_txn_created", columnList = "created_at, txn_id")
+})
 public class WalletTransaction {
 
     @Id
@@ -49,8 +55,9 @@ public class WalletTransaction {
     @Column(name = "idempotency_key", length = 120, unique = true) // THÊM unique = true
     private String idempotencyKey;
 
+    @CreationTimestamp // Trước đây chỉ có DEFAULT now() ở DB nhưng Hibernate luôn insert null
     @ColumnDefault("now()")
-    @Column(name = "created_at")
+    @Column(name = "created_at", updatable = false)
     private OffsetDateTime createdAt;
 
 }
\ No newline at end of file
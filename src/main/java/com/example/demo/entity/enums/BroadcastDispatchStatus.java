@@ -0,0 +1,23 @@
+package com.example.demo.entity.enums;
+
+public enum BroadcastDispatchStatus {
+    /**
+     * Broadcast đã lưu, chờ worker phát tới người nhận.
+     */
+    PENDING,
+
+    /**
+     * Worker đang duyệt người nhận theo từng chunk.
+     */
+    RUNNING,
+
+    /**
+     * Đã phát xong cho toàn bộ người nhận.
+     */
+    COMPLETED,
+
+    /**
+     * Dừng giữa chừng do lỗi. Có thể khởi chạy lại từ checkpoint.
+     */
+    FAILED
+}
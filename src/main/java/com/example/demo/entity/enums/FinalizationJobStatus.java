@@ -0,0 +1,24 @@
+package com.example.demo.entity.enums;
+
+public enum FinalizationJobStatus {
+    /**
+     * Job đã được tạo, chờ worker nhận xử lý.
+     */
+    PENDING,
+
+    /**
+     * Worker đang chi trả theo từng chunk.
+     */
+    RUNNING,
+
+    /**
+     * Đã chi trả xong, sự kiện chuyển sang FINALIZED.
+     */
+    COMPLETED,
+
+    /**
+     * Dừng giữa chừng (ví dụ: ví sự kiện không đủ tiền) hoặc còn ví chi trả lỗi sau lượt thử lại.
+     * Có thể khởi chạy lại: tiếp tục từ checkpoint rồi thử lại các ví lỗi.
+     */
+    FAILED
+}
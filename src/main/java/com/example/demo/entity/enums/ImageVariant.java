@@ -0,0 +1,37 @@
+package com.example.demo.entity.enums;
+
+/**
+ * Các biến thể ảnh sinh ra khi upload (cạnh dài tối đa, tính theo pixel).
+ */
+public enum ImageVariant {
+    THUMBNAIL("thumbnail", 200),
+    MEDIUM("medium", 800);
+
+    private final String suffix;
+    private final int maxEdge;
+
+    ImageVariant(String suffix, int maxEdge) {
+        this.suffix = suffix;
+        this.maxEdge = maxEdge;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    public int getMaxEdge() {
+        return maxEdge;
+    }
+
+    /**
+     * @return biến thể theo tên (không phân biệt hoa thường), null nếu không khớp (ví dụ "original")
+     */
+    public static ImageVariant fromSuffix(String value) {
+        for (ImageVariant variant : values()) {
+            if (variant.suffix.equalsIgnoreCase(value)) {
+                return variant;
+            }
+        }
+        return null;
+    }
+}
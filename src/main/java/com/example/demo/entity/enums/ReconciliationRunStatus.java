@@ -0,0 +1,18 @@
+package com.example.demo.entity.enums;
+
+public enum ReconciliationRunStatus {
+    /**
+     * Đang quét các partition ví.
+     */
+    RUNNING,
+
+    /**
+     * Đã quét xong toàn bộ partition (có thể có hoặc không có chênh lệch).
+     */
+    COMPLETED,
+
+    /**
+     * Dừng giữa chừng do lỗi hoặc do ứng dụng khởi động lại.
+     */
+    FAILED
+}
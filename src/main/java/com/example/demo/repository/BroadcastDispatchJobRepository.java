@@ -0,0 +1,16 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.BroadcastDispatchJob;
+import com.example.demo.entity.enums.BroadcastDispatchStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface BroadcastDispatchJobRepository extends JpaRepository<BroadcastDispatchJob, UUID> {
+
+    List<BroadcastDispatchJob> findAllByStatusIn(Collection<BroadcastDispatchStatus> statuses);
+}
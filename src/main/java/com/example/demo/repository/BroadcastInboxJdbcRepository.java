@@ -0,0 +1,166 @@
+package com.example.demo.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Inbox broadcast tính lúc đọc (fan-out-on-read): broadcast chỉ lưu 1 dòng kèm người nhận (event hoặc toàn hệ thống),
+ * trạng thái đọc của từng sinh viên = read watermark + read-set thưa (broadcast_delivery status READ).
+ * Broadcast cũ không suy ra được sent_at (xem V1__backfill_broadcast_sent_at.sql) không bao giờ nằm dưới watermark:
+ * chỉ read-set quyết định đã đọc hay chưa.
+ *
+ * Nguồn broadcast của sinh viên đi theo index: checkin(student_id, event_id) -> event_broadcast(event_id, sent_at),
+ * cộng broadcast toàn hệ thống (event_id IS NULL), không quét toàn bộ event_broadcast.
+ */
+@Repository
+public class BroadcastInboxJdbcRepository {
+
+    // ? = studentId (watermark), studentId (created_at)
+    static final String WATERMARK_CTE =
+            "w AS (" +
+            "  SELECT COALESCE(" +
+            "    (SELECT read_up_to FROM broadcast_read_watermark WHERE student_id = ?), " +
+            "    (SELECT created_at FROM student WHERE student_id = ?), " +
+            "    TIMESTAMPTZ 'epoch') AS read_up_to" +
+            ")";
+
+    // ? = studentId (checkin)
+    static final String SOURCE_CTE =
+            "src AS (" +
+            "  SELECT b.broadcast_id, b.event_id, b.message_content, b.sent_at " +
+            "  FROM checkin c JOIN event_broadcast b ON b.event_id = c.event_id " +
+            "  WHERE c.student_id = ? " +
+            "  UNION ALL " +
+            "  SELECT b.broadcast_id, b.event_id, b.message_content, b.sent_at " +
+            "  FROM event_broadcast b WHERE b.event_id IS NULL" +
+            ")";
+
+    private static final String INBOX_SOURCE = "WITH " + WATERMARK_CTE + ", " + SOURCE_CTE + " ";
+
+    // ? = studentId
+    static final String IS_READ =
+            "(b.sent_at <= w.read_up_to OR EXISTS (SELECT 1 FROM broadcast_delivery d " +
+            " WHERE d.student_id = ? AND d.broadcast_id = b.broadcast_id AND d.status = 'READ'))";
+
+    private static final RowMapper<InboxRow> INBOX_ROW_MAPPER = (rs, rowNum) -> {
+        Timestamp sentAt = rs.getTimestamp("sent_at");
+        return new InboxRow(
+                rs.getObject("broadcast_id", UUID.class),
+                rs.getString("message_content"),
+                sentAt != null ? sentAt.toInstant().atOffset(ZoneOffset.UTC) : null,
+                rs.getObject("event_id", UUID.class),
+                rs.getString("event_title"),
+                rs.getBoolean("is_read"));
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BroadcastInboxJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Một trang inbox, mới nhất trước (hoặc cũ nhất trước nếu ascending).
+     * @param read null = tất cả, true = chỉ đã đọc, false = chỉ chưa đọc
+     */
+    public List<InboxRow> findInbox(UUID studentId, Boolean read, boolean ascending, int limit, long offset) {
+        List<Object> args = new ArrayList<>(List.of(studentId, studentId, studentId, studentId));
+        String direction = ascending ? "ASC" : "DESC";
+        String sql = INBOX_SOURCE +
+                "SELECT b.broadcast_id, b.event_id, b.message_content, b.sent_at, e.title AS event_title, " +
+                IS_READ + " AS is_read " +
+                "FROM src b CROSS JOIN w LEFT JOIN event e ON e.event_id = b.event_id " +
+                readFilter(read, studentId, args) +
+                // Broadcast cũ không có sent_at là phần cũ nhất của inbox
+                "ORDER BY b.sent_at " + direction + (ascending ? " NULLS FIRST" : " NULLS LAST") +
+                ", b.broadcast_id " + direction + " LIMIT ? OFFSET ?";
+        args.add(limit);
+        args.add(offset);
+        return jdbcTemplate.query(sql, INBOX_ROW_MAPPER, args.toArray());
+    }
+
+    public long countInbox(UUID studentId, Boolean read) {
+        List<Object> args = new ArrayList<>(List.of(studentId, studentId, studentId));
+        String sql = INBOX_SOURCE + "SELECT COUNT(*) FROM src b CROSS JOIN w " + readFilter(read, studentId, args);
+        Long count = jdbcTemplate.queryForObject(sql, Long.class, args.toArray());
+        return count != null ? count : 0L;
+    }
+
+    /**
+     * Broadcast có thuộc inbox của sinh viên không (gửi toàn hệ thống, hoặc sinh viên đã đăng ký event).
+     */
+    public boolean isRecipient(UUID broadcastId, UUID studentId) {
+        Boolean recipient = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM event_broadcast b WHERE b.broadcast_id = ? AND (b.event_id IS NULL " +
+                "  OR EXISTS (SELECT 1 FROM checkin c WHERE c.event_id = b.event_id AND c.student_id = ?)))",
+                Boolean.class, broadcastId, studentId);
+        return Boolean.TRUE.equals(recipient);
+    }
+
+    /**
+     * Thêm broadcast vào read-set (bỏ qua nếu đã đọc, kể cả nhờ watermark).
+     * @return true nếu trạng thái vừa chuyển từ chưa đọc sang đã đọc
+     */
+    public boolean markRead(UUID broadcastId, UUID studentId) {
+        int inserted = jdbcTemplate.update(
+                "WITH " + WATERMARK_CTE + " " +
+                "INSERT INTO broadcast_delivery (delivery_id, broadcast_id, student_id, status, created_at) " +
+                "SELECT gen_random_uuid(), b.broadcast_id, ?, 'READ', now() " +
+                "FROM event_broadcast b CROSS JOIN w " +
+                "WHERE b.broadcast_id = ? AND NOT " + IS_READ,
+                studentId, studentId, studentId, broadcastId, studentId);
+        return inserted > 0;
+    }
+
+    /**
+     * Đánh dấu đã đọc toàn bộ inbox.
+     * sent_at được gán lúc insert, commit có thể muộn hơn: broadcast đang chờ commit có thể có sent_at nhỏ hơn
+     * broadcast đã thấy, nên watermark không được vượt quá cutoff (= now - khoảng an toàn, giống snapshot sổ cái).
+     * Broadcast đang thấy mà mới hơn cutoff được ghi vào read-set từng dòng; read-set dưới watermark được dọn.
+     * Broadcast chờ commit lâu hơn khoảng an toàn vẫn có thể bị tính là đã đọc.
+     */
+    public void advanceWatermarkToLatest(UUID studentId, OffsetDateTime cutoff) {
+        Timestamp cutoffTs = Timestamp.from(cutoff.toInstant());
+        jdbcTemplate.update(
+                "WITH " + SOURCE_CTE + " " +
+                "INSERT INTO broadcast_read_watermark (student_id, read_up_to) " +
+                "SELECT ?, LEAST(MAX(sent_at), ?) FROM src HAVING MAX(sent_at) IS NOT NULL " +
+                "ON CONFLICT (student_id) DO UPDATE SET read_up_to = " +
+                "GREATEST(broadcast_read_watermark.read_up_to, EXCLUDED.read_up_to)",
+                studentId, studentId, cutoffTs);
+        jdbcTemplate.update(
+                "WITH " + WATERMARK_CTE + ", " + SOURCE_CTE + " " +
+                "INSERT INTO broadcast_delivery (delivery_id, broadcast_id, student_id, status, created_at) " +
+                "SELECT gen_random_uuid(), b.broadcast_id, ?, 'READ', now() " +
+                "FROM src b CROSS JOIN w WHERE NOT " + IS_READ,
+                studentId, studentId, studentId, studentId, studentId);
+        jdbcTemplate.update(
+                "DELETE FROM broadcast_delivery d USING event_broadcast b, broadcast_read_watermark w " +
+                "WHERE d.broadcast_id = b.broadcast_id AND d.student_id = ? " +
+                "AND w.student_id = d.student_id AND b.sent_at <= w.read_up_to",
+                studentId);
+    }
+
+    private static String readFilter(Boolean read, UUID studentId, List<Object> args) {
+        if (read == null) {
+            return "";
+        }
+        args.add(studentId);
+        return read ? "WHERE " + IS_READ + " " : "WHERE NOT " + IS_READ + " ";
+    }
+
+    /**
+     * Một dòng inbox (broadcast + trạng thái đọc của sinh viên).
+     */
+    public record InboxRow(UUID broadcastId, String messageContent, OffsetDateTime sentAt,
+                           UUID eventId, String eventTitle, boolean read) {
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.demo.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bộ đếm broadcast chưa đọc theo sinh viên (student_broadcast_counter).
+ *
+ * Bất biến: unread_count = số broadcast trong inbox đã được phát tới sinh viên (xem DISPATCHED) và chưa đọc.
+ * Mọi thao tác ghi khóa dòng bộ đếm TRƯỚC (lockRows), rồi mới đọc trạng thái đọc/checkpoint bằng câu lệnh mới,
+ * nên phát (tăng), đánh dấu đã đọc (giảm) và đếm lại không bao giờ đếm trùng hay bỏ sót lẫn nhau.
+ */
+@Repository
+public class BroadcastUnreadCounterJdbcRepository {
+
+    // ? = studentId. Job phát đã COMPLETED, hoặc checkpoint đã vượt qua sinh viên (keyset theo student_id),
+    // hoặc broadcast cũ không có job
+    private static final String DISPATCHED =
+            "NOT EXISTS (SELECT 1 FROM broadcast_dispatch_job j WHERE j.broadcast_id = b.broadcast_id " +
+            " AND j.status <> 'COMPLETED' AND (j.last_student_id IS NULL OR j.last_student_id < ?))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BroadcastUnreadCounterJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return số chưa đọc, null nếu chưa có dòng hoặc dòng đang stale (cần recount)
+     */
+    public Integer findUnreadCount(UUID studentId) {
+        List<Integer> counts = jdbcTemplate.queryForList(
+                "SELECT unread_count FROM student_broadcast_counter WHERE student_id = ? AND NOT stale",
+                Integer.class, studentId);
+        return counts.isEmpty() ? null : counts.get(0);
+    }
+
+    /**
+     * Tạo dòng (stale) nếu chưa có và khóa các dòng theo thứ tự student_id tới hết transaction.
+     * Chờ cả transaction khác đang tạo cùng dòng, nên sau bước này mọi câu lệnh đều thấy thay đổi đã commit của nhau.
+     */
+    public void lockRows(Collection<UUID> studentIds) {
+        if (studentIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "INSERT INTO student_broadcast_counter (student_id, unread_count, stale, updated_at) " +
+                    "SELECT p.student_id, 0, true, now() FROM unnest(CAST(? AS uuid[])) AS p(student_id) " +
+                    "ORDER BY p.student_id " +
+                    "ON CONFLICT (student_id) DO UPDATE SET updated_at = student_broadcast_counter.updated_at");
+            ps.setArray(1, con.createArrayOf("uuid", studentIds.toArray()));
+            return ps;
+        });
+    }
+
+    /**
+     * +1 cho các sinh viên vừa được phát broadcast mà chưa đọc nó (gọi sau lockRows, trong transaction của chunk).
+     */
+    public int incrementUnread(UUID broadcastId, Collection<UUID> studentIds) {
+        if (studentIds.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "UPDATE student_broadcast_counter c SET unread_count = c.unread_count + 1, updated_at = now() " +
+                    "FROM event_broadcast b, student s " +
+                    "WHERE b.broadcast_id = ? AND c.student_id = ANY (CAST(? AS uuid[])) " +
+                    "AND s.student_id = c.student_id AND NOT c.stale " +
+                    "AND b.sent_at > COALESCE(" +
+                    "  (SELECT w.read_up_to FROM broadcast_read_watermark w WHERE w.student_id = c.student_id), " +
+                    "  s.created_at, TIMESTAMPTZ 'epoch') " +
+                    "AND NOT EXISTS (SELECT 1 FROM broadcast_delivery d WHERE d.student_id = c.student_id " +
+                    "  AND d.broadcast_id = b.broadcast_id AND d.status = 'READ')");
+            ps.setObject(1, broadcastId);
+            ps.setArray(2, con.createArrayOf("uuid", studentIds.toArray()));
+            return ps;
+        });
+    }
+
+    /**
+     * -1 khi sinh viên vừa đọc broadcast, chỉ nếu broadcast đã được phát tới họ (chưa phát thì chưa được cộng).
+     */
+    public void decrementIfDispatched(UUID broadcastId, UUID studentId) {
+        jdbcTemplate.update(
+                "UPDATE student_broadcast_counter c SET unread_count = c.unread_count - 1, updated_at = now() " +
+                "FROM event_broadcast b " +
+                "WHERE c.student_id = ? AND NOT c.stale AND b.broadcast_id = ? AND " + DISPATCHED,
+                studentId, broadcastId, studentId);
+    }
+
+    /**
+     * Sau khi nâng watermark lên broadcast mới nhất: mọi broadcast đã commit đều đã đọc -> 0.
+     */
+    public void reset(UUID studentId) {
+        jdbcTemplate.update(
+                "UPDATE student_broadcast_counter SET unread_count = 0, stale = false, updated_at = now() " +
+                "WHERE student_id = ?",
+                studentId);
+    }
+
+    public void markStale(UUID studentId) {
+        jdbcTemplate.update(
+                "UPDATE student_broadcast_counter SET stale = true, updated_at = now() WHERE student_id = ?",
+                studentId);
+    }
+
+    /**
+     * Đếm lại từ inbox (gọi sau lockRows).
+     * @return số chưa đọc vừa ghi
+     */
+    public int recount(UUID studentId) {
+        jdbcTemplate.update(
+                "WITH " + BroadcastInboxJdbcRepository.WATERMARK_CTE + ", " + BroadcastInboxJdbcRepository.SOURCE_CTE + " " +
+                "UPDATE student_broadcast_counter SET stale = false, updated_at = now(), unread_count = (" +
+                "  SELECT COUNT(*) FROM src b CROSS JOIN w " +
+                "  WHERE NOT " + BroadcastInboxJdbcRepository.IS_READ + " AND " + DISPATCHED +
+                ") WHERE student_id = ?",
+                studentId, studentId, studentId, studentId, studentId, studentId);
+        Integer count = findUnreadCount(studentId);
+        return count != null ? count : 0;
+    }
+}
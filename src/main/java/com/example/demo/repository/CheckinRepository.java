@@ -4,6 +4,8 @@ import com.example.demo.entity.Checkin;
 
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -18,6 +20,8 @@ public interface CheckinRepository extends JpaRepository<Checkin, UUID> {
     boolean existsByEventIdAndStudentId(UUID eventId, UUID studentId);
     Optional<Checkin> findByEventIdAndStudentId(UUID eventId, UUID studentId);
     List<Checkin> findAllByEventId(UUID eventId);
+    // Danh sách người tham dự: StudentService.toResponseDTO đọc university và wallet của từng sinh viên
+    @EntityGraph(attributePaths = {"student", "student.university", "student.wallet"})
     Page<Checkin> findAllByEventId(UUID eventId, Pageable pageable);
     @EntityGraph(attributePaths = {
         "event",            // Tải Event
@@ -27,4 +31,34 @@ public interface CheckinRepository extends JpaRepository<Checkin, UUID> {
     Page<Checkin> findByStudentId(UUID studentId, Pageable pageable);
     
     Integer countByEventId(UUID eventId);
+
+    long countByEventIdAndVerifiedTrue(UUID eventId);
+
+    // Lấy ví STUDENT của tất cả người đã check-in thành công trong 1 query (dùng cho finalize theo lô)
+    @Query("SELECT DISTINCT w.id FROM Checkin c, Wallet w " +
+           "WHERE w.ownerType = 'STUDENT' AND w.ownerId = c.student.id " +
+           "AND c.event.id = :eventId AND c.verified = true")
+    List<UUID> findVerifiedAttendeeWalletIds(@Param("eventId") UUID eventId);
+
+    // Keyset theo wallet_id: chunk tiếp theo sau checkpoint của job finalize
+    @Query("SELECT DISTINCT w.id FROM Checkin c, Wallet w " +
+           "WHERE w.ownerType = 'STUDENT' AND w.ownerId = c.student.id " +
+           "AND c.event.id = :eventId AND c.verified = true AND w.id > :afterWalletId " +
+           "ORDER BY w.id")
+    List<UUID> findVerifiedAttendeeWalletIdsAfter(@Param("eventId") UUID eventId,
+                                                  @Param("afterWalletId") UUID afterWalletId,
+                                                  Pageable pageable);
+
+    @Query("SELECT COUNT(DISTINCT w.id) FROM Checkin c, Wallet w " +
+           "WHERE w.ownerType = 'STUDENT' AND w.ownerId = c.student.id " +
+           "AND c.event.id = :eventId AND c.verified = true")
+    long countVerifiedAttendeeWallets(@Param("eventId") UUID eventId);
+
+    // Keyset theo student_id: người nhận broadcast của event (đi theo unique (event_id, student_id))
+    @Query("SELECT c.student.id FROM Checkin c " +
+           "WHERE c.event.id = :eventId AND c.student.id > :afterStudentId " +
+           "ORDER BY c.student.id")
+    List<UUID> findStudentIdsAfter(@Param("eventId") UUID eventId,
+                                   @Param("afterStudentId") UUID afterStudentId,
+                                   Pageable pageable);
 }
\ No newline at end of file
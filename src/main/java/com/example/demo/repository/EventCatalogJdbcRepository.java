@@ -0,0 +1,135 @@
+package com.example.demo.repository;
+
+import com.example.demo.dto.response.EventCategoryResponseDTO;
+import com.example.demo.dto.response.EventResponseDTO;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Nguồn dữ liệu của catalog sự kiện trong bộ nhớ (EventCatalog): đọc thẳng EventResponseDTO bằng 1 query JOIN
+ * partner/category (không qua persistence context), và outbox event_catalog_change do trigger ghi.
+ *
+ * Hàm và trigger do migration V3__event_catalog_outbox.sql tạo: trigger chỉ ghi khi cột hiển thị trong DTO
+ * thực sự đổi, cập nhật registered_count (mỗi lượt đăng ký) hay ví của sự kiện không sinh dòng outbox.
+ */
+@Repository
+public class EventCatalogJdbcRepository {
+
+    private static final List<String> CHANGE_TRIGGERS = List.of("event_catalog_event_write",
+            "event_catalog_event_update", "event_catalog_partner_update", "event_catalog_category_update");
+
+    private static final String SELECT_EVENTS =
+            "SELECT e.event_id, e.title, e.description, e.start_time, e.end_time, e.location, e.status, " +
+            "e.point_cost_to_register, e.total_reward_points, e.total_budget_coin, e.created_at, e.max_attendees, " +
+            "e.partner_id, p.name AS partner_name, " +
+            "e.category_id, c.name AS category_name, c.description AS category_description " +
+            "FROM event e LEFT JOIN partner p ON p.partner_id = e.partner_id " +
+            "LEFT JOIN event_category c ON c.category_id = e.category_id ";
+
+    // Cùng các trường với EventServiceImpl.convertToDTO
+    private static final RowMapper<EventResponseDTO> EVENT_ROW_MAPPER = (rs, rowNum) -> {
+        EventResponseDTO dto = new EventResponseDTO();
+        dto.setId(rs.getObject("event_id", UUID.class));
+        dto.setTitle(rs.getString("title"));
+        dto.setDescription(rs.getString("description"));
+        dto.setStartTime(rs.getObject("start_time", OffsetDateTime.class));
+        dto.setEndTime(rs.getObject("end_time", OffsetDateTime.class));
+        dto.setLocation(rs.getString("location"));
+        dto.setStatus(rs.getString("status"));
+        dto.setPointCostToRegister(rs.getObject("point_cost_to_register", Integer.class));
+        dto.setTotalRewardPoints(rs.getObject("total_reward_points", Integer.class));
+        dto.setTotalBudgetCoin(rs.getBigDecimal("total_budget_coin"));
+        dto.setCreatedAt(rs.getObject("created_at", OffsetDateTime.class));
+        dto.setMaxAttendees(rs.getObject("max_attendees", Integer.class));
+        dto.setPartnerId(rs.getObject("partner_id", UUID.class));
+        dto.setPartnerName(rs.getString("partner_name"));
+
+        UUID categoryId = rs.getObject("category_id", UUID.class);
+        if (categoryId != null) {
+            EventCategoryResponseDTO category = new EventCategoryResponseDTO();
+            category.setId(categoryId);
+            category.setName(rs.getString("category_name"));
+            category.setDescription(rs.getString("category_description"));
+            dto.setCategory(category);
+        }
+        return dto;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EventCatalogJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Migration V3 đã tạo đủ trigger ghi outbox chưa.
+     */
+    public boolean isSchemaReady() {
+        Integer triggers = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT COUNT(DISTINCT tgname) FROM pg_trigger WHERE NOT tgisinternal AND tgname = ANY (?)");
+            ps.setArray(1, con.createArrayOf("text", CHANGE_TRIGGERS.toArray()));
+            return ps;
+        }, rs -> rs.next() ? rs.getInt(1) : 0);
+        return triggers != null && triggers == CHANGE_TRIGGERS.size();
+    }
+
+    public OffsetDateTime currentTime() {
+        return jdbcTemplate.queryForObject("SELECT clock_timestamp()", OffsetDateTime.class);
+    }
+
+    public long countEvents() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM event", Long.class);
+        return count != null ? count : 0L;
+    }
+
+    public List<EventResponseDTO> findAllEvents() {
+        return jdbcTemplate.query(SELECT_EVENTS, EVENT_ROW_MAPPER);
+    }
+
+    /**
+     * Sự kiện còn tồn tại trong số ids (id đã bị xóa không có trong kết quả).
+     */
+    public List<EventResponseDTO> findEventsByIds(Collection<UUID> eventIds) {
+        if (eventIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT_EVENTS + "WHERE e.event_id = ANY (CAST(? AS uuid[]))");
+            ps.setArray(1, con.createArrayOf("uuid", eventIds.toArray()));
+            return ps;
+        }, EVENT_ROW_MAPPER);
+    }
+
+    /**
+     * Thay đổi có changed_at > since, gộp theo sự kiện (lấy lần mới nhất).
+     */
+    public List<Change> findChangesSince(OffsetDateTime since, int limit) {
+        return jdbcTemplate.query(
+                "SELECT event_id, MAX(changed_at) AS changed_at FROM event_catalog_change " +
+                "WHERE changed_at > ? GROUP BY event_id ORDER BY MAX(changed_at) LIMIT ?",
+                (rs, rowNum) -> new Change(rs.getObject("event_id", UUID.class),
+                        rs.getObject("changed_at", OffsetDateTime.class)),
+                since, limit);
+    }
+
+    /**
+     * @return số dòng outbox đã xóa
+     */
+    public int deleteChangesBefore(OffsetDateTime before) {
+        return jdbcTemplate.update("DELETE FROM event_catalog_change WHERE changed_at < ?", before);
+    }
+
+    /**
+     * Lần thay đổi mới nhất của 1 sự kiện trong outbox.
+     */
+    public record Change(UUID eventId, OffsetDateTime changedAt) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.EventFinalizationJob;
+import com.example.demo.entity.enums.FinalizationJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface EventFinalizationJobRepository extends JpaRepository<EventFinalizationJob, UUID> {
+
+    Optional<EventFinalizationJob> findByEventId(UUID eventId);
+
+    List<EventFinalizationJob> findAllByStatusIn(Collection<FinalizationJobStatus> statuses);
+}
@@ -3,25 +3,37 @@ package com.example.demo.repository;
 import com.example.demo.entity.Event;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.UUID;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface EventRepository extends JpaRepository<Event, UUID>, JpaSpecificationExecutor<Event> {
 
+    // Các query danh sách tải luôn partner/category mà convertToDTO đọc (1 query JOIN thay vì N+1)
+    @EntityGraph(attributePaths = {"partner", "category"})
     Page<Event> findAllByPartnerId(UUID partnerId, Pageable pageable);
 
+    @EntityGraph(attributePaths = {"partner", "category"})
     List<Event> findAllByCategoryId(UUID categoryId);
 
+    @EntityGraph(attributePaths = {"partner", "category"})
     Page<Event> findAllByStartTimeAfter(OffsetDateTime currentTime, Pageable pageable);
 
+    @EntityGraph(attributePaths = {"partner", "category"})
+    List<Event> findAllByIdIn(Collection<UUID> ids);
+
+    @Override
+    @EntityGraph(attributePaths = {"partner", "category"})
+    Page<Event> findAll(Specification<Event> spec, Pageable pageable);
+
     @Query("SELECT e FROM Event e WHERE e.startTime <= :currentTime AND e.endTime >= :currentTime")
     List<Event> findOngoingEvents(OffsetDateTime currentTime);
-
-    Page<Event> findByTitleContainingIgnoreCase(String keyword, Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package com.example.demo.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Tìm kiếm sự kiện: full-text (tsvector có trọng số title > location > description) cho khớp từ/tiền tố,
+ * cộng trigram trên title + location cho lỗi gõ. Cả hai đều bỏ dấu bằng unaccent và đi theo index GIN.
+ *
+ * Cột search_vector / search_text là cột generated (Postgres tự cập nhật khi ghi event), không map vào entity,
+ * được tạo bởi migration V2__event_search_index.sql.
+ */
+@Repository
+public class EventSearchJdbcRepository {
+
+    // ? = tsquery, text đã chuẩn hóa
+    private static final String QUERY_CTE = "WITH q AS (SELECT to_tsquery('simple', ?) AS ts, CAST(? AS text) AS txt) ";
+
+    // <% = word_similarity >= pg_trgm.word_similarity_threshold (mặc định 0.6), dùng được index trigram
+    private static final String MATCH = "(e.search_vector @@ q.ts OR q.txt <% e.search_text)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EventSearchJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Migration đã tạo được index tìm kiếm chưa (không tạo được khi DB thiếu quyền / extension).
+     */
+    public boolean isSchemaReady() {
+        Integer indexes = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_indexes WHERE schemaname = current_schema() AND tablename = 'event' " +
+                "AND indexname IN ('idx_event_search_vector', 'idx_event_search_text_trgm')",
+                Integer.class);
+        return indexes != null && indexes == 2;
+    }
+
+    /**
+     * Id sự kiện khớp, sắp theo độ liên quan (rank full-text + độ giống trigram), rồi mới nhất trước.
+     * @param status null = không lọc (so sánh không phân biệt hoa thường, giống EventSpecifications.filterBy)
+     */
+    public List<UUID> search(String tsQuery, String text, UUID categoryId, String status, int limit, long offset) {
+        List<Object> args = new ArrayList<>(List.of(tsQuery, text));
+        String sql = QUERY_CTE +
+                "SELECT e.event_id FROM event e CROSS JOIN q " +
+                "WHERE " + MATCH + filters(categoryId, status, args) +
+                "ORDER BY ts_rank_cd(e.search_vector, q.ts) + word_similarity(q.txt, e.search_text) DESC, " +
+                "e.created_at DESC, e.event_id " +
+                "LIMIT ? OFFSET ?";
+        args.add(limit);
+        args.add(offset);
+        return jdbcTemplate.queryForList(sql, UUID.class, args.toArray());
+    }
+
+    public long count(String tsQuery, String text, UUID categoryId, String status) {
+        List<Object> args = new ArrayList<>(List.of(tsQuery, text));
+        String sql = QUERY_CTE +
+                "SELECT COUNT(*) FROM event e CROSS JOIN q WHERE " + MATCH + filters(categoryId, status, args);
+        Long count = jdbcTemplate.queryForObject(sql, Long.class, args.toArray());
+        return count != null ? count : 0L;
+    }
+
+    private static String filters(UUID categoryId, String status, List<Object> args) {
+        StringBuilder sql = new StringBuilder(" ");
+        if (categoryId != null) {
+            sql.append("AND e.category_id = ? ");
+            args.add(categoryId);
+        }
+        if (status != null && !status.isBlank()) {
+            sql.append("AND upper(e.status) = ? ");
+            args.add(status.toUpperCase());
+        }
+        return sql.toString();
+    }
+}
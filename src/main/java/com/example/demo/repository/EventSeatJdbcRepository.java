@@ -0,0 +1,56 @@
+package com.example.demo.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Đặt chỗ sự kiện bằng 1 câu UPDATE có điều kiện trên event.registered_count:
+ * không cần COUNT(*) mỗi request và không thể vượt max_attendees dù nhiều request chạy song song
+ * (các UPDATE trên cùng dòng event được Postgres tuần tự hóa, điều kiện được đánh giá lại sau khi chờ khóa).
+ */
+@Repository
+public class EventSeatJdbcRepository {
+
+    /** Giá trị trả về khi sự kiện không giới hạn số chỗ (max_attendees NULL hoặc <= 0). */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EventSeatJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Giữ 1 chỗ cho sự kiện (cùng transaction, sau khi đã insert Checkin của studentId).
+     * Checkin vừa insert của chính transaction này không được tính khi phải đếm lại từ bảng checkin.
+     * @return số chỗ còn lại sau khi giữ (UNLIMITED nếu không giới hạn), hoặc -1 nếu đã hết chỗ
+     */
+    public int reserveSeat(UUID eventId, UUID studentId) {
+        List<Integer> remaining = jdbcTemplate.queryForList(
+                "WITH current AS (" +
+                "  SELECT COALESCE(registered_count, (SELECT COUNT(*) FROM checkin c WHERE c.event_id = ? AND c.student_id <> ?)) AS cnt " +
+                "  FROM event WHERE event_id = ?" +
+                ") " +
+                "UPDATE event e SET registered_count = COALESCE(e.registered_count, (SELECT cnt FROM current)) + 1 " +
+                "WHERE e.event_id = ? AND (e.max_attendees IS NULL OR e.max_attendees <= 0 " +
+                "  OR COALESCE(e.registered_count, (SELECT cnt FROM current)) < e.max_attendees) " +
+                "RETURNING CASE WHEN e.max_attendees IS NULL OR e.max_attendees <= 0 THEN ? " +
+                "  ELSE e.max_attendees - e.registered_count END",
+                Integer.class, eventId, studentId, eventId, eventId, UNLIMITED);
+        return remaining.isEmpty() ? -1 : remaining.get(0);
+    }
+
+    /**
+     * Đếm lại registered_count cho các sự kiện cũ (NULL). Chỉ là tối ưu: reserveSeat tự tính nếu còn NULL.
+     * @return số sự kiện được cập nhật
+     */
+    public int backfillRegisteredCounts() {
+        return jdbcTemplate.update(
+                "UPDATE event e SET registered_count = " +
+                "  (SELECT COUNT(*) FROM checkin c WHERE c.event_id = e.event_id) " +
+                "WHERE e.registered_count IS NULL");
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.function.Consumer;
+
+/**
+ * Các thao tác set-based cho idempotency_record: chuyển bản ghi hết hạn sang bảng archive
+ * và đọc toàn bộ key còn hiệu lực (để dựng bloom filter).
+ * forEachLiveKey phải chạy trong transaction để PostgreSQL dùng cursor theo fetch size.
+ */
+@Repository
+public class IdempotencyJdbcRepository {
+
+    private static final int KEY_FETCH_SIZE = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdempotencyJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Chuyển tối đa batchSize bản ghi hết hạn sang archive trong 1 câu lệnh (DELETE ... RETURNING -> INSERT).
+     * SKIP LOCKED để nhiều node chạy song song không chờ nhau.
+     * @return số bản ghi đã chuyển
+     */
+    public int archiveExpired(int batchSize) {
+        return jdbcTemplate.update(
+                "WITH moved AS (" +
+                "  DELETE FROM idempotency_record WHERE idem_key IN (" +
+                "    SELECT idem_key FROM idempotency_record WHERE expires_at < now() " +
+                "    LIMIT ? FOR UPDATE SKIP LOCKED) " +
+                "  RETURNING idem_key, scope, response_json, created_at, expires_at" +
+                ") " +
+                "INSERT INTO idempotency_record_archive " +
+                "(archive_id, idem_key, scope, response_json, created_at, expires_at, archived_at) " +
+                "SELECT gen_random_uuid(), idem_key, scope, response_json, created_at, expires_at, now() FROM moved",
+                batchSize);
+    }
+
+    // Duyệt toàn bộ key còn hiệu lực bằng cursor (không nạp hết vào bộ nhớ)
+    public void forEachLiveKey(Consumer<String> consumer) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT idem_key FROM idempotency_record WHERE expires_at >= now()");
+            ps.setFetchSize(KEY_FETCH_SIZE);
+            return ps;
+        }, rs -> {
+            consumer.accept(rs.getString(1));
+        });
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.demo.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Thống kê invoice duy trì tăng dần (invoice_stats theo shard, product_redeem_stats theo sản phẩm).
+ *
+ * Thứ tự khóa: caller flush thay đổi của product_invoice TRƯỚC khi gọi record*, còn rebuild() khóa product_invoice
+ * trước rồi mới ghi bảng thống kê -> hai bên luôn khóa cùng thứ tự, không deadlock.
+ */
+@Repository
+public class InvoiceStatsJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public InvoiceStatsJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Advisory lock tới hết transaction: các node khởi động cùng lúc không dựng lại song song.
+     */
+    public void lockRebuild() {
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(hashtext('invoice_stats_rebuild'))");
+    }
+
+    /**
+     * Shard 0 chỉ do rebuild() tạo: chưa có nghĩa là bảng thống kê chưa được dựng từ dữ liệu cũ.
+     */
+    public boolean isInitialized() {
+        Boolean initialized = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM invoice_stats WHERE shard_id = 0)", Boolean.class);
+        return Boolean.TRUE.equals(initialized);
+    }
+
+    /**
+     * Invoice mới tạo (trạng thái PENDING).
+     */
+    public void recordRedeem(UUID productId, BigDecimal totalCost, int shardIndex) {
+        String sql = "UPDATE invoice_stats SET redeem_count = redeem_count + 1, coins_spent = coins_spent + ? " +
+                     "WHERE shard_id = ?";
+        // Shard chưa có (cấu hình shards tăng sau lần rebuild) -> dồn vào shard 0
+        if (jdbcTemplate.update(sql, totalCost, shardIndex) == 0 && shardIndex != 0) {
+            jdbcTemplate.update(sql, totalCost, 0);
+        }
+        jdbcTemplate.update(
+                "INSERT INTO product_redeem_stats " +
+                "(product_id, redeem_count, delivered_count, cancelled_count, coins_spent, updated_at) " +
+                "VALUES (?, 1, 0, 0, ?, now()) " +
+                "ON CONFLICT (product_id) DO UPDATE SET redeem_count = product_redeem_stats.redeem_count + 1, " +
+                "coins_spent = product_redeem_stats.coins_spent + EXCLUDED.coins_spent, updated_at = now()",
+                productId, totalCost);
+    }
+
+    public void recordDelivered(UUID productId) {
+        jdbcTemplate.update(
+                "INSERT INTO product_redeem_stats " +
+                "(product_id, redeem_count, delivered_count, cancelled_count, coins_spent, updated_at) " +
+                "VALUES (?, 0, 1, 0, 0, now()) " +
+                "ON CONFLICT (product_id) DO UPDATE SET " +
+                "delivered_count = product_redeem_stats.delivered_count + 1, updated_at = now()",
+                productId);
+    }
+
+    public void recordCancelled(UUID productId) {
+        jdbcTemplate.update(
+                "INSERT INTO product_redeem_stats " +
+                "(product_id, redeem_count, delivered_count, cancelled_count, coins_spent, updated_at) " +
+                "VALUES (?, 0, 0, 1, 0, now()) " +
+                "ON CONFLICT (product_id) DO UPDATE SET " +
+                "cancelled_count = product_redeem_stats.cancelled_count + 1, updated_at = now()",
+                productId);
+    }
+
+    /**
+     * Dựng lại toàn bộ từ product_invoice (gọi trong transaction). SHARE lock chặn ghi invoice tới khi commit,
+     * nên không lần record* nào bị đếm trùng hay bỏ sót.
+     */
+    public void rebuild(int shardCount) {
+        jdbcTemplate.execute("LOCK TABLE product_invoice IN SHARE MODE");
+        jdbcTemplate.update("DELETE FROM invoice_stats");
+        jdbcTemplate.update(
+                "INSERT INTO invoice_stats (shard_id, redeem_count, coins_spent) " +
+                "SELECT 0, COUNT(*), COALESCE(SUM(total_cost), 0) FROM product_invoice");
+        jdbcTemplate.update(
+                "INSERT INTO invoice_stats (shard_id, redeem_count, coins_spent) " +
+                "SELECT s, 0, 0 FROM generate_series(1, ?) AS s",
+                shardCount - 1);
+        jdbcTemplate.update("DELETE FROM product_redeem_stats");
+        jdbcTemplate.update(
+                "INSERT INTO product_redeem_stats " +
+                "(product_id, redeem_count, delivered_count, cancelled_count, coins_spent, updated_at) " +
+                "SELECT product_id, COUNT(*), COUNT(*) FILTER (WHERE status = 'DELIVERED'), " +
+                "COUNT(*) FILTER (WHERE status = 'CANCELLED'), COALESCE(SUM(total_cost), 0), now() " +
+                "FROM product_invoice GROUP BY product_id");
+    }
+
+    public Totals totals() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(redeem_count), 0) AS redeem_count, COALESCE(SUM(coins_spent), 0) AS coins_spent " +
+                "FROM invoice_stats",
+                (rs, rowNum) -> new Totals(rs.getLong("redeem_count"), rs.getBigDecimal("coins_spent")));
+    }
+
+    /**
+     * K sản phẩm được đổi nhiều nhất (mọi invoice), theo index redeem_count.
+     */
+    public List<ProductCount> findTopByRedeems(int limit) {
+        return jdbcTemplate.query(
+                "SELECT s.product_id, p.title, s.redeem_count AS cnt FROM product_redeem_stats s " +
+                "JOIN product p ON p.product_id = s.product_id " +
+                "WHERE s.redeem_count > 0 ORDER BY s.redeem_count DESC LIMIT ?",
+                (rs, rowNum) -> new ProductCount(rs.getObject("product_id", UUID.class),
+                        rs.getString("title"), rs.getLong("cnt")),
+                limit);
+    }
+
+    /**
+     * K sản phẩm có nhiều invoice đã giao nhất, theo index delivered_count.
+     */
+    public List<ProductCount> findTopByDeliveries(int limit) {
+        return jdbcTemplate.query(
+                "SELECT s.product_id, p.title, s.delivered_count AS cnt FROM product_redeem_stats s " +
+                "JOIN product p ON p.product_id = s.product_id " +
+                "WHERE s.delivered_count > 0 ORDER BY s.delivered_count DESC LIMIT ?",
+                (rs, rowNum) -> new ProductCount(rs.getObject("product_id", UUID.class),
+                        rs.getString("title"), rs.getLong("cnt")),
+                limit);
+    }
+
+    public record Totals(long redeemCount, BigDecimal coinsSpent) {
+    }
+
+    public record ProductCount(UUID productId, String title, long count) {
+    }
+}
@@ -3,6 +3,7 @@ package com.example.demo.repository;
 import com.example.demo.entity.ProductInvoice;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -12,9 +13,12 @@ import java.util.List;
 
 @Repository
 public interface ProductInvoiceRepository extends JpaRepository<ProductInvoice, UUID> {
-    
+
+    // student/product được convert sang DTO cho mọi dòng -> tải cùng query
+    @EntityGraph(attributePaths = {"student", "product"})
     List<ProductInvoice> findByStudentIdOrderByCreatedAtDesc(UUID studentId);
 
+    @EntityGraph(attributePaths = {"student", "product"})
     @Query("SELECT pi FROM ProductInvoice pi WHERE pi.student.id = :studentId " +
            "AND (:status IS NULL OR pi.status = :status)")
     Page<ProductInvoice> findInvoicesByStudent(@Param("studentId") UUID studentId, 
@@ -25,6 +29,6 @@ public interface ProductInvoiceRepository extends JpaRepository<ProductInvoice,
     List<Object[]> getInvoiceStats();
 
     @Query("SELECT p.title, COUNT(pi) FROM ProductInvoice pi JOIN pi.product p " +
-           "GROUP BY p.title ORDER BY COUNT(pi) DESC")
-    List<Object[]> getTopProducts();
+           "GROUP BY p.id, p.title ORDER BY COUNT(pi) DESC")
+    List<Object[]> getTopProducts(Pageable pageable);
 }
\ No newline at end of file
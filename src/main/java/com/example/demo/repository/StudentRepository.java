@@ -1,10 +1,14 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.Student;
+import org.springframework.data.domain.Page;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.data.domain.Pageable;
+import java.util.List;
 import java.util.UUID;
 import java.util.Optional;
 
@@ -15,6 +19,15 @@ public interface StudentRepository extends JpaRepository<Student, UUID> {
     boolean existsByUniversityId(UUID universityId);
     Optional<Student> findByCognitoSub(String cognitoSub);
 
+    // Danh sách admin: toResponseDTO đọc university và wallet của từng sinh viên
+    @Override
+    @EntityGraph(attributePaths = {"university", "wallet"})
+    Page<Student> findAll(Pageable pageable);
+
     @Query("SELECT s FROM Student s LEFT JOIN FETCH s.wallet WHERE s.cognitoSub = :cognitoSub")
     Optional<Student> findByCognitoSubWithWallet(@Param("cognitoSub") String cognitoSub);
+
+    // Keyset theo student_id, chỉ lấy id (không nạp entity): người nhận broadcast toàn hệ thống
+    @Query("SELECT s.id FROM Student s WHERE s.id > :afterStudentId ORDER BY s.id")
+    List<UUID> findIdsAfter(@Param("afterStudentId") UUID afterStudentId, Pageable pageable);
 }
\ No newline at end of file
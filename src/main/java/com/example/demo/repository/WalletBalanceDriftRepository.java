@@ -0,0 +1,14 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.WalletBalanceDrift;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.util.UUID;
+
+@Repository
+public interface WalletBalanceDriftRepository extends JpaRepository<WalletBalanceDrift, UUID> {
+
+    Page<WalletBalanceDrift> findByRunId(UUID runId, Pageable pageable);
+}
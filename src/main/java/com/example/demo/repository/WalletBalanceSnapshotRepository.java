@@ -0,0 +1,15 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.WalletBalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface WalletBalanceSnapshotRepository extends JpaRepository<WalletBalanceSnapshot, UUID> {
+
+    // Snapshot gần nhất trước (hoặc đúng) thời điểm asOf
+    Optional<WalletBalanceSnapshot> findFirstByWalletIdAndAsOfLessThanEqualOrderByAsOfDesc(UUID walletId, OffsetDateTime asOf);
+}
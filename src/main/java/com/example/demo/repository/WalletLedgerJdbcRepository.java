@@ -0,0 +1,260 @@
+package com.example.demo.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Ghi sổ ví theo lô (set-based) bằng JDBC, dùng cho các luồng chi trả số lượng lớn
+ * (ví dụ: finalize sự kiện có hàng nghìn người tham dự).
+ * Chạy chung transaction với JPA (JpaTransactionManager expose connection cho JdbcTemplate).
+ */
+@Repository
+public class WalletLedgerJdbcRepository {
+
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO wallet_transaction (txn_id, wallet_id, counterparty_id, txn_type, amount, " +
+            "reference_type, reference_id, idempotency_key, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    public WalletLedgerJdbcRepository(JdbcTemplate jdbcTemplate,
+                                      @Value("${wallet.ledger.jdbc-batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Trừ tiền có điều kiện (chỉ khi đủ số dư) trong 1 câu UPDATE.
+     * @return true nếu đã trừ, false nếu số dư không đủ
+     */
+    public boolean debitIfSufficient(UUID walletId, BigDecimal amount) {
+        int updated = jdbcTemplate.update(
+                "UPDATE wallet SET balance = balance - ?, version = version + 1 " +
+                "WHERE wallet_id = ? AND balance >= ?",
+                amount, walletId, amount);
+        return updated == 1;
+    }
+
+    /**
+     * Cộng cùng một số tiền vào nhiều ví bằng 1 câu UPDATE ... FROM unnest(uuid[]).
+     * @return số ví đã được cộng
+     */
+    public int creditAll(Collection<UUID> walletIds, BigDecimal amount) {
+        if (walletIds.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "UPDATE wallet w SET balance = w.balance + ?, version = w.version + 1 " +
+                    "FROM unnest(CAST(? AS uuid[])) AS p(wallet_id) " +
+                    "WHERE w.wallet_id = p.wallet_id");
+            ps.setBigDecimal(1, amount);
+            ps.setArray(2, con.createArrayOf("uuid", walletIds.toArray()));
+            return ps;
+        });
+    }
+
+    /**
+     * Cộng/trừ số tiền khác nhau cho nhiều ví trong 1 câu UPDATE ... FROM unnest(uuid[], numeric[]).
+     * Ví không phải ADMIN chỉ được cập nhật nếu số dư sau cùng không âm.
+     * @return số ví đã được cập nhật (nhỏ hơn số ví truyền vào nghĩa là có ví không đủ tiền)
+     */
+    public int applyNetDeltas(Map<UUID, BigDecimal> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "UPDATE wallet w SET balance = w.balance + d.delta, version = w.version + 1 " +
+                    "FROM unnest(CAST(? AS uuid[]), CAST(? AS numeric[])) AS d(wallet_id, delta) " +
+                    "WHERE w.wallet_id = d.wallet_id AND (w.balance + d.delta >= 0 OR w.owner_type = 'ADMIN')");
+            ps.setArray(1, con.createArrayOf("uuid", deltas.keySet().toArray()));
+            ps.setArray(2, con.createArrayOf("numeric", deltas.values().toArray()));
+            return ps;
+        });
+    }
+
+    /**
+     * Ghi các dòng wallet_transaction bằng JDBC batch insert.
+     */
+    public void insertTransactions(List<LedgerRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.from(OffsetDateTime.now().toInstant());
+        jdbcTemplate.batchUpdate(INSERT_TRANSACTION_SQL, rows, batchSize, (ps, row) -> {
+            ps.setObject(1, UUID.randomUUID());
+            ps.setObject(2, row.walletId());
+            setNullableUuid(ps, 3, row.counterpartyId());
+            ps.setString(4, row.txnType());
+            ps.setBigDecimal(5, row.amount());
+            ps.setString(6, row.referenceType());
+            setNullableUuid(ps, 7, row.referenceId());
+            ps.setString(8, row.idempotencyKey());
+            ps.setTimestamp(9, now);
+        });
+    }
+
+    /**
+     * Chi trả cùng một số tiền từ ví Event cho danh sách ví Student:
+     * trừ ví Event có điều kiện, cộng toàn bộ ví Student, ghi cặp EVENT_FINAL_PAYOUT / EVENT_PAYOUT.
+     * Idempotency key theo (event, ví) -> trả trùng cho cùng 1 ví sẽ vi phạm unique và rollback.
+     * @return false nếu ví Event không đủ tiền (không có gì được ghi)
+     */
+    public boolean payEventAttendees(UUID eventId, UUID eventWalletId, List<UUID> studentWalletIds, BigDecimal amountEach) {
+        // Gộp tiền cọc đang nằm ở các shard (nếu ví Event được shard) trước khi trừ có điều kiện
+        consolidateShards(eventWalletId);
+
+        BigDecimal required = amountEach.multiply(BigDecimal.valueOf(studentWalletIds.size()));
+        if (!debitIfSufficient(eventWalletId, required)) {
+            return false;
+        }
+        creditAll(studentWalletIds, amountEach);
+
+        List<LedgerRow> rows = new ArrayList<>(studentWalletIds.size() * 2);
+        BigDecimal negatedAmount = amountEach.negate();
+        for (UUID studentWalletId : studentWalletIds) {
+            rows.add(new LedgerRow(studentWalletId, eventWalletId, "EVENT_FINAL_PAYOUT", amountEach,
+                    "EVENT", eventId, payoutKey("EVENT_FINAL_PAYOUT", eventId, studentWalletId)));
+            rows.add(new LedgerRow(eventWalletId, studentWalletId, "EVENT_PAYOUT", negatedAmount,
+                    "EVENT", eventId, payoutKey("EVENT_PAYOUT", eventId, studentWalletId)));
+        }
+        insertTransactions(rows);
+        return true;
+    }
+
+    /**
+     * Các ví trong danh sách đã nhận tiền finalize của sự kiện (tra theo idempotency key, dùng unique index).
+     */
+    public Set<UUID> findPaidAttendeeWalletIds(UUID eventId, Collection<UUID> studentWalletIds) {
+        if (studentWalletIds.isEmpty()) {
+            return Set.of();
+        }
+        String[] keys = studentWalletIds.stream()
+                .map(walletId -> payoutKey("EVENT_FINAL_PAYOUT", eventId, walletId))
+                .toArray(String[]::new);
+        List<UUID> paid = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT wallet_id FROM wallet_transaction WHERE idempotency_key = ANY(?)");
+            ps.setArray(1, con.createArrayOf("varchar", keys));
+            return ps;
+        }, (rs, rowNum) -> rs.getObject("wallet_id", UUID.class));
+        return new HashSet<>(paid);
+    }
+
+    private static String payoutKey(String txnType, UUID eventId, UUID studentWalletId) {
+        return txnType + ":" + eventId + ":" + studentWalletId;
+    }
+
+    // ==========================================================
+    // SHARD (sub-account) cho ví nóng
+    // ==========================================================
+
+    /**
+     * Cộng/trừ vào 1 shard bằng upsert nguyên tử: chỉ khóa dòng shard, không khóa dòng wallet chính.
+     */
+    public void applyShardDelta(UUID walletId, int shardIndex, BigDecimal delta) {
+        jdbcTemplate.update(
+                "INSERT INTO wallet_shard (shard_id, wallet_id, shard_index, balance) VALUES (?, ?, ?, ?) " +
+                "ON CONFLICT (wallet_id, shard_index) DO UPDATE SET balance = wallet_shard.balance + EXCLUDED.balance",
+                UUID.randomUUID(), walletId, shardIndex, delta);
+    }
+
+    /**
+     * Gộp toàn bộ số dư các shard vào wallet.balance trong 1 câu lệnh (drain shard + cộng ví chính).
+     * @return số ví chính được cập nhật (0 nếu không có gì để gộp)
+     */
+    public int consolidateShards(UUID walletId) {
+        return jdbcTemplate.update(
+                // RETURNING trả về giá trị SAU update -> lấy số dư cũ qua subquery FOR UPDATE
+                "WITH drained AS (" +
+                "  UPDATE wallet_shard s SET balance = 0 " +
+                "  FROM (SELECT shard_id, balance AS old_balance FROM wallet_shard " +
+                "        WHERE wallet_id = ? AND balance <> 0 FOR UPDATE) o " +
+                "  WHERE s.shard_id = o.shard_id RETURNING o.old_balance" +
+                ") " +
+                "UPDATE wallet SET balance = balance + (SELECT COALESCE(SUM(old_balance), 0) FROM drained), " +
+                "version = version + 1 " +
+                "WHERE wallet_id = ? AND EXISTS (SELECT 1 FROM drained)",
+                walletId, walletId);
+    }
+
+    public BigDecimal sumShards(UUID walletId) {
+        BigDecimal sum = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(balance), 0) FROM wallet_shard WHERE wallet_id = ?",
+                BigDecimal.class, walletId);
+        return sum != null ? sum : BigDecimal.ZERO;
+    }
+
+    /**
+     * Số dư hiện tại trong DB (ví chính + shard), không qua persistence context: sau các UPDATE bằng SQL
+     * (consolidateShards, debitIfSufficient) entity Wallet đang nạp vẫn giữ số dư cũ.
+     */
+    public BigDecimal findLogicalBalance(UUID walletId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT w.balance + COALESCE((SELECT SUM(s.balance) FROM wallet_shard s WHERE s.wallet_id = w.wallet_id), 0) " +
+                "FROM wallet w WHERE w.wallet_id = ?",
+                BigDecimal.class, walletId);
+    }
+
+    // Các ví đang có tiền nằm trong shard (cần gộp)
+    public List<UUID> findWalletsWithPendingShards(int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT wallet_id FROM wallet_shard WHERE balance <> 0 LIMIT ?",
+                UUID.class, limit);
+    }
+
+    // ==========================================================
+    // SNAPSHOT SỐ DƯ
+    // ==========================================================
+
+    /**
+     * Tạo snapshot cho mọi ví có bút toán mới từ snapshot gần nhất tới cutoff (set-based, 1 câu lệnh).
+     * Bút toán cũ có created_at = NULL thuộc về trước mọi mốc: chỉ cộng vào snapshot đầu tiên của ví.
+     * @return số snapshot được tạo
+     */
+    public int insertBalanceSnapshots(OffsetDateTime cutoff) {
+        Timestamp cutoffTs = Timestamp.from(cutoff.toInstant());
+        return jdbcTemplate.update(
+                "INSERT INTO wallet_balance_snapshot (snapshot_id, wallet_id, balance, as_of, created_at) " +
+                "SELECT gen_random_uuid(), t.wallet_id, COALESCE(l.balance, 0) + SUM(t.amount), ?, now() " +
+                "FROM wallet_transaction t " +
+                "LEFT JOIN (SELECT DISTINCT ON (wallet_id) wallet_id, balance, as_of " +
+                "           FROM wallet_balance_snapshot ORDER BY wallet_id, as_of DESC) l " +
+                "       ON l.wallet_id = t.wallet_id " +
+                "WHERE (t.created_at IS NULL AND l.as_of IS NULL) " +
+                "   OR (t.created_at <= ? AND (l.as_of IS NULL OR t.created_at > l.as_of)) " +
+                "GROUP BY t.wallet_id, l.balance",
+                cutoffTs, cutoffTs);
+    }
+
+    private static void setNullableUuid(PreparedStatement ps, int index, UUID value) throws java.sql.SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.OTHER);
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+
+    /**
+     * Một dòng sổ cái (tương ứng 1 bản ghi wallet_transaction).
+     */
+    public record LedgerRow(UUID walletId, UUID counterpartyId, String txnType, BigDecimal amount,
+                            String referenceType, UUID referenceId, String idempotencyKey) {
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.demo.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Quét sổ cái theo dải wallet_id bằng server-side cursor (fetch size) để đối soát số dư.
+ * Mỗi dòng trả về là 1 bút toán (đã sắp theo wallet_id) -> cộng dồn theo ví ngay khi đọc,
+ * bộ nhớ chỉ giữ 1 ví tại một thời điểm bất kể sổ cái lớn đến đâu.
+ * PHẢI được gọi trong transaction (PostgreSQL chỉ dùng cursor khi autocommit = false).
+ */
+@Repository
+public class WalletReconciliationJdbcRepository {
+
+    private static final String SCAN_SQL =
+            "SELECT w.wallet_id, w.balance + COALESCE(s.shard_balance, 0) AS materialized, t.amount " +
+            "FROM wallet w " +
+            "LEFT JOIN (SELECT wallet_id, SUM(balance) AS shard_balance FROM wallet_shard GROUP BY wallet_id) s " +
+            "       ON s.wallet_id = w.wallet_id " +
+            "LEFT JOIN wallet_transaction t ON t.wallet_id = w.wallet_id " +
+            "WHERE w.wallet_id >= ? ";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public WalletReconciliationJdbcRepository(DataSource dataSource,
+                                              @Value("${wallet.reconciliation.fetch-size:5000}") int fetchSize) {
+        // JdbcTemplate riêng để không ảnh hưởng fetch size của các truy vấn khác
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    /**
+     * Quét các ví có wallet_id trong [fromInclusive, toExclusive) (toExclusive = null: tới hết).
+     * Phát ra tổng của từng ví qua consumer theo thứ tự wallet_id.
+     */
+    public void scanPartition(UUID fromInclusive, UUID toExclusive, Consumer<WalletLedgerTotal> consumer) {
+        String sql = SCAN_SQL + (toExclusive != null ? "AND w.wallet_id < ? " : "") + "ORDER BY w.wallet_id";
+        WalletTotalAccumulator accumulator = new WalletTotalAccumulator(consumer);
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setObject(1, fromInclusive);
+            if (toExclusive != null) {
+                ps.setObject(2, toExclusive);
+            }
+            return ps;
+        }, accumulator);
+        accumulator.finish();
+    }
+
+    /**
+     * Tổng hợp của 1 ví: số dư materialized, tổng sổ cái và số bút toán.
+     */
+    public record WalletLedgerTotal(UUID walletId, BigDecimal materializedBalance,
+                                    BigDecimal ledgerBalance, long entryCount) {
+
+        public boolean hasDrift() {
+            return materializedBalance.compareTo(ledgerBalance) != 0;
+        }
+    }
+
+    // Gom các dòng liên tiếp cùng wallet_id (kết quả đã ORDER BY wallet_id)
+    private static final class WalletTotalAccumulator implements RowCallbackHandler {
+
+        private final Consumer<WalletLedgerTotal> consumer;
+        private UUID currentWalletId;
+        private BigDecimal materialized;
+        private BigDecimal ledgerSum;
+        private long entryCount;
+
+        private WalletTotalAccumulator(Consumer<WalletLedgerTotal> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            UUID walletId = rs.getObject(1, UUID.class);
+            if (!walletId.equals(currentWalletId)) {
+                finish();
+                currentWalletId = walletId;
+                materialized = rs.getBigDecimal(2);
+                ledgerSum = BigDecimal.ZERO;
+                entryCount = 0;
+            }
+            BigDecimal amount = rs.getBigDecimal(3);
+            if (amount != null) { // LEFT JOIN: ví chưa có bút toán nào
+                ledgerSum = ledgerSum.add(amount);
+                entryCount++;
+            }
+        }
+
+        private void finish() {
+            if (currentWalletId != null) {
+                consumer.accept(new WalletLedgerTotal(currentWalletId, materialized, ledgerSum, entryCount));
+                currentWalletId = null;
+            }
+        }
+    }
+}
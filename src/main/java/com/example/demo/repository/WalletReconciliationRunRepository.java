@@ -0,0 +1,30 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.WalletReconciliationRun;
+import com.example.demo.entity.enums.ReconciliationRunStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface WalletReconciliationRunRepository extends JpaRepository<WalletReconciliationRun, UUID> {
+
+    boolean existsByStatus(ReconciliationRunStatus status);
+
+    List<WalletReconciliationRun> findAllByStatus(ReconciliationRunStatus status);
+
+    Page<WalletReconciliationRun> findAllByOrderByStartedAtDesc(Pageable pageable);
+
+    // Cộng dồn tiến độ khi 1 partition quét xong (nhiều worker cùng cập nhật -> không đọc-sửa-ghi)
+    @Modifying
+    @Query("UPDATE WalletReconciliationRun r SET r.processedPartitions = r.processedPartitions + 1, " +
+           "r.walletsChecked = r.walletsChecked + :wallets, r.driftCount = r.driftCount + :drifts " +
+           "WHERE r.id = :runId")
+    int incrementProgress(@Param("runId") UUID runId, @Param("wallets") long wallets, @Param("drifts") long drifts);
+}
@@ -1,8 +1,16 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.Wallet;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -10,4 +18,22 @@ import java.util.UUID;
 public interface WalletRepository extends JpaRepository<Wallet, UUID> {
 
     Optional<Wallet> findByOwnerTypeAndOwnerId(String ownerType, UUID ownerId);
-}
\ No newline at end of file
+
+    // SELECT ... FOR UPDATE (dùng cho chiến lược PESSIMISTIC của WalletConcurrencyService)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "5000"))
+    @Query("SELECT w FROM Wallet w WHERE w.id = :id")
+    Optional<Wallet> findByIdForUpdate(@Param("id") UUID id);
+
+    // Khóa nhiều ví trong 1 câu lệnh; ORDER BY -> Postgres khóa theo thứ tự wallet_id (không deadlock giữa các node)
+    @Query(value = "SELECT wallet_id FROM wallet WHERE wallet_id IN (:ids) ORDER BY wallet_id FOR UPDATE",
+            nativeQuery = true)
+    List<UUID> lockAllByIdInOrder(@Param("ids") Collection<UUID> ids);
+
+    // Chỉ lấy ID (để xác định khóa trước khi mở transaction)
+    @Query("SELECT w.id FROM Wallet w WHERE w.ownerType = :ownerType AND w.ownerId = :ownerId")
+    Optional<UUID> findIdByOwnerTypeAndOwnerId(@Param("ownerType") String ownerType, @Param("ownerId") UUID ownerId);
+
+    @Query("SELECT s.wallet.id FROM Student s WHERE s.cognitoSub = :cognitoSub")
+    Optional<UUID> findStudentWalletIdByCognitoSub(@Param("cognitoSub") String cognitoSub);
+}
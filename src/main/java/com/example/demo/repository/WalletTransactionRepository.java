@@ -4,7 +4,12 @@ import com.example.demo.entity.WalletTransaction;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -28,4 +33,62 @@ public interface WalletTransactionRepository extends JpaRepository<WalletTransac
      * Finds all transactions for admin monitoring, ordered by creation date descending.
      */
     Page<WalletTransaction> findAllByOrderByCreatedAtDesc(Pageable pageable);
+
+    // ===== Phân trang keyset theo (created_at, txn_id) DESC - dùng index, không OFFSET/COUNT =====
+    // Bút toán cũ có created_at = NULL (ghi trước khi có @CreationTimestamp) là phần cũ nhất của lịch sử:
+    // đọc sau cùng, theo txn_id DESC (con trỏ có createdAt = null)
+
+    @Query(value = "SELECT * FROM wallet_transaction WHERE wallet_id = :walletId AND created_at IS NOT NULL " +
+                   "ORDER BY created_at DESC, txn_id DESC LIMIT :limit", nativeQuery = true)
+    List<WalletTransaction> findFirstPageByWalletId(@Param("walletId") UUID walletId, @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM wallet_transaction WHERE wallet_id = :walletId " +
+                   "AND (created_at, txn_id) < (:createdAt, :id) " +
+                   "ORDER BY created_at DESC, txn_id DESC LIMIT :limit", nativeQuery = true)
+    List<WalletTransaction> findPageByWalletIdBefore(@Param("walletId") UUID walletId,
+                                                     @Param("createdAt") OffsetDateTime createdAt,
+                                                     @Param("id") UUID id,
+                                                     @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM wallet_transaction WHERE wallet_id = :walletId AND created_at IS NULL " +
+                   "ORDER BY txn_id DESC LIMIT :limit", nativeQuery = true)
+    List<WalletTransaction> findFirstUndatedPageByWalletId(@Param("walletId") UUID walletId, @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM wallet_transaction WHERE wallet_id = :walletId AND created_at IS NULL " +
+                   "AND txn_id < :id ORDER BY txn_id DESC LIMIT :limit", nativeQuery = true)
+    List<WalletTransaction> findUndatedPageByWalletIdBefore(@Param("walletId") UUID walletId,
+                                                            @Param("id") UUID id,
+                                                            @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM wallet_transaction WHERE created_at IS NOT NULL " +
+                   "ORDER BY created_at DESC, txn_id DESC LIMIT :limit", nativeQuery = true)
+    List<WalletTransaction> findFirstPage(@Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM wallet_transaction WHERE (created_at, txn_id) < (:createdAt, :id) " +
+                   "ORDER BY created_at DESC, txn_id DESC LIMIT :limit", nativeQuery = true)
+    List<WalletTransaction> findPageBefore(@Param("createdAt") OffsetDateTime createdAt,
+                                           @Param("id") UUID id,
+                                           @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM wallet_transaction WHERE created_at IS NULL " +
+                   "ORDER BY txn_id DESC LIMIT :limit", nativeQuery = true)
+    List<WalletTransaction> findFirstUndatedPage(@Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM wallet_transaction WHERE created_at IS NULL AND txn_id < :id " +
+                   "ORDER BY txn_id DESC LIMIT :limit", nativeQuery = true)
+    List<WalletTransaction> findUndatedPageBefore(@Param("id") UUID id, @Param("limit") int limit);
+
+    /**
+     * Tổng bút toán của ví trong khoảng (after, upTo] - phần "tail" sau snapshot.
+     */
+    @Query("SELECT COALESCE(SUM(t.amount), 0) FROM WalletTransaction t " +
+           "WHERE t.wallet.id = :walletId AND t.createdAt > :after AND t.createdAt <= :upTo")
+    BigDecimal sumAmountBetween(@Param("walletId") UUID walletId,
+                                @Param("after") OffsetDateTime after,
+                                @Param("upTo") OffsetDateTime upTo);
+
+    // Bút toán không có created_at đã tồn tại trước mọi mốc -> luôn được tính
+    @Query("SELECT COALESCE(SUM(t.amount), 0) FROM WalletTransaction t " +
+           "WHERE t.wallet.id = :walletId AND (t.createdAt IS NULL OR t.createdAt <= :upTo)")
+    BigDecimal sumAmountUpTo(@Param("walletId") UUID walletId, @Param("upTo") OffsetDateTime upTo);
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.example.demo.service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Xử lý phụ cho người nhận của một broadcast (bộ đếm chưa đọc, push realtime...).
+ * BroadcastDispatchWorker gọi theo chunk student id, trong CÙNG transaction với checkpoint của job:
+ * ghi DB ở đây được thực hiện đúng một lần; việc không thuộc DB nên đăng ký chạy sau commit.
+ */
+public interface BroadcastRecipientHandler {
+
+    /**
+     * @param eventId null nếu là broadcast toàn hệ thống
+     * @param studentIds tăng dần, tối đa broadcast.dispatch.chunk-size phần tử
+     */
+    void onRecipients(UUID broadcastId, UUID eventId, List<UUID> studentIds);
+}
@@ -9,14 +9,28 @@ import java.util.Map;
 import java.util.UUID;
 
 public interface BroadcastService {
+    /**
+     * Lưu 1 broadcast cho người đăng ký event; không tạo dòng cho từng người nhận (inbox tính lúc đọc).
+     */
     EventBroadcastResponseDTO sendBroadcast(UUID partnerId, BroadcastRequestDTO requestDTO);
+
+    /**
+     * Broadcast toàn hệ thống (không gắn event), hiện trong inbox của mọi sinh viên.
+     */
     EventBroadcastResponseDTO sendSystemBroadcast(BroadcastRequestDTO requestDTO);
+
     Page<StudentBroadcastResponseDTO> getMyBroadcasts(AuthPrincipal principal, String status, Pageable pageable);
 
     /**
      * Đánh dấu một tin nhắn là đã đọc (READ)
+     * @param broadcastId ID broadcast (deliveryId cũ vẫn được chấp nhận)
+     */
+    StudentBroadcastResponseDTO markBroadcastAsRead(AuthPrincipal principal, UUID broadcastId);
+
+    /**
+     * Đánh dấu toàn bộ inbox là đã đọc (chỉ nâng read watermark)
      */
-    StudentBroadcastResponseDTO markBroadcastAsRead(AuthPrincipal principal, UUID deliveryId);
+    void markAllBroadcastsAsRead(AuthPrincipal principal);
 
     /**
      * Lấy số lượng tin nhắn chưa đọc
@@ -3,6 +3,7 @@ package com.example.demo.service;
 import com.example.demo.config.AuthPrincipal;
 import com.example.demo.dto.request.EventCreateDTO;
 import com.example.demo.dto.request.EventUpdateDTO;
+import com.example.demo.dto.response.EventFinalizationJobResponseDTO;
 import com.example.demo.dto.response.EventResponseDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -20,6 +21,12 @@ public interface EventService {
 
     Page<EventResponseDTO> getAllEvents(Specification<Event> spec, Pageable pageable);
 
+    /**
+     * Danh sách công khai theo bộ lọc của EventSpecifications.filterBy: đọc từ catalog trong bộ nhớ,
+     * quay về getAllEvents khi catalog chưa sẵn sàng hoặc không sort được theo trường yêu cầu.
+     */
+    Page<EventResponseDTO> listEvents(UUID categoryId, String status, Pageable pageable);
+
     EventResponseDTO updateEvent(UUID eventId, EventUpdateDTO requestDTO, AuthPrincipal principal);
 
     void deleteEvent(UUID eventId, AuthPrincipal principal);
@@ -32,6 +39,12 @@ public interface EventService {
     Page<EventResponseDTO> getUpcomingEvents(Pageable pageable);
 
     Page<EventResponseDTO> searchEventsByTitle(String keyword, Pageable pageable);
+
+    /**
+     * Tìm theo title/description/location (bỏ dấu, khớp tiền tố, chịu lỗi gõ), kết hợp bộ lọc của
+     * EventSpecifications.filterBy. Sắp theo độ liên quan.
+     */
+    Page<EventResponseDTO> searchEvents(String query, UUID categoryId, String status, Pageable pageable);
     
     Page<EventResponseDTO> getEventHistoryByStudent(UUID studentId, Pageable pageable);
 
@@ -49,4 +62,13 @@ public interface EventService {
     // Admin approve event
     EventResponseDTO approveEvent(UUID eventId);
     EventResponseDTO finalizeEvent(UUID eventId, AuthPrincipal principal);
+
+    /**
+     * Tạo (hoặc khởi chạy lại) job finalize chạy nền, trả về ngay sau khi job được lưu.
+     * Job chi trả theo từng chunk và có checkpoint, nên resume được sau crash mà không trả trùng.
+     */
+    EventFinalizationJobResponseDTO startFinalizationJob(UUID eventId, AuthPrincipal principal);
+
+    // Tiến độ job finalize (processed / total / failed)
+    EventFinalizationJobResponseDTO getFinalizationJob(UUID eventId, AuthPrincipal principal);
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.example.demo.service;
+
+import org.springframework.web.multipart.MultipartFile;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Lưu file (ảnh avatar, ảnh sản phẩm...) ra storage bên ngoài DB.
+ * Backend chọn bằng storage.backend: cloudinary (mặc định) hoặc local (filesystem, dùng cho dev/test offline).
+ *
+ * Nội dung được stream thẳng từ request tới backend: không đọc cả file vào heap, không ghi file tạm
+ * theo tên do client gửi. Không gọi trong transaction JPA (upload có thể mất vài giây).
+ */
+public interface FileStorageService {
+
+    /**
+     * Upload ảnh và trả về URL công khai.
+     * @param folder thư mục logic (ví dụ "avatars")
+     * @throws IOException nếu backend lỗi
+     */
+    String uploadImage(MultipartFile file, String folder) throws IOException;
+
+    /**
+     * Lưu nội dung đã sinh trên server (ví dụ biến thể ảnh) với tên cho trước, cùng thư mục với ảnh gốc.
+     * @param name tên không có phần mở rộng (phần mở rộng suy ra từ contentType)
+     * @return URL công khai
+     */
+    String uploadBytes(byte[] content, String contentType, String folder, String name) throws IOException;
+
+    /**
+     * URL có do backend này lưu không (ảnh ngoài, ví dụ link do admin nhập tay, thì không).
+     */
+    boolean isManaged(String url);
+
+    /**
+     * Mở stream đọc file đã lưu. Chỉ đọc URL thuộc backend (isManaged), không fetch URL tùy ý.
+     * @throws IOException nếu URL không thuộc backend hoặc đọc lỗi
+     */
+    InputStream open(String url) throws IOException;
+
+    /**
+     * Xóa file theo URL đã trả về từ uploadImage (best-effort, dùng để dọn file mồ côi khi transaction lỗi).
+     */
+    void delete(String url);
+}
@@ -0,0 +1,24 @@
+package com.example.demo.service;
+
+import java.util.function.Supplier;
+
+/**
+ * Idempotency cho các API ghi (opt-in qua header Idempotency-Key).
+ * Lần đầu: chạy action và lưu response cùng transaction. Lặp lại cùng key (còn hạn): trả response đã lưu,
+ * không chạy lại action. Key mới được trả lời nhanh bằng bloom filter (không cần tra DB).
+ */
+public interface IdempotencyService {
+
+    String HEADER = "Idempotency-Key";
+
+    /**
+     * @param scope loại thao tác (ví dụ: WALLET_TRANSFER) - cùng key ở 2 scope khác nhau là độc lập
+     * @param key   key do client gửi; null/rỗng = không bật idempotency, chạy action bình thường
+     */
+    <T> T execute(String scope, String key, Class<T> responseType, Supplier<T> action);
+
+    // Gắn key của client với chủ thể gọi API để 2 user trùng key không nhận response của nhau
+    static String ownedKey(Object owner, String key) {
+        return key == null || key.isBlank() ? null : owner + ":" + key;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Product;
+import com.example.demo.entity.Student;
+import com.example.demo.entity.enums.ImageVariant;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Ảnh gốc + các biến thể (thumbnail, medium) cho avatar sinh viên và ảnh sản phẩm.
+ *
+ * Biến thể được sinh lúc upload và lưu cạnh ảnh gốc trong FileStorageService; client nhận URL
+ * /api/v1/media/... có kèm phiên bản (?v=) và được phục vụ qua disk cache local (MediaController).
+ */
+public interface ImageVariantService {
+
+    /**
+     * Upload ảnh gốc rồi sinh + upload các biến thể. Không gọi trong transaction JPA.
+     * Lỗi khi sinh biến thể không làm hỏng upload: biến thể sẽ được tạo lúc có request đầu tiên.
+     */
+    StoredImage upload(MultipartFile file, String folder) throws IOException;
+
+    /**
+     * Xóa ảnh gốc và các biến thể (best-effort).
+     */
+    void delete(StoredImage image);
+
+    /**
+     * URL trả cho client. variant = null -> ảnh gốc. Ảnh ngoài storage (link nhập tay) luôn trả nguyên URL gốc.
+     */
+    String productImageUrl(Product product, ImageVariant variant);
+
+    String studentAvatarUrl(Student student, ImageVariant variant);
+
+    /**
+     * Nội dung biến thể, đọc từ disk cache (load từ storage hoặc resize từ ảnh gốc nếu chưa có).
+     * @param version phiên bản client gửi lên (?v=), có thể null; khớp thì cache hit không cần đọc DB
+     */
+    MediaContent loadProductImage(UUID productId, ImageVariant variant, String version);
+
+    MediaContent loadStudentAvatar(UUID studentId, ImageVariant variant, String version);
+
+    record StoredImage(String originalUrl, String mediumUrl, String thumbnailUrl) {
+    }
+
+    record MediaContent(byte[] content, String contentType) {
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.response.WalletBalanceResponseDTO;
+import com.example.demo.entity.Wallet;
+import com.example.demo.entity.WalletTransaction;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * API ghi sổ cái tập trung: mọi thay đổi số dư ví phải đi qua đây.
+ * Sổ cái (wallet_transaction) là append-only; wallet.balance là số dư "materialized" được cập nhật
+ * cùng transaction với bút toán. Caller chịu trách nhiệm khóa ví (WalletConcurrencyService).
+ */
+public interface LedgerService {
+
+    /**
+     * Chuyển tiền giữa 2 ví: ghi cặp bút toán cân bằng (debit ở ví nguồn, credit ở ví đích).
+     * Idempotency key của dòng credit = key + ":CR".
+     */
+    Posting transfer(Wallet from, Wallet to, BigDecimal amount,
+                     String debitTxnType, String creditTxnType,
+                     String referenceType, UUID referenceId, String idempotencyKey);
+
+    /**
+     * Bút toán một phía với bên ngoài hệ thống (phát hành/thu hồi coin: bonus, quy đổi, mua sản phẩm...).
+     * signedAmount > 0 là cộng, < 0 là trừ (có kiểm tra số dư).
+     */
+    WalletTransaction postExternal(Wallet wallet, BigDecimal signedAmount, String txnType,
+                                   String referenceType, UUID referenceId, String idempotencyKey);
+
+    /**
+     * Chi trả cùng một số tiền từ ví Event cho nhiều ví Student (set-based).
+     * @return false nếu ví Event không đủ tiền
+     */
+    boolean postEventPayouts(UUID eventId, UUID eventWalletId, List<UUID> studentWalletIds, BigDecimal amountEach);
+
+    /**
+     * Ghi nhiều lệnh chuyển tiền trong transaction hiện tại: số dư mỗi ví được cộng/trừ theo tổng ròng
+     * (1 câu UPDATE), bút toán ghi bằng JDBC batch insert. Caller phải khóa toàn bộ ví và kiểm tra số dư
+     * từng leg trước; nếu vẫn có ví không đủ tiền thì ném BadRequestException (rollback cả batch).
+     */
+    void postTransfers(List<TransferLeg> legs, String debitTxnType, String creditTxnType,
+                       String referenceType, UUID referenceId);
+
+    // Số dư tại thời điểm asOf = snapshot gần nhất + tổng bút toán sau snapshot
+    WalletBalanceResponseDTO getBalanceAsOf(UUID walletId, OffsetDateTime asOf);
+
+    // Tạo snapshot số dư cho các ví có bút toán mới
+    int snapshotBalances();
+
+    record Posting(WalletTransaction debit, WalletTransaction credit) {
+    }
+
+    record TransferLeg(Wallet from, Wallet to, BigDecimal amount, String idempotencyKey) {
+    }
+}
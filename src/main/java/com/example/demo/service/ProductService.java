@@ -3,6 +3,7 @@ package com.example.demo.service;
 import com.example.demo.dto.request.ProductRequestDTO;
 import com.example.demo.dto.response.ProductResponseDTO;
 import org.springframework.data.domain.Page;
+import org.springframework.web.multipart.MultipartFile;
 import java.util.UUID;
 
 import java.util.List;
@@ -10,7 +11,10 @@ import java.util.Map;
 
 public interface ProductService {
 
-    Page<ProductResponseDTO> getProducts(String category, Double minCost, Double maxCost, String sortBy, String order, Boolean isActive, Integer limit, Integer offset);
+    /**
+     * @param imageVariant biến thể ảnh cho imageUrl trong danh sách: thumbnail (mặc định), medium, original
+     */
+    Page<ProductResponseDTO> getProducts(String category, Double minCost, Double maxCost, String sortBy, String order, Boolean isActive, Integer limit, Integer offset, String imageVariant);
 
     ProductResponseDTO getProductById(UUID id);
 
@@ -20,6 +24,11 @@ public interface ProductService {
 
     void deleteProduct(UUID id);
 
+    /**
+     * Upload ảnh sản phẩm kèm biến thể thumbnail/medium (Admin).
+     */
+    ProductResponseDTO updateProductImage(UUID id, MultipartFile imageFile);
+
     List<Map<String, Object>> getTopProducts();
 
     List<ProductResponseDTO> getLowStockProducts();
@@ -0,0 +1,20 @@
+package com.example.demo.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Điểm cắm broker (Redis pub/sub, Postgres LISTEN/NOTIFY...) khi chạy nhiều node.
+ * Chưa có bean nào -> PushEventBus chỉ phát trong node hiện tại.
+ */
+public interface PushBrokerAdapter {
+
+    /**
+     * Gửi sự kiện của node này tới các node khác (không cần gửi lại cho chính node này).
+     */
+    void send(PushEventBus.PushEvent event);
+
+    /**
+     * Đăng ký handler cho sự kiện đến từ node khác. Gọi 1 lần khi khởi động.
+     */
+    void onReceive(Consumer<PushEventBus.PushEvent> handler);
+}
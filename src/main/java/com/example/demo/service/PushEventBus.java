@@ -0,0 +1,30 @@
+package com.example.demo.service;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Bus sự kiện realtime trong process (SSE). Nếu có bean PushBrokerAdapter thì sự kiện được chuyển tiếp
+ * sang node khác qua broker và sự kiện từ node khác được phát lại cho subscriber trên node này.
+ */
+public interface PushEventBus {
+
+    /**
+     * Phát sau khi transaction hiện tại commit (rollback thì bỏ), phát ngay nếu không có transaction.
+     */
+    void publish(PushEvent event);
+
+    /**
+     * Nhận mọi sự kiện phát trên node này và từ broker. Listener chạy trên pushExecutor, không chạy trong transaction.
+     */
+    void subscribe(Consumer<PushEvent> listener);
+
+    /**
+     * @param type tên event SSE (ví dụ "broadcast", "wallet")
+     * @param targets student id hoặc wallet id của người nhận
+     * @param payload được serialize thành JSON
+     */
+    record PushEvent(String type, Collection<UUID> targets, Object payload) {
+    }
+}
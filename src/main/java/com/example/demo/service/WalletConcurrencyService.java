@@ -0,0 +1,33 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.response.WalletContentionStatsDTO;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Lớp điều phối đồng thời cho các thao tác đọc-sửa-ghi số dư ví.
+ * - Trong 1 node: striped lock theo wallet id (tuần tự hóa, không còn retry storm).
+ * - Giữa các node: SELECT ... FOR UPDATE (PESSIMISTIC) hoặc retry có giới hạn (RETRY),
+ *   cấu hình qua wallet.concurrency.strategy.
+ */
+public interface WalletConcurrencyService {
+
+    /**
+     * Chạy work trong 1 transaction, giữ khóa của các ví cho tới khi transaction kết thúc.
+     * Nếu đã có transaction bên ngoài thì tham gia transaction đó; khi đó việc retry do executeWithRetry
+     * bao ngoài transaction đó đảm nhận.
+     */
+    <T> T executeInWalletTransaction(Collection<UUID> walletIds, Supplier<T> work);
+
+    /**
+     * Retry ở tầng ngoài cùng cho thao tác mà transaction do lớp khác mở (ví dụ IdempotencyService:
+     * claim key + thao tác ví trong cùng 1 transaction). Mỗi lần thử gọi lại transactionalWork từ đầu,
+     * tức là mở transaction mới. Nếu đã ở trong transaction thì chỉ chạy 1 lần.
+     */
+    <T> T executeWithRetry(Supplier<T> transactionalWork);
+
+    // Các ví bị tranh chấp nhiều nhất (theo số lần phải chờ khóa + số lần retry)
+    List<WalletContentionStatsDTO> getTopContendedWallets(int limit);
+}
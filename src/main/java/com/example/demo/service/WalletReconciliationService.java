@@ -0,0 +1,23 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.response.WalletBalanceDriftResponseDTO;
+import com.example.demo.dto.response.WalletReconciliationRunResponseDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import java.util.UUID;
+
+/**
+ * Đối soát wallet.balance với tổng wallet_transaction.amount.
+ * Ví được chia thành các dải wallet_id, quét song song trên pool giới hạn; chênh lệch được ghi dần vào báo cáo.
+ */
+public interface WalletReconciliationService {
+
+    // Khởi chạy 1 lượt đối soát nền (409 nếu đang có lượt khác chạy)
+    WalletReconciliationRunResponseDTO startRun();
+
+    WalletReconciliationRunResponseDTO getRun(UUID runId);
+
+    Page<WalletReconciliationRunResponseDTO> getRuns(Pageable pageable);
+
+    Page<WalletBalanceDriftResponseDTO> getDrifts(UUID runId, Pageable pageable);
+}
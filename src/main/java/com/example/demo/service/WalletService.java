@@ -3,10 +3,13 @@ package com.example.demo.service;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import com.example.demo.config.AuthPrincipal;
+import com.example.demo.dto.request.WalletBatchTransferRequestDTO;
 import com.example.demo.dto.request.WalletRedeemRequestDTO;
 import com.example.demo.dto.request.WalletRollbackRequestDTO;
 import com.example.demo.dto.request.WalletTopupRequestDTO;
 import com.example.demo.dto.request.WalletTransferRequestDTO;
+import com.example.demo.dto.response.CursorPageResponseDTO;
+import com.example.demo.dto.response.WalletBatchTransferResponseDTO;
 import com.example.demo.dto.response.WalletResponseDTO;
 import com.example.demo.dto.response.WalletTransactionResponseDTO;
 import java.util.UUID;
@@ -23,11 +26,22 @@ public interface WalletService {
 
     Page<WalletTransactionResponseDTO> getTransactionHistoryForUser(AuthPrincipal principal, Pageable pageable);
 
+    // Phân trang keyset (cursor = null: trang đầu)
+    CursorPageResponseDTO<WalletTransactionResponseDTO> getTransactionHistoryByCursor(UUID ownerId, String ownerType, String cursor, int size);
+
+    CursorPageResponseDTO<WalletTransactionResponseDTO> getTransactionHistoryForUserByCursor(AuthPrincipal principal, String cursor, int size);
+
     // --- WRITE OPERATIONS ---
     WalletTransactionResponseDTO adminTopupForPartner(WalletTopupRequestDTO topupRequest);
 
     WalletTransactionResponseDTO transferCoins(WalletTransferRequestDTO transferRequest);
 
+    /**
+     * Chuyển tiền nhiều leg trong 1 transaction. Leg không hợp lệ (ví không tồn tại, không đủ tiền...)
+     * bị REJECTED, các leg còn lại vẫn được ghi. requiredSourceWalletId != null: chỉ cho phép chi từ ví đó.
+     */
+    WalletBatchTransferResponseDTO transferBatch(WalletBatchTransferRequestDTO batchRequest, UUID requiredSourceWalletId);
+
     WalletTransactionResponseDTO redeemCoins(WalletRedeemRequestDTO redeemRequest);
 
     WalletTransactionResponseDTO rollbackTransaction(WalletRollbackRequestDTO rollbackRequest);
@@ -37,4 +51,6 @@ public interface WalletService {
     void refundBalance(String ownerType, UUID ownerId, BigDecimal amount, String referenceType, UUID referenceId);
 
     Page<WalletTransactionResponseDTO> getAllTransactions(Pageable pageable);
+
+    CursorPageResponseDTO<WalletTransactionResponseDTO> getAllTransactionsByCursor(String cursor, int size, boolean includeTotal);
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Wallet;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Shard (sub-account) cho ví nóng: một ví logic được chia thành K dòng wallet_shard,
+ * ghi vào shard chọn theo hash của counterparty -> các lượt ghi song song không tranh nhau 1 dòng.
+ */
+public interface WalletShardService {
+
+    // Ví của ownerType này có được ghi qua shard không (theo cấu hình wallet.sharding.*)
+    boolean isSharded(String ownerType);
+
+    /**
+     * Cộng (delta > 0) hoặc trừ không kiểm tra số dư (delta < 0) vào shard của ví.
+     * Chỉ dùng cho chiều ghi "nóng"; các lần trừ có kiểm tra số dư phải consolidate trước.
+     */
+    void applyDelta(UUID walletId, UUID counterpartyId, BigDecimal delta);
+
+    // Số dư logic = wallet.balance + tổng các shard
+    BigDecimal getLogicalBalance(Wallet wallet);
+
+    // Gộp các shard vào wallet.balance
+    void consolidate(UUID walletId);
+}
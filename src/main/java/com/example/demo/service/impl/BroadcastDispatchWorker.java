@@ -0,0 +1,303 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.entity.BroadcastDispatchJob;
+import com.example.demo.entity.enums.BroadcastDispatchStatus;
+import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.repository.BroadcastDispatchJobRepository;
+import com.example.demo.repository.CheckinRepository;
+import com.example.demo.repository.StudentRepository;
+import com.example.demo.service.BroadcastRecipientHandler;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Worker chạy nền cho BroadcastDispatchJob: duyệt người nhận của broadcast (chỉ lấy student_id, keyset theo chunk)
+ * và giao từng chunk cho các BroadcastRecipientHandler. Handler + checkpoint chạy trong CÙNG transaction.
+ *
+ * Trước mỗi chunk worker kiểm tra Hikari: khi request đang phải chờ connection hoặc pool gần đầy
+ * thì tạm dừng (backoff tăng dần) để broadcast lớn không làm nghẽn API.
+ */
+@Component
+public class BroadcastDispatchWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastDispatchWorker.class);
+    private static final UUID MIN_UUID = new UUID(0L, 0L);
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final long MIN_BACKOFF_MS = 20;
+
+    private final BroadcastDispatchJobRepository jobRepository;
+    private final CheckinRepository checkinRepository;
+    private final StudentRepository studentRepository;
+    private final List<BroadcastRecipientHandler> handlers;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor dispatchExecutor;
+    private final DataSource dataSource;
+    private final int chunkSize;
+    private final double maxPoolUsage;
+    private final long maxBackoffMs;
+    private final long maxThrottleMs;
+
+    // Job đang chạy trên node này -> thời điểm tạo job (tính độ trễ phát)
+    private final Map<UUID, OffsetDateTime> runningJobs = new ConcurrentHashMap<>();
+    private volatile HikariDataSource hikari;
+
+    private final Counter recipientCounter;
+    private final Counter throttleCounter;
+    private final Timer completionTimer;
+
+    public BroadcastDispatchWorker(BroadcastDispatchJobRepository jobRepository,
+                                   CheckinRepository checkinRepository,
+                                   StudentRepository studentRepository,
+                                   List<BroadcastRecipientHandler> handlers,
+                                   TransactionTemplate transactionTemplate,
+                                   @Qualifier("broadcastDispatchExecutor") TaskExecutor dispatchExecutor,
+                                   DataSource dataSource,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${broadcast.dispatch.chunk-size:500}") int chunkSize,
+                                   @Value("${broadcast.dispatch.max-pool-usage:0.75}") double maxPoolUsage,
+                                   @Value("${broadcast.dispatch.max-backoff-ms:1000}") long maxBackoffMs,
+                                   @Value("${broadcast.dispatch.max-throttle-ms:30000}") long maxThrottleMs) {
+        this.jobRepository = jobRepository;
+        this.checkinRepository = checkinRepository;
+        this.studentRepository = studentRepository;
+        this.handlers = handlers;
+        this.transactionTemplate = transactionTemplate;
+        this.dispatchExecutor = dispatchExecutor;
+        this.dataSource = dataSource;
+        this.chunkSize = chunkSize;
+        this.maxPoolUsage = maxPoolUsage;
+        this.maxBackoffMs = Math.max(MIN_BACKOFF_MS, maxBackoffMs);
+        this.maxThrottleMs = maxThrottleMs;
+
+        this.recipientCounter = Counter.builder("broadcast.dispatch.recipients")
+                .description("Broadcast recipients handed to recipient handlers")
+                .register(meterRegistry);
+        this.throttleCounter = Counter.builder("broadcast.dispatch.throttled")
+                .description("Times the dispatcher paused because the connection pool was saturated")
+                .register(meterRegistry);
+        this.completionTimer = Timer.builder("broadcast.dispatch.completion")
+                .description("Time from broadcast creation until every recipient was dispatched")
+                .register(meterRegistry);
+        Gauge.builder("broadcast.dispatch.active", runningJobs, Map::size)
+                .description("Broadcast dispatch jobs queued or running on this node")
+                .register(meterRegistry);
+        Gauge.builder("broadcast.dispatch.lag.seconds", this, BroadcastDispatchWorker::currentLagSeconds)
+                .description("Age of the oldest unfinished broadcast dispatch job on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Đưa job vào hàng đợi xử lý. Gọi sau khi transaction tạo broadcast + job đã commit.
+     */
+    public void submit(UUID jobId, OffsetDateTime createdAt) {
+        if (runningJobs.putIfAbsent(jobId, createdAt != null ? createdAt : OffsetDateTime.now()) != null) {
+            return;
+        }
+        try {
+            dispatchExecutor.execute(() -> {
+                try {
+                    process(jobId);
+                } finally {
+                    runningJobs.remove(jobId);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            runningJobs.remove(jobId);
+            logger.error("Broadcast dispatch job {} rejected by executor. It will be resumed on next startup.", jobId, e);
+        }
+    }
+
+    /**
+     * Resume các job dở dang (PENDING/RUNNING) sau khi ứng dụng khởi động lại.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        List<BroadcastDispatchJob> unfinished = jobRepository.findAllByStatusIn(
+                EnumSet.of(BroadcastDispatchStatus.PENDING, BroadcastDispatchStatus.RUNNING));
+        for (BroadcastDispatchJob job : unfinished) {
+            logger.info("Resuming broadcast dispatch job {} for broadcast {} from checkpoint {}.",
+                    job.getId(), job.getBroadcastId(), job.getLastStudentId());
+            submit(job.getId(), job.getCreatedAt());
+        }
+    }
+
+    private void process(UUID jobId) {
+        try {
+            BroadcastDispatchJob job = transactionTemplate.execute(status -> markRunning(jobId));
+            if (job == null) {
+                return;
+            }
+            if (handlers.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> complete(jobId));
+                return;
+            }
+
+            while (true) {
+                if (!awaitPoolCapacity(jobId)) {
+                    return; // Bị interrupt (shutdown): job giữ RUNNING, resume ở lần khởi động sau
+                }
+                UUID cursor = job.getLastStudentId() != null ? job.getLastStudentId() : MIN_UUID;
+                List<UUID> studentIds = job.getEventId() != null
+                        ? checkinRepository.findStudentIdsAfter(job.getEventId(), cursor, PageRequest.of(0, chunkSize))
+                        : studentRepository.findIdsAfter(cursor, PageRequest.of(0, chunkSize));
+
+                if (studentIds.isEmpty()) {
+                    transactionTemplate.executeWithoutResult(status -> complete(jobId));
+                    return;
+                }
+                job = transactionTemplate.execute(status -> dispatchChunk(jobId, studentIds));
+                recipientCounter.increment(studentIds.size());
+            }
+        } catch (OptimisticLockingFailureException e) {
+            // Node khác đã nhận job này (checkpoint bị cập nhật song song) -> nhường lại
+            logger.warn("Broadcast dispatch job {} is being processed by another worker. Stopping here.", jobId);
+        } catch (RuntimeException e) {
+            logger.error("Broadcast dispatch job {} failed: {}", jobId, e.getMessage(), e);
+            transactionTemplate.executeWithoutResult(status -> markFailed(jobId, e.getMessage()));
+        }
+    }
+
+    /**
+     * Chờ tới khi pool còn chỗ (không ai chờ connection và số connection đang dùng dưới ngưỡng),
+     * tối đa max-throttle-ms rồi vẫn chạy tiếp để job không bị treo vô hạn.
+     * @return false nếu thread bị interrupt
+     */
+    private boolean awaitPoolCapacity(UUID jobId) {
+        HikariDataSource pool = hikari();
+        if (pool == null) {
+            return true;
+        }
+        long backoff = MIN_BACKOFF_MS;
+        long waited = 0;
+        while (waited < maxThrottleMs && isSaturated(pool)) {
+            throttleCounter.increment();
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            waited += backoff;
+            backoff = Math.min(backoff * 2, maxBackoffMs);
+        }
+        if (waited >= maxThrottleMs) {
+            logger.warn("Broadcast dispatch job {}: connection pool still saturated after {} ms, continuing.",
+                    jobId, waited);
+        }
+        return true;
+    }
+
+    private boolean isSaturated(HikariDataSource pool) {
+        HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+        if (bean == null) {
+            return false; // Pool chưa khởi tạo
+        }
+        return bean.getThreadsAwaitingConnection() > 0
+                || bean.getActiveConnections() >= pool.getMaximumPoolSize() * maxPoolUsage;
+    }
+
+    private HikariDataSource hikari() {
+        HikariDataSource cached = hikari;
+        if (cached == null) {
+            try {
+                if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                    cached = dataSource.unwrap(HikariDataSource.class);
+                    hikari = cached;
+                }
+            } catch (SQLException e) {
+                logger.debug("DataSource is not backed by Hikari, dispatch throttling disabled: {}", e.getMessage());
+            }
+        }
+        return cached;
+    }
+
+    private double currentLagSeconds() {
+        OffsetDateTime now = OffsetDateTime.now();
+        return runningJobs.values().stream()
+                .mapToDouble(createdAt -> Duration.between(createdAt, now).toMillis() / 1000.0)
+                .max()
+                .orElse(0.0);
+    }
+
+    // --- Các bước dưới đây luôn chạy trong transaction ---
+
+    private BroadcastDispatchJob markRunning(UUID jobId) {
+        BroadcastDispatchJob job = findJob(jobId);
+        if (job.getStatus() == BroadcastDispatchStatus.COMPLETED || job.getStatus() == BroadcastDispatchStatus.FAILED) {
+            return null;
+        }
+        job.setStatus(BroadcastDispatchStatus.RUNNING);
+        return jobRepository.save(job);
+    }
+
+    /**
+     * Giao 1 chunk cho các handler và ghi checkpoint trong CÙNG transaction.
+     */
+    private BroadcastDispatchJob dispatchChunk(UUID jobId, List<UUID> studentIds) {
+        BroadcastDispatchJob job = findJob(jobId);
+        for (BroadcastRecipientHandler handler : handlers) {
+            handler.onRecipients(job.getBroadcastId(), job.getEventId(), studentIds);
+        }
+        job.setDispatchedCount(job.getDispatchedCount() + studentIds.size());
+        job.setLastStudentId(studentIds.get(studentIds.size() - 1));
+        return jobRepository.save(job);
+    }
+
+    private void complete(UUID jobId) {
+        BroadcastDispatchJob job = findJob(jobId);
+        job.setStatus(BroadcastDispatchStatus.COMPLETED);
+        job.setCompletedAt(OffsetDateTime.now());
+        jobRepository.save(job);
+
+        if (job.getCreatedAt() != null) {
+            completionTimer.record(Duration.between(job.getCreatedAt(), job.getCompletedAt()));
+        }
+        logger.info("Broadcast dispatch job {} completed for broadcast {}: dispatched={}.",
+                jobId, job.getBroadcastId(), job.getDispatchedCount());
+    }
+
+    private void markFailed(UUID jobId, String error) {
+        BroadcastDispatchJob job = findJob(jobId);
+        job.setStatus(BroadcastDispatchStatus.FAILED);
+        job.setLastError(truncate(error));
+        jobRepository.save(job);
+    }
+
+    private BroadcastDispatchJob findJob(UUID jobId) {
+        return jobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("Broadcast dispatch job not found with id: " + jobId));
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
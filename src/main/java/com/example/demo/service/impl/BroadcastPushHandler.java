@@ -0,0 +1,49 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.response.StudentBroadcastResponseDTO;
+import com.example.demo.entity.EventBroadcast;
+import com.example.demo.entity.enums.BroadcastDeliveryStatus;
+import com.example.demo.repository.EventBroadcastRepository;
+import com.example.demo.service.BroadcastRecipientHandler;
+import com.example.demo.service.PushEventBus;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Đẩy broadcast mới tới sinh viên đang kết nối SSE, theo từng chunk người nhận của BroadcastDispatchWorker
+ * (1 sự kiện trên bus cho cả chunk, gửi sau khi chunk commit).
+ */
+@Component
+public class BroadcastPushHandler implements BroadcastRecipientHandler {
+
+    private static final String BROADCAST_PUSH_EVENT = "broadcast";
+
+    private final EventBroadcastRepository eventBroadcastRepository;
+    private final PushEventBus pushEventBus;
+
+    public BroadcastPushHandler(EventBroadcastRepository eventBroadcastRepository, PushEventBus pushEventBus) {
+        this.eventBroadcastRepository = eventBroadcastRepository;
+        this.pushEventBus = pushEventBus;
+    }
+
+    @Override
+    public void onRecipients(UUID broadcastId, UUID eventId, List<UUID> studentIds) {
+        EventBroadcast broadcast = eventBroadcastRepository.findById(broadcastId).orElse(null);
+        if (broadcast == null) {
+            return;
+        }
+        StudentBroadcastResponseDTO dto = new StudentBroadcastResponseDTO();
+        dto.setBroadcastId(broadcast.getId());
+        dto.setDeliveryId(broadcast.getId());
+        dto.setStatus(BroadcastDeliveryStatus.UNREAD.name());
+        dto.setMessageContent(broadcast.getMessageContent());
+        dto.setSentAt(broadcast.getSentAt());
+        if (broadcast.getEvent() != null) {
+            dto.setEventId(broadcast.getEvent().getId());
+            dto.setEventTitle(broadcast.getEvent().getTitle());
+        }
+        pushEventBus.publish(new PushEventBus.PushEvent(BROADCAST_PUSH_EVENT, List.copyOf(studentIds), dto));
+    }
+}
@@ -6,93 +6,105 @@ import com.example.demo.dto.response.EventBroadcastResponseDTO;
 import com.example.demo.dto.response.StudentBroadcastResponseDTO;
 import com.example.demo.entity.enums.BroadcastDeliveryStatus; // <<< THÊM IMPORT
 import com.example.demo.exception.BadRequestException;
-import com.example.demo.entity.BroadcastDelivery;
-import com.example.demo.entity.Checkin;
+import com.example.demo.entity.BroadcastDispatchJob;
 import com.example.demo.entity.Event;
 import com.example.demo.entity.EventBroadcast;
 import com.example.demo.exception.ForbiddenException;
 import com.example.demo.exception.ResourceNotFoundException;
 import com.example.demo.repository.BroadcastDeliveryRepository;
+import com.example.demo.repository.BroadcastDispatchJobRepository;
+import com.example.demo.repository.BroadcastInboxJdbcRepository;
 import com.example.demo.repository.EventBroadcastRepository;
 import com.example.demo.repository.EventRepository;
-import com.example.demo.repository.PartnerRepository;
-import com.example.demo.repository.StudentRepository;
-import com.example.demo.repository.CheckinRepository;
 import java.util.UUID;
 import com.example.demo.service.BroadcastService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 import java.util.Map;
 
+/**
+ * Broadcast theo mô hình fan-out-on-read: gửi = 1 INSERT event_broadcast (người nhận = event hoặc toàn hệ thống),
+ * inbox + số chưa đọc được tính lúc đọc bằng join có index (BroadcastInboxJdbcRepository).
+ * Việc phụ theo từng người nhận chạy nền sau commit (BroadcastDispatchWorker), API trả về ngay.
+ * Badge chưa đọc là 1 dòng bộ đếm (BroadcastUnreadCounter), không đếm lại inbox.
+ */
 @Service
 public class BroadcastServiceImpl implements BroadcastService {
 
-    private final PartnerRepository partnerRepository;
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastServiceImpl.class);
+
     private final EventRepository eventRepository;
-    private final CheckinRepository checkinRepository;
     private final EventBroadcastRepository eventBroadcastRepository;
     private final BroadcastDeliveryRepository broadcastDeliveryRepository;
-    private final StudentRepository studentRepository;
+    private final BroadcastInboxJdbcRepository inboxRepository;
+    private final BroadcastDispatchJobRepository dispatchJobRepository;
+    private final BroadcastDispatchWorker dispatchWorker;
+    private final BroadcastUnreadCounter unreadCounter;
+    private final Duration readWatermarkSafetyLag;
 
-    public BroadcastServiceImpl(PartnerRepository partnerRepository,
-            EventRepository eventRepository,
-            CheckinRepository checkinRepository,
+    public BroadcastServiceImpl(EventRepository eventRepository,
             EventBroadcastRepository eventBroadcastRepository,
-            BroadcastDeliveryRepository broadcastDeliveryRepository, StudentRepository studentRepository) {
-        this.partnerRepository = partnerRepository;
+            BroadcastDeliveryRepository broadcastDeliveryRepository,
+            BroadcastInboxJdbcRepository inboxRepository,
+            BroadcastDispatchJobRepository dispatchJobRepository,
+            BroadcastDispatchWorker dispatchWorker,
+            BroadcastUnreadCounter unreadCounter,
+            @Value("${broadcast.read-watermark.safety-lag-ms:60000}") long readWatermarkSafetyLagMs) {
         this.eventRepository = eventRepository;
-        this.checkinRepository = checkinRepository;
         this.eventBroadcastRepository = eventBroadcastRepository;
         this.broadcastDeliveryRepository = broadcastDeliveryRepository;
-        this.studentRepository = studentRepository;
+        this.inboxRepository = inboxRepository;
+        this.dispatchJobRepository = dispatchJobRepository;
+        this.dispatchWorker = dispatchWorker;
+        this.unreadCounter = unreadCounter;
+        this.readWatermarkSafetyLag = Duration.ofMillis(readWatermarkSafetyLagMs);
     }
 
     @Override
-@Transactional
-public EventBroadcastResponseDTO sendBroadcast(UUID partnerId, BroadcastRequestDTO requestDTO) {
-    // 1. Lấy sự kiện
-    Event event = eventRepository.findById(requestDTO.getEventId())
-            .orElseThrow(() -> new ResourceNotFoundException("Event not found: " + requestDTO.getEventId()));
-    // 2. Kiểm tra quyền: Partner này có phải người tổ chức sự kiện không?
-    if (!event.getPartner().getId().equals(partnerId)) {
-        throw new ForbiddenException("Partner does not own this event.");
-    }
-    // 3. Tạo bản ghi broadcast chính
-    EventBroadcast broadcast = new EventBroadcast();
-    broadcast.setEvent(event);
-    broadcast.setMessageContent(requestDTO.getMessageContent());
-    EventBroadcast savedBroadcast = eventBroadcastRepository.save(broadcast);
-    // 4. Lấy danh sách sinh viên đã đăng ký (TỪ BẢNG CHECKIN)
-    List<Checkin> checkins = checkinRepository.findAllByEventId(event.getId());
-    // 5. Tạo các bản ghi delivery cho từng sinh viên
-    if (!checkins.isEmpty()) {
-        List<BroadcastDelivery> deliveries = checkins.stream()
-                .map(checkin -> {
-                    BroadcastDelivery delivery = new BroadcastDelivery();
-                    delivery.setBroadcast(savedBroadcast);
-                    delivery.setStudent(checkin.getStudent());
-                    delivery.setStatus(BroadcastDeliveryStatus.UNREAD); 
-                    return delivery;
-                })
-                .collect(Collectors.toList());
-
-        broadcastDeliveryRepository.saveAll(deliveries);
-    }
+    @Transactional
+    public EventBroadcastResponseDTO sendBroadcast(UUID partnerId, BroadcastRequestDTO requestDTO) {
+        if (requestDTO.getEventId() == null) {
+            throw new BadRequestException("eventId is required.");
+        }
+        // 1. Lấy sự kiện
+        Event event = eventRepository.findById(requestDTO.getEventId())
+                .orElseThrow(() -> new ResourceNotFoundException("Event not found: " + requestDTO.getEventId()));
+        // 2. Kiểm tra quyền: Partner này có phải người tổ chức sự kiện không?
+        if (!event.getPartner().getId().equals(partnerId)) {
+            throw new ForbiddenException("Partner does not own this event.");
+        }
+        // 3. Lưu broadcast; người nhận (sinh viên đã đăng ký) được xác định lúc họ đọc inbox
+        EventBroadcast broadcast = new EventBroadcast();
+        broadcast.setEvent(event);
+        broadcast.setMessageContent(requestDTO.getMessageContent());
+        EventBroadcast savedBroadcast = eventBroadcastRepository.save(broadcast);
+        // 4. Phát tới người nhận chạy nền sau commit
+        scheduleDispatch(savedBroadcast);
 
-    return convertToDTO(savedBroadcast);
-}
+        return convertToDTO(savedBroadcast);
+    }
 
     @Override
     @Transactional
     public EventBroadcastResponseDTO sendSystemBroadcast(BroadcastRequestDTO requestDTO) {
-        // 1. Tạo bản ghi broadcast chính (không liên kết với event cụ thể)
+        // Không liên kết với event cụ thể -> nằm trong inbox của mọi sinh viên
         EventBroadcast broadcast = new EventBroadcast();
         broadcast.setMessageContent(requestDTO.getMessageContent());
         EventBroadcast savedBroadcast = eventBroadcastRepository.save(broadcast);
+        scheduleDispatch(savedBroadcast);
 
         return convertToDTO(savedBroadcast);
     }
@@ -103,48 +115,99 @@ public EventBroadcastResponseDTO sendBroadcast(UUID partnerId, BroadcastRequestD
             Pageable pageable) {
         UUID studentId = getStudentIdFromPrincipal(principal);
 
-        Page<BroadcastDelivery> deliveryPage;
+        Boolean read = null;
         if (status != null && !status.isBlank()) {
-            BroadcastDeliveryStatus statusEnum;
             try {
-                statusEnum = BroadcastDeliveryStatus.valueOf(status.toUpperCase());
+                read = BroadcastDeliveryStatus.valueOf(status.toUpperCase()) == BroadcastDeliveryStatus.READ;
             } catch (IllegalArgumentException e) {
                 // Trả về lỗi nếu client gửi status linh tinh (ví dụ: "ABC")
                 throw new BadRequestException("Invalid status value: " + status);
             }
-            // SỬA: Gọi hàm repository với Enum
-            deliveryPage = broadcastDeliveryRepository.findByStudentIdAndStatus(studentId, statusEnum, pageable);
-        } else {
-            deliveryPage = broadcastDeliveryRepository.findByStudentId(studentId, pageable);
         }
 
-        return deliveryPage.map(this::convertToStudentBroadcastDTO);
+        // Inbox luôn sắp theo thời điểm gửi; chỉ giữ chiều sắp xếp client yêu cầu
+        Sort.Order order = pageable.getSort().iterator().hasNext() ? pageable.getSort().iterator().next() : null;
+        boolean ascending = order != null && order.isAscending();
+
+        List<BroadcastInboxJdbcRepository.InboxRow> rows = inboxRepository.findInbox(
+                studentId, read, ascending, pageable.getPageSize(), pageable.getOffset());
+        List<StudentBroadcastResponseDTO> content = new ArrayList<>(rows.size());
+        for (BroadcastInboxJdbcRepository.InboxRow row : rows) {
+            content.add(convertToStudentBroadcastDTO(row));
+        }
+        // Trang cuối (chưa đầy) tự suy ra tổng, chỉ COUNT khi thật sự cần
+        Boolean readFilter = read;
+        return PageableExecutionUtils.getPage(content, pageable, () -> inboxRepository.countInbox(studentId, readFilter));
     }
 
     @Override
     @Transactional
-    public StudentBroadcastResponseDTO markBroadcastAsRead(AuthPrincipal principal, UUID deliveryId) {
+    public StudentBroadcastResponseDTO markBroadcastAsRead(AuthPrincipal principal, UUID broadcastId) {
         UUID studentId = getStudentIdFromPrincipal(principal);
 
-        BroadcastDelivery delivery = broadcastDeliveryRepository.findByIdAndStudentId(deliveryId, studentId)
+        EventBroadcast broadcast = eventBroadcastRepository.findById(broadcastId)
+                .or(() -> broadcastDeliveryRepository.findByIdAndStudentId(broadcastId, studentId)
+                        .map(delivery -> delivery.getBroadcast()))
                 .orElseThrow(
                         () -> new ResourceNotFoundException("Broadcast message not found or does not belong to user."));
-        if (delivery.getStatus() != BroadcastDeliveryStatus.READ) {
-            delivery.setStatus(BroadcastDeliveryStatus.READ);
-            delivery = broadcastDeliveryRepository.save(delivery);
+        if (!inboxRepository.isRecipient(broadcast.getId(), studentId)) {
+            throw new ResourceNotFoundException("Broadcast message not found or does not belong to user.");
+        }
+        // Khóa bộ đếm trước khi ghi trạng thái đọc (xem BroadcastUnreadCounterJdbcRepository)
+        unreadCounter.lock(studentId);
+        if (inboxRepository.markRead(broadcast.getId(), studentId)) {
+            unreadCounter.onRead(broadcast.getId(), studentId);
         }
 
-        return convertToStudentBroadcastDTO(delivery);
+        StudentBroadcastResponseDTO dto = new StudentBroadcastResponseDTO();
+        dto.setBroadcastId(broadcast.getId());
+        dto.setDeliveryId(broadcast.getId());
+        dto.setMessageContent(broadcast.getMessageContent());
+        dto.setSentAt(broadcast.getSentAt());
+        dto.setStatus(BroadcastDeliveryStatus.READ.name());
+        if (broadcast.getEvent() != null) {
+            dto.setEventId(broadcast.getEvent().getId());
+            dto.setEventTitle(broadcast.getEvent().getTitle());
+        }
+        return dto;
     }
 
     @Override
-    @Transactional(readOnly = true)
+    @Transactional
+    public void markAllBroadcastsAsRead(AuthPrincipal principal) {
+        UUID studentId = getStudentIdFromPrincipal(principal);
+        unreadCounter.lock(studentId);
+        inboxRepository.advanceWatermarkToLatest(studentId, OffsetDateTime.now().minus(readWatermarkSafetyLag));
+        unreadCounter.onAllRead(studentId);
+    }
+
+    @Override
+    // Không @Transactional: cache hit không lấy connection, bộ đếm tự mở transaction khi cần đếm lại
     public Map<String, Long> getUnreadBroadcastCount(AuthPrincipal principal) {
         UUID studentId = getStudentIdFromPrincipal(principal);
-        long count = broadcastDeliveryRepository.countByStudentIdAndStatus(studentId, BroadcastDeliveryStatus.UNREAD);
+        long count = unreadCounter.getUnreadCount(studentId);
         return Map.of("count", count);
     }
 
+    /**
+     * Tạo job phát trong CÙNG transaction với broadcast (không mất job nếu node chết ngay sau commit),
+     * chỉ submit cho worker sau khi commit.
+     */
+    private void scheduleDispatch(EventBroadcast broadcast) {
+        BroadcastDispatchJob job = new BroadcastDispatchJob();
+        job.setBroadcastId(broadcast.getId());
+        job.setEventId(broadcast.getEvent() != null ? broadcast.getEvent().getId() : null);
+        BroadcastDispatchJob savedJob = dispatchJobRepository.save(job);
+
+        UUID jobId = savedJob.getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dispatchWorker.submit(jobId, savedJob.getCreatedAt());
+            }
+        });
+    }
+
     private UUID getStudentIdFromPrincipal(AuthPrincipal principal) {
         if (!principal.isStudent()) {
             throw new ForbiddenException("Only students can access this resource.");
@@ -156,19 +219,15 @@ public EventBroadcastResponseDTO sendBroadcast(UUID partnerId, BroadcastRequestD
         return studentId;
     }
 
-    private StudentBroadcastResponseDTO convertToStudentBroadcastDTO(BroadcastDelivery delivery) {
+    private StudentBroadcastResponseDTO convertToStudentBroadcastDTO(BroadcastInboxJdbcRepository.InboxRow row) {
         StudentBroadcastResponseDTO dto = new StudentBroadcastResponseDTO();
-        dto.setDeliveryId(delivery.getId());
-        dto.setStatus(delivery.getStatus().name());
-        EventBroadcast broadcast = delivery.getBroadcast();
-        if (broadcast != null) {
-            dto.setMessageContent(broadcast.getMessageContent());
-            dto.setSentAt(broadcast.getSentAt());
-            if (broadcast.getEvent() != null) {
-                dto.setEventId(broadcast.getEvent().getId());
-                dto.setEventTitle(broadcast.getEvent().getTitle());
-            }
-        }
+        dto.setBroadcastId(row.broadcastId());
+        dto.setDeliveryId(row.broadcastId());
+        dto.setStatus(row.read() ? BroadcastDeliveryStatus.READ.name() : BroadcastDeliveryStatus.UNREAD.name());
+        dto.setMessageContent(row.messageContent());
+        dto.setSentAt(row.sentAt());
+        dto.setEventId(row.eventId());
+        dto.setEventTitle(row.eventTitle());
         return dto;
     }
 
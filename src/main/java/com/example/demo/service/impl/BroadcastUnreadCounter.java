@@ -0,0 +1,146 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.repository.BroadcastUnreadCounterJdbcRepository;
+import com.example.demo.service.BroadcastRecipientHandler;
+import com.example.demo.util.BoundedTtlCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Badge "chưa đọc" của sinh viên: 1 dòng student_broadcast_counter, được cộng khi broadcast được phát tới
+ * (BroadcastDispatchWorker), trừ khi đọc, về 0 khi đọc tất cả; bản sao trong bộ nhớ mỗi node.
+ *
+ * Dòng chưa có hoặc stale (mới tạo, sinh viên vừa đăng ký sự kiện có broadcast cũ) được đếm lại từ inbox 1 lần.
+ * Invalidate trong node giống WalletBalanceCache (thế hệ theo stripe); giữa các node chỉ có TTL.
+ */
+@Component
+public class BroadcastUnreadCounter implements BroadcastRecipientHandler {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final BroadcastUnreadCounterJdbcRepository counterRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BoundedTtlCache<UUID, Integer> counts;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter recountCounter;
+
+    public BroadcastUnreadCounter(BroadcastUnreadCounterJdbcRepository counterRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${broadcast.unread-cache.max-entries:50000}") int maxEntries,
+                                  @Value("${broadcast.unread-cache.ttl-ms:10000}") long ttlMs) {
+        this.counterRepository = counterRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.counts = new BoundedTtlCache<>(maxEntries, ttlMs);
+
+        this.hitCounter = Counter.builder("broadcast.unread.cache.requests").tag("result", "hit")
+                .description("Unread badge reads served from the in-memory cache")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("broadcast.unread.cache.requests").tag("result", "miss")
+                .description("Unread badge reads that went to the counter table")
+                .register(meterRegistry);
+        this.recountCounter = Counter.builder("broadcast.unread.recounts")
+                .description("Unread counters rebuilt from the inbox because they were missing or stale")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Số broadcast chưa đọc. Không gọi trong transaction của caller (có thể cần ghi khi phải đếm lại).
+     */
+    public long getUnreadCount(UUID studentId) {
+        Integer cached = counts.get(studentId);
+        if (cached != null) {
+            hitCounter.increment();
+            return cached;
+        }
+        missCounter.increment();
+        long generation = generations.get(stripe(studentId));
+        Integer loaded = counterRepository.findUnreadCount(studentId);
+        if (loaded == null) {
+            recountCounter.increment();
+            loaded = transactionTemplate.execute(status -> {
+                counterRepository.lockRows(List.of(studentId));
+                return counterRepository.recount(studentId);
+            });
+        }
+        // Âm tạm thời khi đọc broadcast trước lúc được phát: hiển thị 0
+        int count = Math.max(0, loaded != null ? loaded : 0);
+        counts.put(studentId, count);
+        if (generations.get(stripe(studentId)) != generation) {
+            counts.remove(studentId);
+        }
+        return count;
+    }
+
+    /**
+     * Khóa bộ đếm của sinh viên. Gọi trong transaction, TRƯỚC khi ghi trạng thái đọc.
+     */
+    public void lock(UUID studentId) {
+        counterRepository.lockRows(List.of(studentId));
+    }
+
+    /**
+     * Broadcast vừa chuyển sang đã đọc (sau lock()).
+     */
+    public void onRead(UUID broadcastId, UUID studentId) {
+        counterRepository.decrementIfDispatched(broadcastId, studentId);
+        evict(List.of(studentId));
+    }
+
+    /**
+     * Đã đánh dấu đọc tất cả (sau lock()).
+     */
+    public void onAllRead(UUID studentId) {
+        counterRepository.reset(studentId);
+        evict(List.of(studentId));
+    }
+
+    /**
+     * Inbox đổi theo cách không cộng/trừ được (ví dụ đăng ký sự kiện đã có broadcast) -> đếm lại ở lần đọc sau.
+     */
+    public void invalidate(UUID studentId) {
+        counterRepository.markStale(studentId);
+        evict(List.of(studentId));
+    }
+
+    @Override
+    public void onRecipients(UUID broadcastId, UUID eventId, List<UUID> studentIds) {
+        counterRepository.lockRows(studentIds);
+        counterRepository.incrementUnread(broadcastId, studentIds);
+        evict(studentIds);
+    }
+
+    // Xóa ngay VÀ sau khi transaction kết thúc (reader khác có thể đã nạp lại giá trị cũ trong lúc chờ commit)
+    private void evict(Collection<UUID> studentIds) {
+        studentIds.forEach(this::invalidateLocal);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    studentIds.forEach(BroadcastUnreadCounter.this::invalidateLocal);
+                }
+            });
+        }
+    }
+
+    private void invalidateLocal(UUID studentId) {
+        generations.incrementAndGet(stripe(studentId));
+        counts.remove(studentId);
+    }
+
+    private static int stripe(UUID studentId) {
+        return Math.floorMod(studentId.hashCode(), GENERATION_STRIPES);
+    }
+}
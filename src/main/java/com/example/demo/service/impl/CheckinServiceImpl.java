@@ -8,6 +8,10 @@ import com.example.demo.entity.*;
 import com.example.demo.exception.*;
 import com.example.demo.repository.*;
 import com.example.demo.service.CheckinService;
+import com.example.demo.service.LedgerService;
+import com.example.demo.service.WalletConcurrencyService;
+import com.example.demo.service.WalletShardService;
+import org.hibernate.exception.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
@@ -16,6 +20,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
+import java.util.Arrays;
 import java.util.UUID;
 import java.util.Optional; 
 
@@ -31,12 +36,22 @@ public class CheckinServiceImpl implements CheckinService {
     private final WalletTransactionRepository transactionRepository;
     private final StudentServiceImpl studentService; 
     private final PartnerRepository partnerRepository; 
+    private final WalletConcurrencyService walletConcurrencyService;
+    private final WalletShardService walletShardService;
+    private final LedgerService ledgerService;
+    private final EventSeatGate eventSeatGate;
+    private final BroadcastUnreadCounter broadcastUnreadCounter;
 
     public CheckinServiceImpl(EventRepository eventRepository, StudentRepository studentRepository, 
                               CheckinRepository checkinRepository, WalletRepository walletRepository, 
                               WalletTransactionRepository transactionRepository, 
                               StudentServiceImpl studentService, 
-                              PartnerRepository partnerRepository) { 
+                              PartnerRepository partnerRepository,
+                              WalletConcurrencyService walletConcurrencyService,
+                              WalletShardService walletShardService,
+                              LedgerService ledgerService,
+                              EventSeatGate eventSeatGate,
+                              BroadcastUnreadCounter broadcastUnreadCounter) { 
         this.eventRepository = eventRepository;
         this.studentRepository = studentRepository;
         this.checkinRepository = checkinRepository;
@@ -44,91 +59,95 @@ public class CheckinServiceImpl implements CheckinService {
         this.transactionRepository = transactionRepository;
         this.studentService = studentService; 
         this.partnerRepository = partnerRepository; 
+        this.walletConcurrencyService = walletConcurrencyService;
+        this.walletShardService = walletShardService;
+        this.ledgerService = ledgerService;
+        this.eventSeatGate = eventSeatGate;
+        this.broadcastUnreadCounter = broadcastUnreadCounter;
     }
 
-    // (Phương thức registerEvent giữ nguyên, logic đã đúng)
     @Override
-    @Transactional
     public CheckinResponseDTO registerEvent(String cognitoSub, UUID eventId) { // SỬA: Long -> UUID
-        // ... (Toàn bộ logic registerEvent của bạn)
-        Student student = studentRepository.findByCognitoSub(cognitoSub)
-                .orElseThrow(() -> new ResourceNotFoundException("Student profile not found."));
+        // Sự kiện đã biết là hết chỗ -> từ chối ngay, không mở transaction / khóa ví
+        if (!eventSeatGate.mightHaveSeat(eventId)) {
+            throw new ForbiddenException("Event is fully booked.");
+        }
+
+        // Khóa ví Student + ví Event: mọi lượt đăng ký cùng sự kiện được tuần tự hóa thay vì
+        // tranh nhau @Version của ví Event. Nếu ví Event được shard thì không khóa ví Event nữa:
+        // tiền cọc được cộng vào shard theo hash của ví Student.
+        boolean eventWalletSharded = walletShardService.isSharded("EVENT");
+        UUID studentWalletId = walletRepository.findStudentWalletIdByCognitoSub(cognitoSub).orElse(null);
+        UUID eventWalletId = eventWalletSharded ? null
+                : walletRepository.findIdByOwnerTypeAndOwnerId("EVENT", eventId).orElse(null);
+
+        return walletConcurrencyService.executeInWalletTransaction(Arrays.asList(studentWalletId, eventWalletId), () -> {
+            Student student = studentRepository.findByCognitoSub(cognitoSub)
+                    .orElseThrow(() -> new ResourceNotFoundException("Student profile not found."));
         
-        Wallet studentWallet = walletRepository.findByOwnerTypeAndOwnerId("STUDENT", student.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Student wallet not found."));
+            Wallet studentWallet = walletRepository.findByOwnerTypeAndOwnerId("STUDENT", student.getId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Student wallet not found."));
 
-        Event event = eventRepository.findById(eventId)
-                .orElseThrow(() -> new ResourceNotFoundException("Event not found."));
+            Event event = eventRepository.findById(eventId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Event not found."));
         
-        Wallet eventWallet = event.getWallet();
-        if (eventWallet == null) {
-            throw new ResourceNotFoundException("Event wallet not found for this event.");
-        }
+            Wallet eventWallet = event.getWallet();
+            if (eventWallet == null) {
+                throw new ResourceNotFoundException("Event wallet not found for this event.");
+            }
         
-        if (!"ACTIVE".equals(event.getStatus())) {
-             throw new ForbiddenException("Event is not active.");
-        }
-        if (event.getStartTime().isBefore(OffsetDateTime.now())) {
-            throw new ForbiddenException("Event has already started.");
-        }
-        if (checkinRepository.existsByEventIdAndStudentId(eventId, student.getId())) {
-            throw new DataIntegrityViolationException("Student has already registered.");
-        }
-        Integer registeredCount = checkinRepository.countByEventId(eventId);
-        if (event.getMaxAttendees() != null && event.getMaxAttendees() > 0 && registeredCount >= event.getMaxAttendees()) {
-            throw new ForbiddenException("Event is fully booked.");
-        }
+            if (!"ACTIVE".equals(event.getStatus())) {
+                 throw new ForbiddenException("Event is not active.");
+            }
+            if (event.getStartTime().isBefore(OffsetDateTime.now())) {
+                throw new ForbiddenException("Event has already started.");
+            }
+            if (student.getPhoneNumber() == null) {
+                throw new DataIntegrityViolationException("Student must have a phone number to register.");
+            }
 
-        Integer depositPoints = event.getPointCostToRegister() != null ? event.getPointCostToRegister() : 0;
-        BigDecimal depositAmount = new BigDecimal(depositPoints);
-        
-        if (depositAmount.compareTo(BigDecimal.ZERO) > 0) {
-            if (studentWallet.getBalance().compareTo(depositAmount) < 0) {
+            Integer depositPoints = event.getPointCostToRegister() != null ? event.getPointCostToRegister() : 0;
+            BigDecimal depositAmount = new BigDecimal(depositPoints);
+            if (depositAmount.compareTo(BigDecimal.ZERO) > 0 && studentWallet.getBalance().compareTo(depositAmount) < 0) {
                 throw new ForbiddenException("Insufficient points for deposit (" + depositPoints + " points).");
             }
-            
-            studentWallet.setBalance(studentWallet.getBalance().subtract(depositAmount));
-            eventWallet.setBalance(eventWallet.getBalance().add(depositAmount));
-            
-            walletRepository.save(studentWallet);
-            walletRepository.save(eventWallet);
-            
-            WalletTransaction studentTx = new WalletTransaction();
-            studentTx.setWallet(studentWallet);
-            studentTx.setCounterparty(eventWallet); 
-            studentTx.setTxnType("EVENT_DEPOSIT");
-            studentTx.setAmount(depositAmount.negate()); 
-            studentTx.setReferenceType("EVENT");
-            studentTx.setReferenceId(event.getId());
-            transactionRepository.save(studentTx);
-
-            WalletTransaction eventTx = new WalletTransaction();
-            eventTx.setWallet(eventWallet);
-            eventTx.setCounterparty(studentWallet); 
-            eventTx.setTxnType("RECEIVE_DEPOSIT");
-            eventTx.setAmount(depositAmount); 
-            eventTx.setReferenceType("EVENT");
-            eventTx.setReferenceId(event.getId());
-            transactionRepository.save(eventTx);
-            
-            logger.info("Student {} paid {} points deposit to Event {}", student.getId(), depositAmount, eventId);
-        }
 
-        Checkin registration = new Checkin();
-        registration.setEvent(event);
-        registration.setStudent(student);
-        if (student.getPhoneNumber() == null) {
-            throw new DataIntegrityViolationException("Student must have a phone number to register.");
-        }
-        registration.setPhoneNumber(student.getPhoneNumber());
-        registration.setVerified(false); 
-        
-        registration.setCheckinTime(OffsetDateTime.now());
-        
-        Checkin savedRegistration = checkinRepository.save(registration);
-        logger.info("Student {} successfully registered for event {}", student.getId(), eventId);
+            // Đăng ký trùng bị chặn bởi unique (event_id, student_id) thay vì exists trước khi insert
+            Checkin registration = new Checkin();
+            registration.setEvent(event);
+            registration.setStudent(student);
+            registration.setPhoneNumber(student.getPhoneNumber());
+            registration.setVerified(false); 
+            registration.setCheckinTime(OffsetDateTime.now());
+            Checkin savedRegistration;
+            try {
+                savedRegistration = checkinRepository.saveAndFlush(registration);
+            } catch (org.springframework.dao.DataIntegrityViolationException e) {
+                // Chỉ lỗi trùng (event_id, student_id) mới là đăng ký lặp; ràng buộc khác (FK, NOT NULL...) giữ nguyên
+                if (e.getCause() instanceof ConstraintViolationException violation
+                        && Checkin.UK_EVENT_STUDENT.equalsIgnoreCase(violation.getConstraintName())) {
+                    throw new DataIntegrityViolationException("Student has already registered.");
+                }
+                throw e;
+            }
+            // Broadcast cũ của sự kiện vừa xuất hiện trong inbox -> badge chưa đọc được đếm lại
+            broadcastUnreadCounter.invalidate(student.getId());
+
+            if (depositAmount.compareTo(BigDecimal.ZERO) > 0) {
+                // Cặp bút toán EVENT_DEPOSIT / RECEIVE_DEPOSIT (ví Event shard được xử lý trong LedgerService)
+                ledgerService.transfer(studentWallet, eventWallet, depositAmount,
+                        "EVENT_DEPOSIT", "RECEIVE_DEPOSIT", "EVENT", event.getId(), null);
+                logger.info("Student {} paid {} points deposit to Event {}", student.getId(), depositAmount, eventId);
+            }
+
+            // Giữ chỗ sau cùng: khóa dòng event chỉ bị giữ trong lúc commit, không cả transaction
+            if (!eventSeatGate.reserve(eventId, student.getId())) {
+                throw new ForbiddenException("Event is fully booked.");
+            }
 
-        return convertToResponseDTO(savedRegistration, depositPoints);
+            logger.info("Student {} successfully registered for event {}", student.getId(), eventId);
+            return convertToResponseDTO(savedRegistration, depositPoints);
+        });
     }
     
     // =================================================================
@@ -0,0 +1,206 @@
+package com.example.demo.service.impl;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.utils.ObjectUtils;
+import com.example.demo.service.FileStorageService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Upload lên Cloudinary bằng signed upload API, body multipart được stream từ InputStream của request
+ * (HttpClient + Content-Length cố định) thay vì file.getBytes() + file tạm như trước.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "cloudinary", matchIfMissing = true)
+public class CloudinaryFileStorageService implements FileStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudinaryFileStorageService.class);
+
+    private final Cloudinary cloudinary;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final Duration uploadTimeout;
+    private final String rootFolder;
+    private final long maxBytes;
+
+    public CloudinaryFileStorageService(Cloudinary cloudinary, ObjectMapper objectMapper,
+                                        @Value("${storage.cloudinary.root-folder:student-loyalty-app}") String rootFolder,
+                                        @Value("${storage.upload.timeout-ms:60000}") long uploadTimeoutMs,
+                                        @Value("${storage.upload.max-bytes:10485760}") long maxBytes) {
+        this.cloudinary = cloudinary;
+        this.objectMapper = objectMapper;
+        this.rootFolder = rootFolder;
+        this.uploadTimeout = Duration.ofMillis(uploadTimeoutMs);
+        this.maxBytes = maxBytes;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @Override
+    public String uploadImage(MultipartFile file, String folder) throws IOException {
+        ImageUploadValidator.validate(file, maxBytes);
+        return upload(folder, UUID.randomUUID().toString(), file.getContentType(), file.getSize(),
+                file::getInputStream);
+    }
+
+    @Override
+    public String uploadBytes(byte[] content, String contentType, String folder, String name) throws IOException {
+        return upload(folder, ImageUploadValidator.sanitizeName(name, UUID.randomUUID().toString()), contentType,
+                content.length, () -> new ByteArrayInputStream(content));
+    }
+
+    @Override
+    public boolean isManaged(String url) {
+        return url != null && url.startsWith(deliveryPrefix());
+    }
+
+    @Override
+    public InputStream open(String url) throws IOException {
+        if (!isManaged(url)) {
+            throw new IOException("Not a Cloudinary URL of this account: " + url);
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(uploadTimeout).GET().build();
+        HttpResponse<InputStream> response = sendRequest(request);
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Could not download " + url + ": HTTP " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private String upload(String folder, String publicId, String contentType, long size,
+                          ContentSource content) throws IOException {
+        Map<String, Object> params = new TreeMap<>();
+        params.put("folder", rootFolder + "/" + folder);
+        params.put("public_id", publicId);
+        params.put("timestamp", String.valueOf(System.currentTimeMillis() / 1000L));
+        String signature = cloudinary.apiSignRequest(params, cloudinary.config.apiSecret);
+
+        String boundary = "----upload" + UUID.randomUUID().toString().replace("-", "");
+        StringBuilder head = new StringBuilder();
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            appendField(head, boundary, param.getKey(), param.getValue().toString());
+        }
+        appendField(head, boundary, "api_key", cloudinary.config.apiKey);
+        appendField(head, boundary, "signature", signature);
+        head.append("--").append(boundary).append("\r\n")
+            .append("Content-Disposition: form-data; name=\"file\"; filename=\"upload\"\r\n")
+            .append("Content-Type: ").append(contentType).append("\r\n\r\n");
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] tailBytes = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        long contentLength = headBytes.length + size + tailBytes.length;
+
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.fromPublisher(
+                HttpRequest.BodyPublishers.ofInputStream(() -> multipartStream(headBytes, content, tailBytes)),
+                contentLength);
+        HttpRequest request = HttpRequest.newBuilder(uploadUri())
+                .timeout(uploadTimeout)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(body)
+                .build();
+
+        HttpResponse<InputStream> response = sendRequest(request);
+        try (InputStream responseBody = response.body()) {
+            JsonNode json = objectMapper.readTree(responseBody);
+            if (response.statusCode() != 200 || !json.hasNonNull("secure_url")) {
+                String error = json.path("error").path("message").asText("HTTP " + response.statusCode());
+                throw new IOException("Could not upload file to Cloudinary: " + error);
+            }
+            return json.get("secure_url").asText();
+        }
+    }
+
+    private HttpResponse<InputStream> sendRequest(HttpRequest request) throws IOException {
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Request to Cloudinary interrupted", e);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void delete(String url) {
+        String publicId = publicIdOf(url);
+        if (publicId == null) {
+            return;
+        }
+        try {
+            cloudinary.uploader().destroy(publicId, ObjectUtils.emptyMap());
+        } catch (Exception e) {
+            logger.warn("Could not delete Cloudinary asset {}: {}", publicId, e.getMessage());
+        }
+    }
+
+    private String deliveryPrefix() {
+        return "https://res.cloudinary.com/" + cloudinary.config.cloudName + "/";
+    }
+
+    private URI uploadUri() {
+        return URI.create("https://api.cloudinary.com/v1_1/" + cloudinary.config.cloudName + "/image/upload");
+    }
+
+    private static InputStream multipartStream(byte[] head, ContentSource content, byte[] tail) {
+        try {
+            List<InputStream> parts = List.of(new ByteArrayInputStream(head), content.open(),
+                    new ByteArrayInputStream(tail));
+            return new SequenceInputStream(Collections.enumeration(parts));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void appendField(StringBuilder out, String boundary, String name, String value) {
+        out.append("--").append(boundary).append("\r\n")
+           .append("Content-Disposition: form-data; name=\"").append(name).append("\"\r\n\r\n")
+           .append(value).append("\r\n");
+    }
+
+    // https://res.cloudinary.com/<cloud>/image/upload/v123/<folder>/<id>.jpg -> <folder>/<id>
+    private static String publicIdOf(String url) {
+        if (url == null) {
+            return null;
+        }
+        int upload = url.indexOf("/upload/");
+        if (upload < 0) {
+            return null;
+        }
+        String path = url.substring(upload + "/upload/".length());
+        if (path.matches("v\\d+/.*")) {
+            path = path.substring(path.indexOf('/') + 1);
+        }
+        int dot = path.lastIndexOf('.');
+        return dot > 0 ? path.substring(0, dot) : path;
+    }
+
+    @FunctionalInterface
+    private interface ContentSource {
+        InputStream open() throws IOException;
+    }
+}
@@ -0,0 +1,427 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.response.EventCategoryResponseDTO;
+import com.example.demo.dto.response.EventResponseDTO;
+import com.example.demo.repository.EventCatalogJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Read model sự kiện trong bộ nhớ (mỗi node) cho các endpoint danh sách công khai: EventResponseDTO dựng sẵn,
+ * đánh index theo category, status và start_time. Đọc không mở transaction, không chạm JPA/Hikari.
+ *
+ * Snapshot bất biến, thay nguyên khối (copy-on-write) khi refresh; caller nhận bản sao.
+ * Refresh tăng dần: poll outbox event_catalog_change (trigger ghi) và chỉ nạp lại các sự kiện vừa đổi;
+ * định kỳ nạp lại toàn bộ làm lưới an toàn. Dữ liệu giữa các node trễ tối đa 1 chu kỳ poll.
+ *
+ * Catalog giữ mọi sự kiện (bảng nhỏ) để trả lời đúng cả bộ lọc gồm sự kiện đã qua; vượt max-events thì tắt,
+ * các endpoint quay về JPA như cũ.
+ */
+@Component
+public class EventCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventCatalog.class);
+
+    private static final Comparator<EventResponseDTO> BY_START_TIME = Comparator
+            .comparing(EventResponseDTO::getStartTime, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(EventResponseDTO::getId);
+
+    // Các trường sort được (giống tên thuộc tính của entity Event mà Pageable truyền xuống)
+    private static final Map<String, Comparator<EventResponseDTO>> SORTABLE = Map.of(
+            "createdAt", nullsLast(EventResponseDTO::getCreatedAt),
+            "startTime", nullsLast(EventResponseDTO::getStartTime),
+            "endTime", nullsLast(EventResponseDTO::getEndTime),
+            "title", Comparator.comparing(EventResponseDTO::getTitle,
+                    Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)),
+            "status", nullsLast(EventResponseDTO::getStatus),
+            "location", nullsLast(EventResponseDTO::getLocation),
+            "pointCostToRegister", nullsLast(EventResponseDTO::getPointCostToRegister),
+            "totalRewardPoints", nullsLast(EventResponseDTO::getTotalRewardPoints),
+            "maxAttendees", nullsLast(EventResponseDTO::getMaxAttendees));
+
+    private final EventCatalogJdbcRepository catalogRepository;
+    private final TransactionTemplate readOnlyTemplate;
+    private final boolean enabled;
+    private final long maxEvents;
+    private final int pollBatchSize;
+    private final Duration pollOverlap;
+    private final Duration fullRefreshInterval;
+    private final Duration changeRetention;
+
+    // null = chưa sẵn sàng hoặc đã tắt -> caller dùng JPA
+    private volatile Snapshot snapshot;
+
+    // Sự kiện vừa được ghi trên node này (id -> System.nanoTime() lúc ghi): findById trả về DB cho tới khi
+    // poll nạp lại, để người vừa sửa không đọc lại bản cũ. Danh sách vẫn có thể cũ tối đa 1 chu kỳ poll.
+    private final Map<UUID, Long> locallyChanged = new ConcurrentHashMap<>();
+
+    // Chỉ thread refresh (synchronized) đọc/ghi
+    private OffsetDateTime cursor;
+    private long lastFullRefreshNanos;
+    private final Map<UUID, OffsetDateTime> appliedChanges = new HashMap<>();
+
+    private final Counter hitCounter;
+    private final Counter fallbackCounter;
+    private final Timer incrementalRefreshTimer;
+    private final Timer fullRefreshTimer;
+
+    public EventCatalog(EventCatalogJdbcRepository catalogRepository,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        @Value("${event.catalog.enabled:true}") boolean enabled,
+                        @Value("${event.catalog.max-events:50000}") long maxEvents,
+                        @Value("${event.catalog.poll-batch-size:500}") int pollBatchSize,
+                        @Value("${event.catalog.poll-overlap-ms:60000}") long pollOverlapMs,
+                        @Value("${event.catalog.full-refresh-interval-ms:600000}") long fullRefreshIntervalMs,
+                        @Value("${event.catalog.change-retention-ms:86400000}") long changeRetentionMs) {
+        this.catalogRepository = catalogRepository;
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.maxEvents = maxEvents;
+        this.pollBatchSize = pollBatchSize;
+        this.pollOverlap = Duration.ofMillis(pollOverlapMs);
+        this.fullRefreshInterval = Duration.ofMillis(fullRefreshIntervalMs);
+        this.changeRetention = Duration.ofMillis(changeRetentionMs);
+
+        this.hitCounter = Counter.builder("event.catalog.requests").tag("result", "hit")
+                .description("Event reads served from the in-memory catalog")
+                .register(meterRegistry);
+        this.fallbackCounter = Counter.builder("event.catalog.requests").tag("result", "fallback")
+                .description("Event reads the catalog could not answer (not ready, unsupported sort, unknown id)")
+                .register(meterRegistry);
+        this.incrementalRefreshTimer = Timer.builder("event.catalog.refresh").tag("type", "incremental")
+                .description("Applying outbox changes to the catalog")
+                .register(meterRegistry);
+        this.fullRefreshTimer = Timer.builder("event.catalog.refresh").tag("type", "full")
+                .description("Reloading the whole catalog")
+                .register(meterRegistry);
+        Gauge.builder("event.catalog.size", this, catalog -> {
+                    Snapshot current = catalog.snapshot;
+                    return current != null ? current.byId().size() : 0;
+                })
+                .description("Events held in the in-memory catalog (0 = disabled, endpoints use JPA)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Trigger/outbox do migration V3 tạo; chưa có -> giữ JPA. Chỉ đọc catalog, không chạy DDL lúc khởi động.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void initialize() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (!catalogRepository.isSchemaReady()) {
+                logger.warn("Event catalog triggers are missing, public listings stay on JPA");
+                return;
+            }
+            fullRefresh();
+        } catch (DataAccessException e) {
+            logger.warn("Could not initialize event catalog, public listings stay on JPA: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${event.catalog.poll-interval-ms:2000}",
+               initialDelayString = "${event.catalog.poll-interval-ms:2000}")
+    public synchronized void poll() {
+        if (!enabled || cursor == null) {
+            return;
+        }
+        try {
+            if (System.nanoTime() - lastFullRefreshNanos >= fullRefreshInterval.toNanos()) {
+                fullRefresh();
+            } else {
+                incrementalRefreshTimer.record(this::applyChanges);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Event catalog refresh failed, retrying next poll: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Gọi khi node này ghi sự kiện (trong hoặc ngoài transaction).
+     */
+    public void markChanged(UUID eventId) {
+        locallyChanged.put(eventId, System.nanoTime());
+    }
+
+    public Optional<EventResponseDTO> findById(UUID eventId) {
+        Snapshot current = snapshot;
+        EventResponseDTO event = current != null && !locallyChanged.containsKey(eventId)
+                ? current.byId().get(eventId) : null;
+        if (event == null) {
+            // Chưa sẵn sàng, vừa ghi trên node này, hoặc sự kiện vừa tạo ở node khác chưa tới lượt poll
+            fallbackCounter.increment();
+            return Optional.empty();
+        }
+        hitCounter.increment();
+        return Optional.of(copy(event));
+    }
+
+    /**
+     * Một trang sự kiện theo bộ lọc (giống EventSpecifications.filterBy).
+     * @return empty nếu catalog chưa sẵn sàng hoặc pageable sort theo trường không hỗ trợ
+     */
+    public Optional<Page<EventResponseDTO>> findPage(UUID categoryId, String status, Pageable pageable) {
+        Snapshot current = snapshot;
+        Comparator<EventResponseDTO> order = comparator(pageable.getSort(), null);
+        if (current == null || order == null) {
+            fallbackCounter.increment();
+            return Optional.empty();
+        }
+        hitCounter.increment();
+        String statusKey = status != null && !status.isBlank() ? status.toUpperCase() : null;
+
+        List<EventResponseDTO> source;
+        if (categoryId != null) {
+            source = current.byCategory().getOrDefault(categoryId, List.of());
+        } else if (statusKey != null) {
+            source = current.byStatus().getOrDefault(statusKey, List.of());
+        } else {
+            source = current.byStartTime();
+        }
+        List<EventResponseDTO> matches = source.stream()
+                .filter(event -> statusKey == null || statusKey.equals(upper(event.getStatus())))
+                .sorted(order)
+                .toList();
+        return Optional.of(page(matches, pageable));
+    }
+
+    /**
+     * Sự kiện có start_time sau thời điểm cho trước (mặc định sắp theo start_time tăng dần).
+     */
+    public Optional<Page<EventResponseDTO>> findUpcoming(OffsetDateTime after, Pageable pageable) {
+        Snapshot current = snapshot;
+        Comparator<EventResponseDTO> order = comparator(pageable.getSort(), BY_START_TIME);
+        if (current == null || order == null) {
+            fallbackCounter.increment();
+            return Optional.empty();
+        }
+        hitCounter.increment();
+        List<EventResponseDTO> byStartTime = current.byStartTime();
+        int from = firstStartingAfter(byStartTime, after);
+        List<EventResponseDTO> matches = byStartTime.subList(from, byStartTime.size());
+        if (order != BY_START_TIME) {
+            matches = matches.stream().sorted(order).toList();
+        }
+        return Optional.of(page(matches, pageable));
+    }
+
+    /**
+     * @return empty nếu catalog chưa sẵn sàng; danh sách rỗng nếu category không có sự kiện (hoặc không tồn tại)
+     */
+    public Optional<List<EventResponseDTO>> findByCategory(UUID categoryId) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            fallbackCounter.increment();
+            return Optional.empty();
+        }
+        hitCounter.increment();
+        return Optional.of(current.byCategory().getOrDefault(categoryId, List.of()).stream()
+                .map(EventCatalog::copy)
+                .toList());
+    }
+
+    private void fullRefresh() {
+        fullRefreshTimer.record(() -> {
+            // Mốc lấy TRƯỚC khi đọc: thay đổi commit trong lúc nạp sẽ được poll sau nhặt lại
+            long startedNanos = System.nanoTime();
+            OffsetDateTime startedAt = catalogRepository.currentTime();
+            long count = catalogRepository.countEvents();
+            if (count > maxEvents) {
+                if (snapshot != null || cursor == null) {
+                    logger.warn("Event catalog disabled: {} events exceed event.catalog.max-events={}", count, maxEvents);
+                }
+                snapshot = null;
+            } else {
+                List<EventResponseDTO> events = readOnlyTemplate.execute(status -> catalogRepository.findAllEvents());
+                Snapshot previous = snapshot;
+                snapshot = Snapshot.of(events != null ? events : List.of());
+                if (previous == null) {
+                    logger.info("Event catalog loaded {} events", snapshot.byId().size());
+                }
+            }
+            cursor = startedAt;
+            appliedChanges.clear();
+            locallyChanged.values().removeIf(markedAt -> markedAt - startedNanos < 0);
+            lastFullRefreshNanos = System.nanoTime();
+            catalogRepository.deleteChangesBefore(startedAt.minus(changeRetention));
+        });
+    }
+
+    private void applyChanges() {
+        long startedNanos = System.nanoTime();
+        Snapshot current = snapshot;
+        // Đọc lùi pollOverlap: dòng outbox của transaction commit muộn có changed_at sớm hơn cursor
+        List<EventCatalogJdbcRepository.Change> changes =
+                catalogRepository.findChangesSince(cursor.minus(pollOverlap), pollBatchSize);
+        Set<UUID> changedIds = new HashSet<>();
+        OffsetDateTime newest = cursor;
+        for (EventCatalogJdbcRepository.Change change : changes) {
+            OffsetDateTime applied = appliedChanges.get(change.eventId());
+            if (applied == null || applied.isBefore(change.changedAt())) {
+                changedIds.add(change.eventId());
+                appliedChanges.put(change.eventId(), change.changedAt());
+            }
+            if (change.changedAt().isAfter(newest)) {
+                newest = change.changedAt();
+            }
+        }
+        cursor = newest;
+        OffsetDateTime forgetBefore = cursor.minus(pollOverlap);
+        appliedChanges.values().removeIf(changedAt -> changedAt.isBefore(forgetBefore));
+
+        if (changedIds.isEmpty() || current == null) {
+            // current == null: đang tắt vì quá max-events, lần nạp toàn bộ kế tiếp sẽ kiểm tra lại
+            return;
+        }
+        List<EventResponseDTO> reloaded = readOnlyTemplate.execute(status -> catalogRepository.findEventsByIds(changedIds));
+        Map<UUID, EventResponseDTO> byId = new HashMap<>(current.byId());
+        byId.keySet().removeAll(changedIds); // đã xóa -> không có trong reloaded
+        if (reloaded != null) {
+            reloaded.forEach(event -> byId.put(event.getId(), event));
+        }
+        snapshot = Snapshot.of(byId.values());
+        // Chỉ bỏ đánh dấu ghi trước lần đọc outbox này (lần ghi sau đó có thể chưa commit)
+        changedIds.forEach(id -> locallyChanged.computeIfPresent(id,
+                (key, markedAt) -> markedAt - startedNanos < 0 ? null : markedAt));
+        logger.debug("Event catalog applied {} changed events", changedIds.size());
+    }
+
+    private static Comparator<EventResponseDTO> comparator(Sort sort, Comparator<EventResponseDTO> unsorted) {
+        if (sort.isUnsorted()) {
+            return unsorted != null ? unsorted : BY_START_TIME;
+        }
+        Comparator<EventResponseDTO> result = null;
+        for (Sort.Order order : sort) {
+            Comparator<EventResponseDTO> field = SORTABLE.get(order.getProperty());
+            if (field == null) {
+                return null;
+            }
+            // Giống Postgres: ASC nulls last, DESC nulls first
+            field = order.isAscending() ? field : field.reversed();
+            result = result == null ? field : result.thenComparing(field);
+        }
+        return result.thenComparing(EventResponseDTO::getId);
+    }
+
+    private static Page<EventResponseDTO> page(List<EventResponseDTO> matches, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(matches.stream().map(EventCatalog::copy).toList(), pageable, matches.size());
+        }
+        int from = (int) Math.min(pageable.getOffset(), matches.size());
+        int to = Math.min(from + pageable.getPageSize(), matches.size());
+        List<EventResponseDTO> content = matches.subList(from, to).stream().map(EventCatalog::copy).toList();
+        return new PageImpl<>(content, pageable, matches.size());
+    }
+
+    private static int firstStartingAfter(List<EventResponseDTO> byStartTime, OffsetDateTime after) {
+        int low = 0;
+        int high = byStartTime.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            OffsetDateTime startTime = byStartTime.get(mid).getStartTime();
+            if (startTime != null && !startTime.isAfter(after)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static <T extends Comparable<? super T>> Comparator<EventResponseDTO> nullsLast(
+            Function<EventResponseDTO, T> key) {
+        return Comparator.comparing(key, Comparator.nullsLast(Comparator.naturalOrder()));
+    }
+
+    private static String upper(String value) {
+        return value != null ? value.toUpperCase() : null;
+    }
+
+    // DTO của snapshot được dùng chung giữa các request -> không bao giờ trả ra ngoài trực tiếp
+    private static EventResponseDTO copy(EventResponseDTO source) {
+        EventResponseDTO dto = new EventResponseDTO();
+        dto.setId(source.getId());
+        dto.setPartnerId(source.getPartnerId());
+        dto.setPartnerName(source.getPartnerName());
+        dto.setTitle(source.getTitle());
+        dto.setDescription(source.getDescription());
+        dto.setStartTime(source.getStartTime());
+        dto.setEndTime(source.getEndTime());
+        dto.setLocation(source.getLocation());
+        dto.setPointCostToRegister(source.getPointCostToRegister());
+        dto.setTotalRewardPoints(source.getTotalRewardPoints());
+        dto.setTotalBudgetCoin(source.getTotalBudgetCoin());
+        dto.setStatus(source.getStatus());
+        dto.setCreatedAt(source.getCreatedAt());
+        dto.setMaxAttendees(source.getMaxAttendees());
+        if (source.getCategory() != null) {
+            EventCategoryResponseDTO category = new EventCategoryResponseDTO();
+            category.setId(source.getCategory().getId());
+            category.setName(source.getCategory().getName());
+            category.setDescription(source.getCategory().getDescription());
+            dto.setCategory(category);
+        }
+        return dto;
+    }
+
+    /**
+     * Các index của 1 phiên bản catalog; mọi danh sách sắp theo start_time.
+     */
+    private record Snapshot(Map<UUID, EventResponseDTO> byId,
+                            List<EventResponseDTO> byStartTime,
+                            Map<UUID, List<EventResponseDTO>> byCategory,
+                            Map<String, List<EventResponseDTO>> byStatus) {
+
+        static Snapshot of(Collection<EventResponseDTO> events) {
+            List<EventResponseDTO> byStartTime = new ArrayList<>(events);
+            byStartTime.sort(BY_START_TIME);
+            Map<UUID, EventResponseDTO> byId = byStartTime.stream()
+                    .collect(Collectors.toUnmodifiableMap(EventResponseDTO::getId, Function.identity()));
+            Map<UUID, List<EventResponseDTO>> byCategory = byStartTime.stream()
+                    .filter(event -> event.getCategory() != null)
+                    .collect(Collectors.groupingBy(event -> event.getCategory().getId(),
+                            Collectors.toUnmodifiableList()));
+            Map<String, List<EventResponseDTO>> byStatus = byStartTime.stream()
+                    .filter(event -> event.getStatus() != null)
+                    .collect(Collectors.groupingBy(event -> event.getStatus().toUpperCase(),
+                            Collectors.toUnmodifiableList()));
+            return new Snapshot(byId, List.copyOf(byStartTime), Map.copyOf(byCategory), Map.copyOf(byStatus));
+        }
+    }
+}
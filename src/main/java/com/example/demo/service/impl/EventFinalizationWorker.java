@@ -0,0 +1,320 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.entity.Event;
+import com.example.demo.entity.EventFinalizationJob;
+import com.example.demo.entity.enums.FinalizationJobStatus;
+import com.example.demo.exception.ForbiddenException;
+import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.repository.CheckinRepository;
+import com.example.demo.repository.EventFinalizationJobRepository;
+import com.example.demo.repository.EventRepository;
+import com.example.demo.repository.WalletLedgerJdbcRepository;
+import com.example.demo.service.LedgerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Worker chạy nền cho EventFinalizationJob.
+ * Mỗi chunk (chi trả + checkpoint) là 1 transaction riêng; chunk lỗi sẽ được xử lý lại từng ví
+ * để 1 ví hỏng không làm rollback toàn bộ đợt chi trả. Ví lỗi được lưu lại và thử lại một lượt
+ * trước khi hoàn tất; còn ví lỗi thì job FAILED, sự kiện chưa FINALIZED.
+ */
+@Component
+public class EventFinalizationWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventFinalizationWorker.class);
+    private static final UUID MIN_UUID = new UUID(0L, 0L);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final EventFinalizationJobRepository jobRepository;
+    private final EventRepository eventRepository;
+    private final CheckinRepository checkinRepository;
+    private final LedgerService ledgerService;
+    private final WalletLedgerJdbcRepository walletLedgerRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor finalizationExecutor;
+    private final int chunkSize;
+
+    // Các job đang chạy trên node này (tránh submit trùng)
+    private final Set<UUID> runningJobs = ConcurrentHashMap.newKeySet();
+
+    public EventFinalizationWorker(EventFinalizationJobRepository jobRepository,
+                                   EventRepository eventRepository,
+                                   CheckinRepository checkinRepository,
+                                   LedgerService ledgerService,
+                                   WalletLedgerJdbcRepository walletLedgerRepository,
+                                   TransactionTemplate transactionTemplate,
+                                   @Qualifier("finalizationExecutor") TaskExecutor finalizationExecutor,
+                                   @Value("${event.finalization.chunk-size:500}") int chunkSize) {
+        this.jobRepository = jobRepository;
+        this.eventRepository = eventRepository;
+        this.checkinRepository = checkinRepository;
+        this.ledgerService = ledgerService;
+        this.walletLedgerRepository = walletLedgerRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.finalizationExecutor = finalizationExecutor;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Đưa job vào hàng đợi xử lý. Gọi sau khi transaction tạo job đã commit.
+     */
+    public void submit(UUID jobId) {
+        if (!runningJobs.add(jobId)) {
+            return;
+        }
+        try {
+            finalizationExecutor.execute(() -> {
+                try {
+                    process(jobId);
+                } finally {
+                    runningJobs.remove(jobId);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            runningJobs.remove(jobId);
+            logger.error("Finalization job {} rejected by executor. It will be resumed on next startup.", jobId, e);
+        }
+    }
+
+    /**
+     * Resume các job dở dang (PENDING/RUNNING) sau khi ứng dụng khởi động lại.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        List<EventFinalizationJob> unfinished = jobRepository.findAllByStatusIn(
+                EnumSet.of(FinalizationJobStatus.PENDING, FinalizationJobStatus.RUNNING));
+        for (EventFinalizationJob job : unfinished) {
+            logger.info("Resuming finalization job {} for event {} from checkpoint {}.",
+                    job.getId(), job.getEventId(), job.getLastWalletId());
+            submit(job.getId());
+        }
+    }
+
+    private void process(UUID jobId) {
+        try {
+            EventFinalizationJob job = transactionTemplate.execute(status -> markRunning(jobId));
+            if (job == null) {
+                return;
+            }
+            if (job.getPayoutAmount().compareTo(BigDecimal.ZERO) <= 0) {
+                transactionTemplate.executeWithoutResult(status -> complete(jobId));
+                return;
+            }
+
+            while (true) {
+                UUID cursor = job.getLastWalletId() != null ? job.getLastWalletId() : MIN_UUID;
+                List<UUID> walletIds = checkinRepository.findVerifiedAttendeeWalletIdsAfter(
+                        job.getEventId(), cursor, PageRequest.of(0, chunkSize));
+
+                if (walletIds.isEmpty()) {
+                    retryFailedWallets(jobId);
+                    transactionTemplate.executeWithoutResult(status -> complete(jobId));
+                    return;
+                }
+
+                try {
+                    job = transactionTemplate.execute(status -> payChunk(jobId, walletIds));
+                } catch (ForbiddenException | OptimisticLockingFailureException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    logger.warn("Finalization job {}: chunk of {} wallets failed ({}). Retrying wallet by wallet.",
+                            jobId, walletIds.size(), e.getMessage());
+                    job = payWalletByWallet(jobId, walletIds);
+                }
+            }
+        } catch (OptimisticLockingFailureException e) {
+            // Node khác đã nhận job này (checkpoint bị cập nhật song song) -> nhường lại
+            logger.warn("Finalization job {} is being processed by another worker. Stopping here.", jobId);
+        } catch (RuntimeException e) {
+            logger.error("Finalization job {} failed: {}", jobId, e.getMessage(), e);
+            transactionTemplate.executeWithoutResult(status -> markFailed(jobId, e.getMessage()));
+        }
+    }
+
+    private EventFinalizationJob payWalletByWallet(UUID jobId, List<UUID> walletIds) {
+        EventFinalizationJob job = null;
+        for (UUID walletId : walletIds) {
+            try {
+                job = transactionTemplate.execute(status -> payChunk(jobId, List.of(walletId)));
+            } catch (DuplicateKeyException e) {
+                // Worker khác vừa trả (unique key chi trả theo (event, ví)) -> đã trả, chỉ ghi checkpoint
+                job = transactionTemplate.execute(status -> recordProcessed(jobId, List.of(walletId)));
+            } catch (ForbiddenException | OptimisticLockingFailureException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                logger.error("Finalization job {}: payout to wallet {} failed: {}", jobId, walletId, e.getMessage());
+                job = transactionTemplate.execute(status -> skipWallet(jobId, walletId, e.getMessage()));
+            }
+        }
+        return job;
+    }
+
+    /**
+     * Lượt thử lại các ví lỗi (lỗi DB tạm thời...) trước khi hoàn tất job. Ví vẫn lỗi được giữ lại.
+     */
+    private void retryFailedWallets(UUID jobId) {
+        List<UUID> failedWalletIds = transactionTemplate.execute(
+                status -> new ArrayList<>(findJob(jobId).getFailedWalletIds()));
+        if (failedWalletIds == null || failedWalletIds.isEmpty()) {
+            return;
+        }
+        logger.info("Finalization job {}: retrying {} failed wallets.", jobId, failedWalletIds.size());
+        for (UUID walletId : failedWalletIds) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> payFailedWallet(jobId, walletId));
+            } catch (DuplicateKeyException e) {
+                transactionTemplate.executeWithoutResult(status -> resolveFailedWallet(findJob(jobId), walletId));
+            } catch (ForbiddenException | OptimisticLockingFailureException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                logger.error("Finalization job {}: retry of wallet {} failed: {}", jobId, walletId, e.getMessage());
+                transactionTemplate.executeWithoutResult(status -> recordRetryError(jobId, walletId, e.getMessage()));
+            }
+        }
+    }
+
+    // --- Các bước dưới đây luôn chạy trong transaction ---
+
+    private EventFinalizationJob markRunning(UUID jobId) {
+        EventFinalizationJob job = findJob(jobId);
+        if (job.getStatus() == FinalizationJobStatus.COMPLETED || job.getStatus() == FinalizationJobStatus.FAILED) {
+            return null;
+        }
+        job.setStatus(FinalizationJobStatus.RUNNING);
+        return jobRepository.save(job);
+    }
+
+    /**
+     * Chi trả 1 chunk và ghi checkpoint trong CÙNG transaction.
+     */
+    private EventFinalizationJob payChunk(UUID jobId, List<UUID> walletIds) {
+        EventFinalizationJob job = findJob(jobId);
+        payUnpaid(job, walletIds);
+        return recordProcessed(job, walletIds);
+    }
+
+    private EventFinalizationJob recordProcessed(UUID jobId, List<UUID> walletIds) {
+        return recordProcessed(findJob(jobId), walletIds);
+    }
+
+    private EventFinalizationJob recordProcessed(EventFinalizationJob job, List<UUID> walletIds) {
+        job.setProcessedCount(job.getProcessedCount() + walletIds.size());
+        job.setLastWalletId(walletIds.get(walletIds.size() - 1));
+        return jobRepository.save(job);
+    }
+
+    private void payFailedWallet(UUID jobId, UUID walletId) {
+        EventFinalizationJob job = findJob(jobId);
+        payUnpaid(job, List.of(walletId));
+        resolveFailedWallet(job, walletId);
+    }
+
+    /**
+     * Ví đã nhận tiền của sự kiện này (worker khác / lần chạy trước) được bỏ qua, không trả lại lần 2.
+     */
+    private void payUnpaid(EventFinalizationJob job, List<UUID> walletIds) {
+        Set<UUID> alreadyPaid = walletLedgerRepository.findPaidAttendeeWalletIds(job.getEventId(), walletIds);
+        List<UUID> unpaid = alreadyPaid.isEmpty() ? walletIds
+                : walletIds.stream().filter(walletId -> !alreadyPaid.contains(walletId)).toList();
+        if (unpaid.isEmpty()) {
+            return;
+        }
+        boolean paid = ledgerService.postEventPayouts(
+                job.getEventId(), job.getEventWalletId(), unpaid, job.getPayoutAmount());
+        if (!paid) {
+            throw new ForbiddenException("Event wallet has insufficient funds to finalize rewards. Required: "
+                    + job.getPayoutAmount().multiply(BigDecimal.valueOf(unpaid.size())));
+        }
+    }
+
+    private EventFinalizationJob skipWallet(UUID jobId, UUID walletId, String error) {
+        EventFinalizationJob job = findJob(jobId);
+        job.getFailedWalletIds().add(walletId);
+        job.setFailedCount(job.getFailedWalletIds().size());
+        job.setLastWalletId(walletId);
+        job.setLastError(truncate("Wallet " + walletId + ": " + error));
+        return jobRepository.save(job);
+    }
+
+    private void resolveFailedWallet(EventFinalizationJob job, UUID walletId) {
+        if (job.getFailedWalletIds().remove(walletId)) {
+            job.setProcessedCount(job.getProcessedCount() + 1);
+            job.setFailedCount(job.getFailedWalletIds().size());
+            jobRepository.save(job);
+        }
+    }
+
+    private void recordRetryError(UUID jobId, UUID walletId, String error) {
+        EventFinalizationJob job = findJob(jobId);
+        job.setLastError(truncate("Wallet " + walletId + ": " + error));
+        jobRepository.save(job);
+    }
+
+    /**
+     * Chỉ FINALIZED khi mọi ví đã được trả; còn ví lỗi thì job FAILED (khởi chạy lại sẽ thử lại các ví đó).
+     */
+    private void complete(UUID jobId) {
+        EventFinalizationJob job = findJob(jobId);
+        if (!job.getFailedWalletIds().isEmpty()) {
+            job.setStatus(FinalizationJobStatus.FAILED);
+            job.setLastError(job.getFailedWalletIds().size()
+                    + " wallets could not be paid. Restart finalization to retry them.");
+            jobRepository.save(job);
+            logger.error("Finalization job {} for event {} stopped with {} unpaid wallets.",
+                    jobId, job.getEventId(), job.getFailedWalletIds().size());
+            return;
+        }
+        Event event = eventRepository.findById(job.getEventId())
+                .orElseThrow(() -> new ResourceNotFoundException("Event not found with id: " + job.getEventId()));
+
+        event.setStatus("FINALIZED");
+        eventRepository.save(event);
+
+        job.setStatus(FinalizationJobStatus.COMPLETED);
+        job.setCompletedAt(OffsetDateTime.now());
+        jobRepository.save(job);
+
+        logger.info("Finalization job {} completed for event {}: processed={}, failed={}.",
+                jobId, job.getEventId(), job.getProcessedCount(), job.getFailedCount());
+    }
+
+    private void markFailed(UUID jobId, String error) {
+        EventFinalizationJob job = findJob(jobId);
+        job.setStatus(FinalizationJobStatus.FAILED);
+        job.setLastError(truncate(error));
+        jobRepository.save(job);
+    }
+
+    private EventFinalizationJob findJob(UUID jobId) {
+        return jobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("Finalization job not found with id: " + jobId));
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
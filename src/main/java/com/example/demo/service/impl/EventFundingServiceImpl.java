@@ -5,6 +5,7 @@ import com.example.demo.dto.response.EventFundingResponseDTO;
 import com.example.demo.entity.*;
 import com.example.demo.repository.*;
 import com.example.demo.service.EventFundingService;
+import com.example.demo.service.LedgerService;
 import com.example.demo.exception.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,15 +21,22 @@ public class EventFundingServiceImpl implements EventFundingService {
     private final WalletRepository walletRepository;
     private final EventFundingRepository eventFundingRepository;
     private final WalletTransactionRepository transactionRepository;
+    private final LedgerService ledgerService;
+    private final EventSeatGate eventSeatGate;
+    private final EventCatalog eventCatalog;
 
     public EventFundingServiceImpl(PartnerRepository partnerRepository, EventRepository eventRepository,
                                    WalletRepository walletRepository, EventFundingRepository eventFundingRepository,
-                                   WalletTransactionRepository transactionRepository) {
+                                   WalletTransactionRepository transactionRepository, LedgerService ledgerService,
+                                   EventSeatGate eventSeatGate, EventCatalog eventCatalog) {
         this.partnerRepository = partnerRepository;
         this.eventRepository = eventRepository;
         this.walletRepository = walletRepository;
         this.eventFundingRepository = eventFundingRepository;
         this.transactionRepository = transactionRepository;
+        this.ledgerService = ledgerService;
+        this.eventSeatGate = eventSeatGate;
+        this.eventCatalog = eventCatalog;
     }
 
     @Override
@@ -67,13 +75,7 @@ public class EventFundingServiceImpl implements EventFundingService {
                     "Insufficient funds. Partner balance is: " + partnerWallet.getBalance());
         }
 
-        // 5. <<< SỬA ĐỔI: Thực hiện giao dịch (Partner -> Event)
-        
-        // 5.1. Trừ tiền ví Partner
-        partnerWallet.setBalance(partnerWallet.getBalance().subtract(amount));
-        
-        // 5.2. Cộng tiền vào VÍ EVENT
-        eventWallet.setBalance(eventWallet.getBalance().add(amount));
+        // 5. Cập nhật sự kiện (việc chuyển tiền Partner -> Event được ghi sổ ở bước 7)
 
         // 5.3. Cập nhật tổng ngân sách (chỉ để theo dõi)
         BigDecimal newTotalBudget = event.getTotalBudgetCoin().add(amount);
@@ -91,9 +93,9 @@ public class EventFundingServiceImpl implements EventFundingService {
         }
         
         // 5.5. Lưu các thay đổi
-        walletRepository.save(partnerWallet);
-        walletRepository.save(eventWallet); 
         eventRepository.save(event); 
+        eventSeatGate.invalidate(event.getId()); // max_attendees tăng -> node này không được coi là hết chỗ nữa
+        eventCatalog.markChanged(event.getId());
 
         // 6. Ghi lại lịch sử cấp vốn (Giữ nguyên)
         EventFunding funding = new EventFunding();
@@ -102,27 +104,9 @@ public class EventFundingServiceImpl implements EventFundingService {
         funding.setAmountCoin(amount);
         EventFunding savedFunding = eventFundingRepository.save(funding);
 
-        // 7. <<< SỬA ĐỔI: Ghi lại 2 giao dịch ví (Partner và Event)
-        
-        // 7.1. Giao dịch cho Partner (Trừ tiền)
-        WalletTransaction partnerTx = new WalletTransaction();
-        partnerTx.setWallet(partnerWallet);
-        partnerTx.setCounterparty(eventWallet); 
-        partnerTx.setTxnType("FUND_EVENT"); 
-        partnerTx.setAmount(amount.negate()); 
-        partnerTx.setReferenceType("EVENT_FUNDING");
-        partnerTx.setReferenceId(savedFunding.getId());
-        transactionRepository.save(partnerTx);
-        
-        // 7.2. Giao dịch cho Event (Nhận tiền)
-        WalletTransaction eventTx = new WalletTransaction();
-        eventTx.setWallet(eventWallet);
-        eventTx.setCounterparty(partnerWallet); 
-        eventTx.setTxnType("RECEIVE_FUNDING"); 
-        eventTx.setAmount(amount); 
-        eventTx.setReferenceType("EVENT_FUNDING");
-        eventTx.setReferenceId(savedFunding.getId());
-        transactionRepository.save(eventTx);
+        // 7. Chuyển tiền Partner -> Event: cặp bút toán FUND_EVENT / RECEIVE_FUNDING + cập nhật số dư 2 ví
+        ledgerService.transfer(partnerWallet, eventWallet, amount,
+                "FUND_EVENT", "RECEIVE_FUNDING", "EVENT_FUNDING", savedFunding.getId(), null);
 
         // 8. Trả về DTO (Giữ nguyên)
         return convertToDTO(savedFunding);
@@ -0,0 +1,128 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.repository.EventSeatJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bộ đếm chỗ trống trong bộ nhớ (mỗi node) để từ chối sớm đăng ký vào sự kiện đã hết chỗ:
+ * không mở transaction, không khóa ví, không chạm vào dòng event đang nóng.
+ *
+ * Nguồn sự thật vẫn là UPDATE có điều kiện của EventSeatJdbcRepository; bộ đếm ở đây chỉ ghi lại
+ * số chỗ còn lại nhỏ nhất mà DB trả về và hết hạn sau ttl (chỗ được trả lại / max_attendees tăng ở node khác).
+ */
+@Component
+public class EventSeatGate {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventSeatGate.class);
+
+    private final EventSeatJdbcRepository eventSeatRepository;
+    private final long ttlMillis;
+    private final int maxTrackedEvents;
+    private final Map<UUID, SeatState> seats = new ConcurrentHashMap<>();
+
+    private final Counter admittedCounter;
+    private final Counter rejectedInMemoryCounter;
+    private final Counter rejectedInDatabaseCounter;
+
+    public EventSeatGate(EventSeatJdbcRepository eventSeatRepository,
+                         MeterRegistry meterRegistry,
+                         @Value("${event.registration.seat-cache-ttl-ms:2000}") long ttlMillis,
+                         @Value("${event.registration.max-tracked-events:10000}") int maxTrackedEvents) {
+        this.eventSeatRepository = eventSeatRepository;
+        this.ttlMillis = ttlMillis;
+        this.maxTrackedEvents = maxTrackedEvents;
+        this.admittedCounter = Counter.builder("event.registration.admission").tag("result", "admitted")
+                .description("Đăng ký giữ được chỗ")
+                .register(meterRegistry);
+        this.rejectedInMemoryCounter = Counter.builder("event.registration.admission").tag("result", "rejected_memory")
+                .description("Đăng ký bị từ chối sớm vì node biết sự kiện đã hết chỗ")
+                .register(meterRegistry);
+        this.rejectedInDatabaseCounter = Counter.builder("event.registration.admission").tag("result", "rejected_db")
+                .description("Đăng ký bị UPDATE có điều kiện từ chối (hết chỗ)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * O(1), không truy cập DB. false = chắc chắn (trong ttl) là đã hết chỗ.
+     */
+    public boolean mightHaveSeat(UUID eventId) {
+        SeatState state = seats.get(eventId);
+        if (state == null || state.isExpired(ttlMillis)) {
+            return true;
+        }
+        if (state.remaining.get() > 0) {
+            return true;
+        }
+        rejectedInMemoryCounter.increment();
+        return false;
+    }
+
+    /**
+     * Giữ chỗ trong DB (gọi trong transaction đăng ký) và cập nhật bộ đếm của node.
+     * @return false nếu hết chỗ
+     */
+    public boolean reserve(UUID eventId, UUID studentId) {
+        int remaining = eventSeatRepository.reserveSeat(eventId, studentId);
+        if (remaining < 0) {
+            rejectedInDatabaseCounter.increment();
+            record(eventId, 0);
+            return false;
+        }
+        admittedCounter.increment();
+        if (remaining != EventSeatJdbcRepository.UNLIMITED) {
+            record(eventId, remaining);
+        }
+        return true;
+    }
+
+    // max_attendees đổi (cập nhật sự kiện / nạp thêm ngân sách) -> bỏ số liệu cũ của node này
+    public void invalidate(UUID eventId) {
+        seats.remove(eventId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillRegisteredCounts() {
+        int updated = eventSeatRepository.backfillRegisteredCounts();
+        if (updated > 0) {
+            logger.info("Backfilled registered_count for {} event(s)", updated);
+        }
+    }
+
+    private void record(UUID eventId, int remaining) {
+        SeatState state = seats.get(eventId);
+        if (state == null || state.isExpired(ttlMillis)) {
+            if (seats.size() >= maxTrackedEvents) {
+                seats.clear(); // Hiếm khi xảy ra; chỉ mất khả năng từ chối sớm tới lần đặt chỗ kế tiếp
+            }
+            seats.put(eventId, new SeatState(remaining));
+            return;
+        }
+        // Các transaction commit không theo thứ tự -> giữ giá trị nhỏ nhất trong cửa sổ ttl
+        state.remaining.accumulateAndGet(remaining, Math::min);
+    }
+
+    private static final class SeatState {
+        private final AtomicInteger remaining;
+        private final long recordedAt = System.currentTimeMillis();
+
+        private SeatState(int remaining) {
+            this.remaining = new AtomicInteger(remaining);
+        }
+
+        private boolean isExpired(long ttlMillis) {
+            return System.currentTimeMillis() - recordedAt > ttlMillis;
+        }
+    }
+}
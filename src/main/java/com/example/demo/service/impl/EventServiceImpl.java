@@ -4,41 +4,57 @@ import com.example.demo.config.AuthPrincipal;
 import com.example.demo.dto.request.EventCreateDTO;
 import com.example.demo.dto.request.EventUpdateDTO;
 import com.example.demo.dto.response.EventCategoryResponseDTO;
+import com.example.demo.dto.response.EventFinalizationJobResponseDTO;
 import com.example.demo.dto.response.EventResponseDTO;
 import com.example.demo.entity.Checkin;
 import com.example.demo.entity.Event;
 import com.example.demo.entity.EventCategory;
+import com.example.demo.entity.EventFinalizationJob;
 import com.example.demo.entity.Partner;
-import com.example.demo.entity.Student;
 import com.example.demo.entity.Wallet;
-import com.example.demo.entity.WalletTransaction;
+import com.example.demo.entity.enums.FinalizationJobStatus;
 import com.example.demo.exception.ResourceNotFoundException;
 import com.example.demo.exception.BadRequestException;
 import com.example.demo.repository.EventCategoryRepository;
+import com.example.demo.repository.EventFinalizationJobRepository;
 import com.example.demo.repository.EventRepository;
+import com.example.demo.repository.EventSearchJdbcRepository;
 import com.example.demo.repository.PartnerRepository;
 import com.example.demo.repository.WalletTransactionRepository;
 import com.example.demo.repository.WalletRepository;
+import com.example.demo.repository.WalletLedgerJdbcRepository;
 import com.example.demo.repository.CheckinRepository;
 import com.example.demo.service.EventService;
+import com.example.demo.service.LedgerService;
+import com.example.demo.util.EventSpecifications;
+import com.example.demo.util.SearchText;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import com.example.demo.exception.ForbiddenException;
 import com.example.demo.exception.DataIntegrityViolationException;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.data.jpa.domain.Specification;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.util.ArrayList; 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.OffsetDateTime;
 import java.util.stream.Collectors;
-import java.util.Optional;
 import java.util.UUID; // <<< THÊM IMPORT
 
 @Service
@@ -53,12 +69,29 @@ public class EventServiceImpl implements EventService {
     @Autowired
     private CheckinRepository checkinRepository;
     private final WalletRepository walletRepository;
+    private final LedgerService ledgerService;
+    private final WalletLedgerJdbcRepository walletLedgerRepository;
+    private final EventFinalizationJobRepository finalizationJobRepository;
+    private final EventFinalizationWorker finalizationWorker;
+    private final EventSeatGate eventSeatGate;
+    private final EventSearchJdbcRepository eventSearchRepository;
+    private final EventCatalog eventCatalog;
+    private final boolean fullTextSearchEnabled;
+    // false tới khi index tìm kiếm sẵn sàng (hoặc DB không cho tạo extension) -> tìm theo title LIKE
+    private volatile boolean searchIndexReady;
 
     public EventServiceImpl(EventRepository eventRepository,
                             PartnerRepository partnerRepository,
                             EventCategoryRepository categoryRepository, JwtAuthenticationConverter jwtAuthenticationConverter,
                             WalletTransactionRepository transactionRepository, CheckinRepository checkinRepository,
-                            WalletRepository walletRepository) {
+                            WalletRepository walletRepository, LedgerService ledgerService,
+                            WalletLedgerJdbcRepository walletLedgerRepository,
+                            EventFinalizationJobRepository finalizationJobRepository,
+                            EventFinalizationWorker finalizationWorker,
+                            EventSeatGate eventSeatGate,
+                            EventSearchJdbcRepository eventSearchRepository,
+                            EventCatalog eventCatalog,
+                            @Value("${event.search.full-text.enabled:true}") boolean fullTextSearchEnabled) {
         this.eventRepository = eventRepository;
         this.partnerRepository = partnerRepository;
         this.categoryRepository = categoryRepository;
@@ -66,6 +99,14 @@ public class EventServiceImpl implements EventService {
         this.transactionRepository = transactionRepository;
         this.checkinRepository = checkinRepository;
         this.walletRepository = walletRepository;
+        this.ledgerService = ledgerService;
+        this.walletLedgerRepository = walletLedgerRepository;
+        this.finalizationJobRepository = finalizationJobRepository;
+        this.finalizationWorker = finalizationWorker;
+        this.eventSeatGate = eventSeatGate;
+        this.eventSearchRepository = eventSearchRepository;
+        this.eventCatalog = eventCatalog;
+        this.fullTextSearchEnabled = fullTextSearchEnabled;
     }
     
     @Override
@@ -94,7 +135,7 @@ public class EventServiceImpl implements EventService {
 
         // 3. TẠO VÍ SỰ KIỆN (TRONG BỘ NHỚ)
         Wallet eventWallet = new Wallet();
-        eventWallet.setBalance(totalBudgetCoin); // <<< NẠP SẴN TIỀN
+        eventWallet.setBalance(BigDecimal.ZERO); // <<< Tiền ký quỹ được nạp qua sổ cái ở bước 5
         eventWallet.setCurrency("COIN");
         eventWallet.setOwnerType("EVENT");
         // (OwnerId sẽ được cập nhật sau khi Event có ID)
@@ -123,39 +164,19 @@ public class EventServiceImpl implements EventService {
                     .intValue();
         }
         event.setMaxAttendees(maxAttendees);
+        event.setRegisteredCount(0);
 
-        // 5. THỰC HIỆN CHUYỂN TIỀN (KÝ QUỸ)
-        // 5.1. Trừ tiền Partner
-        partnerWallet.setBalance(partnerWallet.getBalance().subtract(totalBudgetCoin));
-        walletRepository.save(partnerWallet);
-
-        // 5.2. Lưu Event (sẽ tự động lưu luôn Event Wallet)
+        // 5. Lưu Event (sẽ tự động lưu luôn Event Wallet)
         Event savedEvent = eventRepository.save(event);
 
-        // 5.3. Cập nhật OwnerId cho Event Wallet
+        // 5.1. Cập nhật OwnerId cho Event Wallet
         Wallet savedEventWallet = savedEvent.getWallet();
         savedEventWallet.setOwnerId(savedEvent.getId());
         walletRepository.save(savedEventWallet);
 
-        // 6. GHI LẠI 2 GIAO DỊCH (LOGGING)
-        // 6.1. Giao dịch TRỪ (Debit) từ Partner
-        WalletTransaction debitTx = new WalletTransaction();
-        debitTx.setWallet(partnerWallet);
-        debitTx.setAmount(totalBudgetCoin.negate()); // Số tiền âm
-        debitTx.setTxnType("EVENT_FUNDING");
-        debitTx.setReferenceType("EVENT");
-        debitTx.setReferenceId(savedEvent.getId());
-
-        // 6.2. Giao dịch CỘNG (Credit) vào Ví Event
-        WalletTransaction creditTx = new WalletTransaction();
-        creditTx.setWallet(savedEventWallet);
-        creditTx.setAmount(totalBudgetCoin); // Số tiền dương
-        creditTx.setTxnType("EVENT_FUNDING");
-        creditTx.setReferenceType("PARTNER");
-        creditTx.setReferenceId(partner.getId());
-        
-        transactionRepository.saveAll(List.of(debitTx, creditTx));
-        // ==========================================================
+        // 6. KÝ QUỸ: Partner -> Ví Event (cặp bút toán EVENT_FUNDING cân bằng, cập nhật số dư 2 ví)
+        ledgerService.transfer(partnerWallet, savedEventWallet, totalBudgetCoin,
+                "EVENT_FUNDING", "EVENT_FUNDING", "EVENT", savedEvent.getId(), null);
         
         logger.info("Event {} created (DRAFT). {} coins transferred from Partner {}.",
                 savedEvent.getId(), totalBudgetCoin, partner.getId());
@@ -175,6 +196,10 @@ public class EventServiceImpl implements EventService {
     @Override
     @Transactional(readOnly = true)
     public EventResponseDTO getEventById(UUID eventId) { // SỬA: Long -> UUID
+        Optional<EventResponseDTO> cached = eventCatalog.findById(eventId);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new ResourceNotFoundException("Event not found with id: " + eventId));
         return convertToDTO(event);
@@ -187,6 +212,13 @@ public class EventServiceImpl implements EventService {
         return eventPage.map(this::convertToDTO);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Page<EventResponseDTO> listEvents(UUID categoryId, String status, Pageable pageable) {
+        return eventCatalog.findPage(categoryId, status, pageable)
+                .orElseGet(() -> getAllEvents(EventSpecifications.filterBy(categoryId, status), pageable));
+    }
+
     // --- UPDATE ---
     @Override
     @Transactional
@@ -250,6 +282,8 @@ public class EventServiceImpl implements EventService {
         }
         
         Event savedEvent = eventRepository.save(event);
+        eventSeatGate.invalidate(eventId); // max_attendees có thể đã đổi
+        eventCatalog.markChanged(eventId);
         return convertToDTO(savedEvent);
     }
 
@@ -264,6 +298,7 @@ public class EventServiceImpl implements EventService {
         checkEventOwnership(event, principal);
         
         eventRepository.deleteById(eventId);
+        eventCatalog.markChanged(eventId);
     }
 
     // --- BUSINESS LOGIC IMPLEMENTATIONS ---
@@ -279,6 +314,10 @@ public class EventServiceImpl implements EventService {
     @Override
     @Transactional(readOnly = true)
     public List<EventResponseDTO> getEventsByCategory(UUID categoryId) { // SỬA: Long -> UUID
+        List<EventResponseDTO> cached = eventCatalog.findByCategory(categoryId).orElse(List.of());
+        if (!cached.isEmpty()) {
+            return cached;
+        }
         if (!categoryRepository.existsById(categoryId)) {
             throw new ResourceNotFoundException("EventCategory not found with id: " + categoryId);
         }
@@ -289,13 +328,66 @@ public class EventServiceImpl implements EventService {
     @Override
     @Transactional(readOnly = true)
     public Page<EventResponseDTO> getUpcomingEvents(Pageable pageable) {
+        Optional<Page<EventResponseDTO>> cached = eventCatalog.findUpcoming(OffsetDateTime.now(), pageable);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
         return eventRepository.findAllByStartTimeAfter(OffsetDateTime.now(), pageable).map(this::convertToDTO);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Page<EventResponseDTO> searchEventsByTitle(String keyword, Pageable pageable) {
-        return eventRepository.findByTitleContainingIgnoreCase(keyword, pageable).map(this::convertToDTO);
+        return searchEvents(keyword, null, null, pageable);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<EventResponseDTO> searchEvents(String query, UUID categoryId, String status, Pageable pageable) {
+        List<String> terms = SearchText.terms(SearchText.normalize(query));
+        Specification<Event> filters = EventSpecifications.filterBy(categoryId, status);
+        if (terms.isEmpty()) {
+            return listEvents(categoryId, status, pageable);
+        }
+        if (!searchIndexReady) {
+            return getAllEvents(filters.and(EventSpecifications.titleContains(query.trim())), pageable);
+        }
+
+        // Kết quả sắp theo độ liên quan: bỏ qua sort của pageable
+        String text = String.join(" ", terms);
+        String tsQuery = SearchText.toPrefixTsQuery(terms);
+        List<UUID> ids = eventSearchRepository.search(tsQuery, text, categoryId, status,
+                pageable.getPageSize(), pageable.getOffset());
+        Map<UUID, Event> eventsById = eventRepository.findAllByIdIn(ids).stream()
+                .collect(Collectors.toMap(Event::getId, Function.identity()));
+        List<EventResponseDTO> content = ids.stream()
+                .map(eventsById::get)
+                .filter(Objects::nonNull)
+                .map(this::convertToDTO)
+                .toList();
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> eventSearchRepository.count(tsQuery, text, categoryId, status));
+    }
+
+    /**
+     * Index tìm kiếm do migration V2 tạo; chưa có (DB không có quyền tạo extension) -> giữ tìm kiếm theo title.
+     * Chỉ đọc catalog, không chạy DDL lúc khởi động.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void detectSearchIndex() {
+        if (!fullTextSearchEnabled) {
+            return;
+        }
+        try {
+            searchIndexReady = eventSearchRepository.isSchemaReady();
+        } catch (DataAccessException e) {
+            logger.warn("Could not check event search index: {}", e.getMessage());
+        }
+        if (searchIndexReady) {
+            logger.info("Event full-text search index is ready");
+        } else {
+            logger.warn("Event search index is missing, falling back to title search");
+        }
     }
 
     // ==========================================================
@@ -304,19 +396,37 @@ public class EventServiceImpl implements EventService {
     @Override
     @Transactional
     public EventResponseDTO finalizeEvent(UUID eventId) { // SỬA: Long -> UUID
-        // 1. Tìm sự kiện
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new ResourceNotFoundException("Event not found with id: " + eventId));
+        return doFinalizeEvent(event);
+    }
 
-        // 2. Kiểm tra trạng thái
-        if ("FINALIZED".equals(event.getStatus())) {
-            throw new DataIntegrityViolationException("Event has already been finalized.");
-        }
+    @Override
+    @Transactional
+    public EventResponseDTO finalizeEvent(UUID eventId, AuthPrincipal principal) { // SỬA: Long -> UUID
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new ResourceNotFoundException("Event not found with id: " + eventId));
 
-        // 3. Xác định tổng số điểm cần chi trả (Hoàn cọc + Thưởng)
-        Integer depositPoints = event.getPointCostToRegister() != null ? event.getPointCostToRegister() : 0;
-        Integer rewardPoints = event.getTotalRewardPoints() != null ? event.getTotalRewardPoints() : 0;
-        BigDecimal totalPayoutAmount = new BigDecimal(depositPoints + rewardPoints);
+        // <<< LOGIC BẢO MẬT: Kiểm tra quyền sở hữu
+        checkEventOwnership(event, principal);
+
+        return doFinalizeEvent(event);
+    }
+
+    /**
+     * Chi trả theo lô (set-based): 1 query lấy ví người tham dự, 1 UPDATE trừ ví Event,
+     * 1 UPDATE ... FROM cộng toàn bộ ví Student, và JDBC batch insert cho sổ cái.
+     * Số round trip không còn tỉ lệ với số người tham dự.
+     */
+    private EventResponseDTO doFinalizeEvent(Event event) {
+        UUID eventId = event.getId();
+
+        // 1. Kiểm tra trạng thái
+        checkNotFinalized(event);
+        eventCatalog.markChanged(eventId); // status sắp chuyển sang FINALIZED
+
+        // 2. Xác định tổng số điểm cần chi trả (Hoàn cọc + Thưởng)
+        BigDecimal totalPayoutAmount = calculatePayoutAmount(event);
 
         if (totalPayoutAmount.compareTo(BigDecimal.ZERO) <= 0) {
             logger.warn("Event {} has no payout amount. Finalizing without transactions.", eventId);
@@ -325,73 +435,40 @@ public class EventServiceImpl implements EventService {
             return convertToDTO(savedEvent);
         }
 
-        // 4. Lấy VÍ SỰ KIỆN (Event Wallet) làm nguồn tiền
+        // 3. Lấy VÍ SỰ KIỆN (Event Wallet) làm nguồn tiền
         Wallet eventWallet = event.getWallet();
         if (eventWallet == null) {
             throw new ResourceNotFoundException("CRITICAL: Event Wallet not found for this event.");
         }
 
-        // 5. Lấy danh sách sinh viên đã check-in thành công (verified = true)
-        List<Checkin> successfulCheckins = checkinRepository.findAllByEventIdAndVerifiedTrue(eventId);
+        // 4. Lấy ví của tất cả sinh viên đã check-in thành công (1 query, không N+1)
+        List<UUID> payeeWalletIds = checkinRepository.findVerifiedAttendeeWalletIds(eventId);
 
-        if (successfulCheckins.isEmpty()) {
+        if (payeeWalletIds.isEmpty()) {
             logger.warn("Event {} has no successful check-ins. Finalizing without transactions.", eventId);
             event.setStatus("FINALIZED");
             Event savedEvent = eventRepository.save(event);
             return convertToDTO(savedEvent);
         }
 
-        // 6. Kiểm tra ngân sách VÍ SỰ KIỆN
-        BigDecimal requiredBudget = totalPayoutAmount.multiply(new BigDecimal(successfulCheckins.size()));
-        if (eventWallet.getBalance().compareTo(requiredBudget) < 0) {
+        long verifiedCount = checkinRepository.countByEventIdAndVerifiedTrue(eventId);
+        if (verifiedCount > payeeWalletIds.size()) {
+            logger.error("Event {}: {} verified check-ins have no student wallet. Skipping their payout.",
+                    eventId, verifiedCount - payeeWalletIds.size());
+        }
+
+        // 5. Trừ VÍ SỰ KIỆN có điều kiện (atomic), cộng toàn bộ ví Student trong 1 câu UPDATE,
+        //    ghi sổ cái (cặp EVENT_FINAL_PAYOUT / EVENT_PAYOUT) bằng batch insert
+        if (!ledgerService.postEventPayouts(eventId, eventWallet.getId(), payeeWalletIds, totalPayoutAmount)) {
+            BigDecimal requiredBudget = totalPayoutAmount.multiply(new BigDecimal(payeeWalletIds.size()));
             throw new ForbiddenException(
                     "Event wallet has insufficient funds to finalize rewards. Required: " + requiredBudget
-                    + ", Available: " + eventWallet.getBalance());
+                    + ", Available: " + walletLedgerRepository.findLogicalBalance(eventWallet.getId()));
         }
 
-        // 7. Thực hiện giao dịch (Event Wallet -> Student Wallet)
-        List<WalletTransaction> transactionsToSave = new ArrayList<>();
-        List<Wallet> studentWalletsToSave = new ArrayList<>();
-
-        for (Checkin checkin : successfulCheckins) {
-            Student student = checkin.getStudent();
-            Optional<Wallet> studentWalletOpt = walletRepository.findByOwnerTypeAndOwnerId("STUDENT", student.getId());
+        logger.info("Event {} finalized. Paid {} coins to {} attendees.", eventId, totalPayoutAmount, payeeWalletIds.size());
 
-            if (studentWalletOpt.isEmpty()) {
-                logger.error("Student wallet not found for student ID: {}. Skipping payout.", student.getId());
-                continue;
-            }
-            Wallet studentWallet = studentWalletOpt.get();
-
-            eventWallet.setBalance(eventWallet.getBalance().subtract(totalPayoutAmount));
-            studentWallet.setBalance(studentWallet.getBalance().add(totalPayoutAmount));
-            studentWalletsToSave.add(studentWallet);
-
-            WalletTransaction studentTx = new WalletTransaction();
-            studentTx.setWallet(studentWallet);
-            studentTx.setCounterparty(eventWallet);
-            studentTx.setTxnType("EVENT_FINAL_PAYOUT");
-            studentTx.setAmount(totalPayoutAmount);
-            studentTx.setReferenceType("EVENT");
-            studentTx.setReferenceId(event.getId());
-            transactionsToSave.add(studentTx);
-
-            WalletTransaction eventTx = new WalletTransaction();
-            eventTx.setWallet(eventWallet);
-            eventTx.setCounterparty(studentWallet);
-            eventTx.setTxnType("EVENT_PAYOUT");
-            eventTx.setAmount(totalPayoutAmount.negate());
-            eventTx.setReferenceType("EVENT");
-            eventTx.setReferenceId(event.getId());
-            transactionsToSave.add(eventTx);
-        }
-
-        // 8. Lưu tất cả thay đổi (Tối ưu hóa)
-        walletRepository.save(eventWallet);
-        walletRepository.saveAll(studentWalletsToSave);
-        transactionRepository.saveAll(transactionsToSave);
-
-        // 9. Cập nhật trạng thái sự kiện
+        // 6. Cập nhật trạng thái sự kiện
         event.setStatus("FINALIZED");
         Event savedEvent = eventRepository.save(event);
 
@@ -400,102 +477,62 @@ public class EventServiceImpl implements EventService {
 
     @Override
     @Transactional
-    public EventResponseDTO finalizeEvent(UUID eventId, AuthPrincipal principal) { // SỬA: Long -> UUID
-        // 1. Tìm sự kiện
+    public EventFinalizationJobResponseDTO startFinalizationJob(UUID eventId, AuthPrincipal principal) {
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new ResourceNotFoundException("Event not found with id: " + eventId));
 
         // <<< LOGIC BẢO MẬT: Kiểm tra quyền sở hữu
         checkEventOwnership(event, principal);
 
-        // 2. Kiểm tra trạng thái
         if ("FINALIZED".equals(event.getStatus())) {
             throw new DataIntegrityViolationException("Event has already been finalized.");
         }
 
-        // 3. Xác định tổng số điểm cần chi trả (Hoàn cọc + Thưởng)
-        Integer depositPoints = event.getPointCostToRegister() != null ? event.getPointCostToRegister() : 0;
-        Integer rewardPoints = event.getTotalRewardPoints() != null ? event.getTotalRewardPoints() : 0;
-        BigDecimal totalPayoutAmount = new BigDecimal(depositPoints + rewardPoints);
-
-        if (totalPayoutAmount.compareTo(BigDecimal.ZERO) <= 0) {
-            logger.warn("Event {} has no payout amount. Finalizing without transactions.", eventId);
-            event.setStatus("FINALIZED");
-            Event savedEvent = eventRepository.save(event);
-            return convertToDTO(savedEvent);
-        }
-
-        // 4. Lấy VÍ SỰ KIỆN (Event Wallet) làm nguồn tiền
-        Wallet eventWallet = event.getWallet();
-        if (eventWallet == null) {
-            throw new ResourceNotFoundException("CRITICAL: Event Wallet not found for this event.");
-        }
-
-        // 5. Lấy danh sách sinh viên đã check-in thành công (verified = true)
-        List<Checkin> successfulCheckins = checkinRepository.findAllByEventIdAndVerifiedTrue(eventId);
-
-        if (successfulCheckins.isEmpty()) {
-            logger.warn("Event {} has no successful check-ins. Finalizing without transactions.", eventId);
-            event.setStatus("FINALIZED");
-            Event savedEvent = eventRepository.save(event);
-            return convertToDTO(savedEvent);
-        }
-
-        // 6. Kiểm tra ngân sách VÍ SỰ KIỆN
-        BigDecimal requiredBudget = totalPayoutAmount.multiply(new BigDecimal(successfulCheckins.size()));
-        if (eventWallet.getBalance().compareTo(requiredBudget) < 0) {
-            throw new ForbiddenException(
-                    "Event wallet has insufficient funds to finalize rewards. Required: " + requiredBudget
-                    + ", Available: " + eventWallet.getBalance());
-        }
-
-        // 7. Thực hiện giao dịch (Event Wallet -> Student Wallet)
-        List<WalletTransaction> transactionsToSave = new ArrayList<>();
-        List<Wallet> studentWalletsToSave = new ArrayList<>();
+        EventFinalizationJob job = finalizationJobRepository.findByEventId(eventId).orElse(null);
+        if (job == null) {
+            Wallet eventWallet = event.getWallet();
+            if (eventWallet == null) {
+                throw new ResourceNotFoundException("CRITICAL: Event Wallet not found for this event.");
+            }
+            job = new EventFinalizationJob();
+            job.setEventId(eventId);
+            job.setEventWalletId(eventWallet.getId());
+            job.setPayoutAmount(calculatePayoutAmount(event));
+            job.setTotalCount((int) checkinRepository.countVerifiedAttendeeWallets(eventId));
+        } else if (job.getStatus() == FinalizationJobStatus.FAILED) {
+            // Khởi chạy lại từ checkpoint cũ (các chunk đã trả sẽ không bị trả lại)
+            job.setStatus(FinalizationJobStatus.PENDING);
+            job.setLastError(null);
+        }
+
+        event.setStatus("FINALIZING");
+        eventRepository.save(event);
+        eventCatalog.markChanged(eventId);
+        EventFinalizationJob savedJob = finalizationJobRepository.save(job);
+
+        // Chỉ submit sau khi commit, để worker chắc chắn đọc được job
+        UUID jobId = savedJob.getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                finalizationWorker.submit(jobId);
+            }
+        });
 
-        for (Checkin checkin : successfulCheckins) {
-            Student student = checkin.getStudent();
-            Optional<Wallet> studentWalletOpt = walletRepository.findByOwnerTypeAndOwnerId("STUDENT", student.getId());
+        logger.info("Finalization job {} queued for event {} ({} attendees).", jobId, eventId, savedJob.getTotalCount());
+        return convertToJobDTO(savedJob);
+    }
 
-            if (studentWalletOpt.isEmpty()) {
-                logger.error("Student wallet not found for student ID: {}. Skipping payout.", student.getId());
-                continue;
-            }
-            Wallet studentWallet = studentWalletOpt.get();
-
-            eventWallet.setBalance(eventWallet.getBalance().subtract(totalPayoutAmount));
-            studentWallet.setBalance(studentWallet.getBalance().add(totalPayoutAmount));
-            studentWalletsToSave.add(studentWallet);
-
-            WalletTransaction studentTx = new WalletTransaction();
-            studentTx.setWallet(studentWallet);
-            studentTx.setCounterparty(eventWallet);
-            studentTx.setTxnType("EVENT_FINAL_PAYOUT");
-            studentTx.setAmount(totalPayoutAmount);
-            studentTx.setReferenceType("EVENT");
-            studentTx.setReferenceId(event.getId());
-            transactionsToSave.add(studentTx);
-
-            WalletTransaction eventTx = new WalletTransaction();
-            eventTx.setWallet(eventWallet);
-            eventTx.setCounterparty(studentWallet);
-            eventTx.setTxnType("EVENT_PAYOUT");
-            eventTx.setAmount(totalPayoutAmount.negate());
-            eventTx.setReferenceType("EVENT");
-            eventTx.setReferenceId(event.getId());
-            transactionsToSave.add(eventTx);
-        }
-
-        // 8. Lưu tất cả thay đổi (Tối ưu hóa)
-        walletRepository.save(eventWallet);
-        walletRepository.saveAll(studentWalletsToSave);
-        transactionRepository.saveAll(transactionsToSave);
-
-        // 9. Cập nhật trạng thái sự kiện
-        event.setStatus("FINALIZED");
-        Event savedEvent = eventRepository.save(event);
+    @Override
+    @Transactional(readOnly = true)
+    public EventFinalizationJobResponseDTO getFinalizationJob(UUID eventId, AuthPrincipal principal) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new ResourceNotFoundException("Event not found with id: " + eventId));
+        checkEventOwnership(event, principal);
 
-        return convertToDTO(savedEvent);
+        EventFinalizationJob job = finalizationJobRepository.findByEventId(eventId)
+                .orElseThrow(() -> new ResourceNotFoundException("No finalization job found for event: " + eventId));
+        return convertToJobDTO(job);
     }
 
     @Override
@@ -510,6 +547,7 @@ public class EventServiceImpl implements EventService {
 
         event.setStatus("APPROVED");
         Event savedEvent = eventRepository.save(event);
+        eventCatalog.markChanged(eventId);
 
         return convertToDTO(savedEvent);
     }
@@ -543,6 +581,22 @@ public class EventServiceImpl implements EventService {
         throw new ForbiddenException("You do not have permission to perform this action on this event.");
     }
 
+    private void checkNotFinalized(Event event) {
+        if ("FINALIZED".equals(event.getStatus())) {
+            throw new DataIntegrityViolationException("Event has already been finalized.");
+        }
+        if ("FINALIZING".equals(event.getStatus())) {
+            throw new DataIntegrityViolationException("Event finalization is already in progress.");
+        }
+    }
+
+    // Số điểm chi trả cho mỗi người tham dự (Hoàn cọc + Thưởng)
+    private BigDecimal calculatePayoutAmount(Event event) {
+        Integer depositPoints = event.getPointCostToRegister() != null ? event.getPointCostToRegister() : 0;
+        Integer rewardPoints = event.getTotalRewardPoints() != null ? event.getTotalRewardPoints() : 0;
+        return new BigDecimal(depositPoints + rewardPoints);
+    }
+
     // (Hàm helper để lấy PartnerId từ Principal)
     private UUID getPartnerIdFromPrincipal(AuthPrincipal principal, EventCreateDTO requestDTO) { // SỬA: Long -> UUID
         UUID partnerId = principal.getPartnerId(); // SỬA: Long -> UUID
@@ -595,4 +649,20 @@ public class EventServiceImpl implements EventService {
         }
         return dto;
     }
+
+    private EventFinalizationJobResponseDTO convertToJobDTO(EventFinalizationJob job) {
+        EventFinalizationJobResponseDTO dto = new EventFinalizationJobResponseDTO();
+        dto.setJobId(job.getId());
+        dto.setEventId(job.getEventId());
+        dto.setStatus(job.getStatus().name());
+        dto.setPayoutAmount(job.getPayoutAmount());
+        dto.setTotalCount(job.getTotalCount());
+        dto.setProcessedCount(job.getProcessedCount());
+        dto.setFailedCount(job.getFailedCount());
+        dto.setLastError(job.getLastError());
+        dto.setCreatedAt(job.getCreatedAt());
+        dto.setUpdatedAt(job.getUpdatedAt());
+        dto.setCompletedAt(job.getCompletedAt());
+        return dto;
+    }
 }
\ No newline at end of file
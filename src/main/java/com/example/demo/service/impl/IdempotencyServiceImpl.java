@@ -0,0 +1,237 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.entity.IdempotencyRecord;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.exception.DataIntegrityViolationException;
+import com.example.demo.exception.InternalServerErrorException;
+import com.example.demo.repository.IdempotencyJdbcRepository;
+import com.example.demo.repository.IdempotencyRecordRepository;
+import com.example.demo.service.IdempotencyService;
+import com.example.demo.service.WalletConcurrencyService;
+import com.example.demo.util.BloomFilter;
+import com.example.demo.util.BoundedTtlCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.function.Supplier;
+
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyServiceImpl.class);
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final IdempotencyJdbcRepository idempotencyJdbcRepository;
+    private final ObjectMapper objectMapper;
+    private final WalletConcurrencyService walletConcurrencyService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTemplate;
+    private final Duration ttl;
+    private final long bloomExpectedInsertions;
+    private final double bloomFalsePositiveRate;
+    private final int archiveBatchSize;
+    private final BoundedTtlCache<String, String> responseCache;
+    private final Counter replayCounter;
+    private final Counter bloomNegativeCounter;
+
+    // Được thay nguyên khối khi dựng lại (sau khi archive key hết hạn)
+    private volatile BloomFilter bloomFilter;
+
+    public IdempotencyServiceImpl(IdempotencyRecordRepository recordRepository,
+                                  IdempotencyJdbcRepository idempotencyJdbcRepository,
+                                  ObjectMapper objectMapper,
+                                  WalletConcurrencyService walletConcurrencyService,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${idempotency.ttl-hours:24}") long ttlHours,
+                                  @Value("${idempotency.cache.max-entries:10000}") int cacheMaxEntries,
+                                  @Value("${idempotency.cache.ttl-seconds:600}") long cacheTtlSeconds,
+                                  @Value("${idempotency.bloom.expected-insertions:1000000}") long bloomExpectedInsertions,
+                                  @Value("${idempotency.bloom.false-positive-rate:0.01}") double bloomFalsePositiveRate,
+                                  @Value("${idempotency.archive-batch-size:1000}") int archiveBatchSize) {
+        this.recordRepository = recordRepository;
+        this.idempotencyJdbcRepository = idempotencyJdbcRepository;
+        this.objectMapper = objectMapper;
+        this.walletConcurrencyService = walletConcurrencyService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.ttl = Duration.ofHours(ttlHours);
+        this.bloomExpectedInsertions = bloomExpectedInsertions;
+        this.bloomFalsePositiveRate = bloomFalsePositiveRate;
+        this.archiveBatchSize = archiveBatchSize;
+        this.responseCache = new BoundedTtlCache<>(cacheMaxEntries, Duration.ofSeconds(cacheTtlSeconds).toMillis());
+        this.bloomFilter = new BloomFilter(bloomExpectedInsertions, bloomFalsePositiveRate);
+
+        this.replayCounter = Counter.builder("idempotency.replay")
+                .description("Requests answered from a stored idempotent response")
+                .register(meterRegistry);
+        this.bloomNegativeCounter = Counter.builder("idempotency.bloom.negative")
+                .description("New keys answered by the bloom filter without a DB lookup")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T> T execute(String scope, String key, Class<T> responseType, Supplier<T> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        String fullKey = scope + ":" + key;
+        if (fullKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency key is too long.");
+        }
+
+        T stored = findStoredResponse(fullKey, responseType);
+        if (stored != null) {
+            return stored;
+        }
+
+        // Transaction (claim + action) được mở ở đây nên thao tác ví bên trong chỉ tham gia, không tự retry:
+        // xung đột khóa/@Version -> chạy lại cả claim lẫn action trong transaction mới
+        return walletConcurrencyService.executeWithRetry(() -> claimAndRun(scope, fullKey, responseType, action));
+    }
+
+    private <T> T claimAndRun(String scope, String fullKey, Class<T> responseType, Supplier<T> action) {
+        try {
+            return transactionTemplate.execute(status -> {
+                // Claim key trước: request trùng key chạy song song sẽ chờ ở đây rồi lỗi unique
+                IdempotencyRecord record = new IdempotencyRecord();
+                record.setKey(fullKey);
+                record.setScope(scope);
+                record.setExpiresAt(OffsetDateTime.now().plus(ttl));
+                try {
+                    recordRepository.saveAndFlush(record);
+                } catch (org.springframework.dao.DataIntegrityViolationException e) {
+                    // Ném ra ngoài để rollback transaction đã hỏng rồi mới tra bản ghi thắng
+                    throw new KeyAlreadyClaimedException(e);
+                }
+
+                T result = action.get();
+
+                String json = writeJson(result);
+                record.setResponseJson(json);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        remember(fullKey, json);
+                    }
+                });
+                return result;
+            });
+        } catch (KeyAlreadyClaimedException e) {
+            // Key đã được request khác commit -> trả lại response của request đó
+            T winner = loadFromDatabase(fullKey, responseType);
+            if (winner != null) {
+                return winner;
+            }
+            // Bản ghi cũ đã hết hạn nhưng chưa được archive: không còn response để trả, cũng không chạy lại
+            logger.info("Idempotency key {} was used by an expired request", fullKey);
+            throw new DataIntegrityViolationException(
+                    "Idempotency key has already been used. Please retry with a new key.");
+        }
+    }
+
+    // Chỉ dùng cho lỗi unique khi claim key; lỗi ràng buộc từ chính action vẫn đi ra nguyên vẹn
+    private static final class KeyAlreadyClaimedException extends RuntimeException {
+        KeyAlreadyClaimedException(Throwable cause) {
+            super(cause.getMessage(), cause, false, false);
+        }
+    }
+
+    /**
+     * Dựng lại bloom filter từ các key còn hiệu lực. Key ghi vào filter cũ trong lúc dựng có thể bị sót:
+     * khi đó chỉ mất phần tra nhanh, việc chặn trùng vẫn do unique PK đảm bảo.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildBloomFilter() {
+        BloomFilter rebuilt = new BloomFilter(bloomExpectedInsertions, bloomFalsePositiveRate);
+        readOnlyTemplate.executeWithoutResult(status -> idempotencyJdbcRepository.forEachLiveKey(rebuilt::put));
+        this.bloomFilter = rebuilt;
+        logger.info("Idempotency bloom filter rebuilt");
+    }
+
+    /**
+     * Chuyển các key hết hạn sang idempotency_record_archive theo lô.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.archive-interval-ms:300000}",
+               initialDelayString = "${idempotency.archive-initial-delay-ms:120000}")
+    public void archiveExpired() {
+        long archived = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> idempotencyJdbcRepository.archiveExpired(archiveBatchSize));
+            archived += moved;
+        } while (moved >= archiveBatchSize);
+
+        if (archived > 0) {
+            logger.info("Archived {} expired idempotency records", archived);
+        }
+        if (bloomFilter.isSaturated()) {
+            rebuildBloomFilter();
+        }
+    }
+
+    // --- HÀM HỖ TRỢ ---
+
+    private <T> T findStoredResponse(String fullKey, Class<T> responseType) {
+        String cached = responseCache.get(fullKey);
+        if (cached != null) {
+            replayCounter.increment();
+            return readJson(cached, responseType);
+        }
+        if (!bloomFilter.mightContain(fullKey)) {
+            bloomNegativeCounter.increment();
+            return null;
+        }
+        return loadFromDatabase(fullKey, responseType);
+    }
+
+    private <T> T loadFromDatabase(String fullKey, Class<T> responseType) {
+        return recordRepository.findById(fullKey)
+                .filter(r -> r.getResponseJson() != null && r.getExpiresAt().isAfter(OffsetDateTime.now()))
+                .map(r -> {
+                    responseCache.put(fullKey, r.getResponseJson());
+                    replayCounter.increment();
+                    logger.info("Replaying stored response for idempotency key {}", fullKey);
+                    return readJson(r.getResponseJson(), responseType);
+                })
+                .orElse(null);
+    }
+
+    private void remember(String fullKey, String json) {
+        bloomFilter.put(fullKey);
+        responseCache.put(fullKey, json);
+    }
+
+    private String writeJson(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new InternalServerErrorException("Failed to store idempotent response.", e);
+        }
+    }
+
+    private <T> T readJson(String json, Class<T> responseType) {
+        try {
+            return objectMapper.readValue(json, responseType);
+        } catch (JsonProcessingException e) {
+            throw new InternalServerErrorException("Failed to read stored idempotent response.", e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.exception.BadRequestException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * Resize ảnh bằng ImageIO + Java2D thuần (Spring Boot chạy headless, không cần thư viện native), dùng cho biến thể thumbnail/medium.
+ *
+ * Ảnh lớn được giải mã với subsampling của ImageReader: chỉ đọc đủ pixel cho kích thước đích,
+ * nên ảnh 12MP không chiếm ~48MB heap chỉ để ra thumbnail 200px.
+ */
+final class ImageResizer {
+
+    static final String JPEG = "image/jpeg";
+    static final String PNG = "image/png";
+
+    private static final float JPEG_QUALITY = 0.82f;
+
+    static {
+        // Đọc/ghi stream trong bộ nhớ thay vì file tạm của ImageIO (input đã bị giới hạn kích thước)
+        ImageIO.setUseCache(false);
+    }
+
+    private ImageResizer() {
+    }
+
+    /**
+     * Giải mã ảnh, đọc thưa (subsample) sao cho cạnh dài vẫn >= 2 * targetEdge để giữ chất lượng khi thu nhỏ.
+     * @return null nếu định dạng không được ImageIO hỗ trợ (ví dụ webp)
+     * @throws BadRequestException nếu ảnh vượt quá maxPixels (chống "decompression bomb")
+     */
+    static BufferedImage decode(InputStream in, int targetEdge, long maxPixels) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new BadRequestException("Image is too large (" + width + "x" + height + ")");
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.max(width, height) / (targetEdge * 2));
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Thu nhỏ để cạnh dài không vượt maxEdge (không phóng to). Thu nhỏ nhiều bước, mỗi bước tối đa 1/2,
+     * cho chất lượng gần bicubic với chi phí của bilinear.
+     */
+    static BufferedImage scale(BufferedImage source, int maxEdge) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int longEdge = Math.max(width, height);
+        boolean alpha = source.getColorModel().hasAlpha();
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        if (longEdge <= maxEdge) {
+            return source.getType() == type ? source : redraw(source, width, height, type);
+        }
+        int targetWidth = Math.max(1, (int) Math.round((double) width * maxEdge / longEdge));
+        int targetHeight = Math.max(1, (int) Math.round((double) height * maxEdge / longEdge));
+
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = redraw(current, current.getWidth() / 2, current.getHeight() / 2, type);
+        }
+        if (current.getWidth() != targetWidth || current.getHeight() != targetHeight) {
+            current = redraw(current, targetWidth, targetHeight, type);
+        }
+        return current;
+    }
+
+    /**
+     * Mã hóa: JPEG cho ảnh không trong suốt, PNG nếu có kênh alpha.
+     */
+    static EncodedImage encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+        if (image.getColorModel().hasAlpha()) {
+            ImageIO.write(image, "png", out);
+            return new EncodedImage(out.toByteArray(), PNG);
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return new EncodedImage(out.toByteArray(), JPEG);
+    }
+
+    /**
+     * Đoán content type từ magic bytes (nội dung trong disk cache không kèm metadata).
+     */
+    static String sniffContentType(byte[] content) {
+        if (content.length >= 3 && (content[0] & 0xFF) == 0xFF && (content[1] & 0xFF) == 0xD8) {
+            return JPEG;
+        }
+        if (content.length >= 4 && (content[0] & 0xFF) == 0x89 && content[1] == 'P' && content[2] == 'N' && content[3] == 'G') {
+            return PNG;
+        }
+        if (content.length >= 3 && content[0] == 'G' && content[1] == 'I' && content[2] == 'F') {
+            return "image/gif";
+        }
+        if (content.length >= 12 && content[0] == 'R' && content[1] == 'I' && content[8] == 'W' && content[9] == 'E') {
+            return "image/webp";
+        }
+        return "application/octet-stream";
+    }
+
+    private static BufferedImage redraw(BufferedImage source, int width, int height, int type) {
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    record EncodedImage(byte[] content, String contentType) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.exception.BadRequestException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Map;
+
+/**
+ * Kiểm tra ảnh upload chung cho các backend; tên file lưu trữ không bao giờ lấy từ client.
+ */
+final class ImageUploadValidator {
+
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "image/jpeg", "jpg",
+            "image/png", "png",
+            "image/webp", "webp",
+            "image/gif", "gif");
+
+    private ImageUploadValidator() {
+    }
+
+    /**
+     * @return phần mở rộng tương ứng với content type, null nếu không hỗ trợ
+     */
+    static String extensionOf(String contentType) {
+        return contentType != null ? EXTENSIONS.get(contentType.toLowerCase()) : null;
+    }
+
+    /**
+     * Tên file do server đặt: chỉ giữ ký tự an toàn cho path / public_id.
+     */
+    static String sanitizeName(String name, String fallback) {
+        String cleaned = name == null ? "" : name.replaceAll("[^a-zA-Z0-9_-]", "");
+        return cleaned.isEmpty() ? fallback : cleaned;
+    }
+
+    /**
+     * @return phần mở rộng file tương ứng với content type
+     */
+    static String validate(MultipartFile file, long maxBytes) {
+        if (file == null || file.isEmpty()) {
+            throw new BadRequestException("File to upload is empty");
+        }
+        if (file.getSize() > maxBytes) {
+            throw new BadRequestException("File is too large (max " + maxBytes / (1024 * 1024) + "MB)");
+        }
+        String extension = extensionOf(file.getContentType());
+        if (extension == null) {
+            throw new BadRequestException("Unsupported image type: " + file.getContentType());
+        }
+        return extension;
+    }
+}
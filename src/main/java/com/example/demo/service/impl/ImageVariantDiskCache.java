@@ -0,0 +1,214 @@
+package com.example.demo.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Cache biến thể ảnh trên đĩa local, giới hạn theo tổng dung lượng, loại bỏ theo LRU.
+ * Index (key -> kích thước) nằm trong bộ nhớ, được dựng lại từ thư mục khi khởi động (thứ tự theo mtime).
+ *
+ * Key do caller đặt và đã chứa phiên bản ảnh, nên entry không bao giờ cần invalidate:
+ * ảnh mới -> key mới, entry cũ tự bị đẩy ra khi hết chỗ.
+ */
+@Component
+public class ImageVariantDiskCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantDiskCache.class);
+
+    private final Path directory;
+    private final long maxBytes;
+    // access-order = true -> duyệt từ entry ít dùng nhất; chỉ truy cập trong synchronized (this)
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, Object> loadLocks = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+
+    public ImageVariantDiskCache(@Value("${media.variant-cache.dir:${java.io.tmpdir}/loyalty-media-cache}") String directory,
+                                 @Value("${media.variant-cache.max-bytes:268435456}") long maxBytes,
+                                 MeterRegistry meterRegistry) throws IOException {
+        this.directory = Path.of(directory).toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+        Files.createDirectories(this.directory);
+        rebuildIndex();
+
+        this.hitCounter = Counter.builder("media.variant.cache.requests").tag("result", "hit")
+                .description("Image variants served from the local disk cache")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("media.variant.cache.requests").tag("result", "miss")
+                .description("Image variants loaded from storage or resized on demand")
+                .register(meterRegistry);
+        this.evictionCounter = Counter.builder("media.variant.cache.evictions")
+                .description("Image variants removed from the local disk cache to stay under the size limit")
+                .register(meterRegistry);
+        Gauge.builder("media.variant.cache.bytes", this, ImageVariantDiskCache::totalBytes)
+                .description("Bytes currently held in the image variant disk cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Trả về nội dung theo key; nếu chưa có thì gọi loader (mỗi key chỉ một luồng load cùng lúc) rồi ghi xuống đĩa.
+     * @param key chỉ gồm [a-zA-Z0-9_-]
+     */
+    public byte[] get(String key, Loader loader) throws IOException {
+        byte[] cached = read(key);
+        if (cached != null) {
+            hitCounter.increment();
+            return cached;
+        }
+        Object lock = loadLocks.computeIfAbsent(key, k -> new Object());
+        try {
+            synchronized (lock) {
+                cached = read(key);
+                if (cached != null) {
+                    hitCounter.increment();
+                    return cached;
+                }
+                missCounter.increment();
+                byte[] loaded = loader.load();
+                write(key, loaded);
+                return loaded;
+            }
+        } finally {
+            loadLocks.remove(key, lock);
+        }
+    }
+
+    /**
+     * @return nội dung nếu đã có trong cache, null nếu chưa (không tính là miss)
+     */
+    public byte[] getIfPresent(String key) throws IOException {
+        byte[] cached = read(key);
+        if (cached != null) {
+            hitCounter.increment();
+        }
+        return cached;
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    private byte[] read(String key) throws IOException {
+        synchronized (this) {
+            if (index.get(key) == null) { // get() cũng đánh dấu entry vừa được dùng
+                return null;
+            }
+        }
+        try {
+            return Files.readAllBytes(directory.resolve(key));
+        } catch (NoSuchFileException e) {
+            // File bị xóa bên ngoài (dọn /tmp...) -> coi như miss
+            synchronized (this) {
+                Long size = index.remove(key);
+                if (size != null) {
+                    totalBytes -= size;
+                }
+            }
+            return null;
+        }
+    }
+
+    private void write(String key, byte[] content) throws IOException {
+        if (content.length > maxBytes) {
+            return; // Không bao giờ vừa cache
+        }
+        Path target = directory.resolve(key);
+        Path partial = directory.resolve(key + "." + UUID.randomUUID() + ".part");
+        try {
+            Files.write(partial, content);
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+
+        List<String> evicted;
+        synchronized (this) {
+            Long previous = index.put(key, (long) content.length);
+            totalBytes += content.length - (previous != null ? previous : 0L);
+            evicted = evictOverflow(key);
+        }
+        deleteEvicted(evicted);
+    }
+
+    // Gọi trong synchronized (this): bỏ entry ít dùng nhất tới khi dưới giới hạn (trừ entry vừa ghi)
+    private List<String> evictOverflow(String keep) {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> eldest = index.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            totalBytes -= entry.getValue();
+            evicted.add(entry.getKey());
+            eldest.remove();
+        }
+        return evicted;
+    }
+
+    // Xóa file ngoài lock; luồng đang đọc file này (nếu có) vẫn đọc xong trên Linux
+    private void deleteEvicted(List<String> evicted) throws IOException {
+        for (String evictedKey : evicted) {
+            Files.deleteIfExists(directory.resolve(evictedKey));
+            evictionCounter.increment();
+        }
+    }
+
+    private void rebuildIndex() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(Files::isRegularFile).toList();
+        }
+        List<Map.Entry<Path, BasicFileAttributes>> entries = new ArrayList<>(files.size());
+        for (Path file : files) {
+            if (file.getFileName().toString().endsWith(".part")) {
+                Files.deleteIfExists(file); // Ghi dở từ lần chạy trước
+                continue;
+            }
+            entries.add(Map.entry(file, Files.readAttributes(file, BasicFileAttributes.class)));
+        }
+        entries.sort(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()));
+        List<String> evicted;
+        synchronized (this) {
+            for (Map.Entry<Path, BasicFileAttributes> entry : entries) {
+                index.put(entry.getKey().getFileName().toString(), entry.getValue().size());
+                totalBytes += entry.getValue().size();
+            }
+            evicted = evictOverflow(null); // Giới hạn có thể đã bị giảm từ lần chạy trước
+        }
+        for (String evictedKey : evicted) {
+            Files.deleteIfExists(directory.resolve(evictedKey));
+        }
+        logger.info("Image variant cache at {}: {} entries, {} bytes (limit {})",
+                directory, entries.size(), totalBytes, maxBytes);
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        byte[] load() throws IOException;
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.entity.Product;
+import com.example.demo.entity.Student;
+import com.example.demo.entity.enums.ImageVariant;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.exception.InternalServerErrorException;
+import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.StudentRepository;
+import com.example.demo.service.FileStorageService;
+import com.example.demo.service.ImageVariantService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+
+@Service
+public class ImageVariantServiceImpl implements ImageVariantService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantServiceImpl.class);
+
+    private static final String MEDIA_PATH = "/api/v1/media";
+
+    private final FileStorageService fileStorageService;
+    private final ImageVariantDiskCache diskCache;
+    private final ProductRepository productRepository;
+    private final StudentRepository studentRepository;
+    private final long maxPixels;
+    private final long maxBytes;
+    // Giải mã ảnh tốn CPU + heap: giới hạn số ảnh giải mã đồng thời
+    private final Semaphore resizePermits;
+
+    public ImageVariantServiceImpl(FileStorageService fileStorageService,
+                                   ImageVariantDiskCache diskCache,
+                                   ProductRepository productRepository,
+                                   StudentRepository studentRepository,
+                                   @Value("${media.resize.max-pixels:40000000}") long maxPixels,
+                                   @Value("${media.resize.max-concurrent:0}") int maxConcurrent,
+                                   @Value("${storage.upload.max-bytes:10485760}") long maxBytes) {
+        this.fileStorageService = fileStorageService;
+        this.diskCache = diskCache;
+        this.productRepository = productRepository;
+        this.studentRepository = studentRepository;
+        this.maxPixels = maxPixels;
+        this.maxBytes = maxBytes;
+        int permits = maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+        this.resizePermits = new Semaphore(permits);
+    }
+
+    @Override
+    public StoredImage upload(MultipartFile file, String folder) throws IOException {
+        String originalUrl = fileStorageService.uploadImage(file, folder);
+        String baseName = baseNameOf(originalUrl);
+        String mediumUrl = null;
+        String thumbnailUrl = null;
+        try {
+            BufferedImage decoded;
+            try (InputStream in = file.getInputStream()) {
+                decoded = decodeForVariants(in);
+            }
+            if (decoded == null) {
+                logger.debug("Image format not supported by ImageIO, variants will fall back to original: {}", originalUrl);
+                return new StoredImage(originalUrl, null, null);
+            }
+            BufferedImage medium = ImageResizer.scale(decoded, ImageVariant.MEDIUM.getMaxEdge());
+            BufferedImage thumbnail = ImageResizer.scale(medium, ImageVariant.THUMBNAIL.getMaxEdge());
+            mediumUrl = storeVariant(medium, folder, baseName, ImageVariant.MEDIUM);
+            thumbnailUrl = storeVariant(thumbnail, folder, baseName, ImageVariant.THUMBNAIL);
+            return new StoredImage(originalUrl, mediumUrl, thumbnailUrl);
+        } catch (BadRequestException e) {
+            fileStorageService.delete(originalUrl);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            // Ảnh gốc đã lưu thành công: không fail request, MediaController sẽ resize khi cần
+            logger.warn("Could not generate variants for {}: {}", originalUrl, e.getMessage());
+            fileStorageService.delete(mediumUrl);
+            return new StoredImage(originalUrl, null, null);
+        }
+    }
+
+    @Override
+    public void delete(StoredImage image) {
+        if (image == null) {
+            return;
+        }
+        fileStorageService.delete(image.thumbnailUrl());
+        fileStorageService.delete(image.mediumUrl());
+        fileStorageService.delete(image.originalUrl());
+    }
+
+    @Override
+    public String productImageUrl(Product product, ImageVariant variant) {
+        return publicUrl("products", product.getId(), product.getImageUrl(), variant);
+    }
+
+    @Override
+    public String studentAvatarUrl(Student student, ImageVariant variant) {
+        return publicUrl("students", student.getId(), student.getAvatarUrl(), variant);
+    }
+
+    @Override
+    public MediaContent loadProductImage(UUID productId, ImageVariant variant, String version) {
+        MediaContent cached = cachedByVersion("product", productId, variant, version);
+        if (cached != null) {
+            return cached;
+        }
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + productId));
+        String storedVariantUrl = variant == ImageVariant.THUMBNAIL
+                ? product.getImageThumbnailUrl() : product.getImageMediumUrl();
+        return load("product", productId, variant, product.getImageUrl(), storedVariantUrl);
+    }
+
+    @Override
+    public MediaContent loadStudentAvatar(UUID studentId, ImageVariant variant, String version) {
+        MediaContent cached = cachedByVersion("student", studentId, variant, version);
+        if (cached != null) {
+            return cached;
+        }
+        Student student = studentRepository.findById(studentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Student not found with id: " + studentId));
+        String storedVariantUrl = variant == ImageVariant.THUMBNAIL
+                ? student.getAvatarThumbnailUrl() : student.getAvatarMediumUrl();
+        return load("student", studentId, variant, student.getAvatarUrl(), storedVariantUrl);
+    }
+
+    // URL phiên bản hóa -> nội dung không đổi, cache hit không cần đọc DB
+    private MediaContent cachedByVersion(String owner, UUID id, ImageVariant variant, String version) {
+        if (version == null || !version.matches("[0-9a-f]{1,8}")) {
+            return null;
+        }
+        try {
+            byte[] content = diskCache.getIfPresent(cacheKey(owner, id, variant, version));
+            return content != null ? new MediaContent(content, ImageResizer.sniffContentType(content)) : null;
+        } catch (IOException e) {
+            logger.warn("Could not read image variant cache: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private MediaContent load(String owner, UUID id, ImageVariant variant, String originalUrl, String storedVariantUrl) {
+        if (originalUrl == null || !fileStorageService.isManaged(originalUrl)) {
+            throw new ResourceNotFoundException("No stored image for " + owner + " " + id);
+        }
+        String key = cacheKey(owner, id, variant, versionOf(originalUrl));
+        try {
+            byte[] content = diskCache.get(key, () -> {
+                if (storedVariantUrl != null && fileStorageService.isManaged(storedVariantUrl)) {
+                    return readStored(storedVariantUrl);
+                }
+                // Ảnh upload trước khi có biến thể (hoặc sinh biến thể lỗi): resize từ ảnh gốc
+                return resizeFromOriginal(originalUrl, variant);
+            });
+            return new MediaContent(content, ImageResizer.sniffContentType(content));
+        } catch (IOException e) {
+            logger.error("Could not load {} variant for {} {}: {}", variant, owner, id, e.getMessage());
+            throw new InternalServerErrorException("Could not load image");
+        }
+    }
+
+    private byte[] resizeFromOriginal(String originalUrl, ImageVariant variant) throws IOException {
+        BufferedImage decoded;
+        try (InputStream in = fileStorageService.open(originalUrl)) {
+            decoded = decodeForVariants(in);
+        }
+        if (decoded == null) {
+            return readStored(originalUrl); // Định dạng ImageIO không đọc được (webp...): phục vụ ảnh gốc
+        }
+        return ImageResizer.encode(ImageResizer.scale(decoded, variant.getMaxEdge())).content();
+    }
+
+    private BufferedImage decodeForVariants(InputStream in) throws IOException {
+        resizePermits.acquireUninterruptibly();
+        try {
+            return ImageResizer.decode(in, ImageVariant.MEDIUM.getMaxEdge(), maxPixels);
+        } finally {
+            resizePermits.release();
+        }
+    }
+
+    private String storeVariant(BufferedImage image, String folder, String baseName, ImageVariant variant) throws IOException {
+        ImageResizer.EncodedImage encoded = ImageResizer.encode(image);
+        return fileStorageService.uploadBytes(encoded.content(), encoded.contentType(), folder,
+                baseName + "_" + variant.getSuffix());
+    }
+
+    private byte[] readStored(String url) throws IOException {
+        try (InputStream in = fileStorageService.open(url)) {
+            byte[] content = in.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxBytes + 1));
+            if (content.length > maxBytes) {
+                throw new IOException("Stored image exceeds " + maxBytes + " bytes: " + url);
+            }
+            return content;
+        }
+    }
+
+    private String publicUrl(String owner, UUID id, String originalUrl, ImageVariant variant) {
+        if (originalUrl == null || variant == null || !fileStorageService.isManaged(originalUrl)) {
+            return originalUrl;
+        }
+        return MEDIA_PATH + "/" + owner + "/" + id + "/" + variant.getSuffix() + "?v=" + versionOf(originalUrl);
+    }
+
+    // Mỗi lần upload ảnh gốc có tên mới -> hash của URL gốc đủ làm phiên bản
+    private static String versionOf(String originalUrl) {
+        return Integer.toHexString(originalUrl.hashCode());
+    }
+
+    private static String cacheKey(String owner, UUID id, ImageVariant variant, String version) {
+        return owner + "-" + id + "-" + variant.getSuffix() + "-" + version;
+    }
+
+    // .../avatars/<uuid>.jpg -> <uuid>
+    private static String baseNameOf(String url) {
+        String name = url.substring(url.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.entity.ProductInvoice;
+import com.example.demo.repository.InvoiceStatsJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Thống kê đổi quà cho dashboard admin, cập nhật trong CÙNG transaction với tạo / giao / hủy invoice
+ * (caller phải flush invoice trước, xem InvoiceStatsJdbcRepository). Đọc = SUM vài shard + K dòng đầu index.
+ *
+ * Lần đầu khởi động bảng thống kê được dựng từ product_invoice; tới khi xong, caller đọc bằng aggregate cũ.
+ */
+@Component
+public class InvoiceStatistics {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvoiceStatistics.class);
+
+    private final InvoiceStatsJdbcRepository statsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int shardCount;
+    private final int topProducts;
+    private volatile boolean ready;
+
+    public InvoiceStatistics(InvoiceStatsJdbcRepository statsRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${invoice.stats.shards:8}") int shardCount,
+                             @Value("${invoice.stats.top-products:10}") int topProducts) {
+        this.statsRepository = statsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardCount = Math.max(1, shardCount);
+        this.topProducts = Math.max(1, topProducts);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // Kiểm tra sau khi có lock: node khác có thể vừa dựng xong
+                statsRepository.lockRebuild();
+                if (!statsRepository.isInitialized()) {
+                    statsRepository.rebuild(shardCount);
+                    logger.info("Invoice statistics rebuilt from product_invoice ({} shards)", shardCount);
+                }
+            });
+            ready = true;
+        } catch (DataAccessException e) {
+            logger.warn("Could not initialize invoice statistics, dashboard stays on full-table aggregates: {}",
+                    e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int getTopProductsLimit() {
+        return topProducts;
+    }
+
+    public void onRedeemed(ProductInvoice invoice) {
+        statsRepository.recordRedeem(invoice.getProduct().getId(), invoice.getTotalCost(),
+                ThreadLocalRandom.current().nextInt(shardCount));
+    }
+
+    public void onDelivered(ProductInvoice invoice) {
+        statsRepository.recordDelivered(invoice.getProduct().getId());
+    }
+
+    public void onCancelled(ProductInvoice invoice) {
+        statsRepository.recordCancelled(invoice.getProduct().getId());
+    }
+
+    public InvoiceStatsJdbcRepository.Totals totals() {
+        return statsRepository.totals();
+    }
+
+    public List<InvoiceStatsJdbcRepository.ProductCount> topByRedeems() {
+        return statsRepository.findTopByRedeems(topProducts);
+    }
+
+    public List<InvoiceStatsJdbcRepository.ProductCount> topByDeliveries() {
+        return statsRepository.findTopByDeliveries(topProducts);
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.response.WalletBalanceResponseDTO;
+import com.example.demo.dto.response.WalletTransactionResponseDTO;
+import com.example.demo.entity.Wallet;
+import com.example.demo.entity.WalletBalanceSnapshot;
+import com.example.demo.entity.WalletTransaction;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.repository.WalletBalanceSnapshotRepository;
+import com.example.demo.repository.WalletLedgerJdbcRepository;
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.repository.WalletTransactionRepository;
+import com.example.demo.service.LedgerService;
+import com.example.demo.service.PushEventBus;
+import com.example.demo.service.WalletShardService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+public class LedgerServiceImpl implements LedgerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerServiceImpl.class);
+    private static final String CREDIT_KEY_SUFFIX = ":CR";
+    private static final String WALLET_PUSH_EVENT = "wallet";
+    private static final String STUDENT_OWNER = "STUDENT";
+
+    private final WalletRepository walletRepository;
+    private final WalletTransactionRepository transactionRepository;
+    private final WalletLedgerJdbcRepository walletLedgerRepository;
+    private final WalletBalanceSnapshotRepository snapshotRepository;
+    private final WalletShardService walletShardService;
+    private final WalletBalanceCache walletBalanceCache;
+    private final PushEventBus pushEventBus;
+    private final Duration snapshotSafetyLag;
+
+    public LedgerServiceImpl(WalletRepository walletRepository,
+                             WalletTransactionRepository transactionRepository,
+                             WalletLedgerJdbcRepository walletLedgerRepository,
+                             WalletBalanceSnapshotRepository snapshotRepository,
+                             WalletShardService walletShardService,
+                             WalletBalanceCache walletBalanceCache,
+                             PushEventBus pushEventBus,
+                             @Value("${wallet.ledger.snapshot-safety-lag-ms:60000}") long snapshotSafetyLagMs) {
+        this.walletRepository = walletRepository;
+        this.transactionRepository = transactionRepository;
+        this.walletLedgerRepository = walletLedgerRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.walletShardService = walletShardService;
+        this.walletBalanceCache = walletBalanceCache;
+        this.pushEventBus = pushEventBus;
+        this.snapshotSafetyLag = Duration.ofMillis(snapshotSafetyLagMs);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Posting transfer(Wallet from, Wallet to, BigDecimal amount,
+                            String debitTxnType, String creditTxnType,
+                            String referenceType, UUID referenceId, String idempotencyKey) {
+        requirePositive(amount);
+        if (from.getId().equals(to.getId())) {
+            throw new BadRequestException("Cannot post a transfer to the same wallet.");
+        }
+
+        applyBalanceChange(from, to, amount.negate());
+        applyBalanceChange(to, from, amount);
+
+        WalletTransaction debit = newEntry(from, to, debitTxnType, amount.negate(),
+                referenceType, referenceId, idempotencyKey);
+        WalletTransaction credit = newEntry(to, from, creditTxnType, amount,
+                referenceType, referenceId, idempotencyKey != null ? idempotencyKey + CREDIT_KEY_SUFFIX : null);
+        List<WalletTransaction> saved = transactionRepository.saveAll(List.of(debit, credit));
+        saved.forEach(this::pushTransaction);
+        return new Posting(saved.get(0), saved.get(1));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public WalletTransaction postExternal(Wallet wallet, BigDecimal signedAmount, String txnType,
+                                          String referenceType, UUID referenceId, String idempotencyKey) {
+        if (signedAmount == null || signedAmount.signum() == 0) {
+            throw new BadRequestException("Posting amount must not be zero.");
+        }
+        applyBalanceChange(wallet, null, signedAmount);
+        WalletTransaction saved = transactionRepository.save(
+                newEntry(wallet, null, txnType, signedAmount, referenceType, referenceId, idempotencyKey));
+        pushTransaction(saved);
+        return saved;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean postEventPayouts(UUID eventId, UUID eventWalletId, List<UUID> studentWalletIds, BigDecimal amountEach) {
+        List<UUID> touched = new ArrayList<>(studentWalletIds.size() + 1);
+        touched.add(eventWalletId);
+        touched.addAll(studentWalletIds);
+        walletBalanceCache.evictAll(touched);
+        boolean paid = walletLedgerRepository.payEventAttendees(eventId, eventWalletId, studentWalletIds, amountEach);
+        if (paid) {
+            // Cùng 1 bút toán cho cả chunk: walletId để trống, client biết ví của chính mình
+            pushEventBus.publish(new PushEventBus.PushEvent(WALLET_PUSH_EVENT, List.copyOf(studentWalletIds),
+                    toPushDTO(null, eventWalletId, "EVENT_FINAL_PAYOUT", amountEach, "EVENT", eventId)));
+        }
+        return paid;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void postTransfers(List<TransferLeg> legs, String debitTxnType, String creditTxnType,
+                              String referenceType, UUID referenceId) {
+        if (legs.isEmpty()) {
+            return;
+        }
+        Map<UUID, BigDecimal> netDeltas = new LinkedHashMap<>();
+        Map<UUID, Wallet> walletsById = new HashMap<>();
+        List<WalletLedgerJdbcRepository.LedgerRow> rows = new ArrayList<>(legs.size() * 2);
+        for (TransferLeg leg : legs) {
+            requirePositive(leg.amount());
+            UUID fromId = leg.from().getId();
+            UUID toId = leg.to().getId();
+            if (fromId.equals(toId)) {
+                throw new BadRequestException("Cannot post a transfer to the same wallet.");
+            }
+            netDeltas.merge(fromId, leg.amount().negate(), BigDecimal::add);
+            netDeltas.merge(toId, leg.amount(), BigDecimal::add);
+            walletsById.putIfAbsent(fromId, leg.from());
+            walletsById.putIfAbsent(toId, leg.to());
+
+            String key = leg.idempotencyKey();
+            rows.add(new WalletLedgerJdbcRepository.LedgerRow(fromId, toId, debitTxnType, leg.amount().negate(),
+                    referenceType, referenceId, key));
+            rows.add(new WalletLedgerJdbcRepository.LedgerRow(toId, fromId, creditTxnType, leg.amount(),
+                    referenceType, referenceId, key != null ? key + CREDIT_KEY_SUFFIX : null));
+        }
+
+        walletBalanceCache.evictAll(netDeltas.keySet());
+        // Ví shard bị trừ ròng: gộp shard về ví chính để điều kiện "balance + delta >= 0" thấy đủ tiền
+        for (Map.Entry<UUID, BigDecimal> entry : netDeltas.entrySet()) {
+            Wallet wallet = walletsById.get(entry.getKey());
+            if (entry.getValue().signum() < 0 && walletShardService.isSharded(wallet.getOwnerType())) {
+                walletShardService.consolidate(wallet.getId());
+            }
+        }
+
+        int updated = walletLedgerRepository.applyNetDeltas(netDeltas);
+        if (updated != netDeltas.size()) {
+            throw new BadRequestException("Insufficient balance for one or more wallets in the batch.");
+        }
+        walletLedgerRepository.insertTransactions(rows);
+        for (WalletLedgerJdbcRepository.LedgerRow row : rows) {
+            if (STUDENT_OWNER.equals(walletsById.get(row.walletId()).getOwnerType())) {
+                pushEventBus.publish(new PushEventBus.PushEvent(WALLET_PUSH_EVENT, List.of(row.walletId()),
+                        toPushDTO(row.walletId(), row.counterpartyId(), row.txnType(), row.amount(),
+                                row.referenceType(), row.referenceId())));
+            }
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public WalletBalanceResponseDTO getBalanceAsOf(UUID walletId, OffsetDateTime asOf) {
+        if (!walletRepository.existsById(walletId)) {
+            throw new ResourceNotFoundException("Wallet not found with id: " + walletId);
+        }
+        OffsetDateTime pointInTime = asOf != null ? asOf : OffsetDateTime.now();
+
+        Optional<WalletBalanceSnapshot> snapshot =
+                snapshotRepository.findFirstByWalletIdAndAsOfLessThanEqualOrderByAsOfDesc(walletId, pointInTime);
+
+        BigDecimal base = snapshot.map(WalletBalanceSnapshot::getBalance).orElse(BigDecimal.ZERO);
+        BigDecimal tail = snapshot.isPresent()
+                ? transactionRepository.sumAmountBetween(walletId, snapshot.get().getAsOf(), pointInTime)
+                : transactionRepository.sumAmountUpTo(walletId, pointInTime);
+
+        WalletBalanceResponseDTO dto = new WalletBalanceResponseDTO();
+        dto.setWalletId(walletId);
+        dto.setAsOf(pointInTime);
+        dto.setBalance(base.add(tail));
+        snapshot.ifPresent(s -> {
+            dto.setSnapshotAsOf(s.getAsOf());
+            dto.setSnapshotBalance(s.getBalance());
+        });
+        return dto;
+    }
+
+    /**
+     * Snapshot định kỳ. Cutoff lùi lại một khoảng an toàn để không "chốt" trước các transaction
+     * đang chạy dở (created_at được gán lúc insert, commit có thể muộn hơn).
+     */
+    @Override
+    @Transactional
+    @Scheduled(fixedDelayString = "${wallet.ledger.snapshot-interval-ms:3600000}",
+               initialDelayString = "${wallet.ledger.snapshot-initial-delay-ms:60000}")
+    public int snapshotBalances() {
+        OffsetDateTime cutoff = OffsetDateTime.now().minus(snapshotSafetyLag);
+        int created = walletLedgerRepository.insertBalanceSnapshots(cutoff);
+        if (created > 0) {
+            logger.info("Created {} wallet balance snapshots as of {}", created, cutoff);
+        }
+        return created;
+    }
+
+    // --- HÀM HỖ TRỢ ---
+
+    /**
+     * Cập nhật số dư materialized. Ví được shard thì ghi vào shard; riêng chiều trừ có kiểm tra số dư
+     * của ví shard thì gộp shard trước rồi trừ có điều kiện bằng 1 câu UPDATE.
+     * Ví ADMIN là nguồn phát hành coin nên được phép âm.
+     * Mọi thay đổi số dư đi qua đây -> invalidate cache số dư tại một chỗ.
+     */
+    private void applyBalanceChange(Wallet wallet, Wallet counterparty, BigDecimal delta) {
+        walletBalanceCache.evict(wallet.getId());
+        boolean allowNegative = "ADMIN".equals(wallet.getOwnerType());
+
+        if (walletShardService.isSharded(wallet.getOwnerType())) {
+            if (delta.signum() > 0 || allowNegative) {
+                walletShardService.applyDelta(wallet.getId(), counterparty != null ? counterparty.getId() : null, delta);
+                return;
+            }
+            walletShardService.consolidate(wallet.getId());
+            if (!walletLedgerRepository.debitIfSufficient(wallet.getId(), delta.negate())) {
+                throw new BadRequestException("Insufficient balance in wallet " + wallet.getId());
+            }
+            return;
+        }
+
+        BigDecimal newBalance = wallet.getBalance().add(delta);
+        if (newBalance.signum() < 0 && !allowNegative) {
+            throw new BadRequestException("Insufficient balance in wallet " + wallet.getId());
+        }
+        wallet.setBalance(newBalance);
+        walletRepository.save(wallet);
+    }
+
+    private WalletTransaction newEntry(Wallet wallet, Wallet counterparty, String txnType, BigDecimal amount,
+                                       String referenceType, UUID referenceId, String idempotencyKey) {
+        WalletTransaction txn = new WalletTransaction();
+        txn.setWallet(wallet);
+        txn.setCounterparty(counterparty);
+        txn.setTxnType(txnType);
+        txn.setAmount(amount);
+        txn.setReferenceType(referenceType);
+        txn.setReferenceId(referenceId);
+        txn.setIdempotencyKey(idempotencyKey);
+        return txn;
+    }
+
+    // Chỉ ví sinh viên có client SSE; gửi sau commit (xem PushEventBus)
+    private void pushTransaction(WalletTransaction txn) {
+        Wallet wallet = txn.getWallet();
+        if (!STUDENT_OWNER.equals(wallet.getOwnerType())) {
+            return;
+        }
+        WalletTransactionResponseDTO dto = toPushDTO(wallet.getId(),
+                txn.getCounterparty() != null ? txn.getCounterparty().getId() : null,
+                txn.getTxnType(), txn.getAmount(), txn.getReferenceType(), txn.getReferenceId());
+        dto.setId(txn.getId());
+        pushEventBus.publish(new PushEventBus.PushEvent(WALLET_PUSH_EVENT, List.of(wallet.getId()), dto));
+    }
+
+    private static WalletTransactionResponseDTO toPushDTO(UUID walletId, UUID counterpartyId, String txnType,
+                                                          BigDecimal amount, String referenceType, UUID referenceId) {
+        WalletTransactionResponseDTO dto = new WalletTransactionResponseDTO();
+        dto.setWalletId(walletId);
+        dto.setCounterpartyId(counterpartyId);
+        dto.setTxnType(txnType);
+        dto.setAmount(amount);
+        dto.setReferenceType(referenceType);
+        dto.setReferenceId(referenceId);
+        dto.setCreatedAt(OffsetDateTime.now());
+        return dto;
+    }
+
+    private void requirePositive(BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new BadRequestException("Posting amount must be positive.");
+        }
+    }
+}
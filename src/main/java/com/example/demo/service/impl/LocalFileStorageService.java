@@ -0,0 +1,124 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.service.FileStorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * Backend lưu file trên filesystem (storage.backend=local): chạy offline cho dev/test.
+ * File được stream thẳng xuống đĩa với tên UUID, phục vụ qua storage.local.public-path (xem WebMvcConfig).
+ */
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalFileStorageService implements FileStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalFileStorageService.class);
+
+    private final Path root;
+    private final String publicPath;
+    private final long maxBytes;
+
+    public LocalFileStorageService(@Value("${storage.local.root:${java.io.tmpdir}/loyalty-media}") String root,
+                                   @Value("${storage.local.public-path:/media}") String publicPath,
+                                   @Value("${storage.upload.max-bytes:10485760}") long maxBytes) throws IOException {
+        this.root = Path.of(root).toAbsolutePath().normalize();
+        this.publicPath = publicPath.endsWith("/") ? publicPath.substring(0, publicPath.length() - 1) : publicPath;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(this.root);
+    }
+
+    @Override
+    public String uploadImage(MultipartFile file, String folder) throws IOException {
+        String extension = ImageUploadValidator.validate(file, maxBytes);
+        String relative = sanitizeFolder(folder) + "/" + UUID.randomUUID() + "." + extension;
+        try (InputStream in = file.getInputStream()) {
+            write(relative, in);
+        }
+        return publicPath + "/" + relative;
+    }
+
+    @Override
+    public String uploadBytes(byte[] content, String contentType, String folder, String name) throws IOException {
+        String extension = ImageUploadValidator.extensionOf(contentType);
+        if (extension == null) {
+            throw new IOException("Unsupported content type: " + contentType);
+        }
+        String relative = sanitizeFolder(folder) + "/"
+                + ImageUploadValidator.sanitizeName(name, UUID.randomUUID().toString()) + "." + extension;
+        write(relative, new ByteArrayInputStream(content));
+        return publicPath + "/" + relative;
+    }
+
+    @Override
+    public boolean isManaged(String url) {
+        return resolve(url) != null;
+    }
+
+    @Override
+    public InputStream open(String url) throws IOException {
+        Path target = resolve(url);
+        if (target == null) {
+            throw new IOException("Not a local storage URL: " + url);
+        }
+        return Files.newInputStream(target);
+    }
+
+    @Override
+    public void delete(String url) {
+        Path target = resolve(url);
+        if (target == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            logger.warn("Could not delete local file {}: {}", target, e.getMessage());
+        }
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public String getPublicPath() {
+        return publicPath;
+    }
+
+    // Ghi vào file tạm cùng thư mục rồi đổi tên: không bao giờ lộ file ghi dở
+    private void write(String relative, InputStream in) throws IOException {
+        Path target = root.resolve(relative);
+        Files.createDirectories(target.getParent());
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        try {
+            Files.copy(in, partial, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    // URL công khai -> file trong root, null nếu không thuộc backend này (hoặc cố thoát ra ngoài root)
+    private Path resolve(String url) {
+        if (url == null || !url.startsWith(publicPath + "/")) {
+            return null;
+        }
+        Path target = root.resolve(url.substring(publicPath.length() + 1)).normalize();
+        return target.startsWith(root) ? target : null;
+    }
+
+    private static String sanitizeFolder(String folder) {
+        return ImageUploadValidator.sanitizeName(folder, "misc");
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.service.PushBrokerAdapter;
+import com.example.demo.service.PushEventBus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+@Service
+public class LocalPushEventBus implements PushEventBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalPushEventBus.class);
+
+    private final List<Consumer<PushEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final PushBrokerAdapter brokerAdapter; // null = chỉ 1 node
+    private final TaskExecutor pushExecutor;
+    private final Counter droppedCounter;
+
+    public LocalPushEventBus(ObjectProvider<PushBrokerAdapter> brokerAdapter,
+                             @Qualifier("pushExecutor") TaskExecutor pushExecutor,
+                             MeterRegistry meterRegistry) {
+        this.brokerAdapter = brokerAdapter.getIfAvailable();
+        this.pushExecutor = pushExecutor;
+        this.droppedCounter = Counter.builder("push.events.dropped")
+                .description("Push events dropped because the push executor queue was full")
+                .register(meterRegistry);
+        if (this.brokerAdapter != null) {
+            this.brokerAdapter.onReceive(this::deliverLocally);
+        }
+    }
+
+    @Override
+    public void publish(PushEvent event) {
+        if (event.targets().isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(event);
+                }
+            });
+            return;
+        }
+        dispatch(event);
+    }
+
+    @Override
+    public void subscribe(Consumer<PushEvent> listener) {
+        listeners.add(listener);
+    }
+
+    private void dispatch(PushEvent event) {
+        deliverLocally(event);
+        if (brokerAdapter != null) {
+            try {
+                brokerAdapter.send(event);
+            } catch (RuntimeException e) {
+                // Push là best-effort: client vẫn đồng bộ lại bằng API khi kết nối lại
+                logger.warn("Could not forward push event '{}' to broker: {}", event.type(), e.getMessage());
+            }
+        }
+    }
+
+    // Không gửi trên thread của caller (request / transaction của job): client chậm không làm chậm nghiệp vụ
+    private void deliverLocally(PushEvent event) {
+        try {
+            pushExecutor.execute(() -> {
+                for (Consumer<PushEvent> listener : listeners) {
+                    try {
+                        listener.accept(event);
+                    } catch (RuntimeException e) {
+                        logger.warn("Push listener failed for event '{}': {}", event.type(), e.getMessage());
+                    }
+                }
+            });
+        } catch (TaskRejectedException e) {
+            droppedCounter.increment();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demo.service.impl;
 
+import com.example.demo.config.AuthPrincipalCache;
 import com.example.demo.dto.request.PartnerRequestDTO;
 import com.example.demo.dto.request.UserStatusUpdateDTO;
 import com.example.demo.dto.response.PartnerResponseDTO;
@@ -46,6 +47,7 @@ public class PartnerServiceImpl implements PartnerService {
 
     private final PartnerRepository partnerRepository;
     private final WalletRepository walletRepository;
+    private final AuthPrincipalCache principalCache;
     private final AWSCognitoIdentityProvider cognitoClient; // <<< GIỮ LẠI KHAI BÁO NÀY
 
     @Value("${AWS_COGNITO_USER_POOL_ID}") // <<< GIỮ LẠI KHAI BÁO NÀY
@@ -53,11 +55,13 @@ public class PartnerServiceImpl implements PartnerService {
 
     public PartnerServiceImpl(PartnerRepository partnerRepository,
             WalletRepository walletRepository,
+            AuthPrincipalCache principalCache,
             @Value("${AWS_ACCESS_KEY_ID}") String accessKey,
             @Value("${AWS_SECRET_ACCESS_KEY}") String secretKey,
             @Value("${AWS_REGION}") String awsRegion) {
         this.partnerRepository = partnerRepository;
         this.walletRepository = walletRepository;
+        this.principalCache = principalCache;
 
         // TẠO CREDENTIALS TƯỜNG MINH TỪ PROPERTIES
         AWSCredentials credentials = new BasicAWSCredentials(accessKey, secretKey);
@@ -205,6 +209,7 @@ public class PartnerServiceImpl implements PartnerService {
 
         logger.info("Successfully created partner {} with ID {} in database", savedPartner.getName(),
                 savedPartner.getId());
+        principalCache.invalidate(createdCognitoSub); // Xóa cache "chưa có partner" của sub này
         return convertToDTO(savedPartner);
     }
 
@@ -275,6 +280,7 @@ public class PartnerServiceImpl implements PartnerService {
 
         partner.setStatus(newStatus);
         Partner updatedPartner = partnerRepository.save(partner);
+        principalCache.invalidate(partner.getCognitoSub());
 
         return convertToDTO(updatedPartner);
     }
@@ -282,10 +288,10 @@ public class PartnerServiceImpl implements PartnerService {
     @Override
     @Transactional
     public void deletePartner(UUID partnerId) { // SỬA: Long -> UUID
-        if (!partnerRepository.existsById(partnerId)) {
-            throw new ResourceNotFoundException("Partner not found with id: " + partnerId);
-        }
-        partnerRepository.deleteById(partnerId);
+        Partner partner = partnerRepository.findById(partnerId)
+                .orElseThrow(() -> new ResourceNotFoundException("Partner not found with id: " + partnerId));
+        partnerRepository.delete(partner);
+        principalCache.invalidate(partner.getCognitoSub());
         logger.info("Deleted partner with ID: {}", partnerId);
     }
 
@@ -7,6 +7,7 @@ import com.example.demo.entity.Product;
 import com.example.demo.entity.ProductInvoice;
 import com.example.demo.entity.Student;
 import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.repository.InvoiceStatsJdbcRepository;
 import com.example.demo.repository.ProductInvoiceRepository;
 import com.example.demo.repository.ProductRepository;
 import com.example.demo.repository.StudentRepository;
@@ -33,15 +34,18 @@ public class ProductInvoiceServiceImpl implements ProductInvoiceService {
     private final ProductRepository productRepository;
     private final StudentRepository studentRepository;
     private final WalletService walletService;
+    private final InvoiceStatistics invoiceStatistics;
 
     public ProductInvoiceServiceImpl(ProductInvoiceRepository productInvoiceRepository,
                                       ProductRepository productRepository,
                                       StudentRepository studentRepository,
-                                      WalletService walletService) {
+                                      WalletService walletService,
+                                      InvoiceStatistics invoiceStatistics) {
         this.productInvoiceRepository = productInvoiceRepository;
         this.productRepository = productRepository;
         this.studentRepository = studentRepository;
         this.walletService = walletService;
+        this.invoiceStatistics = invoiceStatistics;
     }
 
     @Override
@@ -81,7 +85,9 @@ public class ProductInvoiceServiceImpl implements ProductInvoiceService {
         invoice.setStatus("PENDING");
         invoice.setVerificationCode(generateVerificationCode());
 
-        ProductInvoice savedInvoice = productInvoiceRepository.save(invoice);
+        // Flush invoice trước khi cộng thống kê (thứ tự khóa, xem InvoiceStatsJdbcRepository)
+        ProductInvoice savedInvoice = productInvoiceRepository.saveAndFlush(invoice);
+        invoiceStatistics.onRedeemed(savedInvoice);
 
         // 8. Create wallet transaction
         walletService.deductBalance("STUDENT", student.getId(), totalCost, "PRODUCT_INVOICE", savedInvoice.getId());
@@ -103,7 +109,8 @@ public class ProductInvoiceServiceImpl implements ProductInvoiceService {
         invoice.setDeliveredAt(OffsetDateTime.now());
         invoice.setDeliveredBy(deliveredBy);
 
-        productInvoiceRepository.save(invoice);
+        productInvoiceRepository.saveAndFlush(invoice);
+        invoiceStatistics.onDelivered(invoice);
 
         return convertProductToDTO(invoice.getProduct());
     }
@@ -127,7 +134,8 @@ public class ProductInvoiceServiceImpl implements ProductInvoiceService {
 
         invoice.setStatus("CANCELLED");
 
-        productInvoiceRepository.save(invoice);
+        productInvoiceRepository.saveAndFlush(invoice);
+        invoiceStatistics.onCancelled(invoice);
 
         return convertProductToDTO(product);
     }
@@ -157,8 +165,27 @@ public class ProductInvoiceServiceImpl implements ProductInvoiceService {
     @Override
     @Transactional(readOnly = true)
     public Map<String, Object> getInvoiceStats() {
+        if (invoiceStatistics.isReady()) {
+            InvoiceStatsJdbcRepository.Totals totals = invoiceStatistics.totals();
+            List<Map<String, Object>> topProducts = invoiceStatistics.topByRedeems().stream()
+                    .map(row -> {
+                        Map<String, Object> map = new java.util.HashMap<>();
+                        map.put("title", row.title());
+                        map.put("count", row.count());
+                        return map;
+                    })
+                    .collect(Collectors.toList());
+            return Map.of(
+                    "totalRedeems", totals.redeemCount(),
+                    "totalCoinsSpent", totals.coinsSpent(),
+                    "topProducts", topProducts
+            );
+        }
+
+        // Bảng thống kê chưa dựng xong (lúc khởi động) -> aggregate trên product_invoice
         List<Object[]> statsResults = productInvoiceRepository.getInvoiceStats();
-        List<Object[]> topProductsResults = productInvoiceRepository.getTopProducts();
+        List<Object[]> topProductsResults = productInvoiceRepository.getTopProducts(
+                PageRequest.of(0, invoiceStatistics.getTopProductsLimit()));
 
         Long totalRedeems = 0L;
         BigDecimal totalCoinsSpent = BigDecimal.ZERO;
@@ -3,43 +3,65 @@ package com.example.demo.service.impl;
 import com.example.demo.dto.request.ProductRequestDTO;
 import com.example.demo.dto.response.ProductResponseDTO;
 import com.example.demo.entity.Product;
+import com.example.demo.entity.enums.ImageVariant;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.exception.InternalServerErrorException;
 import com.example.demo.exception.ResourceNotFoundException;
 import com.example.demo.repository.ProductRepository;
+import com.example.demo.service.ImageVariantService;
 import com.example.demo.service.ProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID; // <<< THÊM IMPORT
 import java.util.stream.Collectors;
 
 @Service
 public class ProductServiceImpl implements ProductService {
 
-    private final ProductRepository productRepository;
+    private static final Logger logger = LoggerFactory.getLogger(ProductServiceImpl.class);
 
-    public ProductServiceImpl(ProductRepository productRepository) {
+    private final ProductRepository productRepository;
+    private final ImageVariantService imageVariantService;
+    private final TransactionTemplate transactionTemplate;
+    private final InvoiceStatistics invoiceStatistics;
+
+    public ProductServiceImpl(ProductRepository productRepository,
+                              ImageVariantService imageVariantService,
+                              TransactionTemplate transactionTemplate,
+                              InvoiceStatistics invoiceStatistics) {
         this.productRepository = productRepository;
+        this.imageVariantService = imageVariantService;
+        this.transactionTemplate = transactionTemplate;
+        this.invoiceStatistics = invoiceStatistics;
     }
 
     @Override
     @Transactional(readOnly = true)
-    public Page<ProductResponseDTO> getProducts(String category, Double minCost, Double maxCost, String sortBy, String order, Boolean isActive, Integer limit, Integer offset) {
+    public Page<ProductResponseDTO> getProducts(String category, Double minCost, Double maxCost, String sortBy, String order, Boolean isActive, Integer limit, Integer offset, String imageVariant) {
         Sort sort = createSort(sortBy, order);
         Pageable pageable = PageRequest.of(offset / limit, limit, sort);
 
         BigDecimal minCostBD = minCost != null ? BigDecimal.valueOf(minCost) : null;
         BigDecimal maxCostBD = maxCost != null ? BigDecimal.valueOf(maxCost) : null;
 
+        ImageVariant listVariant = parseListVariant(imageVariant);
         Page<Product> products = productRepository.findProductsWithFilters(category, minCostBD, maxCostBD, isActive, pageable);
-        return products.map(this::convertToDTO);
+        return products.map(product -> convertToDTO(product, listVariant));
     }
 
     @Override
@@ -47,7 +69,7 @@ public class ProductServiceImpl implements ProductService {
     public ProductResponseDTO getProductById(UUID id) { // SỬA: Long -> UUID
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + id));
-        return convertToDTO(product);
+        return convertToDTO(product, null);
     }
 
     @Override
@@ -60,12 +82,12 @@ public class ProductServiceImpl implements ProductService {
         product.setUnitCost(request.getUnitCost());
         product.setCurrency("COIN");
         product.setTotalStock(request.getTotalStock());
-        product.setImageUrl(request.getImageUrl());
+        product.setImageUrl(request.getImageUrl()); // Link nhập tay: không có biến thể
         product.setIsActive(true);
         product.setCreatedAt(OffsetDateTime.now());
 
         Product savedProduct = productRepository.save(product);
-        return convertToDTO(savedProduct);
+        return convertToDTO(savedProduct, null);
     }
 
     @Override
@@ -79,10 +101,15 @@ public class ProductServiceImpl implements ProductService {
         product.setDescription(request.getDescription());
         product.setUnitCost(request.getUnitCost());
         product.setTotalStock(request.getTotalStock());
-        product.setImageUrl(request.getImageUrl());
+        if (!Objects.equals(product.getImageUrl(), request.getImageUrl())) {
+            // Ảnh đổi sang link khác -> biến thể cũ không còn đúng
+            product.setImageUrl(request.getImageUrl());
+            product.setImageMediumUrl(null);
+            product.setImageThumbnailUrl(null);
+        }
 
         Product savedProduct = productRepository.save(product);
-        return convertToDTO(savedProduct);
+        return convertToDTO(savedProduct, null);
     }
 
     @Override
@@ -94,10 +121,50 @@ public class ProductServiceImpl implements ProductService {
         productRepository.save(product);
     }
 
+    // Không @Transactional: upload + resize chạy trước, transaction chỉ bao phần cập nhật DB.
+    // Ảnh cũ không bị xóa: link có thể vẫn đang được dùng ở nơi khác (hóa đơn, cache của client...).
+    @Override
+    public ProductResponseDTO updateProductImage(UUID id, MultipartFile imageFile) {
+        if (!productRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Product not found with id: " + id);
+        }
+        ImageVariantService.StoredImage stored;
+        try {
+            stored = imageVariantService.upload(imageFile, "products");
+        } catch (IOException e) {
+            logger.error("Failed to upload image for product {}: {}", id, e.getMessage());
+            throw new InternalServerErrorException("Failed to upload product image: " + e.getMessage());
+        }
+
+        try {
+            return transactionTemplate.execute(status -> {
+                Product product = productRepository.findById(id)
+                        .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + id));
+                product.setImageUrl(stored.originalUrl());
+                product.setImageMediumUrl(stored.mediumUrl());
+                product.setImageThumbnailUrl(stored.thumbnailUrl());
+                return convertToDTO(productRepository.save(product), null);
+            });
+        } catch (RuntimeException e) {
+            imageVariantService.delete(stored);
+            throw e;
+        }
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<Map<String, Object>> getTopProducts() {
-        Pageable pageable = PageRequest.of(0, 10);
+        if (invoiceStatistics.isReady()) {
+            return invoiceStatistics.topByDeliveries().stream()
+                    .map(row -> Map.<String, Object>of(
+                            "productId", row.productId(),
+                            "title", row.title(),
+                            "redeemCount", row.count()
+                    ))
+                    .collect(Collectors.toList());
+        }
+
+        Pageable pageable = PageRequest.of(0, invoiceStatistics.getTopProductsLimit());
         List<Object[]> results = productRepository.findTopProducts(pageable);
         return results.stream()
                 .map(row -> Map.of(
@@ -112,7 +179,7 @@ public class ProductServiceImpl implements ProductService {
     @Transactional(readOnly = true)
     public List<ProductResponseDTO> getLowStockProducts() {
         return productRepository.findLowStockProducts().stream()
-                .map(this::convertToDTO)
+                .map(product -> convertToDTO(product, ImageVariant.THUMBNAIL))
                 .collect(Collectors.toList());
     }
 
@@ -132,7 +199,22 @@ public class ProductServiceImpl implements ProductService {
         }
     }
 
-    private ProductResponseDTO convertToDTO(Product product) {
+    private static ImageVariant parseListVariant(String imageVariant) {
+        if (imageVariant == null || imageVariant.isBlank()) {
+            return ImageVariant.THUMBNAIL;
+        }
+        if ("original".equalsIgnoreCase(imageVariant)) {
+            return null;
+        }
+        ImageVariant variant = ImageVariant.fromSuffix(imageVariant);
+        if (variant == null) {
+            throw new BadRequestException("Invalid imageVariant: " + imageVariant + " (thumbnail, medium, original)");
+        }
+        return variant;
+    }
+
+    // imageVariant = null -> imageUrl là ảnh gốc (endpoint chi tiết)
+    private ProductResponseDTO convertToDTO(Product product, ImageVariant imageVariant) {
         ProductResponseDTO dto = new ProductResponseDTO();
         dto.setId(product.getId());
         dto.setType(product.getType());
@@ -141,7 +223,9 @@ public class ProductServiceImpl implements ProductService {
         dto.setUnitCost(product.getUnitCost());
         dto.setCurrency(product.getCurrency());
         dto.setTotalStock(product.getTotalStock());
-        dto.setImageUrl(product.getImageUrl());
+        dto.setImageUrl(imageVariantService.productImageUrl(product, imageVariant));
+        dto.setThumbnailUrl(imageVariantService.productImageUrl(product, ImageVariant.THUMBNAIL));
+        dto.setMediumUrl(imageVariantService.productImageUrl(product, ImageVariant.MEDIUM));
         dto.setIsActive(product.getIsActive());
         dto.setCreatedAt(product.getCreatedAt());
         return dto;
@@ -0,0 +1,167 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.service.PushEventBus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Các kết nối SSE đang mở trên node này, tra theo student id và wallet id của sinh viên.
+ * Servlet async: kết nối đang mở không giữ thread Tomcat hay connection DB.
+ *
+ * Heartbeat (comment SSE) định kỳ giữ kết nối qua proxy/load balancer và phát hiện client đã đi mất.
+ */
+@Component
+public class SsePushRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(SsePushRegistry.class);
+
+    private final Map<UUID, Set<Connection>> connectionsByTarget = new ConcurrentHashMap<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final WalletRepository walletRepository;
+    private final long timeoutMs;
+    private final long reconnectMs;
+    private final int maxPerStudent;
+
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+
+    public SsePushRegistry(PushEventBus pushEventBus,
+                           WalletRepository walletRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${push.sse.timeout-ms:1800000}") long timeoutMs,
+                           @Value("${push.sse.reconnect-ms:5000}") long reconnectMs,
+                           @Value("${push.sse.max-connections-per-student:5}") int maxPerStudent) {
+        this.walletRepository = walletRepository;
+        this.timeoutMs = timeoutMs;
+        this.reconnectMs = reconnectMs;
+        this.maxPerStudent = maxPerStudent;
+
+        this.sentCounter = Counter.builder("push.sse.events").tag("result", "sent")
+                .description("Events written to SSE connections")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("push.sse.events").tag("result", "failed")
+                .description("SSE writes that failed (client gone), connection closed")
+                .register(meterRegistry);
+        Gauge.builder("push.sse.connections", connections, Set::size)
+                .description("Open SSE connections on this node")
+                .register(meterRegistry);
+
+        pushEventBus.subscribe(this::deliver);
+    }
+
+    /**
+     * Mở kết nối mới. Vượt giới hạn mỗi sinh viên (nhiều tab, client reconnect lỗi) -> đóng kết nối cũ nhất.
+     */
+    public SseEmitter connect(UUID studentId) {
+        UUID walletId = walletRepository.findIdByOwnerTypeAndOwnerId("STUDENT", studentId).orElse(null);
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Connection connection = new Connection(emitter, studentId, walletId, System.nanoTime());
+
+        Set<Connection> existing = connectionsByTarget.get(studentId);
+        if (existing != null && existing.size() >= maxPerStudent) {
+            existing.stream().min(Comparator.comparingLong(Connection::openedAt)).ifPresent(this::close);
+        }
+
+        emitter.onCompletion(() -> remove(connection));
+        emitter.onTimeout(() -> close(connection));
+        emitter.onError(error -> remove(connection));
+
+        connections.add(connection);
+        index(studentId, connection);
+        if (walletId != null) {
+            index(walletId, connection);
+        }
+
+        try {
+            emitter.send(SseEmitter.event().name("connected").reconnectTime(reconnectMs)
+                    .data(Map.of("studentId", studentId), MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            remove(connection);
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${push.sse.heartbeat-interval-ms:25000}",
+               initialDelayString = "${push.sse.heartbeat-interval-ms:25000}")
+    public void heartbeat() {
+        for (Connection connection : connections) {
+            try {
+                connection.emitter().send(SseEmitter.event().comment("ping"));
+            } catch (IOException | IllegalStateException e) {
+                failedCounter.increment();
+                close(connection);
+            }
+        }
+    }
+
+    private void deliver(PushEventBus.PushEvent event) {
+        for (UUID target : event.targets()) {
+            Set<Connection> targetConnections = connectionsByTarget.get(target);
+            if (targetConnections == null) {
+                continue;
+            }
+            for (Connection connection : targetConnections) {
+                try {
+                    connection.emitter().send(SseEmitter.event().name(event.type())
+                            .data(event.payload(), MediaType.APPLICATION_JSON));
+                    sentCounter.increment();
+                } catch (IOException | IllegalStateException e) {
+                    failedCounter.increment();
+                    logger.debug("SSE write to student {} failed: {}", connection.studentId(), e.getMessage());
+                    close(connection);
+                }
+            }
+        }
+    }
+
+    private void index(UUID target, Connection connection) {
+        // compute() thay vì computeIfAbsent().add(): không thêm vào set vừa bị unindex() bỏ khỏi map
+        connectionsByTarget.compute(target, (key, set) -> {
+            Set<Connection> targetConnections = set != null ? set : ConcurrentHashMap.newKeySet();
+            targetConnections.add(connection);
+            return targetConnections;
+        });
+    }
+
+    private void close(Connection connection) {
+        remove(connection);
+        connection.emitter().complete();
+    }
+
+    private void remove(Connection connection) {
+        if (!connections.remove(connection)) {
+            return;
+        }
+        unindex(connection.studentId(), connection);
+        if (connection.walletId() != null) {
+            unindex(connection.walletId(), connection);
+        }
+    }
+
+    private void unindex(UUID target, Connection connection) {
+        connectionsByTarget.computeIfPresent(target, (key, set) -> {
+            set.remove(connection);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private record Connection(SseEmitter emitter, UUID studentId, UUID walletId, long openedAt) {
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.demo.service.impl;
 
 import com.example.demo.config.AuthPrincipal;
+import com.example.demo.config.AuthPrincipalCache;
 import com.example.demo.dto.request.StudentProfileCompletionDTO;
 import com.example.demo.dto.request.StudentProfileUpdateDTO;
 import com.example.demo.dto.request.UserStatusUpdateDTO;
@@ -10,7 +11,6 @@ import com.example.demo.entity.University;
 import com.example.demo.exception.DataIntegrityViolationException;
 import com.example.demo.exception.ResourceNotFoundException;
 import com.example.demo.entity.Wallet; 
-import com.example.demo.entity.WalletTransaction;
 import com.example.demo.repository.WalletRepository; 
 import com.example.demo.repository.WalletTransactionRepository; 
 import java.math.BigDecimal;
@@ -20,7 +20,9 @@ import com.example.demo.entity.enums.UserAccountStatus;
 import com.example.demo.exception.BadRequestException;
 // === THÊM CÁC IMPORT ĐỂ UPLOAD ===
 import com.example.demo.exception.InternalServerErrorException; 
-import com.example.demo.service.CloudinaryService; 
+import com.example.demo.entity.enums.ImageVariant;
+import com.example.demo.service.ImageVariantService;
+import com.example.demo.service.LedgerService;
 import com.example.demo.service.StudentService;
 import java.io.IOException; 
 import org.springframework.web.multipart.MultipartFile;
@@ -32,6 +34,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
@@ -49,7 +52,10 @@ public class StudentServiceImpl implements StudentService {
     private final WalletTransactionRepository transactionRepository;
     private final AWSCognitoIdentityProvider cognitoClient;
     private final WebClient webClient;
-    private final CloudinaryService cloudinaryService; // <<< THÊM: Inject CloudinaryService
+    private final ImageVariantService imageVariantService;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerService ledgerService;
+    private final AuthPrincipalCache principalCache;
 
     @Value("${AWS_COGNITO_USER_POOL_ID}")
     private final String userPoolId;
@@ -61,7 +67,10 @@ public class StudentServiceImpl implements StudentService {
             WalletRepository walletRepository, WalletTransactionRepository transactionRepository,
             AWSCognitoIdentityProvider cognitoClient,
             WebClient.Builder webClientBuilder,
-            CloudinaryService cloudinaryService) { // <<< THÊM
+            ImageVariantService imageVariantService,
+            TransactionTemplate transactionTemplate,
+            LedgerService ledgerService,
+            AuthPrincipalCache principalCache) {
         this.studentRepository = studentRepository;
         this.universityRepository = universityRepository;
         this.walletRepository = walletRepository;
@@ -69,7 +78,10 @@ public class StudentServiceImpl implements StudentService {
         this.cognitoClient = cognitoClient;
         this.webClient = webClientBuilder.build();
         this.userPoolId = System.getenv("AWS_COGNITO_USER_POOL_ID");
-        this.cloudinaryService = cloudinaryService; // <<< THÊM
+        this.imageVariantService = imageVariantService;
+        this.transactionTemplate = transactionTemplate;
+        this.ledgerService = ledgerService;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -78,7 +90,11 @@ public class StudentServiceImpl implements StudentService {
         // (Giữ nguyên logic)
         logger.info("Admin fetching all students, page {} size {}", pageable.getPageNumber(), pageable.getPageSize());
         Page<Student> studentPage = studentRepository.findAll(pageable);
-        return studentPage.map(this::toResponseDTO); 
+        return studentPage.map(student -> {
+            StudentResponseDTO dto = toResponseDTO(student);
+            dto.setAvatarUrl(dto.getAvatarThumbnailUrl()); // Danh sách: trả thumbnail thay cho ảnh gốc
+            return dto;
+        });
     }
 
     @Override
@@ -90,13 +106,13 @@ public class StudentServiceImpl implements StudentService {
         return toResponseDTO(student);
     }
 
+    // Không @Transactional: gọi /userinfo và upload avatar (chậm, qua mạng) chạy trước,
+    // transaction chỉ mở cho phần ghi DB -> không giữ connection trong lúc upload.
     @Override
-    @Transactional
     public StudentResponseDTO completeProfile(AuthPrincipal principal,
             String rawAccessToken,
             StudentProfileCompletionDTO completionDTO) {
 
-        // ... (Logic kiểm tra profile, gọi /userinfo, lấy thông tin, tìm trường ĐH... giữ nguyên)
         String cognitoSub = principal.getCognitoSub();
         if (studentRepository.findByCognitoSub(cognitoSub).isPresent()) {
             throw new DataIntegrityViolationException("Student profile already completed.");
@@ -126,109 +142,119 @@ public class StudentServiceImpl implements StudentService {
         if (universityName == null) {
             throw new ResourceNotFoundException("University name ('custom:university') not found in token.");
         }
-        University university = universityRepository.findByName(universityName)
-                .orElseThrow(() -> new ResourceNotFoundException("University not found for name: " + universityName));
-
-
-        Student student = new Student();
-        student.setCognitoSub(cognitoSub);
-        student.setFullName(fullName);
-        student.setEmail(email);
-        student.setUniversity(university);
-        student.setPhoneNumber(completionDTO.getPhoneNumber());
-        // student.setAvatarUrl(completionDTO.getAvatarUrl()); // <<< XÓA DÒNG NÀY
-
-        // ============================================
-        // <<< SỬA: LOGIC UPLOAD ẢNH MỚI
-        // ============================================
-        String avatarUrl = null;
+
+        // Upload avatar (+ biến thể) trước khi mở transaction (stream thẳng tới storage)
+        ImageVariantService.StoredImage avatar = null;
         if (completionDTO.getAvatarFile() != null && !completionDTO.getAvatarFile().isEmpty()) {
-            try {
-                logger.debug("Uploading avatar for new student {}", cognitoSub);
-                avatarUrl = cloudinaryService.uploadFile(completionDTO.getAvatarFile());
-            } catch (IOException e) {
-                logger.error("Failed to upload avatar for student {}: {}", cognitoSub, e.getMessage());
-                // (Không chặn đăng ký nếu lỗi ảnh, nhưng báo lỗi)
-                throw new InternalServerErrorException("Failed to upload avatar: " + e.getMessage());
-            }
+            avatar = uploadAvatar(completionDTO.getAvatarFile(), cognitoSub);
         }
-        student.setAvatarUrl(avatarUrl); // Gán URL (có thể là null)
-        // ============================================
-
-        // ... (Logic tạo ví, tặng 100 coin, lưu Student, lưu Wallet, lưu Transaction... giữ nguyên)
-        
-        Wallet newWallet = new Wallet();
-        BigDecimal bonusAmount = new BigDecimal(100);
-        newWallet.setBalance(bonusAmount);
-        newWallet.setOwnerType("STUDENT");
-        newWallet.setCurrency("COIN");
-        student.setWallet(newWallet);
-
-        Student savedStudent = studentRepository.save(student);
-
-        newWallet.setOwnerId(savedStudent.getId());
-        walletRepository.save(newWallet);
+        ImageVariantService.StoredImage uploadedAvatar = avatar;
 
-        WalletTransaction bonusTx = new WalletTransaction();
-        bonusTx.setWallet(newWallet);
-        bonusTx.setAmount(bonusAmount); 
-        bonusTx.setTxnType("SIGNUP_BONUS");
-        bonusTx.setReferenceType("SYSTEM"); 
-        bonusTx.setReferenceId(savedStudent.getId()); 
-        transactionRepository.save(bonusTx);
-
-        logger.info("Student {} created and received {} signup bonus.", savedStudent.getId(), bonusAmount);
-
-        return toResponseDTO(savedStudent);
+        try {
+            return transactionTemplate.execute(status -> {
+                // Kiểm tra lại trong transaction: request song song có thể vừa tạo profile
+                if (studentRepository.findByCognitoSub(cognitoSub).isPresent()) {
+                    throw new DataIntegrityViolationException("Student profile already completed.");
+                }
+                University university = universityRepository.findByName(universityName)
+                        .orElseThrow(() -> new ResourceNotFoundException("University not found for name: " + universityName));
+
+                Student student = new Student();
+                student.setCognitoSub(cognitoSub);
+                student.setFullName(fullName);
+                student.setEmail(email);
+                student.setUniversity(university);
+                student.setPhoneNumber(completionDTO.getPhoneNumber());
+                if (uploadedAvatar != null) {
+                    setAvatar(student, uploadedAvatar);
+                }
+
+                Wallet newWallet = new Wallet();
+                BigDecimal bonusAmount = new BigDecimal(100);
+                newWallet.setBalance(BigDecimal.ZERO); // Bonus được cộng qua sổ cái bên dưới
+                newWallet.setOwnerType("STUDENT");
+                newWallet.setCurrency("COIN");
+                student.setWallet(newWallet);
+
+                Student savedStudent = studentRepository.save(student);
+
+                newWallet.setOwnerId(savedStudent.getId());
+                walletRepository.save(newWallet);
+
+                ledgerService.postExternal(newWallet, bonusAmount, "SIGNUP_BONUS", "SYSTEM", savedStudent.getId(), null);
+
+                logger.info("Student {} created and received {} signup bonus.", savedStudent.getId(), bonusAmount);
+                principalCache.invalidate(cognitoSub); // Resolver đang cache "chưa có student" cho sub này
+
+                return toResponseDTO(savedStudent);
+            });
+        } catch (RuntimeException e) {
+            // Transaction lỗi -> ảnh vừa upload thành file mồ côi
+            imageVariantService.delete(uploadedAvatar);
+            throw e;
+        }
     }
 
+    // Không @Transactional: upload avatar chạy trước, transaction chỉ bao phần cập nhật DB
     @Override
-    @Transactional
     public StudentResponseDTO updateMyProfile(String cognitoSub, StudentProfileUpdateDTO updateDTO) {
         logger.info("Attempting to update profile for cognitoSub: {}", cognitoSub);
 
-        Student student = studentRepository.findByCognitoSub(cognitoSub)
-                .orElseThrow(
-                        () -> new ResourceNotFoundException("Student profile not found for the authenticated user."));
-
-        // Cập nhật tên
-        if (updateDTO.getFullName() != null) {
-            student.setFullName(updateDTO.getFullName());
+        ImageVariantService.StoredImage newAvatar = null;
+        if (updateDTO.getAvatarFile() != null && !updateDTO.getAvatarFile().isEmpty()) {
+            newAvatar = uploadAvatar(updateDTO.getAvatarFile(), cognitoSub);
         }
+        ImageVariantService.StoredImage uploadedAvatar = newAvatar;
 
-        // Cập nhật SĐT (Logic cũ giữ nguyên)
-        if (updateDTO.getPhoneNumber() != null && !updateDTO.getPhoneNumber().equals(student.getPhoneNumber())) {
-            studentRepository.findByPhoneNumber(updateDTO.getPhoneNumber()).ifPresent(existingStudent -> {
-                throw new DataIntegrityViolationException(
-                        "Phone number " + updateDTO.getPhoneNumber() + " is already in use.");
+        try {
+            return transactionTemplate.execute(status -> {
+                Student student = studentRepository.findByCognitoSub(cognitoSub)
+                        .orElseThrow(
+                                () -> new ResourceNotFoundException("Student profile not found for the authenticated user."));
+
+                // Cập nhật tên
+                if (updateDTO.getFullName() != null) {
+                    student.setFullName(updateDTO.getFullName());
+                }
+
+                // Cập nhật SĐT (Logic cũ giữ nguyên)
+                if (updateDTO.getPhoneNumber() != null && !updateDTO.getPhoneNumber().equals(student.getPhoneNumber())) {
+                    studentRepository.findByPhoneNumber(updateDTO.getPhoneNumber()).ifPresent(existingStudent -> {
+                        throw new DataIntegrityViolationException(
+                                "Phone number " + updateDTO.getPhoneNumber() + " is already in use.");
+                    });
+                    student.setPhoneNumber(updateDTO.getPhoneNumber());
+                }
+
+                if (uploadedAvatar != null) {
+                    setAvatar(student, uploadedAvatar);
+                }
+
+                Student updatedStudent = studentRepository.save(student);
+                logger.info("Successfully updated profile for studentId: {}", updatedStudent.getId());
+
+                return toResponseDTO(updatedStudent);
             });
-            student.setPhoneNumber(updateDTO.getPhoneNumber());
+        } catch (RuntimeException e) {
+            imageVariantService.delete(uploadedAvatar);
+            throw e;
         }
+    }
 
-        // if (updateDTO.getAvatarUrl() != null) { // <<< XÓA DÒNG NÀY
-        //     student.setAvatarUrl(updateDTO.getAvatarUrl());
-        // }
-
-        // ============================================
-        // <<< SỬA: LOGIC UPLOAD ẢNH MỚI
-        // ============================================
-        if (updateDTO.getAvatarFile() != null && !updateDTO.getAvatarFile().isEmpty()) {
-            try {
-                // (Sau này bạn có thể thêm logic xóa ảnh cũ trên Cloudinary tại đây)
-                logger.debug("Updating avatar for student {}", student.getId());
-                String newAvatarUrl = cloudinaryService.uploadFile(updateDTO.getAvatarFile());
-                student.setAvatarUrl(newAvatarUrl);
-            } catch (IOException e) {
-                logger.error("Failed to update avatar for student {}: {}", student.getId(), e.getMessage());
-                throw new InternalServerErrorException("Failed to update avatar: " + e.getMessage());
-            }
+    private ImageVariantService.StoredImage uploadAvatar(MultipartFile avatarFile, String cognitoSub) {
+        try {
+            logger.debug("Uploading avatar for student {}", cognitoSub);
+            return imageVariantService.upload(avatarFile, "avatars");
+        } catch (IOException e) {
+            logger.error("Failed to upload avatar for student {}: {}", cognitoSub, e.getMessage());
+            throw new InternalServerErrorException("Failed to upload avatar: " + e.getMessage());
         }
-        // ============================================
-
-        Student updatedStudent = studentRepository.save(student);
-        logger.info("Successfully updated profile for studentId: {}", updatedStudent.getId());
+    }
 
-        return toResponseDTO(updatedStudent);
+    private static void setAvatar(Student student, ImageVariantService.StoredImage avatar) {
+        student.setAvatarUrl(avatar.originalUrl());
+        student.setAvatarMediumUrl(avatar.mediumUrl());
+        student.setAvatarThumbnailUrl(avatar.thumbnailUrl());
     }
 
     @Override
@@ -249,6 +275,7 @@ public class StudentServiceImpl implements StudentService {
 
         student.setStatus(newStatus);
         Student updatedStudent = studentRepository.save(student);
+        principalCache.invalidate(student.getCognitoSub());
 
         return toResponseDTO(updatedStudent);
     }
@@ -263,6 +290,7 @@ public class StudentServiceImpl implements StudentService {
         dto.setPhoneNumber(student.getPhoneNumber());
         dto.setEmail(student.getEmail());
         dto.setAvatarUrl(student.getAvatarUrl());
+        dto.setAvatarThumbnailUrl(imageVariantService.studentAvatarUrl(student, ImageVariant.THUMBNAIL));
         dto.setCreatedAt(student.getCreatedAt());
         dto.setStatus(student.getStatus().name());
 
@@ -0,0 +1,159 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.response.WalletResponseDTO;
+import com.example.demo.util.BoundedTtlCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Cache số dư ví trong bộ nhớ (mỗi node), theo wallet id và theo alias (ownerType:ownerId, cognitoSub...).
+ * Cache hit không mở transaction -> không chiếm connection của Hikari.
+ *
+ * Mọi đường ghi số dư (LedgerService, WalletShardService) gọi evict(): xóa ngay VÀ xóa lại sau commit.
+ * Lần load đọc "thế hệ" của stripe trước khi đọc DB và chỉ put nếu không có evict nào chen giữa,
+ * nên một lần đọc cũ không thể ghi đè lên giá trị vừa bị invalidate.
+ * Giữa các node không có invalidation -> TTL ngắn là giới hạn độ trễ.
+ */
+@Component
+public class WalletBalanceCache {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final BoundedTtlCache<UUID, WalletResponseDTO> walletsById;
+    private final BoundedTtlCache<String, UUID> walletIdsByAlias; // owner -> wallet không đổi, chỉ cần giới hạn kích thước
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final TransactionTemplate readOnlyTemplate;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public WalletBalanceCache(PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${wallet.balance-cache.max-entries:50000}") int maxEntries,
+                              @Value("${wallet.balance-cache.ttl-ms:30000}") long ttlMs) {
+        this.walletsById = new BoundedTtlCache<>(maxEntries, ttlMs);
+        this.walletIdsByAlias = new BoundedTtlCache<>(maxEntries, Long.MAX_VALUE / 2);
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+
+        this.hitCounter = Counter.builder("wallet.balance.cache.requests").tag("result", "hit")
+                .description("Wallet balance reads served from the in-memory cache")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("wallet.balance.cache.requests").tag("result", "miss")
+                .description("Wallet balance reads that went to the database")
+                .register(meterRegistry);
+        Gauge.builder("wallet.balance.cache.size", walletsById, BoundedTtlCache::size)
+                .description("Wallets currently cached")
+                .register(meterRegistry);
+    }
+
+    public static String ownerAlias(String ownerType, UUID ownerId) {
+        return ownerType + ":" + ownerId;
+    }
+
+    /**
+     * Trả về bản sao từ cache, hoặc chạy loader trong transaction read-only rồi cache kết quả.
+     */
+    public WalletResponseDTO getById(UUID walletId, Supplier<WalletResponseDTO> loader) {
+        WalletResponseDTO cached = walletsById.get(walletId);
+        if (cached != null) {
+            hitCounter.increment();
+            return copy(cached);
+        }
+        missCounter.increment();
+        long generation = generations.get(stripe(walletId));
+        boolean insideTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        WalletResponseDTO loaded = readOnlyTemplate.execute(status -> loader.get());
+        if (!insideTransaction) {
+            // Trong transaction của caller có thể đọc được số dư chưa commit -> không cache
+            putIfNotInvalidated(loaded, generation);
+        }
+        return copy(loaded);
+    }
+
+    /**
+     * Tra theo alias (ví dụ ownerAlias("STUDENT", id) hoặc "COGNITO:" + sub). Loader chỉ chạy khi chưa biết
+     * alias trỏ tới ví nào hoặc số dư của ví đó đã hết hạn/bị invalidate.
+     */
+    public WalletResponseDTO getByAlias(String alias, Supplier<WalletResponseDTO> loader) {
+        UUID walletId = walletIdsByAlias.get(alias);
+        if (walletId != null) {
+            WalletResponseDTO cached = walletsById.get(walletId);
+            if (cached != null) {
+                hitCounter.increment();
+                return copy(cached);
+            }
+            return getById(walletId, loader);
+        }
+        missCounter.increment();
+        WalletResponseDTO loaded = readOnlyTemplate.execute(status -> loader.get());
+        walletIdsByAlias.put(alias, loaded.getId());
+        // Không biết thế hệ trước khi load (chưa có wallet id) -> không cache số dư, lần sau mới cache
+        return copy(loaded);
+    }
+
+    public void evict(UUID walletId) {
+        invalidate(walletId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Reader khác có thể đã nạp lại số dư cũ trước khi transaction ghi commit
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(walletId);
+                }
+            });
+        }
+    }
+
+    public void evictAll(Collection<UUID> walletIds) {
+        walletIds.forEach(this::invalidate);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    walletIds.forEach(WalletBalanceCache.this::invalidate);
+                }
+            });
+        }
+    }
+
+    private void invalidate(UUID walletId) {
+        generations.incrementAndGet(stripe(walletId));
+        walletsById.remove(walletId);
+    }
+
+    private void putIfNotInvalidated(WalletResponseDTO dto, long generationBeforeLoad) {
+        int stripe = stripe(dto.getId());
+        walletsById.put(dto.getId(), copy(dto));
+        // Có evict chen giữa lúc đang load -> bỏ giá trị vừa put (có thể đã cũ)
+        if (generations.get(stripe) != generationBeforeLoad) {
+            walletsById.remove(dto.getId());
+        }
+    }
+
+    private static int stripe(UUID walletId) {
+        return Math.floorMod(walletId.hashCode(), GENERATION_STRIPES);
+    }
+
+    private static WalletResponseDTO copy(WalletResponseDTO source) {
+        WalletResponseDTO dto = new WalletResponseDTO();
+        dto.setId(source.getId());
+        dto.setOwnerType(source.getOwnerType());
+        dto.setOwnerId(source.getOwnerId());
+        dto.setCurrency(source.getCurrency());
+        dto.setBalance(source.getBalance());
+        dto.setCreatedAt(source.getCreatedAt());
+        return dto;
+    }
+}
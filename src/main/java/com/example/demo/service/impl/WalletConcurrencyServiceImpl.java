@@ -0,0 +1,340 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.response.WalletContentionStatsDTO;
+import com.example.demo.exception.DataIntegrityViolationException;
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.service.WalletConcurrencyService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+@Service
+public class WalletConcurrencyServiceImpl implements WalletConcurrencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletConcurrencyServiceImpl.class);
+
+    public enum Strategy {
+        PESSIMISTIC, // SELECT ... FOR UPDATE theo thứ tự wallet id
+        RETRY        // Giữ optimistic locking (@Version), retry có giới hạn khi xung đột
+    }
+
+    private final WalletRepository walletRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Strategy strategy;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long lockTimeoutMillis;
+    private final int maxTrackedWallets;
+
+    private final ReentrantLock[] stripes;
+    private final Map<UUID, WalletStats> statsByWallet = new ConcurrentHashMap<>();
+    // Ví đã khóa trong lần thử hiện tại của executeWithRetry (để ghi thống kê retry theo ví)
+    private final ThreadLocal<Set<UUID>> attemptWallets = new ThreadLocal<>();
+
+    private final Counter contentionCounter;
+    private final Counter retryCounter;
+    private final Counter retryExhaustedCounter;
+    private final Timer lockWaitTimer;
+
+    public WalletConcurrencyServiceImpl(WalletRepository walletRepository,
+                                        TransactionTemplate transactionTemplate,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${wallet.concurrency.strategy:PESSIMISTIC}") Strategy strategy,
+                                        @Value("${wallet.concurrency.lock-stripes:256}") int lockStripes,
+                                        @Value("${wallet.concurrency.lock-timeout-ms:5000}") long lockTimeoutMillis,
+                                        @Value("${wallet.concurrency.max-attempts:3}") int maxAttempts,
+                                        @Value("${wallet.concurrency.backoff-ms:20}") long backoffMillis,
+                                        @Value("${wallet.concurrency.max-tracked-wallets:1000}") int maxTrackedWallets) {
+        this.walletRepository = walletRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.strategy = strategy;
+        this.lockTimeoutMillis = lockTimeoutMillis;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+        this.maxTrackedWallets = maxTrackedWallets;
+
+        this.stripes = new ReentrantLock[Math.max(1, lockStripes)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+
+        this.contentionCounter = Counter.builder("wallet.lock.contention")
+                .description("Số lần phải chờ khóa ví trong node")
+                .register(meterRegistry);
+        this.retryCounter = Counter.builder("wallet.tx.retries")
+                .description("Số lần retry do xung đột optimistic/pessimistic")
+                .register(meterRegistry);
+        this.retryExhaustedCounter = Counter.builder("wallet.tx.retry.exhausted")
+                .description("Số giao dịch ví thất bại sau khi hết lượt retry")
+                .register(meterRegistry);
+        this.lockWaitTimer = Timer.builder("wallet.lock.wait")
+                .description("Thời gian chờ khóa ví trong node")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T> T executeInWalletTransaction(Collection<UUID> walletIds, Supplier<T> work) {
+        // Sắp xếp stripe để mọi luồng khóa theo cùng 1 thứ tự -> không deadlock
+        int[] stripeIndexes = stripeIndexesOf(walletIds);
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Đã ở trong transaction của caller: khóa tới khi transaction đó kết thúc
+            acquire(stripeIndexes, walletIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    release(stripeIndexes);
+                }
+            });
+            Set<UUID> lockedInAttempt = attemptWallets.get();
+            if (lockedInAttempt != null) {
+                addNonNull(lockedInAttempt, walletIds);
+            }
+            lockRowsIfPessimistic(walletIds);
+            return work.get();
+        }
+
+        acquire(stripeIndexes, walletIds);
+        try {
+            return retryOnConflict(walletIds, () -> transactionTemplate.execute(status -> {
+                lockRowsIfPessimistic(walletIds);
+                return work.get();
+            }));
+        } finally {
+            release(stripeIndexes);
+        }
+    }
+
+    @Override
+    public <T> T executeWithRetry(Supplier<T> transactionalWork) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return transactionalWork.get();
+        }
+        Set<UUID> outer = attemptWallets.get();
+        Set<UUID> lockedInAttempt = new HashSet<>();
+        attemptWallets.set(lockedInAttempt);
+        try {
+            return retryOnConflict(lockedInAttempt, () -> {
+                lockedInAttempt.clear();
+                return transactionalWork.get();
+            });
+        } finally {
+            if (outer != null) {
+                attemptWallets.set(outer);
+            } else {
+                attemptWallets.remove();
+            }
+        }
+    }
+
+    @Override
+    public List<WalletContentionStatsDTO> getTopContendedWallets(int limit) {
+        List<WalletContentionStatsDTO> result = new ArrayList<>(statsByWallet.size());
+        for (Map.Entry<UUID, WalletStats> entry : statsByWallet.entrySet()) {
+            result.add(entry.getValue().toDTO(entry.getKey()));
+        }
+        result.sort((a, b) -> Long.compare(
+                b.getLockContentions() + b.getOptimisticRetries(),
+                a.getLockContentions() + a.getOptimisticRetries()));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    // --- HELPER METHODS ---
+
+    /**
+     * Mỗi lần thử là 1 transaction đã rollback hoàn toàn khi lỗi, nên chạy lại từ đầu là an toàn.
+     * walletIds chỉ dùng cho thống kê (có thể được điền trong lúc chạy, xem executeWithRetry).
+     */
+    private <T> T retryOnConflict(Collection<UUID> walletIds, Supplier<T> attemptWork) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return attemptWork.get();
+            } catch (ConcurrencyFailureException e) {
+                // Optimistic lock (@Version) / lock timeout / deadlock ở DB (node khác đang giữ ví)
+                recordRetry(walletIds);
+                if (attempt >= maxAttempts) {
+                    retryExhaustedCounter.increment();
+                    recordExhausted(walletIds);
+                    logger.warn("Wallet transaction on {} failed after {} attempts: {}", walletIds, attempt, e.getMessage());
+                    throw new DataIntegrityViolationException(
+                            "Wallet is being updated by another request. Please try again.");
+                }
+                retryCounter.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private static void addNonNull(Set<UUID> target, Collection<UUID> walletIds) {
+        for (UUID walletId : walletIds) {
+            if (walletId != null) {
+                target.add(walletId);
+            }
+        }
+    }
+
+    private void lockRowsIfPessimistic(Collection<UUID> walletIds) {
+        if (strategy != Strategy.PESSIMISTIC) {
+            return;
+        }
+        // Khóa dòng theo thứ tự wallet id để 2 node không deadlock lẫn nhau
+        TreeSet<UUID> orderedIds = new TreeSet<>();
+        for (UUID walletId : walletIds) {
+            if (walletId != null) {
+                orderedIds.add(walletId);
+            }
+        }
+        if (orderedIds.size() == 1) {
+            walletRepository.findByIdForUpdate(orderedIds.first());
+            return;
+        }
+        // Nhiều ví (ví dụ batch transfer hàng nghìn leg): 1 round-trip thay vì N câu SELECT ... FOR UPDATE.
+        // Thứ tự khóa do ORDER BY của Postgres quyết định, giống nhau cho mọi request.
+        walletRepository.lockAllByIdInOrder(orderedIds);
+    }
+
+    private int[] stripeIndexesOf(Collection<UUID> walletIds) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (UUID walletId : walletIds) {
+            if (walletId != null) {
+                indexes.add(Math.floorMod(walletId.hashCode(), stripes.length));
+            }
+        }
+        int[] result = new int[indexes.size()];
+        int i = 0;
+        for (Integer index : indexes) {
+            result[i++] = index;
+        }
+        return result;
+    }
+
+    private void acquire(int[] stripeIndexes, Collection<UUID> walletIds) {
+        int acquired = 0;
+        try {
+            for (int index : stripeIndexes) {
+                ReentrantLock lock = stripes[index];
+                if (!lock.tryLock()) {
+                    contentionCounter.increment();
+                    recordContention(walletIds);
+                    long start = System.nanoTime();
+                    boolean locked = lock.tryLock(lockTimeoutMillis, TimeUnit.MILLISECONDS);
+                    lockWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    if (!locked) {
+                        throw new DataIntegrityViolationException(
+                                "Wallet is busy. Please try again.");
+                    }
+                }
+                acquired++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            releaseFirst(stripeIndexes, acquired);
+            throw new DataIntegrityViolationException("Interrupted while waiting for wallet lock.");
+        } catch (RuntimeException e) {
+            releaseFirst(stripeIndexes, acquired);
+            throw e;
+        }
+    }
+
+    private void release(int[] stripeIndexes) {
+        releaseFirst(stripeIndexes, stripeIndexes.length);
+    }
+
+    private void releaseFirst(int[] stripeIndexes, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            stripes[stripeIndexes[i]].unlock();
+        }
+    }
+
+    private void backoff(int attempt) {
+        long sleep = backoffMillis * attempt + ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void recordContention(Collection<UUID> walletIds) {
+        for (UUID walletId : walletIds) {
+            WalletStats stats = statsFor(walletId);
+            if (stats != null) {
+                stats.contentions.increment();
+                stats.lastContendedAt = OffsetDateTime.now();
+            }
+        }
+    }
+
+    private void recordRetry(Collection<UUID> walletIds) {
+        for (UUID walletId : walletIds) {
+            WalletStats stats = statsFor(walletId);
+            if (stats != null) {
+                stats.retries.increment();
+                stats.lastContendedAt = OffsetDateTime.now();
+            }
+        }
+    }
+
+    private void recordExhausted(Collection<UUID> walletIds) {
+        for (UUID walletId : walletIds) {
+            WalletStats stats = statsFor(walletId);
+            if (stats != null) {
+                stats.exhausted.increment();
+            }
+        }
+    }
+
+    // Giới hạn số ví được theo dõi để map không phình vô hạn
+    private WalletStats statsFor(UUID walletId) {
+        if (walletId == null) {
+            return null;
+        }
+        WalletStats stats = statsByWallet.get(walletId);
+        if (stats == null && statsByWallet.size() < maxTrackedWallets) {
+            stats = statsByWallet.computeIfAbsent(walletId, id -> new WalletStats());
+        }
+        return stats;
+    }
+
+    private static final class WalletStats {
+        private final LongAdder contentions = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+        private volatile OffsetDateTime lastContendedAt;
+
+        private WalletContentionStatsDTO toDTO(UUID walletId) {
+            WalletContentionStatsDTO dto = new WalletContentionStatsDTO();
+            dto.setWalletId(walletId);
+            dto.setLockContentions(contentions.sum());
+            dto.setOptimisticRetries(retries.sum());
+            dto.setRetryExhausted(exhausted.sum());
+            dto.setLastContendedAt(lastContendedAt);
+            return dto;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.response.WalletBalanceDriftResponseDTO;
+import com.example.demo.dto.response.WalletReconciliationRunResponseDTO;
+import com.example.demo.entity.WalletBalanceDrift;
+import com.example.demo.entity.WalletReconciliationRun;
+import com.example.demo.entity.enums.ReconciliationRunStatus;
+import com.example.demo.exception.DataIntegrityViolationException;
+import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.repository.WalletBalanceDriftRepository;
+import com.example.demo.repository.WalletReconciliationJdbcRepository;
+import com.example.demo.repository.WalletReconciliationJdbcRepository.WalletLedgerTotal;
+import com.example.demo.repository.WalletReconciliationRunRepository;
+import com.example.demo.service.WalletReconciliationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class WalletReconciliationServiceImpl implements WalletReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletReconciliationServiceImpl.class);
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final int MAX_PARTITIONS = 4096;
+
+    private final WalletReconciliationRunRepository runRepository;
+    private final WalletBalanceDriftRepository driftRepository;
+    private final WalletReconciliationJdbcRepository reconciliationJdbcRepository;
+    private final TaskExecutor reconciliationExecutor;
+    private final TransactionTemplate writeTx;   // REQUIRES_NEW: ghi báo cáo/tiến độ độc lập với cursor
+    private final TransactionTemplate scanTx;    // read-only: giữ cursor mở trong suốt partition
+    private final int partitions;
+    private final int maxStoredDrifts;
+    private final int driftFlushSize;
+    private final Counter driftCounter;
+    private final Counter walletsCheckedCounter;
+    private final Timer runTimer;
+
+    public WalletReconciliationServiceImpl(WalletReconciliationRunRepository runRepository,
+                                           WalletBalanceDriftRepository driftRepository,
+                                           WalletReconciliationJdbcRepository reconciliationJdbcRepository,
+                                           @Qualifier("reconciliationExecutor") TaskExecutor reconciliationExecutor,
+                                           PlatformTransactionManager transactionManager,
+                                           MeterRegistry meterRegistry,
+                                           @Value("${wallet.reconciliation.partitions:64}") int partitions,
+                                           @Value("${wallet.reconciliation.max-stored-drifts:10000}") int maxStoredDrifts,
+                                           @Value("${wallet.reconciliation.drift-flush-size:200}") int driftFlushSize) {
+        this.runRepository = runRepository;
+        this.driftRepository = driftRepository;
+        this.reconciliationJdbcRepository = reconciliationJdbcRepository;
+        this.reconciliationExecutor = reconciliationExecutor;
+        this.partitions = Math.max(1, Math.min(partitions, MAX_PARTITIONS));
+        this.maxStoredDrifts = maxStoredDrifts;
+        this.driftFlushSize = Math.max(1, driftFlushSize);
+
+        this.writeTx = new TransactionTemplate(transactionManager);
+        this.writeTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.scanTx = new TransactionTemplate(transactionManager);
+        this.scanTx.setReadOnly(true);
+
+        this.driftCounter = Counter.builder("wallet.reconciliation.drift")
+                .description("Wallets whose materialized balance differs from the ledger sum")
+                .register(meterRegistry);
+        this.walletsCheckedCounter = Counter.builder("wallet.reconciliation.wallets")
+                .description("Wallets checked by reconciliation runs")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("wallet.reconciliation.duration")
+                .description("Duration of full reconciliation runs")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public WalletReconciliationRunResponseDTO startRun() {
+        WalletReconciliationRun run = writeTx.execute(status -> {
+            if (runRepository.existsByStatus(ReconciliationRunStatus.RUNNING)) {
+                throw new DataIntegrityViolationException("A wallet reconciliation run is already in progress.");
+            }
+            WalletReconciliationRun newRun = new WalletReconciliationRun();
+            newRun.setPartitions(partitions);
+            return runRepository.save(newRun);
+        });
+        // Run đã commit -> worker đọc được
+        launch(run.getId());
+        logger.info("Wallet reconciliation run {} started with {} partitions", run.getId(), partitions);
+        return convertToRunDTO(run);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public WalletReconciliationRunResponseDTO getRun(UUID runId) {
+        return convertToRunDTO(findRunOrThrow(runId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<WalletReconciliationRunResponseDTO> getRuns(Pageable pageable) {
+        return runRepository.findAllByOrderByStartedAtDesc(pageable).map(this::convertToRunDTO);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<WalletBalanceDriftResponseDTO> getDrifts(UUID runId, Pageable pageable) {
+        findRunOrThrow(runId);
+        return driftRepository.findByRunId(runId, pageable).map(this::convertToDriftDTO);
+    }
+
+    /**
+     * Lượt chạy theo lịch (tắt mặc định: wallet.reconciliation.cron=-).
+     */
+    @Scheduled(cron = "${wallet.reconciliation.cron:-}")
+    public void scheduledRun() {
+        try {
+            startRun();
+        } catch (DataIntegrityViolationException e) {
+            logger.info("Skipping scheduled wallet reconciliation: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Run RUNNING còn sót sau khi ứng dụng tắt giữa chừng -> đánh dấu FAILED để có thể chạy lại.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterruptedRuns() {
+        writeTx.executeWithoutResult(status -> {
+            for (WalletReconciliationRun run : runRepository.findAllByStatus(ReconciliationRunStatus.RUNNING)) {
+                run.setStatus(ReconciliationRunStatus.FAILED);
+                run.setLastError("Interrupted by application restart.");
+                run.setCompletedAt(OffsetDateTime.now());
+                runRepository.save(run);
+            }
+        });
+    }
+
+    // --- XỬ LÝ NỀN ---
+
+    private void launch(UUID runId) {
+        Timer.Sample sample = Timer.start();
+        AtomicInteger storedDrifts = new AtomicInteger();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            UUID from = partitionBound(i, partitions);
+            UUID to = i + 1 < partitions ? partitionBound(i + 1, partitions) : null;
+            futures.add(CompletableFuture.runAsync(() -> scanPartition(runId, from, to, storedDrifts), reconciliationExecutor));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .whenComplete((ignored, ex) -> {
+                    sample.stop(runTimer);
+                    finishRun(runId, ex);
+                });
+    }
+
+    private void scanPartition(UUID runId, UUID from, UUID to, AtomicInteger storedDrifts) {
+        DriftReport report = new DriftReport(runId, storedDrifts);
+
+        scanTx.executeWithoutResult(status ->
+                reconciliationJdbcRepository.scanPartition(from, to, report::accept));
+        report.flush();
+
+        walletsCheckedCounter.increment(report.walletsChecked);
+        writeTx.executeWithoutResult(status ->
+                runRepository.incrementProgress(runId, report.walletsChecked, report.driftCount));
+    }
+
+    private void finishRun(UUID runId, Throwable ex) {
+        try {
+            writeTx.executeWithoutResult(status -> {
+                WalletReconciliationRun run = findRunOrThrow(runId);
+                if (ex == null) {
+                    run.setStatus(ReconciliationRunStatus.COMPLETED);
+                } else {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    run.setStatus(ReconciliationRunStatus.FAILED);
+                    run.setLastError(truncate(String.valueOf(cause.getMessage())));
+                }
+                run.setCompletedAt(OffsetDateTime.now());
+                runRepository.save(run);
+                logger.info("Wallet reconciliation run {} {}: {} wallets checked, {} drifts",
+                        runId, run.getStatus(), run.getWalletsChecked(), run.getDriftCount());
+            });
+        } catch (RuntimeException e) {
+            logger.error("Failed to finish wallet reconciliation run {}", runId, e);
+        }
+    }
+
+    /**
+     * Cận dưới của partition i/n: chia đều không gian UUID theo 32 bit đầu.
+     * PostgreSQL so sánh uuid theo byte (không dấu) nên thứ tự dải khớp với thứ tự bit.
+     */
+    static UUID partitionBound(int index, int count) {
+        long prefix = ((long) index << 32) / count;
+        return new UUID(prefix << 32, 0L);
+    }
+
+    private WalletReconciliationRun findRunOrThrow(UUID runId) {
+        return runRepository.findById(runId)
+                .orElseThrow(() -> new ResourceNotFoundException("Reconciliation run not found with id: " + runId));
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    private WalletReconciliationRunResponseDTO convertToRunDTO(WalletReconciliationRun run) {
+        WalletReconciliationRunResponseDTO dto = new WalletReconciliationRunResponseDTO();
+        dto.setRunId(run.getId());
+        dto.setStatus(run.getStatus().name());
+        dto.setPartitions(run.getPartitions());
+        dto.setProcessedPartitions(run.getProcessedPartitions());
+        dto.setWalletsChecked(run.getWalletsChecked());
+        dto.setDriftCount(run.getDriftCount());
+        dto.setLastError(run.getLastError());
+        dto.setStartedAt(run.getStartedAt());
+        dto.setCompletedAt(run.getCompletedAt());
+        return dto;
+    }
+
+    private WalletBalanceDriftResponseDTO convertToDriftDTO(WalletBalanceDrift drift) {
+        WalletBalanceDriftResponseDTO dto = new WalletBalanceDriftResponseDTO();
+        dto.setWalletId(drift.getWalletId());
+        dto.setMaterializedBalance(drift.getMaterializedBalance());
+        dto.setLedgerBalance(drift.getLedgerBalance());
+        dto.setDifference(drift.getDifference());
+        dto.setEntryCount(drift.getEntryCount());
+        dto.setDetectedAt(drift.getDetectedAt());
+        return dto;
+    }
+
+    /**
+     * Báo cáo chênh lệch của 1 partition: ghi dần theo lô (REQUIRES_NEW) trong lúc cursor vẫn đang quét.
+     * Số dòng lưu lại bị chặn bởi max-stored-drifts cho cả run; drift_count vẫn đếm đủ.
+     */
+    private final class DriftReport {
+
+        private final UUID runId;
+        private final AtomicInteger storedDrifts;
+        private final List<WalletBalanceDrift> buffer = new ArrayList<>();
+        private long walletsChecked;
+        private long driftCount;
+
+        private DriftReport(UUID runId, AtomicInteger storedDrifts) {
+            this.runId = runId;
+            this.storedDrifts = storedDrifts;
+        }
+
+        private void accept(WalletLedgerTotal total) {
+            walletsChecked++;
+            if (!total.hasDrift()) {
+                return;
+            }
+            driftCount++;
+            driftCounter.increment();
+            if (storedDrifts.incrementAndGet() > maxStoredDrifts) {
+                return;
+            }
+            logger.warn("Wallet {} drift: materialized={}, ledger={} ({} entries)",
+                    total.walletId(), total.materializedBalance(), total.ledgerBalance(), total.entryCount());
+
+            WalletBalanceDrift drift = new WalletBalanceDrift();
+            drift.setRunId(runId);
+            drift.setWalletId(total.walletId());
+            drift.setMaterializedBalance(total.materializedBalance());
+            drift.setLedgerBalance(total.ledgerBalance());
+            drift.setDifference(total.materializedBalance().subtract(total.ledgerBalance()));
+            drift.setEntryCount(total.entryCount());
+            buffer.add(drift);
+            if (buffer.size() >= driftFlushSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            List<WalletBalanceDrift> batch = new ArrayList<>(buffer);
+            buffer.clear();
+            writeTx.executeWithoutResult(status -> driftRepository.saveAll(batch));
+        }
+    }
+}
@@ -6,7 +6,16 @@ import com.example.demo.dto.response.*;
 import com.example.demo.entity.*;
 import com.example.demo.exception.*;
 import com.example.demo.repository.*;
+import com.example.demo.service.IdempotencyService;
+import com.example.demo.service.LedgerService;
+import com.example.demo.service.WalletConcurrencyService;
 import com.example.demo.service.WalletService;
+import com.example.demo.service.WalletShardService;
+import com.example.demo.util.KeysetCursor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,7 +24,17 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
 
 @Service
 public class WalletServiceImpl implements WalletService {
@@ -26,36 +45,66 @@ public class WalletServiceImpl implements WalletService {
     private final WalletTransactionRepository transactionRepository;
     private StudentRepository studentRepository;
     private final PartnerRepository partnerRepository;
+    private final WalletConcurrencyService walletConcurrencyService;
+    private final WalletShardService walletShardService;
+    private final LedgerService ledgerService;
+    private final IdempotencyService idempotencyService;
+    private final WalletBalanceCache walletBalanceCache;
+    private final Counter batchPostedLegsCounter;
+    private final Counter batchRejectedLegsCounter;
+    private final Timer batchTransferTimer;
+    private final int maxBatchLegs;
 
     // SỬA LỖI: Long -> UUID. Sử dụng UUID cố định cho Admin Wallet.
     private static final UUID ADMIN_WALLET_OWNER_ID = UUID.fromString("00000000-0000-0000-0000-000000000001"); 
     private static final String ADMIN_OWNER_TYPE = "ADMIN";
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
 
-    public WalletServiceImpl(WalletRepository walletRepository, WalletTransactionRepository transactionRepository, StudentRepository studentRepository, PartnerRepository partnerRepository) {
+    public WalletServiceImpl(WalletRepository walletRepository, WalletTransactionRepository transactionRepository, StudentRepository studentRepository, PartnerRepository partnerRepository,
+                             WalletConcurrencyService walletConcurrencyService, WalletShardService walletShardService,
+                             LedgerService ledgerService, IdempotencyService idempotencyService,
+                             WalletBalanceCache walletBalanceCache, MeterRegistry meterRegistry,
+                             @Value("${wallet.batch-transfer.max-legs:5000}") int maxBatchLegs) {
         this.walletRepository = walletRepository;
         this.transactionRepository = transactionRepository;
         this.studentRepository = studentRepository;
         this.partnerRepository = partnerRepository;
+        this.walletConcurrencyService = walletConcurrencyService;
+        this.walletShardService = walletShardService;
+        this.ledgerService = ledgerService;
+        this.idempotencyService = idempotencyService;
+        this.walletBalanceCache = walletBalanceCache;
+        this.maxBatchLegs = maxBatchLegs;
+        // Thông lượng batch đo theo leg/giây: rate(wallet.batch_transfer.legs{result=posted})
+        this.batchPostedLegsCounter = Counter.builder("wallet.batch_transfer.legs").tag("result", "posted")
+                .description("Leg chuyển tiền đã ghi sổ qua batch transfer")
+                .register(meterRegistry);
+        this.batchRejectedLegsCounter = Counter.builder("wallet.batch_transfer.legs").tag("result", "rejected")
+                .description("Leg chuyển tiền bị từ chối trong batch transfer")
+                .register(meterRegistry);
+        this.batchTransferTimer = Timer.builder("wallet.batch_transfer.duration")
+                .description("Thời gian xử lý 1 batch transfer (khóa + kiểm tra + ghi sổ)")
+                .register(meterRegistry);
     }
 
     // --- READ OPERATIONS ---
+    // Không @Transactional: cache hit không lấy connection, cache miss tự mở transaction read-only
     @Override
-    @Transactional(readOnly = true)
     public WalletResponseDTO getWalletById(UUID walletId) {
-        Wallet wallet = findWalletByIdOrThrow(walletId);
-        return convertToWalletDTO(wallet);
+        return walletBalanceCache.getById(walletId, () -> convertToWalletDTO(findWalletByIdOrThrow(walletId)));
     }
 
     // =======================================================
     // == PHƯƠNG THỨC ĐƯỢC THÊM LẠI ĐỂ SỬA LỖI CONTROLLER ==
     // =======================================================
     @Override
-    @Transactional(readOnly = true)
     public WalletResponseDTO getWalletByOwner(String ownerType, UUID ownerId) {
-        Wallet wallet = walletRepository.findByOwnerTypeAndOwnerId(ownerType, ownerId)
-                .orElseThrow(() -> new ResourceNotFoundException(
-                        "Wallet not found for ownerType: " + ownerType + " and ownerId: " + ownerId));
-        return convertToWalletDTO(wallet);
+        return walletBalanceCache.getByAlias(WalletBalanceCache.ownerAlias(ownerType, ownerId), () -> {
+            Wallet wallet = walletRepository.findByOwnerTypeAndOwnerId(ownerType, ownerId)
+                    .orElseThrow(() -> new ResourceNotFoundException(
+                            "Wallet not found for ownerType: " + ownerType + " and ownerId: " + ownerId));
+            return convertToWalletDTO(wallet);
+        });
     }
     // =======================================================
     
@@ -75,7 +124,45 @@ public class WalletServiceImpl implements WalletService {
     @Override
     @Transactional(readOnly = true)
     public Page<WalletTransactionResponseDTO> getTransactionHistoryForUser(AuthPrincipal principal, Pageable pageable) {
-        
+        UUID walletId = resolveWalletIdForUser(principal);
+
+        // 2. Gọi Repo 
+        return transactionRepository.findByWalletId(walletId, pageable)
+                                     .map(this::convertToTransactionDTO);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponseDTO<WalletTransactionResponseDTO> getTransactionHistoryByCursor(UUID ownerId, String ownerType, String cursor, int size) {
+        UUID walletId = walletRepository.findIdByOwnerTypeAndOwnerId(ownerType, ownerId)
+                .orElseThrow(() -> new ResourceNotFoundException(ownerType + " wallet not found for ID: " + ownerId));
+        return findWalletTransactionsByCursor(walletId, cursor, size);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponseDTO<WalletTransactionResponseDTO> getTransactionHistoryForUserByCursor(AuthPrincipal principal, String cursor, int size) {
+        return findWalletTransactionsByCursor(resolveWalletIdForUser(principal), cursor, size);
+    }
+
+    private CursorPageResponseDTO<WalletTransactionResponseDTO> findWalletTransactionsByCursor(UUID walletId, String cursor, int size) {
+        int pageSize = clampPageSize(size);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        int limit = pageSize + 1;
+        List<WalletTransaction> rows;
+        if (after != null && after.createdAt() == null) {
+            rows = transactionRepository.findUndatedPageByWalletIdBefore(walletId, after.id(), limit);
+        } else {
+            rows = withUndatedTail(after == null
+                    ? transactionRepository.findFirstPageByWalletId(walletId, limit)
+                    : transactionRepository.findPageByWalletIdBefore(walletId, after.createdAt(), after.id(), limit),
+                    limit, n -> transactionRepository.findFirstUndatedPageByWalletId(walletId, n));
+        }
+        return toCursorPage(rows, pageSize, null);
+    }
+
+    private UUID resolveWalletIdForUser(AuthPrincipal principal) {
         UUID walletId = null;
 
         // 1. Tìm Wallet ID dựa trên vai trò
@@ -99,175 +186,242 @@ public class WalletServiceImpl implements WalletService {
         if (walletId == null) {
             throw new ResourceNotFoundException("Wallet not found for the current user.");
         }
-
-        // 2. Gọi Repo 
-        return transactionRepository.findByWalletId(walletId, pageable)
-                                     .map(this::convertToTransactionDTO);
+        return walletId;
     }
     
     // --- WRITE OPERATIONS ---
     @Override
-    @Transactional
     public WalletTransactionResponseDTO adminTopupForPartner(WalletTopupRequestDTO topupRequest) {
-          BigDecimal amount = topupRequest.getAmount();
-          // Đảm bảo getPartnerId() trả về UUID
-          Partner partner = partnerRepository.findById(topupRequest.getPartnerId())
-                   .orElseThrow(() -> new ResourceNotFoundException("Partner not found with id: " + topupRequest.getPartnerId()));
+          // Ví Admin được shard -> không khóa ví Admin, phần trừ ghi vào shard theo hash của ví Partner
+          boolean adminWalletSharded = walletShardService.isSharded(ADMIN_OWNER_TYPE);
+          UUID partnerWalletId = walletRepository.findIdByOwnerTypeAndOwnerId("PARTNER", topupRequest.getPartnerId()).orElse(null);
+          UUID adminWalletId = adminWalletSharded ? null
+                  : walletRepository.findIdByOwnerTypeAndOwnerId(ADMIN_OWNER_TYPE, ADMIN_WALLET_OWNER_ID).orElse(null);
+
+          return walletConcurrencyService.executeInWalletTransaction(Arrays.asList(partnerWalletId, adminWalletId), () -> {
+              BigDecimal amount = topupRequest.getAmount();
+              // Đảm bảo getPartnerId() trả về UUID
+              Partner partner = partnerRepository.findById(topupRequest.getPartnerId())
+                       .orElseThrow(() -> new ResourceNotFoundException("Partner not found with id: " + topupRequest.getPartnerId()));
           
-          Wallet partnerWallet = walletRepository.findByOwnerTypeAndOwnerId("PARTNER", partner.getId())
-                   .orElseThrow(() -> new ResourceNotFoundException("Wallet not found for partner: " + partner.getId()));
+              Wallet partnerWallet = walletRepository.findByOwnerTypeAndOwnerId("PARTNER", partner.getId())
+                       .orElseThrow(() -> new ResourceNotFoundException("Wallet not found for partner: " + partner.getId()));
           
-          // Sử dụng hằng số ADMIN_WALLET_OWNER_ID đã sửa
-          Wallet adminWallet = walletRepository.findByOwnerTypeAndOwnerId(ADMIN_OWNER_TYPE, ADMIN_WALLET_OWNER_ID)
-                   .orElseThrow(() -> new IllegalStateException("Admin wallet is not configured."));
-
-          partnerWallet.setBalance(partnerWallet.getBalance().add(amount));
-          adminWallet.setBalance(adminWallet.getBalance().subtract(amount));
-
-          walletRepository.save(partnerWallet);
-          walletRepository.save(adminWallet);
-
-          WalletTransaction transaction = new WalletTransaction();
-          transaction.setWallet(partnerWallet);
-          transaction.setCounterparty(adminWallet);
-          transaction.setTxnType("ADMIN_TOPUP");
-          transaction.setAmount(amount);
-          transaction.setReferenceType("ADMIN_ACTION");
-          // transaction.setIdempotencyKey(generateIdempotencyKey()); // Tùy chọn
-
-          WalletTransaction savedTransaction = transactionRepository.save(transaction);
-          return convertToTransactionDTO(savedTransaction);
+              // Sử dụng hằng số ADMIN_WALLET_OWNER_ID đã sửa
+              Wallet adminWallet = walletRepository.findByOwnerTypeAndOwnerId(ADMIN_OWNER_TYPE, ADMIN_WALLET_OWNER_ID)
+                       .orElseThrow(() -> new IllegalStateException("Admin wallet is not configured."));
+
+              // Ghi cặp bút toán Admin -> Partner (ví Admin shard được xử lý trong LedgerService)
+              LedgerService.Posting posting = ledgerService.transfer(adminWallet, partnerWallet, amount,
+                      "ADMIN_TOPUP_OUT", "ADMIN_TOPUP", "ADMIN_ACTION", null, null);
+              return convertToTransactionDTO(posting.credit());
+          });
     }
 
     @Override
-    @Transactional
     public WalletTransactionResponseDTO transferCoins(WalletTransferRequestDTO request) {
-        // Idempotency Check
-        transactionRepository.findByIdempotencyKey(request.getIdempotencyKey()).ifPresent(tx -> {
-             logger.warn("Idempotency key {} already processed. Returning existing transaction.", request.getIdempotencyKey());
-             throw new DataIntegrityViolationException("Duplicate transaction: Idempotency key already used."); 
-        });
+        // Idempotency: retry cùng key -> trả lại response cũ, không chuyển tiền lần 2
+        return idempotencyService.execute("WALLET_TRANSFER", request.getIdempotencyKey(),
+                WalletTransactionResponseDTO.class, () -> doTransferCoins(request));
+    }
 
+    private WalletTransactionResponseDTO doTransferCoins(WalletTransferRequestDTO request) {
+        // Khóa cả 2 ví (trong node + DB) trước khi đọc-sửa-ghi số dư
+        return walletConcurrencyService.executeInWalletTransaction(
+                List.of(request.getFromWalletId(), request.getToWalletId()), () -> {
+            BigDecimal amount = request.getAmount();
+            // Đảm bảo getFromWalletId() và getToWalletId() trả về UUID
+            Wallet fromWallet = findWalletByIdOrThrow(request.getFromWalletId()); 
+            Wallet toWallet = findWalletByIdOrThrow(request.getToWalletId());
+
+            if (fromWallet.getId().equals(toWallet.getId())) {
+                 throw new DataIntegrityViolationException("Cannot transfer to the same wallet.");
+            }
+
+            // Check balance (gồm cả phần nằm trong shard của ví nóng)
+            if (walletShardService.getLogicalBalance(fromWallet).compareTo(amount) < 0) {
+                throw new DataIntegrityViolationException("Insufficient funds in wallet " + fromWallet.getId());
+            }
 
-        BigDecimal amount = request.getAmount();
-        // Đảm bảo getFromWalletId() và getToWalletId() trả về UUID
-        Wallet fromWallet = findWalletByIdOrThrow(request.getFromWalletId()); 
-        Wallet toWallet = findWalletByIdOrThrow(request.getToWalletId());
+            // Perform transfer (cặp bút toán TRANSFER / TRANSFER_IN)
+            LedgerService.Posting posting = ledgerService.transfer(fromWallet, toWallet, amount,
+                    "TRANSFER", "TRANSFER_IN", null, null, request.getIdempotencyKey());
 
-        if (fromWallet.getId().equals(toWallet.getId())) {
-             throw new DataIntegrityViolationException("Cannot transfer to the same wallet.");
+            logger.info("Transfer successful: {} coins from wallet {} to {}", amount, fromWallet.getId(), toWallet.getId());
+            // Trả về bút toán từ góc nhìn người gửi
+            return convertToTransactionDTO(posting.debit());
+        });
+    }
+
+    @Override
+    public WalletBatchTransferResponseDTO transferBatch(WalletBatchTransferRequestDTO request, UUID requiredSourceWalletId) {
+        if (request.getLegs().size() > maxBatchLegs) {
+            throw new BadRequestException("A batch transfer may contain at most " + maxBatchLegs + " legs.");
         }
+        String scopedKey = IdempotencyService.ownedKey(
+                requiredSourceWalletId != null ? requiredSourceWalletId : ADMIN_OWNER_TYPE, request.getIdempotencyKey());
+        return idempotencyService.execute("WALLET_BATCH_TRANSFER", scopedKey,
+                WalletBatchTransferResponseDTO.class, () -> doTransferBatch(request, requiredSourceWalletId));
+    }
+
+    private WalletBatchTransferResponseDTO doTransferBatch(WalletBatchTransferRequestDTO request, UUID requiredSourceWalletId) {
+        long start = System.nanoTime();
+        List<WalletBatchTransferRequestDTO.Leg> legs = request.getLegs();
 
-        // Check balance
-        if (fromWallet.getBalance().compareTo(amount) < 0) {
-            throw new DataIntegrityViolationException("Insufficient funds in wallet " + fromWallet.getId());
+        Set<UUID> walletIds = new HashSet<>();
+        for (WalletBatchTransferRequestDTO.Leg leg : legs) {
+            walletIds.add(leg.getFromWalletId());
+            walletIds.add(leg.getToWalletId());
         }
 
-        // Perform transfer
-        fromWallet.setBalance(fromWallet.getBalance().subtract(amount));
-        toWallet.setBalance(toWallet.getBalance().add(amount));
+        // Khóa toàn bộ ví 1 lần (stripe trong node theo thứ tự + FOR UPDATE theo thứ tự wallet_id)
+        WalletBatchTransferResponseDTO response = walletConcurrencyService.executeInWalletTransaction(walletIds, () -> {
+            Map<UUID, Wallet> wallets = new HashMap<>();
+            for (Wallet wallet : walletRepository.findAllById(walletIds)) {
+                wallets.put(wallet.getId(), wallet);
+            }
 
-        walletRepository.save(fromWallet);
-        walletRepository.save(toWallet);
+            // Số dư "đang chạy" của từng ví nguồn: leg sau thấy số tiền leg trước đã trừ/cộng
+            Map<UUID, BigDecimal> runningBalances = new HashMap<>();
+            List<LedgerService.TransferLeg> accepted = new ArrayList<>(legs.size());
+            List<WalletBatchTransferResponseDTO.LegResult> results = new ArrayList<>(legs.size());
+            BigDecimal postedAmount = BigDecimal.ZERO;
+            // Key của client chỉ dùng cho idempotency cả batch (đã gắn chủ thể); key từng leg do server sinh
+            // để 2 chủ ví trùng key không đụng unique wallet_transaction.idempotency_key (tối đa 120 ký tự)
+            String batchId = UUID.randomUUID().toString();
+
+            for (int i = 0; i < legs.size(); i++) {
+                WalletBatchTransferRequestDTO.Leg leg = legs.get(i);
+                String legKey = "BATCH:" + batchId + ":" + i;
+                Wallet from = wallets.get(leg.getFromWalletId());
+                Wallet to = wallets.get(leg.getToWalletId());
+
+                String reason = null;
+                if (from == null || to == null) {
+                    reason = "Wallet not found";
+                } else if (requiredSourceWalletId != null && !requiredSourceWalletId.equals(from.getId())) {
+                    reason = "Source wallet is not owned by the caller";
+                } else if (from.getId().equals(to.getId())) {
+                    reason = "Cannot transfer to the same wallet";
+                } else if (!ADMIN_OWNER_TYPE.equals(from.getOwnerType())) {
+                    BigDecimal available = runningBalances.computeIfAbsent(from.getId(),
+                            id -> walletShardService.getLogicalBalance(from));
+                    if (available.compareTo(leg.getAmount()) < 0) {
+                        reason = "Insufficient funds";
+                    }
+                }
+
+                WalletBatchTransferResponseDTO.LegResult result = new WalletBatchTransferResponseDTO.LegResult();
+                result.setIndex(i);
+                result.setFromWalletId(leg.getFromWalletId());
+                result.setToWalletId(leg.getToWalletId());
+                result.setAmount(leg.getAmount());
+                if (reason != null) {
+                    result.setStatus("REJECTED");
+                    result.setReason(reason);
+                } else {
+                    result.setStatus("POSTED");
+                    result.setIdempotencyKey(legKey);
+                    runningBalances.computeIfPresent(from.getId(), (id, balance) -> balance.subtract(leg.getAmount()));
+                    runningBalances.computeIfPresent(to.getId(), (id, balance) -> balance.add(leg.getAmount()));
+                    accepted.add(new LedgerService.TransferLeg(from, to, leg.getAmount(), legKey));
+                    postedAmount = postedAmount.add(leg.getAmount());
+                }
+                results.add(result);
+            }
 
-        // Record transaction (from perspective of the sender)
-        WalletTransaction transaction = new WalletTransaction();
-        transaction.setWallet(fromWallet);
-        transaction.setCounterparty(toWallet);
-        transaction.setTxnType("TRANSFER");
-        transaction.setAmount(amount.negate()); // Ghi âm
-        transaction.setIdempotencyKey(request.getIdempotencyKey());
+            ledgerService.postTransfers(accepted, "TRANSFER", "TRANSFER_IN", null, null);
 
-        WalletTransaction savedTransaction = transactionRepository.save(transaction);
-        logger.info("Transfer successful: {} coins from wallet {} to {}", amount, fromWallet.getId(), toWallet.getId());
-        return convertToTransactionDTO(savedTransaction);
+            WalletBatchTransferResponseDTO dto = new WalletBatchTransferResponseDTO();
+            dto.setTotalLegs(legs.size());
+            dto.setPostedLegs(accepted.size());
+            dto.setRejectedLegs(legs.size() - accepted.size());
+            dto.setPostedAmount(postedAmount);
+            dto.setResults(results);
+            return dto;
+        });
+
+        long elapsedNanos = System.nanoTime() - start;
+        batchTransferTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        batchPostedLegsCounter.increment(response.getPostedLegs());
+        batchRejectedLegsCounter.increment(response.getRejectedLegs());
+        response.setDurationMs(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        logger.info("Batch transfer {}: {} posted, {} rejected in {} ms ({} legs/s)",
+                request.getIdempotencyKey(), response.getPostedLegs(), response.getRejectedLegs(),
+                response.getDurationMs(), elapsedNanos > 0 ? response.getTotalLegs() * 1_000_000_000L / elapsedNanos : 0);
+        return response;
     }
 
     @Override
-    @Transactional
     public WalletTransactionResponseDTO redeemCoins(WalletRedeemRequestDTO request) {
-        // Idempotency Check
-        transactionRepository.findByIdempotencyKey(request.getIdempotencyKey()).ifPresent(tx -> {
-             logger.warn("Idempotency key {} already processed for redeem. Returning existing transaction.", request.getIdempotencyKey());
-             throw new DataIntegrityViolationException("Duplicate transaction: Idempotency key already used.");
-        });
+        return idempotencyService.execute("WALLET_REDEEM", request.getIdempotencyKey(),
+                WalletTransactionResponseDTO.class, () -> doRedeemCoins(request));
+    }
 
-        BigDecimal amount = request.getAmount();
-        // Đảm bảo getStudentWalletId() trả về UUID
-        Wallet studentWallet = findWalletByIdOrThrow(request.getStudentWalletId());
+    private WalletTransactionResponseDTO doRedeemCoins(WalletRedeemRequestDTO request) {
+        return walletConcurrencyService.executeInWalletTransaction(List.of(request.getStudentWalletId()), () -> {
+            BigDecimal amount = request.getAmount();
+            // Đảm bảo getStudentWalletId() trả về UUID
+            Wallet studentWallet = findWalletByIdOrThrow(request.getStudentWalletId());
 
-        // Check balance
-        if (studentWallet.getBalance().compareTo(amount) < 0) {
-            throw new DataIntegrityViolationException("Insufficient funds in student wallet " + studentWallet.getId());
-        }
+            // Check balance
+            if (studentWallet.getBalance().compareTo(amount) < 0) {
+                throw new DataIntegrityViolationException("Insufficient funds in student wallet " + studentWallet.getId());
+            }
 
-        // Deduct balance
-        studentWallet.setBalance(studentWallet.getBalance().subtract(amount));
-        walletRepository.save(studentWallet);
-
-        // Record transaction
-        WalletTransaction transaction = new WalletTransaction();
-        transaction.setWallet(studentWallet);
-        transaction.setTxnType("REDEEM_PRODUCT");
-        transaction.setAmount(amount.negate()); // Ghi âm
-        transaction.setReferenceType("PRODUCT_INVOICE");
-        // Đảm bảo getReferenceId() trả về UUID
-        transaction.setReferenceId(request.getReferenceId());
-        transaction.setIdempotencyKey(request.getIdempotencyKey());
-
-        WalletTransaction savedTransaction = transactionRepository.save(transaction);
-        logger.info("Redemption successful: {} coins from wallet {} for invoice {}", amount, studentWallet.getId(), request.getReferenceId());
-        return convertToTransactionDTO(savedTransaction);
+            // Deduct balance + record transaction (ghi âm)
+            WalletTransaction savedTransaction = ledgerService.postExternal(studentWallet, amount.negate(),
+                    "REDEEM_PRODUCT", "PRODUCT_INVOICE", request.getReferenceId(), request.getIdempotencyKey());
+            logger.info("Redemption successful: {} coins from wallet {} for invoice {}", amount, studentWallet.getId(), request.getReferenceId());
+            return convertToTransactionDTO(savedTransaction);
+        });
     }
 
     @Override
-    @Transactional
     public WalletTransactionResponseDTO rollbackTransaction(WalletRollbackRequestDTO request) {
-          // Idempotency Check for rollback itself
-        transactionRepository.findByIdempotencyKey(request.getIdempotencyKey()).ifPresent(tx -> {
-             logger.warn("Idempotency key {} already processed for rollback. Returning existing transaction.", request.getIdempotencyKey());
-             throw new DataIntegrityViolationException("Duplicate transaction: Idempotency key already used.");
-        });
+        return idempotencyService.execute("WALLET_ROLLBACK", request.getIdempotencyKey(),
+                WalletTransactionResponseDTO.class, () -> doRollbackTransaction(request));
+    }
 
+    private WalletTransactionResponseDTO doRollbackTransaction(WalletRollbackRequestDTO request) {
         // 1. Find the original transaction
         // Đảm bảo getOriginalTransactionId() trả về UUID
-        WalletTransaction originalTx = transactionRepository.findById(request.getOriginalTransactionId())
+        WalletTransaction originalRef = transactionRepository.findById(request.getOriginalTransactionId())
                  .orElseThrow(() -> new ResourceNotFoundException("Original transaction not found: " + request.getOriginalTransactionId()));
 
         // TODO: Add more checks (e.g., if already rolled back, type allowed?)
 
-        // 2. Determine wallets and amount to reverse
-        Wallet walletToCredit = originalTx.getWallet();
-        Wallet walletToDebit = originalTx.getCounterparty();
-        BigDecimal amountToReverse = originalTx.getAmount().abs();
-
-        // 3. Reverse balances
-        walletToCredit.setBalance(walletToCredit.getBalance().add(amountToReverse));
-        walletRepository.save(walletToCredit);
-
-        if (walletToDebit != null) {
-            // Kiểm tra ví debit còn đủ tiền để trừ lại không
-            if (walletToDebit.getBalance().compareTo(amountToReverse) < 0) {
-                logger.error("Cannot rollback transaction {}: Debit wallet {} has insufficient funds.", originalTx.getId(), walletToDebit.getId());
-                throw new DataIntegrityViolationException("Insufficient funds in counterparty wallet for rollback.");
+        UUID creditWalletId = originalRef.getWallet().getId();
+        UUID debitWalletId = originalRef.getCounterparty() != null ? originalRef.getCounterparty().getId() : null;
+
+        return walletConcurrencyService.executeInWalletTransaction(Arrays.asList(creditWalletId, debitWalletId), () -> {
+            // Đọc lại trong transaction (sau khi đã khóa ví)
+            WalletTransaction originalTx = transactionRepository.findById(request.getOriginalTransactionId())
+                     .orElseThrow(() -> new ResourceNotFoundException("Original transaction not found: " + request.getOriginalTransactionId()));
+
+            // 2. Determine wallets and amount to reverse
+            Wallet walletToCredit = originalTx.getWallet();
+            Wallet walletToDebit = originalTx.getCounterparty();
+            BigDecimal amountToReverse = originalTx.getAmount().abs();
+
+            // 3 + 4. Reverse balances & record the rollback transaction (bút toán bù, không sửa bút toán gốc)
+            WalletTransaction savedRollbackTx;
+            if (walletToDebit != null) {
+                // Kiểm tra ví debit còn đủ tiền để trừ lại không
+                if (walletToDebit.getBalance().compareTo(amountToReverse) < 0) {
+                    logger.error("Cannot rollback transaction {}: Debit wallet {} has insufficient funds.", originalTx.getId(), walletToDebit.getId());
+                    throw new DataIntegrityViolationException("Insufficient funds in counterparty wallet for rollback.");
+                }
+                savedRollbackTx = ledgerService.transfer(walletToDebit, walletToCredit, amountToReverse,
+                        "ROLLBACK_DEBIT", "ROLLBACK", "WALLET_TRANSACTION", originalTx.getId(),
+                        request.getIdempotencyKey()).credit();
+            } else {
+                savedRollbackTx = ledgerService.postExternal(walletToCredit, amountToReverse,
+                        "ROLLBACK", "WALLET_TRANSACTION", originalTx.getId(), request.getIdempotencyKey());
             }
-            walletToDebit.setBalance(walletToDebit.getBalance().subtract(amountToReverse));
-            walletRepository.save(walletToDebit);
-        }
-
-        // 4. Record the rollback transaction
-        WalletTransaction rollbackTx = new WalletTransaction();
-        rollbackTx.setWallet(walletToCredit);
-        rollbackTx.setCounterparty(walletToDebit);
-        rollbackTx.setTxnType("ROLLBACK"); // Hoặc REFUND
-        rollbackTx.setAmount(amountToReverse); // Cộng lại tiền
-        rollbackTx.setReferenceType("WALLET_TRANSACTION");
-        rollbackTx.setReferenceId(originalTx.getId());
-        rollbackTx.setIdempotencyKey(request.getIdempotencyKey());
-
-        WalletTransaction savedRollbackTx = transactionRepository.save(rollbackTx);
-        logger.info("Rollback successful for original transaction {}: {} coins credited to wallet {}", originalTx.getId(), amountToReverse, walletToCredit.getId());
-        return convertToTransactionDTO(savedRollbackTx);
+            logger.info("Rollback successful for original transaction {}: {} coins credited to wallet {}", originalTx.getId(), amountToReverse, walletToCredit.getId());
+            return convertToTransactionDTO(savedRollbackTx);
+        });
     }
 
     // --- HELPER METHODS ---
@@ -282,55 +436,44 @@ public class WalletServiceImpl implements WalletService {
         dto.setOwnerType(wallet.getOwnerType());
         dto.setOwnerId(wallet.getOwnerId());
         dto.setCurrency(wallet.getCurrency());
-        dto.setBalance(wallet.getBalance());
+        dto.setBalance(walletShardService.getLogicalBalance(wallet)); // Gồm cả phần nằm trong shard
         dto.setCreatedAt(wallet.getCreatedAt());
         return dto;
     }
 
     @Override
-    @Transactional
     public void deductBalance(String ownerType, UUID ownerId, BigDecimal amount, String referenceType, UUID referenceId) {
-        Wallet wallet = walletRepository.findByOwnerTypeAndOwnerId(ownerType, ownerId)
-                .orElseThrow(() -> new ResourceNotFoundException(
-                        "Wallet not found for ownerType: " + ownerType + " and ownerId: " + ownerId));
-
-        if (wallet.getBalance().compareTo(amount) < 0) {
-            throw new IllegalStateException("Insufficient balance");
-        }
+        UUID walletId = walletRepository.findIdByOwnerTypeAndOwnerId(ownerType, ownerId).orElse(null);
 
-        wallet.setBalance(wallet.getBalance().subtract(amount));
+        walletConcurrencyService.executeInWalletTransaction(Collections.singletonList(walletId), () -> {
+            Wallet wallet = walletRepository.findByOwnerTypeAndOwnerId(ownerType, ownerId)
+                    .orElseThrow(() -> new ResourceNotFoundException(
+                            "Wallet not found for ownerType: " + ownerType + " and ownerId: " + ownerId));
 
-        // Create transaction record
-        WalletTransaction transaction = new WalletTransaction();
-        transaction.setWallet(wallet);
-        transaction.setTxnType("DEBIT");
-        transaction.setAmount(amount.negate()); // Negative for debit
-        transaction.setReferenceType(referenceType);
-        transaction.setReferenceId(referenceId);
-        transaction.setIdempotencyKey(generateIdempotencyKey(referenceType, referenceId, "DEBIT"));
+            if (wallet.getBalance().compareTo(amount) < 0) {
+                throw new IllegalStateException("Insufficient balance");
+            }
 
-        transactionRepository.save(transaction);
+            // Negative for debit
+            ledgerService.postExternal(wallet, amount.negate(), "DEBIT", referenceType, referenceId,
+                    generateIdempotencyKey(referenceType, referenceId, "DEBIT"));
+            return null;
+        });
     }
 
     @Override
-    @Transactional
     public void refundBalance(String ownerType, UUID ownerId, BigDecimal amount, String referenceType, UUID referenceId) {
-        Wallet wallet = walletRepository.findByOwnerTypeAndOwnerId(ownerType, ownerId)
-                .orElseThrow(() -> new ResourceNotFoundException(
-                        "Wallet not found for ownerType: " + ownerType + " and ownerId: " + ownerId));
-
-        wallet.setBalance(wallet.getBalance().add(amount));
-
-        // Create transaction record
-        WalletTransaction transaction = new WalletTransaction();
-        transaction.setWallet(wallet);
-        transaction.setTxnType("CREDIT");
-        transaction.setAmount(amount);
-        transaction.setReferenceType(referenceType);
-        transaction.setReferenceId(referenceId);
-        transaction.setIdempotencyKey(generateIdempotencyKey(referenceType, referenceId, "CREDIT"));
-
-        transactionRepository.save(transaction);
+        UUID walletId = walletRepository.findIdByOwnerTypeAndOwnerId(ownerType, ownerId).orElse(null);
+
+        walletConcurrencyService.executeInWalletTransaction(Collections.singletonList(walletId), () -> {
+            Wallet wallet = walletRepository.findByOwnerTypeAndOwnerId(ownerType, ownerId)
+                    .orElseThrow(() -> new ResourceNotFoundException(
+                            "Wallet not found for ownerType: " + ownerType + " and ownerId: " + ownerId));
+
+            ledgerService.postExternal(wallet, amount, "CREDIT", referenceType, referenceId,
+                    generateIdempotencyKey(referenceType, referenceId, "CREDIT"));
+            return null;
+        });
     }
 
     private String generateIdempotencyKey(String referenceType, UUID referenceId, String txnType) {
@@ -360,4 +503,51 @@ public class WalletServiceImpl implements WalletService {
         Page<WalletTransaction> transactions = transactionRepository.findAllByOrderByCreatedAtDesc(pageable);
         return transactions.map(this::convertToTransactionDTO);
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponseDTO<WalletTransactionResponseDTO> getAllTransactionsByCursor(String cursor, int size, boolean includeTotal) {
+        int pageSize = clampPageSize(size);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        int limit = pageSize + 1;
+        List<WalletTransaction> rows;
+        if (after != null && after.createdAt() == null) {
+            rows = transactionRepository.findUndatedPageBefore(after.id(), limit);
+        } else {
+            rows = withUndatedTail(after == null
+                    ? transactionRepository.findFirstPage(limit)
+                    : transactionRepository.findPageBefore(after.createdAt(), after.id(), limit),
+                    limit, transactionRepository::findFirstUndatedPage);
+        }
+        // COUNT(*) quét toàn bảng -> chỉ tính khi được yêu cầu
+        Long total = includeTotal ? transactionRepository.count() : null;
+        return toCursorPage(rows, pageSize, total);
+    }
+
+    // Hết các dòng có created_at mà trang chưa đủ -> nối tiếp bằng các bút toán cũ không có created_at
+    private List<WalletTransaction> withUndatedTail(List<WalletTransaction> dated, int limit,
+                                                    IntFunction<List<WalletTransaction>> firstUndatedPage) {
+        if (dated.size() >= limit) {
+            return dated;
+        }
+        List<WalletTransaction> rows = new ArrayList<>(dated);
+        rows.addAll(firstUndatedPage.apply(limit - dated.size()));
+        return rows;
+    }
+
+    private CursorPageResponseDTO<WalletTransactionResponseDTO> toCursorPage(List<WalletTransaction> rows, int pageSize, Long total) {
+        boolean hasNext = rows.size() > pageSize;
+        List<WalletTransaction> page = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            WalletTransaction last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        List<WalletTransactionResponseDTO> data = page.stream().map(this::convertToTransactionDTO).toList();
+        return new CursorPageResponseDTO<>(data, nextCursor, pageSize, total);
+    }
+
+    private int clampPageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+    }
 }
\ No newline at end of file
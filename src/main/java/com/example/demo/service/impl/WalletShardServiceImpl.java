@@ -0,0 +1,89 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.entity.Wallet;
+import com.example.demo.repository.WalletLedgerJdbcRepository;
+import com.example.demo.service.WalletShardService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Service
+public class WalletShardServiceImpl implements WalletShardService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletShardServiceImpl.class);
+    private static final int CONSOLIDATE_BATCH = 500;
+
+    private final WalletLedgerJdbcRepository walletLedgerRepository;
+    private final boolean enabled;
+    private final int shardCount;
+    private final Set<String> shardedOwnerTypes = new HashSet<>();
+
+    public WalletShardServiceImpl(WalletLedgerJdbcRepository walletLedgerRepository,
+                                  @Value("${wallet.sharding.enabled:false}") boolean enabled,
+                                  @Value("${wallet.sharding.shards:8}") int shardCount,
+                                  @Value("${wallet.sharding.owner-types:EVENT,ADMIN}") String[] ownerTypes) {
+        this.walletLedgerRepository = walletLedgerRepository;
+        this.enabled = enabled;
+        this.shardCount = Math.max(1, shardCount);
+        for (String ownerType : ownerTypes) {
+            shardedOwnerTypes.add(ownerType.trim().toUpperCase());
+        }
+    }
+
+    @Override
+    public boolean isSharded(String ownerType) {
+        return enabled && ownerType != null && shardedOwnerTypes.contains(ownerType);
+    }
+
+    @Override
+    public void applyDelta(UUID walletId, UUID counterpartyId, BigDecimal delta) {
+        int shardIndex = counterpartyId != null
+                ? Math.floorMod(counterpartyId.hashCode(), shardCount)
+                : ThreadLocalRandom.current().nextInt(shardCount);
+        walletLedgerRepository.applyShardDelta(walletId, shardIndex, delta);
+    }
+
+    @Override
+    public BigDecimal getLogicalBalance(Wallet wallet) {
+        if (!isSharded(wallet.getOwnerType())) {
+            return wallet.getBalance();
+        }
+        return wallet.getBalance().add(walletLedgerRepository.sumShards(wallet.getId()));
+    }
+
+    @Override
+    public void consolidate(UUID walletId) {
+        walletLedgerRepository.consolidateShards(walletId);
+    }
+
+    /**
+     * Định kỳ gộp shard vào ví chính để wallet.balance không lệch quá xa số dư logic.
+     * Mỗi ví gộp bằng 1 câu lệnh nguyên tử nên chạy song song trên nhiều node vẫn an toàn.
+     */
+    @Scheduled(fixedDelayString = "${wallet.sharding.consolidate-interval-ms:30000}")
+    public void consolidateAll() {
+        if (!enabled) {
+            return;
+        }
+        List<UUID> walletIds = walletLedgerRepository.findWalletsWithPendingShards(CONSOLIDATE_BATCH);
+        for (UUID walletId : walletIds) {
+            try {
+                walletLedgerRepository.consolidateShards(walletId);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to consolidate shards of wallet {}: {}", walletId, e.getMessage());
+            }
+        }
+        if (!walletIds.isEmpty()) {
+            logger.debug("Consolidated shards of {} wallets.", walletIds.size());
+        }
+    }
+}
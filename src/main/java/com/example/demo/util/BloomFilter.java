@@ -0,0 +1,88 @@
+package com.example.demo.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter cho chuỗi, an toàn đa luồng (bit array trên AtomicLongArray).
+ * mightContain() = false nghĩa là CHẮC CHẮN chưa từng put; = true có thể là dương tính giả (tỉ lệ ~fpp).
+ * Dùng double hashing (Kirsch-Mitzenmacher) từ 1 hash 64-bit FNV-1a.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctions;
+    private final long expectedInsertions;
+    private final AtomicLong insertions = new AtomicLong();
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("expectedInsertions > 0 and 0 < falsePositiveRate < 1 required");
+        }
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    public void put(String value) {
+        long hash = fnv1a64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            setBit(index(h1 + i * h2));
+        }
+        insertions.incrementAndGet();
+    }
+
+    public boolean mightContain(String value) {
+        long hash = fnv1a64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            if (!getBit(index(h1 + i * h2))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Đã vượt số phần tử dự kiến -> tỉ lệ dương tính giả tăng, nên dựng lại
+    public boolean isSaturated() {
+        return insertions.get() > expectedInsertions;
+    }
+
+    private long index(int combinedHash) {
+        // Đổi sang không âm trước khi lấy modulo
+        return (combinedHash & 0x7fffffffL) % bitCount;
+    }
+
+    private void setBit(long bitIndex) {
+        int word = (int) (bitIndex >>> 6);
+        long mask = 1L << (bitIndex & 63);
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+    }
+
+    private boolean getBit(long bitIndex) {
+        return (bits.get((int) (bitIndex >>> 6)) & (1L << (bitIndex & 63))) != 0;
+    }
+
+    private static long fnv1a64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
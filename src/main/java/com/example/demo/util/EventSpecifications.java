@@ -29,4 +29,10 @@ public class EventSpecifications {
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
         };
     }
+
+    // Dự phòng khi chưa có index tìm kiếm (xem EventSearchJdbcRepository)
+    public static Specification<Event> titleContains(String keyword) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.like(
+                criteriaBuilder.lower(root.get("title")), "%" + keyword.toLowerCase() + "%");
+    }
 }
\ No newline at end of file
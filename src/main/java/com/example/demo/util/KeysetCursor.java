@@ -0,0 +1,45 @@
+package com.example.demo.util;
+
+import com.example.demo.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Con trỏ phân trang keyset (seek) theo (created_at, id), mã hóa base64url để FE coi như chuỗi mờ.
+ * Trang kế tiếp = các dòng có (created_at, id) nhỏ hơn con trỏ -> chi phí không phụ thuộc số trang.
+ * createdAt = null: con trỏ nằm trong phần dòng không có created_at (xếp sau cùng, chỉ theo id).
+ */
+public record KeysetCursor(OffsetDateTime createdAt, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        String raw = (createdAt != null ? createdAt.toInstant().toString() : "") + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return null nếu token rỗng (trang đầu tiên)
+     * @throws BadRequestException nếu token không hợp lệ
+     */
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separatorIndex = raw.indexOf(SEPARATOR);
+            String instant = raw.substring(0, separatorIndex);
+            OffsetDateTime createdAt = instant.isEmpty() ? null : Instant.parse(instant).atOffset(ZoneOffset.UTC);
+            UUID id = UUID.fromString(raw.substring(separatorIndex + 1));
+            return new KeysetCursor(createdAt, id);
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid pagination cursor.");
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.util;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Chuẩn hóa từ khóa tìm kiếm giống event_search_unaccent() phía Postgres: bỏ dấu tiếng Việt (kể cả đ -> d),
+ * chữ thường, chỉ giữ chữ và số.
+ */
+public final class SearchText {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MAX_TERMS = 8;
+
+    private SearchText() {
+    }
+
+    /**
+     * @return chuỗi đã chuẩn hóa, rỗng nếu không còn ký tự tìm được
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.replace('đ', 'd').replace('Đ', 'D'), Normalizer.Form.NFD);
+        String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("");
+        return NON_WORD.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    public static List<String> terms(String normalized) {
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(normalized.split(" ")).distinct().limit(MAX_TERMS).toList();
+    }
+
+    /**
+     * "hoi thao ai" -> "hoi:* & thao:* & ai:*" (mọi từ phải có, từ cuối/đang gõ khớp theo tiền tố).
+     * Chỉ gồm chữ, số và toán tử nên an toàn khi truyền vào to_tsquery.
+     */
+    public static String toPrefixTsQuery(List<String> terms) {
+        return terms.stream().map(term -> term + ":*").collect(Collectors.joining(" & "));
+    }
+}
@@ -0,0 +1,13 @@
+-- Broadcast ghi trước khi có @CreationTimestamp có sent_at = NULL.
+-- Thời điểm tạo thật = lúc các dòng broadcast_delivery của nó được tạo (mô hình fan-out cũ ghi chúng
+-- trong cùng transaction với broadcast). Chạy một lần; không dùng now().
+UPDATE event_broadcast b
+SET sent_at = d.first_created_at
+FROM (SELECT broadcast_id, MIN(created_at) AS first_created_at
+      FROM broadcast_delivery
+      WHERE created_at IS NOT NULL
+      GROUP BY broadcast_id) d
+WHERE b.sent_at IS NULL
+  AND d.broadcast_id = b.broadcast_id;
+
+-- Dòng không suy ra được giữ NULL: inbox xếp chúng cuối cùng và coi là chưa đọc cho tới khi có dòng READ.
@@ -0,0 +1,38 @@
+-- Tìm kiếm sự kiện: extension unaccent/pg_trgm, hàm chuẩn hóa, cột generated và index GIN.
+-- User DB không có quyền tạo extension (hoặc server thiếu extension): bỏ qua, tìm kiếm theo title LIKE như cũ.
+-- Cài extension sau đó thì chạy lại phần dưới bằng tay (mọi câu lệnh đều idempotent).
+DO $$
+BEGIN
+    CREATE EXTENSION IF NOT EXISTS unaccent WITH SCHEMA public;
+    CREATE EXTENSION IF NOT EXISTS pg_trgm WITH SCHEMA public;
+EXCEPTION
+    WHEN insufficient_privilege OR undefined_file THEN
+        RAISE WARNING 'Event search extensions are not available (%): event search falls back to title matching', SQLERRM;
+END $$;
+
+DO $$
+BEGIN
+    IF to_regprocedure('public.unaccent(regdictionary, text)') IS NULL
+            OR NOT EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm') THEN
+        RETURN;
+    END IF;
+
+    -- unaccent() chỉ là STABLE -> bọc lại thành IMMUTABLE (từ điển cố định) để dùng trong cột generated/index.
+    -- Ghi rõ schema: hàm được gọi khi ghi event với search_path bất kỳ.
+    CREATE OR REPLACE FUNCTION public.event_search_unaccent(text) RETURNS text
+        LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT
+        AS $fn$ SELECT public.unaccent('public.unaccent'::regdictionary, lower($1)) $fn$;
+
+    ALTER TABLE event ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+        setweight(to_tsvector('simple', public.event_search_unaccent(coalesce(title, ''))), 'A') ||
+        setweight(to_tsvector('simple', public.event_search_unaccent(coalesce(location, ''))), 'B') ||
+        setweight(to_tsvector('simple', public.event_search_unaccent(coalesce(description, ''))), 'C')
+    ) STORED;
+
+    ALTER TABLE event ADD COLUMN IF NOT EXISTS search_text text GENERATED ALWAYS AS (
+        public.event_search_unaccent(coalesce(title, '') || ' ' || coalesce(location, ''))
+    ) STORED;
+
+    CREATE INDEX IF NOT EXISTS idx_event_search_vector ON event USING gin (search_vector);
+    CREATE INDEX IF NOT EXISTS idx_event_search_text_trgm ON event USING gin (search_text public.gin_trgm_ops);
+END $$;
@@ -0,0 +1,48 @@
+-- Outbox của catalog sự kiện (EventCatalog): trigger ghi event_catalog_change khi cột hiển thị trong
+-- EventResponseDTO thực sự đổi. Cập nhật registered_count (mỗi lượt đăng ký) hay ví của sự kiện không sinh dòng outbox.
+-- Bảng event_catalog_change do Hibernate tạo (entity EventCatalogChange), migration chạy sau Hibernate.
+CREATE OR REPLACE FUNCTION event_catalog_log_change() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $fn$
+BEGIN
+    IF TG_TABLE_NAME = 'event' THEN
+        INSERT INTO event_catalog_change (event_id, changed_at)
+        VALUES (CASE WHEN TG_OP = 'DELETE' THEN OLD.event_id ELSE NEW.event_id END, clock_timestamp());
+    ELSIF TG_TABLE_NAME = 'partner' THEN
+        INSERT INTO event_catalog_change (event_id, changed_at)
+        SELECT e.event_id, clock_timestamp() FROM event e WHERE e.partner_id = NEW.partner_id;
+    ELSE
+        INSERT INTO event_catalog_change (event_id, changed_at)
+        SELECT e.event_id, clock_timestamp() FROM event e WHERE e.category_id = NEW.category_id;
+    END IF;
+    RETURN NULL;
+END $fn$;
+
+-- Bản cũ tạo trigger lúc khởi động: tạo lại một lần ở đây cho cùng định nghĩa
+DROP TRIGGER IF EXISTS event_catalog_event_write ON event;
+CREATE TRIGGER event_catalog_event_write
+    AFTER INSERT OR DELETE ON event
+    FOR EACH ROW EXECUTE FUNCTION event_catalog_log_change();
+
+DROP TRIGGER IF EXISTS event_catalog_event_update ON event;
+CREATE TRIGGER event_catalog_event_update
+    AFTER UPDATE ON event
+    FOR EACH ROW WHEN ((OLD.title, OLD.description, OLD.start_time, OLD.end_time, OLD.location, OLD.status,
+                        OLD.point_cost_to_register, OLD.total_reward_points, OLD.total_budget_coin, OLD.created_at,
+                        OLD.max_attendees, OLD.partner_id, OLD.category_id)
+            IS DISTINCT FROM (NEW.title, NEW.description, NEW.start_time, NEW.end_time, NEW.location, NEW.status,
+                              NEW.point_cost_to_register, NEW.total_reward_points, NEW.total_budget_coin, NEW.created_at,
+                              NEW.max_attendees, NEW.partner_id, NEW.category_id))
+    EXECUTE FUNCTION event_catalog_log_change();
+
+DROP TRIGGER IF EXISTS event_catalog_partner_update ON partner;
+CREATE TRIGGER event_catalog_partner_update
+    AFTER UPDATE ON partner
+    FOR EACH ROW WHEN (OLD.name IS DISTINCT FROM NEW.name)
+    EXECUTE FUNCTION event_catalog_log_change();
+
+DROP TRIGGER IF EXISTS event_catalog_category_update ON event_category;
+CREATE TRIGGER event_catalog_category_update
+    AFTER UPDATE ON event_category
+    FOR EACH ROW WHEN ((OLD.name, OLD.description) IS DISTINCT FROM (NEW.name, NEW.description))
+    EXECUTE FUNCTION event_catalog_log_change();
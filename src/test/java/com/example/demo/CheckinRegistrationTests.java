@@ -0,0 +1,141 @@
+package com.example.demo;
+
+import com.example.demo.entity.Checkin;
+import com.example.demo.entity.Event;
+import com.example.demo.entity.Student;
+import com.example.demo.entity.Wallet;
+import com.example.demo.exception.DataIntegrityViolationException;
+import com.example.demo.exception.ForbiddenException;
+import com.example.demo.repository.CheckinRepository;
+import com.example.demo.repository.EventRepository;
+import com.example.demo.repository.EventSeatJdbcRepository;
+import com.example.demo.repository.PartnerRepository;
+import com.example.demo.repository.StudentRepository;
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.repository.WalletTransactionRepository;
+import com.example.demo.service.LedgerService;
+import com.example.demo.service.WalletShardService;
+import com.example.demo.service.impl.BroadcastUnreadCounter;
+import com.example.demo.service.impl.CheckinServiceImpl;
+import com.example.demo.service.impl.EventSeatGate;
+import com.example.demo.service.impl.StudentServiceImpl;
+import com.example.demo.service.impl.WalletConcurrencyServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CheckinRegistrationTests {
+
+    private static final String COGNITO_SUB = "student-sub";
+
+    private final UUID eventId = UUID.randomUUID();
+    private final Student student = new Student();
+    private CheckinRepository checkinRepository;
+    private EventSeatJdbcRepository eventSeatRepository;
+    private CheckinServiceImpl checkinService;
+
+    @BeforeEach
+    void setUp() {
+        student.setId(UUID.randomUUID());
+        student.setPhoneNumber("0900000000");
+        Wallet studentWallet = wallet();
+        Event event = new Event();
+        event.setId(eventId);
+        event.setStatus("ACTIVE");
+        event.setStartTime(OffsetDateTime.now().plusDays(1));
+        event.setPointCostToRegister(0);
+        event.setMaxAttendees(1);
+        event.setWallet(wallet());
+
+        StudentRepository studentRepository = mock(StudentRepository.class);
+        when(studentRepository.findByCognitoSub(COGNITO_SUB)).thenReturn(Optional.of(student));
+        EventRepository eventRepository = mock(EventRepository.class);
+        when(eventRepository.findById(eventId)).thenReturn(Optional.of(event));
+        WalletRepository walletRepository = mock(WalletRepository.class);
+        when(walletRepository.findStudentWalletIdByCognitoSub(COGNITO_SUB)).thenReturn(Optional.of(studentWallet.getId()));
+        when(walletRepository.findIdByOwnerTypeAndOwnerId("EVENT", eventId)).thenReturn(Optional.of(event.getWallet().getId()));
+        when(walletRepository.findByOwnerTypeAndOwnerId("STUDENT", student.getId())).thenReturn(Optional.of(studentWallet));
+        checkinRepository = mock(CheckinRepository.class);
+        when(checkinRepository.saveAndFlush(any())).thenAnswer(inv -> inv.getArgument(0));
+        eventSeatRepository = mock(EventSeatJdbcRepository.class);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WalletConcurrencyServiceImpl walletConcurrencyService = new WalletConcurrencyServiceImpl(walletRepository,
+                new TransactionTemplate(new NoOpTransactionManager()), meterRegistry,
+                WalletConcurrencyServiceImpl.Strategy.RETRY, 16, 1000, 3, 0, 100);
+        EventSeatGate eventSeatGate = new EventSeatGate(eventSeatRepository, meterRegistry, 60_000, 100);
+        checkinService = new CheckinServiceImpl(eventRepository, studentRepository, checkinRepository,
+                walletRepository, mock(WalletTransactionRepository.class), mock(StudentServiceImpl.class),
+                mock(PartnerRepository.class), walletConcurrencyService, mock(WalletShardService.class),
+                mock(LedgerService.class), eventSeatGate, mock(BroadcastUnreadCounter.class));
+    }
+
+    @Test
+    void registeringForEventWithNoSeatsLeftIsRejected() {
+        when(eventSeatRepository.reserveSeat(eventId, student.getId())).thenReturn(-1);
+
+        assertThatThrownBy(() -> checkinService.registerEvent(COGNITO_SUB, eventId))
+                .isInstanceOf(ForbiddenException.class)
+                .hasMessage("Event is fully booked.");
+        // Lần sau bị node từ chối ngay, không chạm DB
+        assertThatThrownBy(() -> checkinService.registerEvent(COGNITO_SUB, eventId))
+                .isInstanceOf(ForbiddenException.class)
+                .hasMessage("Event is fully booked.");
+        verify(eventSeatRepository, times(1)).reserveSeat(eventId, student.getId());
+        verify(checkinRepository, times(1)).saveAndFlush(any());
+    }
+
+    @Test
+    void lastSeatIsAdmitted() {
+        when(eventSeatRepository.reserveSeat(eventId, student.getId())).thenReturn(0);
+
+        assertThat(checkinService.registerEvent(COGNITO_SUB, eventId).getEventId()).isEqualTo(eventId);
+    }
+
+    @Test
+    void duplicateRegistrationIsConflict() {
+        when(checkinRepository.saveAndFlush(any())).thenThrow(violationOf(Checkin.UK_EVENT_STUDENT));
+
+        assertThatThrownBy(() -> checkinService.registerEvent(COGNITO_SUB, eventId))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .hasMessage("Student has already registered.");
+    }
+
+    @Test
+    void otherConstraintViolationIsNotReportedAsDuplicate() {
+        org.springframework.dao.DataIntegrityViolationException fkViolation = violationOf("fk_checkin_event");
+        when(checkinRepository.saveAndFlush(any())).thenThrow(fkViolation);
+
+        assertThatThrownBy(() -> checkinService.registerEvent(COGNITO_SUB, eventId)).isSameAs(fkViolation);
+        verify(eventSeatRepository, times(0)).reserveSeat(eq(eventId), any());
+    }
+
+    private static org.springframework.dao.DataIntegrityViolationException violationOf(String constraintName) {
+        return new org.springframework.dao.DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("duplicate key", new SQLException("23505"), constraintName));
+    }
+
+    private static Wallet wallet() {
+        Wallet wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        wallet.setBalance(BigDecimal.ZERO);
+        return wallet;
+    }
+}
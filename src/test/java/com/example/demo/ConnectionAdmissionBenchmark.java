@@ -0,0 +1,119 @@
+package com.example.demo;
+
+import com.example.demo.config.ConnectionAdmissionDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * So sánh p50/p99 thời gian "mượn connection + 1 câu SQL ngắn" khi CALLERS luồng cùng gọi vào pool nhỏ:
+ * Hikari trực tiếp và Hikari bọc ConnectionAdmissionDataSource, trên platform thread và (nếu JVM là 21+) virtual thread.
+ * Chạy riêng: mvn test -Dtest=ConnectionAdmissionBenchmark -Dbenchmark=true (cần PostgreSQL như DemoApplicationTests).
+ * Kết quả ghi ra log; không assert thời gian vì phụ thuộc máy chạy.
+ */
+@SpringBootTest(properties = "spring.datasource.admission.enabled=false")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ConnectionAdmissionBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionAdmissionBenchmark.class);
+
+    private static final int CALLERS = 500;
+    private static final int REQUESTS_PER_CALLER = 20;
+    private static final String WORK_SQL = "SELECT pg_sleep(0.002)";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void compareTailLatencyWithAndWithoutAdmission() throws Exception {
+        HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+        DataSource guarded = new ConnectionAdmissionDataSource(hikari, hikari.getMaximumPoolSize(),
+                hikari.getConnectionTimeout());
+
+        StringBuilder report = new StringBuilder(String.format(
+                "Connection admission (%d callers x %d requests, pool %d): mode -> p50 / p99 / max ms, failures",
+                CALLERS, REQUESTS_PER_CALLER, hikari.getMaximumPoolSize()));
+        for (boolean virtual : virtualThreadsAvailable() ? new boolean[]{false, true} : new boolean[]{false}) {
+            String threads = virtual ? "virtual" : "platform";
+            report.append(run(threads + " / hikari", hikari, virtual));
+            report.append(run(threads + " / admission", guarded, virtual));
+        }
+        logger.info(report.toString());
+
+        // Permit phải được trả đủ sau khi mọi connection đã đóng
+        assertThat(((ConnectionAdmissionDataSource) guarded).getAvailablePermits()).isEqualTo(hikari.getMaximumPoolSize());
+    }
+
+    private String run(String mode, DataSource target, boolean virtual) throws Exception {
+        List<Long> latencies = new ArrayList<>(CALLERS * REQUESTS_PER_CALLER);
+        AtomicInteger failures = new AtomicInteger();
+        List<Future<List<Long>>> futures = new ArrayList<>(CALLERS);
+        ExecutorService executor = virtual ? newVirtualThreadExecutor() : Executors.newFixedThreadPool(CALLERS);
+        try {
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(executor.submit(() -> callRepeatedly(target, failures)));
+            }
+            for (Future<List<Long>> future : futures) {
+                latencies.addAll(future.get());
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return String.format("%n  %-22s %8.2f / %8.2f / %8.2f  %d", mode,
+                percentileMs(sorted, 0.50), percentileMs(sorted, 0.99), percentileMs(sorted, 1.0), failures.get());
+    }
+
+    private static List<Long> callRepeatedly(DataSource target, AtomicInteger failures) {
+        List<Long> latencies = new ArrayList<>(REQUESTS_PER_CALLER);
+        for (int i = 0; i < REQUESTS_PER_CALLER; i++) {
+            long start = System.nanoTime();
+            try (Connection connection = target.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute(WORK_SQL);
+                latencies.add(System.nanoTime() - start);
+            } catch (SQLException e) {
+                failures.incrementAndGet();
+            }
+        }
+        return latencies;
+    }
+
+    private static double percentileMs(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    // Project biên dịch với Java 17: gọi Executors.newVirtualThreadPerTaskExecutor() qua reflection
+    private static boolean virtualThreadsAvailable() {
+        return Arrays.stream(Executors.class.getMethods())
+                .anyMatch(method -> method.getName().equals("newVirtualThreadPerTaskExecutor"));
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() throws ReflectiveOperationException {
+        return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.demo;
+
+import com.example.demo.entity.Checkin;
+import com.example.demo.entity.Event;
+import com.example.demo.entity.EventCategory;
+import com.example.demo.entity.Partner;
+import com.example.demo.entity.Student;
+import com.example.demo.entity.University;
+import com.example.demo.entity.Wallet;
+import com.example.demo.repository.CheckinRepository;
+import com.example.demo.repository.EventCategoryRepository;
+import com.example.demo.repository.EventRepository;
+import com.example.demo.repository.PartnerRepository;
+import com.example.demo.repository.StudentRepository;
+import com.example.demo.repository.UniversityRepository;
+import com.example.demo.service.EventService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Đo thời gian finalizeEvent theo số người tham dự (100 / 1.000 / 3.000) với đường chi trả theo lô.
+ * Chạy riêng: mvn test -Dtest=EventPayoutScalingBenchmark -Dbenchmark=true (cần PostgreSQL như DemoApplicationTests).
+ * Mỗi kích thước chạy trong 1 transaction bị rollback; bảng kết quả được ghi ra log.
+ * Số câu SQL qua Hibernate phải giữ nguyên khi số người tham dự tăng (phần tăng theo N nằm trong batch JDBC).
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class EventPayoutScalingBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventPayoutScalingBenchmark.class);
+
+    private static final int[] ATTENDEE_COUNTS = {100, 1_000, 3_000};
+    private static final int REWARD_POINTS = 10;
+
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private UniversityRepository universityRepository;
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private PartnerRepository partnerRepository;
+    @Autowired
+    private EventCategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private CheckinRepository checkinRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final String runId = Long.toString(ThreadLocalRandom.current().nextLong(1_000_000L, 9_999_999L));
+
+    @Test
+    void finalizeEventScalesWithAttendeeCount() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Map<Integer, Long> elapsedMs = new LinkedHashMap<>();
+        Map<Integer, Long> hibernateStatements = new LinkedHashMap<>();
+
+        for (int attendees : ATTENDEE_COUNTS) {
+            transactionTemplate.executeWithoutResult(status -> {
+                UUID eventId = seedFinishedEvent(attendees);
+
+                statistics.clear();
+                long start = System.nanoTime();
+                eventService.finalizeEvent(eventId);
+                entityManager.flush();
+                elapsedMs.put(attendees, (System.nanoTime() - start) / 1_000_000);
+                hibernateStatements.put(attendees, statistics.getPrepareStatementCount());
+
+                Integer payoutRows = jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM wallet_transaction WHERE reference_id = ? AND txn_type = 'EVENT_FINAL_PAYOUT'",
+                        Integer.class, eventId);
+                assertThat(payoutRows).isEqualTo(attendees);
+                status.setRollbackOnly();
+            });
+        }
+
+        StringBuilder report = new StringBuilder("finalizeEvent scaling (attendees -> ms, ms/attendee, Hibernate statements):");
+        elapsedMs.forEach((attendees, ms) -> report.append(String.format("%n  %6d -> %6d ms  %.3f ms  %d",
+                attendees, ms, (double) ms / attendees, hibernateStatements.get(attendees))));
+        logger.info(report.toString());
+
+        assertThat(hibernateStatements.values()).containsOnly(hibernateStatements.get(ATTENDEE_COUNTS[0]));
+    }
+
+    /**
+     * Sự kiện có đủ tiền trong ví để trả REWARD_POINTS cho mỗi người tham dự, mỗi người có ví riêng
+     * và 1 check-in đã xác thực. Xóa persistence context để finalize đọc lại mọi thứ từ DB.
+     */
+    private UUID seedFinishedEvent(int attendees) {
+        OffsetDateTime now = OffsetDateTime.now();
+        String prefix = runId + "-" + attendees;
+
+        University university = new University();
+        university.setName("Payout University " + prefix);
+        universityRepository.save(university);
+
+        List<Student> students = new ArrayList<>(attendees);
+        for (int i = 0; i < attendees; i++) {
+            Student student = new Student();
+            student.setCognitoSub("payout-" + prefix + "-" + i);
+            student.setUniversity(university);
+            student.setFullName("Payout Student " + i);
+            student.setPhoneNumber("8" + runId.substring(0, 4) + String.format("%04d", i)); // 9 chữ số (@VietnamesePhoneNumber)
+            student.setCreatedAt(now);
+            student.setWallet(wallet("STUDENT", BigDecimal.ZERO));
+            students.add(student);
+        }
+        studentRepository.saveAll(students);
+        students.forEach(student -> student.getWallet().setOwnerId(student.getId()));
+
+        Partner partner = new Partner();
+        partner.setName("Payout Partner " + prefix);
+        partner.setWallet(wallet("PARTNER", BigDecimal.ZERO));
+        partnerRepository.save(partner);
+
+        EventCategory category = new EventCategory();
+        category.setName("Payout Category " + prefix);
+        Event event = new Event();
+        event.setPartner(partner);
+        event.setCategory(categoryRepository.save(category));
+        event.setTitle("Payout Event " + attendees);
+        event.setStartTime(now.minusDays(2));
+        event.setEndTime(now.minusDays(1));
+        event.setPointCostToRegister(0);
+        event.setTotalRewardPoints(REWARD_POINTS);
+        event.setStatus("ACTIVE");
+        event.setWallet(wallet("EVENT", BigDecimal.valueOf((long) REWARD_POINTS * attendees)));
+        eventRepository.save(event);
+        event.getWallet().setOwnerId(event.getId());
+
+        List<Checkin> checkins = new ArrayList<>(attendees);
+        for (Student student : students) {
+            Checkin checkin = new Checkin();
+            checkin.setEvent(event);
+            checkin.setStudent(student);
+            checkin.setPhoneNumber(student.getPhoneNumber());
+            checkin.setVerified(true);
+            checkin.setCheckinTime(now.minusDays(1));
+            checkins.add(checkin);
+        }
+        checkinRepository.saveAll(checkins);
+
+        entityManager.flush();
+        entityManager.clear();
+        return event.getId();
+    }
+
+    private static Wallet wallet(String ownerType, BigDecimal balance) {
+        Wallet wallet = new Wallet();
+        wallet.setOwnerType(ownerType);
+        wallet.setCurrency("COIN");
+        wallet.setBalance(balance);
+        return wallet;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.demo;
+
+import com.example.demo.entity.IdempotencyRecord;
+import com.example.demo.exception.DataIntegrityViolationException;
+import com.example.demo.repository.IdempotencyJdbcRepository;
+import com.example.demo.repository.IdempotencyRecordRepository;
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.service.IdempotencyService;
+import com.example.demo.service.impl.IdempotencyServiceImpl;
+import com.example.demo.service.impl.WalletConcurrencyServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceImplTests {
+
+    private static final String SCOPE = "WALLET_TRANSFER";
+
+    private IdempotencyRecordRepository recordRepository;
+    private IdempotencyServiceImpl service;
+    private final AtomicInteger actionRuns = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        recordRepository = mock(IdempotencyRecordRepository.class);
+        when(recordRepository.saveAndFlush(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        NoOpTransactionManager transactionManager = new NoOpTransactionManager();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WalletConcurrencyServiceImpl walletConcurrencyService = new WalletConcurrencyServiceImpl(
+                mock(WalletRepository.class), new TransactionTemplate(transactionManager), meterRegistry,
+                WalletConcurrencyServiceImpl.Strategy.RETRY, 16, 1000, 3, 0, 100);
+        service = new IdempotencyServiceImpl(recordRepository, mock(IdempotencyJdbcRepository.class),
+                new ObjectMapper(), walletConcurrencyService, transactionManager, meterRegistry,
+                24, 100, 600, 1000, 0.01, 100);
+    }
+
+    @Test
+    void replayReturnsStoredResponseWithoutRunningAction() {
+        String first = service.execute(SCOPE, "key-1", String.class, () -> action("paid"));
+        String replay = service.execute(SCOPE, "key-1", String.class, () -> action("paid again"));
+
+        assertThat(first).isEqualTo("paid");
+        assertThat(replay).isEqualTo("paid");
+        assertThat(actionRuns).hasValue(1);
+    }
+
+    @Test
+    void keyCommittedByConcurrentRequestReplaysWinner() {
+        when(recordRepository.saveAndFlush(any())).thenThrow(new DuplicateKeyException("idempotency_record_pkey"));
+        when(recordRepository.findById(SCOPE + ":key-1"))
+                .thenReturn(Optional.of(record(SCOPE + ":key-1", "\"winner\"", OffsetDateTime.now().plusHours(1))));
+
+        String result = service.execute(SCOPE, "key-1", String.class, () -> action("loser"));
+
+        assertThat(result).isEqualTo("winner");
+        assertThat(actionRuns).hasValue(0);
+    }
+
+    @Test
+    void sameClientKeyFromDifferentOwnersDoesNotCollide() {
+        String keyOfA = IdempotencyService.ownedKey(UUID.randomUUID(), "shared-key");
+        String keyOfB = IdempotencyService.ownedKey(UUID.randomUUID(), "shared-key");
+
+        String resultA = service.execute(SCOPE, keyOfA, String.class, () -> action("A"));
+        String resultB = service.execute(SCOPE, keyOfB, String.class, () -> action("B"));
+
+        assertThat(resultA).isEqualTo("A");
+        assertThat(resultB).isEqualTo("B");
+        assertThat(actionRuns).hasValue(2);
+        ArgumentCaptor<IdempotencyRecord> claimed = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(recordRepository, times(2)).saveAndFlush(claimed.capture());
+        assertThat(claimed.getAllValues()).extracting(IdempotencyRecord::getKey)
+                .containsExactly(SCOPE + ":" + keyOfA, SCOPE + ":" + keyOfB);
+    }
+
+    @Test
+    void reuseOfExpiredKeyIsConflictNotServerError() {
+        // Bản ghi hết hạn nhưng job archive chưa chạy: PK vẫn còn
+        when(recordRepository.saveAndFlush(any())).thenThrow(new DuplicateKeyException("idempotency_record_pkey"));
+        when(recordRepository.findById(SCOPE + ":old-key"))
+                .thenReturn(Optional.of(record(SCOPE + ":old-key", "\"old\"", OffsetDateTime.now().minusMinutes(1))));
+
+        assertThatThrownBy(() -> service.execute(SCOPE, "old-key", String.class, () -> action("new")))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .hasMessage("Idempotency key has already been used. Please retry with a new key.");
+        assertThat(actionRuns).hasValue(0);
+    }
+
+    @Test
+    void integrityViolationFromActionIsNotTreatedAsKeyReuse() {
+        DuplicateKeyException fromAction = new DuplicateKeyException("uk_checkin_event_student");
+
+        assertThatThrownBy(() -> service.execute(SCOPE, "key-2", String.class, () -> {
+            throw fromAction;
+        })).isSameAs(fromAction);
+    }
+
+    private String action(String response) {
+        actionRuns.incrementAndGet();
+        return response;
+    }
+
+    private static IdempotencyRecord record(String key, String responseJson, OffsetDateTime expiresAt) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setKey(key);
+        record.setScope(SCOPE);
+        record.setResponseJson(responseJson);
+        record.setExpiresAt(expiresAt);
+        return record;
+    }
+}
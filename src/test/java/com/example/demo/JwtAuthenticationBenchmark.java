@@ -0,0 +1,129 @@
+package com.example.demo;
+
+import com.example.demo.config.LocalJwksSource;
+import com.example.demo.config.SecurityConfig;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Đo chi phí xác thực mỗi request (JwtDecoder + CognitoGroupsConverter, đúng bean của SecurityConfig) với JWKS
+ * đọc từ file cache, không cần mạng. Báo p50/p99 cho token đã có trong cache (hit) và token mới (miss, verify RS256).
+ * Chạy riêng: mvn test -Dtest=JwtAuthenticationBenchmark -Dbenchmark=true. Mục tiêu: p50 của hit dưới 20µs.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class JwtAuthenticationBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationBenchmark.class);
+
+    private static final String ISSUER = "https://cognito-idp.ap-southeast-1.amazonaws.com/ap-southeast-1_benchmark";
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURED_ITERATIONS = 50_000;
+    private static final int MISS_TOKENS = 5_000;
+    private static final long TARGET_HIT_P50_NANOS = 20_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void authenticationOverheadPerRequest() throws Exception {
+        RSAKey signingKey = new RSAKeyGenerator(2048).keyID("benchmark-key").generate();
+        Path jwksFile = tempDir.resolve("jwks.json");
+        Files.writeString(jwksFile, new JWKSet(signingKey).toPublicJWKSet().toString(), StandardCharsets.UTF_8);
+
+        SecurityConfig securityConfig = new SecurityConfig(null);
+        LocalJwksSource jwksSource = new LocalJwksSource(ISSUER, jwksFile.toString(), 60_000);
+        JwtDecoder decoder = securityConfig.jwtDecoder(jwksSource, new SimpleMeterRegistry(), ISSUER, 50_000, 3_600_000);
+        JwtAuthenticationConverter converter = securityConfig.jwtAuthenticationConverter();
+
+        String cachedToken = sign(signingKey);
+        String[] freshTokens = new String[MISS_TOKENS * 2];
+        for (int i = 0; i < freshTokens.length; i++) {
+            freshTokens[i] = sign(signingKey);
+        }
+
+        // Khởi động JIT cho cả 2 đường; nửa đầu token mới dùng cho warmup, nửa sau để đo
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            converter.convert(decoder.decode(cachedToken));
+        }
+        for (int i = 0; i < MISS_TOKENS; i++) {
+            converter.convert(decoder.decode(freshTokens[i]));
+        }
+
+        long[] hit = new long[MEASURED_ITERATIONS];
+        for (int i = 0; i < hit.length; i++) {
+            long start = System.nanoTime();
+            AbstractAuthenticationToken authentication = converter.convert(decoder.decode(cachedToken));
+            hit[i] = System.nanoTime() - start;
+            assertThat(authentication.getAuthorities()).hasSize(3);
+        }
+        long[] miss = new long[MISS_TOKENS];
+        for (int i = 0; i < miss.length; i++) {
+            long start = System.nanoTime();
+            AbstractAuthenticationToken authentication = converter.convert(decoder.decode(freshTokens[MISS_TOKENS + i]));
+            miss[i] = System.nanoTime() - start;
+            assertThat(authentication.getAuthorities()).hasSize(3);
+        }
+
+        Arrays.sort(hit);
+        Arrays.sort(miss);
+        logger.info(String.format("JWT authentication overhead (decode + authorities), µs:"
+                        + "%n  cache hit  (%6d): p50 %8.2f  p99 %8.2f%n  cache miss (%6d): p50 %8.2f  p99 %8.2f",
+                hit.length, percentileMicros(hit, 0.50), percentileMicros(hit, 0.99),
+                miss.length, percentileMicros(miss, 0.50), percentileMicros(miss, 0.99)));
+
+        assertThat(percentile(hit, 0.50)).isLessThan(TARGET_HIT_P50_NANOS);
+    }
+
+    // Token kiểu access token của Cognito: 2 scope + 1 group -> SCOPE_openid, SCOPE_profile, ROLE_PARTNERS
+    private static String sign(RSAKey signingKey) throws JOSEException {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .subject(UUID.randomUUID().toString())
+                .jwtID(UUID.randomUUID().toString())
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plusSeconds(3600)))
+                .claim("scope", "openid profile")
+                .claim("cognito:groups", List.of("Partners"))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(signingKey));
+        return jwt.serialize();
+    }
+
+    private static long percentile(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(index, 0)];
+    }
+
+    private static double percentileMicros(long[] sortedNanos, double percentile) {
+        return percentile(sortedNanos, percentile) / 1_000.0;
+    }
+}
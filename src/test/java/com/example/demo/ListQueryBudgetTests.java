@@ -0,0 +1,271 @@
+package com.example.demo;
+
+import com.example.demo.dto.response.EventResponseDTO;
+import com.example.demo.dto.response.FeedbackResponseDTO;
+import com.example.demo.dto.response.ProductInvoiceResponseDTO;
+import com.example.demo.dto.response.StudentResponseDTO;
+import com.example.demo.entity.Checkin;
+import com.example.demo.entity.Event;
+import com.example.demo.entity.EventCategory;
+import com.example.demo.entity.Feedback;
+import com.example.demo.entity.Partner;
+import com.example.demo.entity.Product;
+import com.example.demo.entity.ProductInvoice;
+import com.example.demo.entity.Student;
+import com.example.demo.entity.University;
+import com.example.demo.entity.Wallet;
+import com.example.demo.repository.CheckinRepository;
+import com.example.demo.repository.EventCategoryRepository;
+import com.example.demo.repository.EventRepository;
+import com.example.demo.repository.FeedbackRepository;
+import com.example.demo.repository.PartnerRepository;
+import com.example.demo.repository.ProductInvoiceRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.StudentRepository;
+import com.example.demo.repository.UniversityRepository;
+import com.example.demo.service.CheckinService;
+import com.example.demo.service.EventService;
+import com.example.demo.service.FeedbackService;
+import com.example.demo.service.ProductInvoiceService;
+import com.example.demo.service.StudentService;
+import com.example.demo.util.EventSpecifications;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Số câu SQL của mỗi trang danh sách (50 dòng) không được tăng theo số dòng: convert sang DTO không được
+ * kéo association lazy từng dòng (N+1). Đếm bằng Hibernate Statistics.
+ * Mỗi test tự tạo SEEDED dòng cha, mỗi dòng có association riêng (trường đại học, ví, danh mục, sản phẩm...),
+ * rồi xóa persistence context để association thật sự phải được đọc từ DB; transaction được rollback sau test.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class ListQueryBudgetTests {
+
+    private static final int SEEDED = 55;
+    private static final int PAGE_SIZE = 50;
+    private static final Pageable PAGE = PageRequest.of(0, PAGE_SIZE, Sort.by(Sort.Direction.DESC, "createdAt"));
+
+    // Trang + count (+ 1 kiểm tra tồn tại ở vài endpoint)
+    private static final long PAGE_BUDGET = 3;
+
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private CheckinService checkinService;
+    @Autowired
+    private FeedbackService feedbackService;
+    @Autowired
+    private ProductInvoiceService productInvoiceService;
+    @Autowired
+    private StudentService studentService;
+    @Autowired
+    private UniversityRepository universityRepository;
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private PartnerRepository partnerRepository;
+    @Autowired
+    private EventCategoryRepository categoryRepository;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private CheckinRepository checkinRepository;
+    @Autowired
+    private FeedbackRepository feedbackRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ProductInvoiceRepository productInvoiceRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private final String runId = Long.toString(ThreadLocalRandom.current().nextLong(1_000_000L, 9_999_999L));
+
+    private List<Student> students;
+    private Partner partner;
+    private List<Event> events;
+
+    @BeforeEach
+    void seed() {
+        OffsetDateTime now = OffsetDateTime.now();
+        students = new ArrayList<>();
+        for (int i = 0; i < SEEDED; i++) {
+            University university = new University();
+            university.setName("Budget University " + runId + "-" + i);
+            Student student = new Student();
+            student.setCognitoSub("budget-" + runId + "-" + i);
+            student.setUniversity(universityRepository.save(university));
+            student.setFullName("Budget Student " + i);
+            student.setPhoneNumber("9" + runId.substring(0, 5) + String.format("%03d", i)); // 9 chữ số (@VietnamesePhoneNumber)
+            student.setCreatedAt(now.plusSeconds(i));
+            student.setWallet(wallet("STUDENT"));
+            students.add(student);
+        }
+        studentRepository.saveAll(students);
+
+        partner = new Partner();
+        partner.setName("Budget Partner " + runId);
+        partner.setWallet(wallet("PARTNER"));
+        partnerRepository.save(partner);
+
+        events = new ArrayList<>();
+        for (int i = 0; i < SEEDED; i++) {
+            EventCategory category = new EventCategory();
+            category.setName("Budget Category " + runId + "-" + i);
+            Event event = new Event();
+            event.setPartner(partner);
+            event.setCategory(categoryRepository.save(category));
+            event.setTitle("Budget Event " + i);
+            event.setStartTime(now.plusDays(1));
+            event.setEndTime(now.plusDays(2));
+            event.setPointCostToRegister(0);
+            event.setTotalRewardPoints(0);
+            event.setStatus("ACTIVE");
+            event.setWallet(wallet("EVENT"));
+            events.add(event);
+        }
+        eventRepository.saveAll(events);
+
+        Event busiestEvent = events.get(0);
+        List<Checkin> checkins = new ArrayList<>();
+        List<Feedback> feedback = new ArrayList<>();
+        List<ProductInvoice> invoices = new ArrayList<>();
+        for (int i = 0; i < SEEDED; i++) {
+            Student student = students.get(i);
+            Checkin checkin = new Checkin();
+            checkin.setEvent(busiestEvent);
+            checkin.setStudent(student);
+            checkin.setPhoneNumber(student.getPhoneNumber());
+            checkin.setVerified(false);
+            checkin.setCheckinTime(now);
+            checkins.add(checkin);
+
+            Feedback entry = new Feedback();
+            entry.setEvent(busiestEvent);
+            entry.setStudent(student);
+            entry.setRating((short) 5);
+            entry.setCreatedAt(now.plusSeconds(i));
+            feedback.add(entry);
+
+            Product product = new Product();
+            product.setTitle("Budget Product " + i);
+            product.setUnitCost(BigDecimal.TEN);
+            product.setCurrency("COIN");
+            product.setTotalStock(1);
+            product.setIsActive(true);
+            ProductInvoice invoice = new ProductInvoice();
+            invoice.setStudent(students.get(0));
+            invoice.setProduct(productRepository.save(product));
+            invoice.setQuantity(1);
+            invoice.setTotalCost(BigDecimal.TEN);
+            invoice.setCurrency("COIN");
+            invoice.setStatus("PENDING");
+            invoice.setCreatedAt(now.plusSeconds(i));
+            invoices.add(invoice);
+        }
+        checkinRepository.saveAll(checkins);
+        feedbackRepository.saveAll(feedback);
+        productInvoiceRepository.saveAll(invoices);
+
+        // Không để association nằm sẵn trong persistence context -> đo đúng số câu SQL như request thật
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    void eventListStaysWithinBudget() {
+        Page<EventResponseDTO> page = withinBudget(
+                () -> eventService.getAllEvents(EventSpecifications.filterBy(null, null), PAGE));
+        assertThat(page.getContent()).hasSize(PAGE_SIZE);
+    }
+
+    @Test
+    void partnerEventsStayWithinBudget() {
+        Page<EventResponseDTO> page = withinBudget(() -> eventService.getEventsByPartner(partner.getId(), PAGE));
+        assertThat(page.getTotalElements()).isEqualTo(SEEDED);
+        assertThat(page.getContent()).hasSize(PAGE_SIZE)
+                .extracting(EventResponseDTO::getId)
+                .isSubsetOf(ids(events, Event::getId));
+    }
+
+    @Test
+    void eventAttendeesStayWithinBudget() {
+        Page<StudentResponseDTO> page = withinBudget(
+                () -> checkinService.getAttendeesByEvent(events.get(0).getId(), PageRequest.of(0, PAGE_SIZE)));
+        assertThat(page.getTotalElements()).isEqualTo(SEEDED);
+        assertThat(page.getContent()).hasSize(PAGE_SIZE)
+                .extracting(StudentResponseDTO::getId)
+                .isSubsetOf(ids(students, Student::getId));
+    }
+
+    @Test
+    void studentInvoicesStayWithinBudget() {
+        Page<ProductInvoiceResponseDTO> page = withinBudget(() -> productInvoiceService.getStudentInvoices(
+                students.get(0).getId(), null, "createdAt", "desc", PAGE_SIZE, 0));
+        assertThat(page.getTotalElements()).isEqualTo(SEEDED);
+        assertThat(page.getContent()).hasSize(PAGE_SIZE);
+    }
+
+    @Test
+    void feedbackStaysWithinBudget() {
+        Page<FeedbackResponseDTO> page = withinBudget(() -> feedbackService.getAllFeedback(events.get(0).getId(), PAGE));
+        assertThat(page.getTotalElements()).isEqualTo(SEEDED);
+        assertThat(page.getContent()).hasSize(PAGE_SIZE);
+    }
+
+    @Test
+    void studentListStaysWithinBudget() {
+        Page<StudentResponseDTO> page = withinBudget(() -> studentService.getAllStudents(PAGE));
+        assertThat(page.getContent()).hasSize(PAGE_SIZE);
+    }
+
+    private <T> T withinBudget(Supplier<T> listing) {
+        statistics.clear();
+        T result = listing.get();
+        assertThat(statistics.getPrepareStatementCount())
+                .as("SQL statements for one 50-row page")
+                .isLessThanOrEqualTo(PAGE_BUDGET);
+        return result;
+    }
+
+    private static <E> List<UUID> ids(List<E> entities, Function<E, UUID> id) {
+        return entities.stream().map(id).toList();
+    }
+
+    private static Wallet wallet(String ownerType) {
+        Wallet wallet = new Wallet();
+        wallet.setOwnerType(ownerType);
+        wallet.setCurrency("COIN");
+        wallet.setBalance(BigDecimal.ZERO);
+        return wallet;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.demo;
+
+import com.example.demo.dto.response.CursorPageResponseDTO;
+import com.example.demo.dto.response.WalletTransactionResponseDTO;
+import com.example.demo.entity.Wallet;
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.service.LedgerService;
+import com.example.demo.service.WalletService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bút toán ghi trước khi có @CreationTimestamp có created_at = NULL và không bao giờ bị sửa:
+ * phân trang keyset và số dư theo thời điểm phải coi chúng là phần cũ nhất của lịch sử.
+ */
+@SpringBootTest
+@Transactional
+class UndatedLedgerEntryTests {
+
+    private static final String OWNER_TYPE = "STUDENT";
+
+    @Autowired
+    private WalletRepository walletRepository;
+    @Autowired
+    private WalletService walletService;
+    @Autowired
+    private LedgerService ledgerService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private UUID ownerId;
+    private UUID walletId;
+    private final List<UUID> inserted = new ArrayList<>();
+
+    @BeforeEach
+    void seedWallet() {
+        Wallet wallet = new Wallet();
+        ownerId = UUID.randomUUID();
+        wallet.setOwnerType(OWNER_TYPE);
+        wallet.setOwnerId(ownerId);
+        wallet.setCurrency("COIN");
+        wallet.setBalance(new BigDecimal("42"));
+        walletId = walletRepository.saveAndFlush(wallet).getId();
+
+        insertEntry(new BigDecimal("10"), null);
+        insertEntry(new BigDecimal("20"), null);
+        insertEntry(new BigDecimal("5"), OffsetDateTime.now().minusDays(1));
+        insertEntry(new BigDecimal("7"), OffsetDateTime.now().minusHours(1));
+    }
+
+    @Test
+    void cursorPagingReturnsUndatedEntriesAfterDatedOnes() {
+        CursorPageResponseDTO<WalletTransactionResponseDTO> first =
+                walletService.getTransactionHistoryByCursor(ownerId, OWNER_TYPE, null, 3);
+        assertThat(first.getMeta().getNextCursor()).isNotNull();
+
+        CursorPageResponseDTO<WalletTransactionResponseDTO> second =
+                walletService.getTransactionHistoryByCursor(ownerId, OWNER_TYPE, first.getMeta().getNextCursor(), 3);
+        assertThat(second.getMeta().getNextCursor()).isNull();
+
+        List<WalletTransactionResponseDTO> all = new ArrayList<>(first.getData());
+        all.addAll(second.getData());
+        assertThat(all).extracting(WalletTransactionResponseDTO::getId)
+                .containsExactlyInAnyOrderElementsOf(inserted)
+                .doesNotHaveDuplicates();
+        // Mới nhất trước, bút toán không có created_at ở cuối
+        assertThat(all.subList(0, 2)).extracting(WalletTransactionResponseDTO::getAmount)
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("7"), new BigDecimal("5"));
+    }
+
+    @Test
+    void balanceAsOfIncludesUndatedEntries() {
+        assertThat(ledgerService.getBalanceAsOf(walletId, OffsetDateTime.now()).getBalance())
+                .isEqualByComparingTo("42");
+        assertThat(ledgerService.getBalanceAsOf(walletId, OffsetDateTime.now().minusDays(2)).getBalance())
+                .isEqualByComparingTo("30");
+    }
+
+    private void insertEntry(BigDecimal amount, OffsetDateTime createdAt) {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO wallet_transaction (txn_id, wallet_id, txn_type, amount, created_at) " +
+                        "VALUES (?, ?, 'TRANSFER_IN', ?, ?)",
+                id, walletId, amount, createdAt != null ? Timestamp.from(createdAt.toInstant()) : null);
+        inserted.add(id);
+    }
+}
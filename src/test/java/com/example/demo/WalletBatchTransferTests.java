@@ -0,0 +1,155 @@
+package com.example.demo;
+
+import com.example.demo.dto.request.WalletBatchTransferRequestDTO;
+import com.example.demo.dto.response.WalletBatchTransferResponseDTO;
+import com.example.demo.entity.Wallet;
+import com.example.demo.repository.PartnerRepository;
+import com.example.demo.repository.StudentRepository;
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.repository.WalletTransactionRepository;
+import com.example.demo.service.IdempotencyService;
+import com.example.demo.service.LedgerService;
+import com.example.demo.service.WalletShardService;
+import com.example.demo.service.impl.WalletBalanceCache;
+import com.example.demo.service.impl.WalletConcurrencyServiceImpl;
+import com.example.demo.service.impl.WalletServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WalletBatchTransferTests {
+
+    private static final int WALLET_TXN_KEY_LENGTH = 120;
+
+    private final List<Wallet> wallets = new ArrayList<>();
+    private IdempotencyService idempotencyService;
+    private LedgerService ledgerService;
+    private WalletServiceImpl walletService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        WalletRepository walletRepository = mock(WalletRepository.class);
+        when(walletRepository.findAllById(anyIterable())).thenAnswer(inv -> wallets);
+        WalletShardService walletShardService = mock(WalletShardService.class);
+        when(walletShardService.getLogicalBalance(any())).thenReturn(new BigDecimal("1000"));
+        idempotencyService = mock(IdempotencyService.class);
+        when(idempotencyService.execute(anyString(), anyString(), any(), any()))
+                .thenAnswer(inv -> ((Supplier<Object>) inv.getArgument(3)).get());
+        ledgerService = mock(LedgerService.class);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WalletConcurrencyServiceImpl walletConcurrencyService = new WalletConcurrencyServiceImpl(walletRepository,
+                new TransactionTemplate(new NoOpTransactionManager()), meterRegistry,
+                WalletConcurrencyServiceImpl.Strategy.RETRY, 16, 1000, 3, 0, 100);
+        walletService = new WalletServiceImpl(walletRepository, mock(WalletTransactionRepository.class),
+                mock(StudentRepository.class), mock(PartnerRepository.class), walletConcurrencyService,
+                walletShardService, ledgerService, idempotencyService, mock(WalletBalanceCache.class),
+                meterRegistry, 5000);
+    }
+
+    @Test
+    void sameClientKeyFromTwoOwnersPostsDistinctLegKeys() {
+        Wallet partnerA = wallet("PARTNER");
+        Wallet partnerB = wallet("PARTNER");
+        Wallet student = wallet("STUDENT");
+
+        walletService.transferBatch(batch("payroll-2026-10", leg(partnerA, student)), partnerA.getId());
+        walletService.transferBatch(batch("payroll-2026-10", leg(partnerB, student)), partnerB.getId());
+
+        verify(idempotencyService).execute(eq("WALLET_BATCH_TRANSFER"),
+                eq(IdempotencyService.ownedKey(partnerA.getId(), "payroll-2026-10")), any(), any());
+        verify(idempotencyService).execute(eq("WALLET_BATCH_TRANSFER"),
+                eq(IdempotencyService.ownedKey(partnerB.getId(), "payroll-2026-10")), any(), any());
+        List<String> keys = postedLegKeys(2);
+        assertThat(keys).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void duplicateLegsInOneBatchGetUniqueKeysThatFitTheColumn() {
+        Wallet admin = wallet("ADMIN");
+        Wallet student = wallet("STUDENT");
+        String longKey = "k".repeat(WALLET_TXN_KEY_LENGTH);
+
+        WalletBatchTransferResponseDTO response = walletService.transferBatch(
+                batch(longKey, leg(admin, student), leg(admin, student), leg(admin, student)), null);
+
+        assertThat(response.getPostedLegs()).isEqualTo(3);
+        List<String> keys = postedLegKeys(1);
+        assertThat(keys).hasSize(3).doesNotHaveDuplicates();
+        // Bút toán credit dùng key + ":CR"
+        assertThat(keys).allSatisfy(key -> assertThat(key.length() + 3).isLessThanOrEqualTo(WALLET_TXN_KEY_LENGTH));
+        assertThat(response.getResults()).extracting(WalletBatchTransferResponseDTO.LegResult::getIdempotencyKey)
+                .containsExactlyElementsOf(keys);
+    }
+
+    @Test
+    void batchKeyLongerThanColumnIsRejectedByValidation() {
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        Wallet admin = wallet("ADMIN");
+        Wallet student = wallet("STUDENT");
+
+        assertThat(validator.validate(batch("k".repeat(WALLET_TXN_KEY_LENGTH), leg(admin, student)))).isEmpty();
+        assertThat(validator.validate(batch("k".repeat(WALLET_TXN_KEY_LENGTH + 1), leg(admin, student))))
+                .extracting(v -> v.getPropertyPath().toString())
+                .containsExactly("idempotencyKey");
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> postedLegKeys(int batches) {
+        ArgumentCaptor<List<LedgerService.TransferLeg>> legs = ArgumentCaptor.forClass(List.class);
+        verify(ledgerService, times(batches)).postTransfers(legs.capture(), eq("TRANSFER"), eq("TRANSFER_IN"),
+                isNull(), isNull());
+        List<String> keys = new ArrayList<>();
+        for (List<LedgerService.TransferLeg> batch : legs.getAllValues()) {
+            batch.forEach(leg -> keys.add(leg.idempotencyKey()));
+        }
+        return keys;
+    }
+
+    private Wallet wallet(String ownerType) {
+        Wallet wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        wallet.setOwnerType(ownerType);
+        wallet.setOwnerId(UUID.randomUUID());
+        wallet.setBalance(new BigDecimal("1000"));
+        wallets.add(wallet);
+        return wallet;
+    }
+
+    private static WalletBatchTransferRequestDTO.Leg leg(Wallet from, Wallet to) {
+        WalletBatchTransferRequestDTO.Leg leg = new WalletBatchTransferRequestDTO.Leg();
+        leg.setFromWalletId(from.getId());
+        leg.setToWalletId(to.getId());
+        leg.setAmount(BigDecimal.TEN);
+        return leg;
+    }
+
+    private static WalletBatchTransferRequestDTO batch(String key, WalletBatchTransferRequestDTO.Leg... legs) {
+        WalletBatchTransferRequestDTO request = new WalletBatchTransferRequestDTO();
+        request.setIdempotencyKey(key);
+        request.setLegs(List.of(legs));
+        return request;
+    }
+}
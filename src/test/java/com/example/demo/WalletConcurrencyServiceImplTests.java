@@ -0,0 +1,112 @@
+package com.example.demo;
+
+import com.example.demo.dto.response.WalletContentionStatsDTO;
+import com.example.demo.exception.DataIntegrityViolationException;
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.service.impl.WalletConcurrencyServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Chiến lược RETRY: thao tác ví tham gia transaction do lớp ngoài mở (như IdempotencyService)
+ * vẫn phải được chạy lại khi xung đột @Version.
+ */
+class WalletConcurrencyServiceImplTests {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransactionTemplate transactionTemplate;
+    private WalletConcurrencyServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        transactionTemplate = new TransactionTemplate(new NoOpTransactionManager());
+        service = new WalletConcurrencyServiceImpl(mock(WalletRepository.class), transactionTemplate, meterRegistry,
+                WalletConcurrencyServiceImpl.Strategy.RETRY, 16, 1000, MAX_ATTEMPTS, 0, 100);
+    }
+
+    @Test
+    void optimisticLockConflictInsideOuterTransactionIsRetried() {
+        UUID walletId = UUID.randomUUID();
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = service.executeWithRetry(() -> transactionTemplate.execute(status ->
+                service.executeInWalletTransaction(List.of(walletId), () -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        throw new ObjectOptimisticLockingFailureException("Wallet", walletId);
+                    }
+                    return "done";
+                })));
+
+        assertThat(result).isEqualTo("done");
+        assertThat(attempts).hasValue(2);
+        assertThat(meterRegistry.counter("wallet.tx.retries").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.counter("wallet.tx.retry.exhausted").count()).isZero();
+        List<WalletContentionStatsDTO> stats = service.getTopContendedWallets(10);
+        assertThat(stats).singleElement().satisfies(s -> {
+            assertThat(s.getWalletId()).isEqualTo(walletId);
+            assertThat(s.getOptimisticRetries()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void retryExhaustionReturnsConflictError() {
+        UUID walletId = UUID.randomUUID();
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> service.executeWithRetry(() -> transactionTemplate.execute(status ->
+                service.executeInWalletTransaction(List.of(walletId), () -> {
+                    attempts.incrementAndGet();
+                    throw new ObjectOptimisticLockingFailureException("Wallet", walletId);
+                }))))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .hasMessage("Wallet is being updated by another request. Please try again.");
+
+        assertThat(attempts).hasValue(MAX_ATTEMPTS);
+        assertThat(meterRegistry.counter("wallet.tx.retries").count()).isEqualTo(MAX_ATTEMPTS - 1);
+        assertThat(meterRegistry.counter("wallet.tx.retry.exhausted").count()).isEqualTo(1.0);
+        assertThat(service.getTopContendedWallets(10)).singleElement()
+                .satisfies(s -> assertThat(s.getRetryExhausted()).isEqualTo(1));
+    }
+
+    @Test
+    void standaloneWalletTransactionRetriesOnItsOwn() {
+        UUID walletId = UUID.randomUUID();
+        AtomicInteger attempts = new AtomicInteger();
+
+        Integer result = service.executeInWalletTransaction(List.of(walletId), () -> {
+            if (attempts.incrementAndGet() < MAX_ATTEMPTS) {
+                throw new ObjectOptimisticLockingFailureException("Wallet", walletId);
+            }
+            return attempts.get();
+        });
+
+        assertThat(result).isEqualTo(MAX_ATTEMPTS);
+        assertThat(meterRegistry.counter("wallet.tx.retries").count()).isEqualTo(MAX_ATTEMPTS - 1);
+    }
+
+    @Test
+    void executeWithRetryInsideExistingTransactionRunsOnce() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> transactionTemplate.execute(status -> service.executeWithRetry(() -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Wallet", UUID.randomUUID());
+        }))).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+
+        assertThat(attempts).hasValue(1);
+    }
+}